@@ -0,0 +1,155 @@
+import java.awt.AWTException;
+import java.awt.BufferCapabilities;
+import java.awt.Canvas;
+import java.awt.Graphics;
+import java.awt.ImageCapabilities;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Active rendering backend: a dedicated game loop thread runs the logic at a
+ * fixed tick rate and draws every frame straight into a Canvas BufferStrategy,
+ * bypassing Swing's repaint scheduling and coalescing.
+ */
+public class ActiveRenderer implements Runnable {
+    // Most logic ticks run to catch up after a stall before the backlog is dropped
+    private static final int MAX_CATCH_UP_TICKS = 5;
+    
+    private final GamePanel game;
+    private final Canvas canvas;
+    private final long tickNanos;
+    private final boolean vsync;
+    private BufferStrategy strategy;
+    
+    // The thread currently running the loop, or null when stopped
+    private volatile Thread loopThread;
+    
+    /**
+     * Creates a new ActiveRenderer.
+     * 
+     * @param game The game to tick and draw
+     * @param tickMillis Milliseconds between logic ticks
+     * @param vsync True to request a page-flipping buffer strategy and sync every present
+     */
+    public ActiveRenderer(GamePanel game, int tickMillis, boolean vsync) {
+        this.game = game;
+        this.tickNanos = tickMillis * 1000000L;
+        this.vsync = vsync;
+        this.canvas = new Canvas();
+        canvas.setIgnoreRepaint(true);
+        canvas.setFocusable(true);
+    }
+    
+    /**
+     * Gets the canvas this renderer draws to.
+     * 
+     * @return The canvas
+     */
+    public Canvas getCanvas() {
+        return canvas;
+    }
+    
+    /**
+     * Starts the game loop thread if it is not running.
+     */
+    public void start() {
+        if (loopThread == null) {
+            Thread thread = new Thread(this, "Game Loop");
+            thread.setDaemon(true);
+            loopThread = thread;
+            thread.start();
+        }
+    }
+    
+    /**
+     * Stops the game loop. The loop thread finishes its current frame and exits.
+     */
+    public void stop() {
+        loopThread = null;
+    }
+    
+    /**
+     * Runs the game loop: fixed-step logic ticks, then one frame per tick.
+     */
+    @Override
+    public void run() {
+        Thread self = Thread.currentThread();
+        long previous = System.nanoTime();
+        long lag = 0;
+        
+        while (loopThread == self) {
+            long now = System.nanoTime();
+            lag += now - previous;
+            previous = now;
+            
+            int ticks = 0;
+            while (lag >= tickNanos && ticks < MAX_CATCH_UP_TICKS) {
+                game.tick();
+                lag -= tickNanos;
+                ticks++;
+            }
+            if (ticks == MAX_CATCH_UP_TICKS) {
+                // Too far behind, skip the backlog instead of spiralling
+                lag = 0;
+            }
+            
+            render();
+            
+            // Sleep until the next tick is due
+            long remaining = tickNanos - lag - (System.nanoTime() - previous);
+            if (remaining > 0) {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+    }
+    
+    /**
+     * Draws and presents one frame, creating the buffer strategy on first use.
+     */
+    private void render() {
+        if (!canvas.isDisplayable() || canvas.getWidth() <= 0 || canvas.getHeight() <= 0) {
+            return;
+        }
+        if (strategy == null) {
+            createStrategy();
+        }
+        
+        // Redraw until the contents survive both drawing and presenting
+        do {
+            do {
+                Graphics g = strategy.getDrawGraphics();
+                try {
+                    game.renderTo(g, canvas, canvas.getWidth(), canvas.getHeight());
+                } finally {
+                    g.dispose();
+                }
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+        
+        if (vsync) {
+            Toolkit.getDefaultToolkit().sync();
+        }
+        game.framePresented();
+    }
+    
+    /**
+     * Creates a double-buffered strategy, preferring page flipping when vsync is requested.
+     */
+    private void createStrategy() {
+        if (vsync) {
+            try {
+                canvas.createBufferStrategy(2, new BufferCapabilities(
+                        new ImageCapabilities(true), new ImageCapabilities(true),
+                        BufferCapabilities.FlipContents.UNDEFINED));
+            } catch (AWTException e) {
+                // Page flipping is not available on this pipeline, fall back to blitting
+                canvas.createBufferStrategy(2);
+            }
+        } else {
+            canvas.createBufferStrategy(2);
+        }
+        strategy = canvas.getBufferStrategy();
+    }
+}
@@ -0,0 +1,188 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates an AppCDS archive for fast cold starts and measures the startup time.
+ * 
+ * Training starts the game once with -XX:ArchiveClassesAtExit, shows the title
+ * screen, plays one game without input and exits, so that the archive holds the
+ * classes of both screens. Later launches map the archived classes instead of
+ * loading and verifying them again:
+ * 
+ *   java -XX:SharedArchiveFile=pacman.jsa -Dpacman.lazyGamePanel=true -cp pacman.jar Main
+ * 
+ * AppCDS only archives classes loaded from JAR files, so the game has to be run from
+ * a jar (jar cfe pacman.jar Main -C bin .) for training and for the archived launch.
+ * 
+ * The benchmark starts the game several times per configuration and measures the
+ * time from starting the JVM to the first painted title screen frame.
+ * 
+ * Usage: java AppCdsTool --train|--benchmark [--archive path] [--runs n]
+ */
+public class AppCdsTool {
+    private static final String DEFAULT_ARCHIVE = "pacman.jsa";
+    private static final int TRAINING_TIMEOUT_SECONDS = 120;
+    private static final int RUN_TIMEOUT_SECONDS = 60;
+    
+    /**
+     * Runs the tool from the command line.
+     * 
+     * @param args The command line arguments
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String mode = args.length > 0 ? args[0] : "";
+        File archive = new File(DEFAULT_ARCHIVE);
+        int runs = 10;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--archive":
+                    archive = new File(args[i + 1]);
+                    break;
+                case "--runs":
+                    runs = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(1);
+            }
+        }
+        
+        switch (mode) {
+            case "--train":
+                train(archive);
+                break;
+            case "--benchmark":
+                benchmark(archive, runs);
+                break;
+            default:
+                System.err.println("Usage: java AppCdsTool --train|--benchmark [--archive path] [--runs n]");
+                System.exit(1);
+        }
+    }
+    
+    /**
+     * Records the training run and writes the archive.
+     * 
+     * @param archive The archive to write
+     */
+    private static void train(File archive) throws IOException, InterruptedException {
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (new File(entry).isDirectory()) {
+                System.err.println("AppCDS only archives classes from JAR files, but the class path contains " + entry);
+                System.err.println("Build a jar with: jar cfe pacman.jar Main -C bin . and run with -cp pacman.jar");
+                System.exit(1);
+            }
+        }
+        List<String> command = javaCommand("-XX:ArchiveClassesAtExit=" + archive.getPath(),
+                "-Dpacman.lazyGamePanel=true", "-Dpacman.autoRun=game");
+        Process process = new ProcessBuilder(command).inheritIO().start();
+        if (!process.waitFor(TRAINING_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            System.err.println("Training run did not finish");
+            System.exit(1);
+        }
+        if (process.exitValue() != 0 || !archive.isFile()) {
+            System.err.println("Training run failed, no archive was written");
+            System.exit(1);
+        }
+        System.out.printf("Wrote %s (%.1f MB). Launch with:%n", archive, archive.length() / 1e6);
+        System.out.println("  java -XX:SharedArchiveFile=" + archive.getPath() + " -Dpacman.lazyGamePanel=true -cp "
+                + System.getProperty("java.class.path") + " Main");
+    }
+    
+    /**
+     * Measures the time to the first title screen frame with and without the archive.
+     * 
+     * @param archive The archive written by training
+     * @param runs The number of launches per configuration
+     */
+    private static void benchmark(File archive, int runs) throws IOException, InterruptedException {
+        String[] names = {"default", "lazy game panel", "lazy + AppCDS"};
+        String[][] flags = {
+            {},
+            {"-Dpacman.lazyGamePanel=true"},
+            {"-Dpacman.lazyGamePanel=true", "-XX:SharedArchiveFile=" + archive.getPath()}
+        };
+        if (!archive.isFile()) {
+            System.out.println("No archive at " + archive + ", run --train first to measure AppCDS");
+            names = Arrays.copyOf(names, 2);
+        }
+        
+        for (int i = 0; i < names.length; i++) {
+            long[] times = new long[runs];
+            int measured = 0;
+            for (int run = 0; run < runs; run++) {
+                long time = timeToFirstFrame(flags[i]);
+                if (time >= 0) {
+                    times[measured++] = time;
+                }
+            }
+            if (measured == 0) {
+                System.out.printf("%-16s no title frame was painted%n", names[i]);
+                continue;
+            }
+            Arrays.sort(times, 0, measured);
+            System.out.printf("%-16s %d runs, first title frame min %d ms, median %d ms, max %d ms%n",
+                    names[i], measured, times[0], times[measured / 2], times[measured - 1]);
+        }
+    }
+    
+    /**
+     * Launches the game once and measures the time until it painted the title screen.
+     * 
+     * @param flags Extra JVM flags
+     * @return The time in milliseconds, or -1 if the game did not report a frame
+     */
+    private static long timeToFirstFrame(String... flags) throws IOException, InterruptedException {
+        String[] allFlags = Arrays.copyOf(flags, flags.length + 1);
+        allFlags[flags.length] = "-Dpacman.autoRun=title";
+        List<String> command = javaCommand(allFlags);
+        
+        // The output goes to a file, so that a run that hangs before it paints still times out
+        File output = File.createTempFile("pacman-startup", ".txt");
+        try {
+            long start = System.currentTimeMillis();
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(output).start();
+            if (!process.waitFor(RUN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+            long firstFrame = -1;
+            try (BufferedReader reader = Files.newBufferedReader(output.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith(GameFrame.FIRST_FRAME_PREFIX)) {
+                        firstFrame = Long.parseLong(line.substring(GameFrame.FIRST_FRAME_PREFIX.length()).trim());
+                    }
+                }
+            }
+            return firstFrame >= 0 ? firstFrame - start : -1;
+        } finally {
+            output.delete();
+        }
+    }
+    
+    /**
+     * Builds the command line that starts the game in a new JVM.
+     * The render probe is skipped so that a missing probe result does not add to the time.
+     * 
+     * @param flags Extra JVM flags
+     * @return The command
+     */
+    private static List<String> javaCommand(String... flags) {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(Arrays.asList(flags));
+        command.add("-Dpacman.probe=false");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Main.class.getName());
+        return command;
+    }
+}
@@ -0,0 +1,123 @@
+import java.util.Random;
+
+/**
+ * Steers Pac-Man without a player, for recordings and other headless runs.
+ * At every new tile it prefers a neighbouring tile that still has a pellet and
+ * otherwise keeps wandering without turning back. With an escape table it first rules
+ * out moves the ghosts can trap. The same seed gives the same moves.
+ */
+public class Autopilot {
+    private static final Direction[] DIRECTIONS = {Direction.UP, Direction.DOWN, Direction.LEFT, Direction.RIGHT};
+    private static final int SAFE_MOVES = 12; // Moves perfect ghosts must need to catch Pac-Man after a safe move
+    
+    private Random random;
+    private EscapeTable escapeTable;
+    private int lastX = -1;
+    private int lastY = -1;
+    
+    // Candidate directions, reused on every decision
+    private Direction[] candidates = new Direction[DIRECTIONS.length];
+    
+    /**
+     * Creates a new Autopilot.
+     * 
+     * @param seed The seed for the random choices
+     */
+    public Autopilot(long seed) {
+        this.random = new Random(seed);
+    }
+    
+    /**
+     * Chooses Pac-Man's next direction whenever Pac-Man reaches a new tile.
+     * Call once per tick before the game advances.
+     * 
+     * @param game The game to steer
+     */
+    public void steer(Game game) {
+        PacMan pacman = game.getPacMan();
+        Position position = pacman.getPosition();
+        if (position.getX() == lastX && position.getY() == lastY && pacman.getDirection() != Direction.NONE) {
+            return;
+        }
+        lastX = position.getX();
+        lastY = position.getY();
+        
+        Maze maze = game.getMaze();
+        Direction reverse = pacman.getDirection().getOpposite();
+        int count = 0;
+        boolean safeFound = false;
+        boolean pelletFound = false;
+        Direction safest = Direction.NONE;
+        int safestMoves = -1;
+        for (Direction direction : DIRECTIONS) {
+            int x = lastX + direction.getDx();
+            int y = lastY + direction.getDy();
+            Tile tile = maze.getTile(x, y);
+            if (tile == null || tile.isWall()) {
+                continue;
+            }
+            int moves = escapeTable == null ? EscapeTable.ESCAPES
+                    : escapeTable.getSafety(position, direction, game.getGhosts());
+            if (moves > safestMoves) {
+                safestMoves = moves;
+                safest = direction;
+            }
+            if (direction == reverse) {
+                continue;
+            }
+            
+            // Once a safe direction is found, only safe directions are candidates
+            boolean safe = moves >= SAFE_MOVES;
+            if (safe && !safeFound) {
+                safeFound = true;
+                pelletFound = false;
+                count = 0;
+            }
+            if (!safe && safeFound) {
+                continue;
+            }
+            
+            // Once a pellet is in reach, only directions with pellets are candidates
+            boolean pellet = tile.hasPellet() || tile.hasPowerPellet();
+            if (pellet && !pelletFound) {
+                pelletFound = true;
+                count = 0;
+            }
+            if (pellet || !pelletFound) {
+                candidates[count++] = direction;
+            }
+        }
+        
+        // Turn back only in a dead end; with no safe direction, hold out as long as possible
+        Direction next;
+        if (count > 0 && !safeFound) {
+            next = safest;
+        } else {
+            next = count > 0 ? candidates[random.nextInt(count)] : reverse;
+        }
+        pacman.setNextDirection(next);
+    }
+    
+    /**
+     * Lets the autopilot avoid moves that the ghosts can trap, using a table built by
+     * EscapeTableTool. Without a table it only looks at pellets.
+     * 
+     * @param escapeTable The table for the game's maze, or null
+     */
+    public void setEscapeTable(EscapeTable escapeTable) {
+        this.escapeTable = escapeTable;
+    }
+    
+    /**
+     * Plays a game until it ends or the tick limit is reached.
+     * 
+     * @param game The game to play
+     * @param ticks The maximum number of ticks to play
+     */
+    public void play(Game game, long ticks) {
+        while (game.getTicks() < ticks && !game.isGameOver() && !game.isGameWon()) {
+            steer(game);
+            game.tick();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Supplier;
+
+/**
+ * Runs the levels of a campaign one after the other. While a level is played, the next
+ * one is prepared on the "Level Loader" thread, so that moving on after a win only copies
+ * the prepared template maze into the game, well within one tick.
+ * 
+ * Every level and every restart is played on the same Game, started over in place, so
+ * once each layout has been played neither allocates on the game thread.
+ * 
+ * Not thread-safe; call it from the game thread.
+ */
+public class Campaign {
+    private final ExecutorService executor;
+    private Game game;
+    private PreparedLevel current;
+    private CompletableFuture<PreparedLevel> next;
+    private int nextNumber;
+    private int waits;
+    
+    /**
+     * Creates a new Campaign and its loader thread.
+     */
+    public Campaign() {
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Level Loader");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+    
+    /**
+     * Starts the campaign again from a first level prepared by the caller, for example
+     * at startup, and starts preparing the level after it.
+     * 
+     * @param first The first level
+     * @param difficulty The difficulty level (0=easy, 1=medium, 2=hard)
+     * @param seed The seed for the ghosts' random generators
+     * @return The game of the first level, the campaign's game started over
+     */
+    public Game start(PreparedLevel first, int difficulty, long seed) {
+        return begin(first, difficulty, seed, 0);
+    }
+    
+    /**
+     * Moves on to the next level after a win, carrying the score over. Waits only if the
+     * next level is not prepared yet, which is logged.
+     * 
+     * @param finished The won game of the current level
+     * @param seed The seed for the ghosts' random generators
+     * @return The game of the next level, the campaign's game started over
+     */
+    public Game advance(Game finished, long seed) {
+        PreparedLevel prepared = next.getNow(null);
+        if (prepared == null) {
+            EventLog.log(EventLog.WARN, "Level " + nextNumber + " is not prepared yet, waiting for it");
+            waits++;
+            prepared = next.join();
+        }
+        return begin(prepared, finished.getDifficulty(), seed, finished.getScore());
+    }
+    
+    /**
+     * Gets the level being played.
+     * 
+     * @return The prepared level, or null before the campaign has started
+     */
+    public PreparedLevel getCurrentLevel() {
+        return current;
+    }
+    
+    /**
+     * Gets how many handovers had to wait for the next level to be prepared.
+     * 
+     * @return The wait count
+     */
+    public int getWaitCount() {
+        return waits;
+    }
+    
+    /**
+     * Starts the game over on a prepared level, creating it the first time, and starts
+     * preparing the level after it.
+     */
+    private Game begin(PreparedLevel prepared, int difficulty, long seed, int score) {
+        current = prepared;
+        if (game == null) {
+            game = new Game(difficulty, seed, new Maze(prepared.getMaze()), prepared.getLevel());
+        } else {
+            game.reset(difficulty, seed, prepared.getMaze(), prepared.getLevel());
+        }
+        game.setScore(score);
+        prepareNext(prepared.getLevel().getNumber() + 1);
+        return game;
+    }
+    
+    /**
+     * Submits a level to the loader thread, unless it is already being prepared.
+     */
+    private void prepareNext(final int number) {
+        if (next != null && nextNumber == number) {
+            return;
+        }
+        nextNumber = number;
+        next = CompletableFuture.supplyAsync(new Supplier<PreparedLevel>() {
+            @Override
+            public PreparedLevel get() {
+                return PreparedLevel.prepare(Level.get(number));
+            }
+        }, executor);
+    }
+}
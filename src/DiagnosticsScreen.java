@@ -0,0 +1,180 @@
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+/**
+ * Diagnostics screen showing the active rendering setup and the render probe results.
+ */
+public class DiagnosticsScreen extends JPanel {
+    private static final long serialVersionUID = 1L;
+    
+    private static final int WIDTH = GamePanel.PANEL_WIDTH;
+    private static final int HEIGHT = GamePanel.PANEL_HEIGHT;
+    
+    private static final Font TITLE_FONT = new Font("Arial", Font.BOLD, 28);
+    private static final Font TEXT_FONT = new Font("Monospaced", Font.PLAIN, 12);
+    private static final Font BUTTON_FONT = new Font("Arial", Font.BOLD, 16);
+    
+    private Rectangle probeButton;
+    private Rectangle backButton;
+    private GameFrame parent;
+    private FrameScaler frameScaler;
+    private volatile boolean probing;
+    
+    /**
+     * Creates a new diagnostics screen.
+     * 
+     * @param parent The parent GameFrame
+     */
+    public DiagnosticsScreen(GameFrame parent) {
+        this.parent = parent;
+        
+        setPreferredSize(new Dimension(WIDTH, HEIGHT));
+        setBackground(Color.BLACK);
+        setFocusable(true);
+        frameScaler = new FrameScaler(WIDTH, HEIGHT, true);
+        
+        probeButton = new Rectangle(WIDTH / 2 - 130, HEIGHT - 80, 120, 40);
+        backButton = new Rectangle(WIDTH / 2 + 10, HEIGHT - 80, 120, 40);
+        
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                Point point = frameScaler.toLogical(e.getX(), e.getY());
+                if (probeButton.contains(point)) {
+                    startProbe();
+                } else if (backButton.contains(point)) {
+                    parent.returnToTitleScreen();
+                }
+            }
+        });
+    }
+    
+    /**
+     * Refreshes the screen, for example after it was shown again.
+     */
+    public void refresh() {
+        frameScaler.invalidate();
+        repaint();
+    }
+    
+    /**
+     * Runs the render probe in the background. The new choice applies at the next launch.
+     */
+    private void startProbe() {
+        if (probing) {
+            return;
+        }
+        probing = true;
+        refresh();
+        
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                RenderProbe.runProbe();
+                probing = false;
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        refresh();
+                    }
+                });
+            }
+        }, "Render Probe");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Draws the diagnostics screen.
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        
+        if (frameScaler.needsRender(this)) {
+            Graphics2D frame = frameScaler.beginFrame(this);
+            renderFrame(frame);
+            frame.dispose();
+        }
+        frameScaler.present(g, getWidth(), getHeight());
+    }
+    
+    /**
+     * Draws the diagnostics screen at logical resolution.
+     * 
+     * @param g The Graphics object to draw with
+     */
+    private void renderFrame(Graphics g) {
+        g.setColor(Color.YELLOW);
+        g.setFont(TITLE_FONT);
+        g.drawString("DIAGNOSTICS", WIDTH / 2 - 95, 50);
+        
+        g.setColor(Color.WHITE);
+        g.setFont(TEXT_FONT);
+        int y = 90;
+        g.drawString("Active pipeline: " + RenderProbe.describeActivePipeline(), 20, y);
+        y += 18;
+        g.drawString("Renderer:        " + System.getProperty("pacman.renderer", "swing"), 20, y);
+        y += 18;
+        g.drawString("Frame image:     " + System.getProperty("pacman.frameImage", FrameScaler.IMAGE_VOLATILE), 20, y);
+        y += 30;
+        
+        Properties saved = RenderProbe.loadSavedChoice();
+        if (probing) {
+            g.setColor(Color.ORANGE);
+            g.drawString("Probing pipelines...", 20, y);
+        } else if (saved == null) {
+            g.drawString("This machine has not been probed yet.", 20, y);
+        } else {
+            g.drawString("Saved choice:    " + saved.getProperty("pipeline", "none") + " / "
+                    + saved.getProperty("frameImage", "none"), 20, y);
+            y += 18;
+            g.drawString("Recording image: " + saved.getProperty("recordingFrameImage", "none"), 20, y);
+            y += 28;
+            
+            // One line per probed combination, fastest first
+            List<String> lines = new ArrayList<>();
+            for (String key : saved.stringPropertyNames()) {
+                if (key.startsWith("result.")) {
+                    long nanos = Long.parseLong(saved.getProperty(key));
+                    lines.add(String.format("%12d  %s", nanos, key.substring("result.".length())));
+                }
+            }
+            Collections.sort(lines);
+            g.drawString("  ns / frame  pipeline.image", 20, y);
+            for (String line : lines) {
+                y += 16;
+                g.drawString(line, 20, y);
+            }
+            y += 28;
+            g.setColor(Color.GRAY);
+            g.drawString("A new choice applies at the next launch.", 20, y);
+        }
+        
+        // Draw buttons
+        g.setFont(BUTTON_FONT);
+        g.setColor(probing ? Color.GRAY : Color.BLUE);
+        g.fillRect(probeButton.x, probeButton.y, probeButton.width, probeButton.height);
+        g.setColor(Color.WHITE);
+        g.drawString("RUN PROBE", probeButton.x + 12, probeButton.y + 25);
+        
+        g.setColor(Color.GREEN);
+        g.fillRect(backButton.x, backButton.y, backButton.width, backButton.height);
+        g.setColor(Color.BLACK);
+        g.drawString("BACK", backButton.x + 37, backButton.y + 25);
+    }
+}
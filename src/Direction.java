@@ -18,4 +18,30 @@ public enum Direction {
             default: return NONE;
         }
     }
+    
+    /**
+     * Returns the horizontal step of this direction.
+     * 
+     * @return -1 for LEFT, 1 for RIGHT, 0 otherwise
+     */
+    public int getDx() {
+        switch (this) {
+            case LEFT: return -1;
+            case RIGHT: return 1;
+            default: return 0;
+        }
+    }
+    
+    /**
+     * Returns the vertical step of this direction.
+     * 
+     * @return -1 for UP, 1 for DOWN, 0 otherwise
+     */
+    public int getDy() {
+        switch (this) {
+            case UP: return -1;
+            case DOWN: return 1;
+            default: return 0;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,130 @@
+/**
+ * Measures how many environment steps per second a VectorEnv runs with random actions,
+ * and checks the incrementally updated observations against ones written from scratch.
+ * 
+ * Usage: java EnvBenchmark [--envs n] [--threads n] [--seconds n] [--frame-skip n]
+ */
+public class EnvBenchmark {
+    /**
+     * Runs the benchmark from the command line.
+     * 
+     * @param args The command line arguments
+     */
+    public static void main(String[] args) {
+        int envs = 1024;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int seconds = 10;
+        int frameSkip = 1;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--envs":
+                    envs = Math.max(1, Integer.parseInt(args[i + 1]));
+                    break;
+                case "--threads":
+                    threads = Math.max(1, Integer.parseInt(args[i + 1]));
+                    break;
+                case "--seconds":
+                    seconds = Math.max(1, Integer.parseInt(args[i + 1]));
+                    break;
+                case "--frame-skip":
+                    frameSkip = Math.max(1, Integer.parseInt(args[i + 1]));
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(1);
+            }
+        }
+        
+        VectorEnv env = new VectorEnv(envs, threads, TitleScreen.DIFFICULTY_MEDIUM, frameSkip, 1);
+        env.reset();
+        int[] actions = new int[envs];
+        long random = 0x9E3779B97F4A7C15L;
+        
+        // Warm up, then count steps in one-second rounds
+        long episodes = 0;
+        long steps = 0;
+        long best = 0;
+        for (int round = -2; round < seconds; round++) {
+            long start = System.nanoTime();
+            long roundSteps = 0;
+            while (System.nanoTime() - start < 1000000000L) {
+                for (int i = 0; i < envs; i++) {
+                    random ^= random << 13;
+                    random ^= random >>> 7;
+                    random ^= random << 17;
+                    actions[i] = (int) ((random >>> 33) % PacManEnv.ACTION_COUNT);
+                }
+                env.step(actions);
+                roundSteps += envs;
+                if (round >= 0) {
+                    byte[] dones = env.getDones();
+                    for (int i = 0; i < envs; i++) {
+                        if (dones[i] != VectorEnv.RUNNING) {
+                            episodes++;
+                        }
+                    }
+                }
+            }
+            long rate = roundSteps * 1000000000L / (System.nanoTime() - start);
+            if (round >= 0) {
+                steps += roundSteps;
+                best = Math.max(best, rate);
+                System.out.printf("%,d steps/s%n", rate);
+            }
+        }
+        System.out.printf("%d envs, %d threads, frame skip %d: best %,d steps/s, %,d steps, %,d episodes ended%n",
+                envs, threads, frameSkip, best, steps, episodes);
+        
+        // The incremental observations must match a fresh one of the same state
+        int mismatches = 0;
+        byte[] observations = env.getObservations();
+        for (int i = 0; i < envs; i++) {
+            byte[] expected = observe(env.getEnv(i).getGame());
+            int offset = i * PacManEnv.OBSERVATION_SIZE;
+            for (int j = 0; j < PacManEnv.OBSERVATION_SIZE; j++) {
+                if (observations[offset + j] != expected[j]) {
+                    mismatches++;
+                    break;
+                }
+            }
+        }
+        env.close();
+        System.out.println(mismatches == 0 ? "Observations match" : mismatches + " observations differ");
+        if (mismatches != 0) {
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Writes the observation of a game from scratch.
+     */
+    private static byte[] observe(Game game) {
+        byte[] observation = new byte[PacManEnv.OBSERVATION_SIZE];
+        Maze maze = game.getMaze();
+        for (int y = 0; y < PacManEnv.HEIGHT; y++) {
+            for (int x = 0; x < PacManEnv.WIDTH; x++) {
+                int tile = y * PacManEnv.WIDTH + x;
+                observation[PacManEnv.CHANNEL_WALLS * PacManEnv.PLANE_SIZE + tile] = (byte) (maze.isWall(x, y) ? 1 : 0);
+                observation[PacManEnv.CHANNEL_PELLETS * PacManEnv.PLANE_SIZE + tile] =
+                        (byte) (maze.getTile(x, y).hasPellet() ? 1 : 0);
+                observation[PacManEnv.CHANNEL_POWER_PELLETS * PacManEnv.PLANE_SIZE + tile] =
+                        (byte) (maze.getTile(x, y).hasPowerPellet() ? 1 : 0);
+            }
+        }
+        PacMan pacman = game.getPacMan();
+        int pacmanTile = PacManEnv.tileOf(pacman.getPosition());
+        if (pacmanTile >= 0) {
+            observation[PacManEnv.CHANNEL_PACMAN * PacManEnv.PLANE_SIZE + pacmanTile] = 1;
+        }
+        for (Ghost ghost : game.getGhosts()) {
+            int tile = PacManEnv.tileOf(ghost.getPosition());
+            if (tile >= 0 && !ghost.isEaten()) {
+                int channel = ghost.isFrightened() ? PacManEnv.CHANNEL_FRIGHTENED : PacManEnv.CHANNEL_GHOSTS;
+                observation[channel * PacManEnv.PLANE_SIZE + tile]++;
+            }
+        }
+        observation[PacManEnv.CHANNELS * PacManEnv.PLANE_SIZE] = (byte) Math.min(255,
+                pacman.getPowerModeTimer() * 255 / Math.max(1, pacman.getPowerModeDuration()));
+        return observation;
+    }
+}
@@ -0,0 +1,190 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Lets a trainer in another process, such as a Python script, drive a VectorEnv over
+ * stdin/stdout or a socket on the loopback interface.
+ * 
+ * Usage: java EnvBridge [--stdio | --port n] [--envs n] [--threads n] [--seed n]
+ *        [--difficulty easy|medium|hard] [--frame-skip n]
+ * 
+ * The protocol is binary and big-endian. On connecting the bridge sends a header of
+ * seven ints: MAGIC, VERSION, the number of environments, CHANNELS, HEIGHT, WIDTH and
+ * OBSERVATION_SIZE. The trainer then sends commands of one byte:
+ * 'R' resets every environment and is answered with all observations;
+ * 'S' followed by one action byte per environment steps them and is answered with one
+ * int reward and one done byte (0 running, 1 terminated, 2 truncated) per environment,
+ * then all observations; 'Q' ends the session. Over a socket, one trainer is served at a time.
+ */
+public class EnvBridge {
+    public static final int MAGIC = 0x504D4556; // "PMEV"
+    public static final int VERSION = 1;
+    
+    private final VectorEnv env;
+    private final int[] actions;
+    private final byte[] actionBytes;
+    private final byte[] rewardBytes;
+    
+    /**
+     * Creates a new EnvBridge.
+     * 
+     * @param env The environments to serve
+     */
+    public EnvBridge(VectorEnv env) {
+        this.env = env;
+        this.actions = new int[env.getCount()];
+        this.actionBytes = new byte[env.getCount()];
+        this.rewardBytes = new byte[env.getCount() * 4];
+    }
+    
+    /**
+     * Starts the bridge from the command line.
+     * 
+     * @param args The command line arguments
+     */
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        
+        boolean stdio = false;
+        int port = 0;
+        int envs = 64;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        int difficulty = TitleScreen.DIFFICULTY_MEDIUM;
+        int frameSkip = 1;
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : "";
+            switch (args[i]) {
+                case "--stdio":
+                    stdio = true;
+                    continue;
+                case "--port":
+                    port = Integer.parseInt(value);
+                    break;
+                case "--envs":
+                    envs = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "--threads":
+                    threads = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--difficulty":
+                    difficulty = "easy".equals(value) ? TitleScreen.DIFFICULTY_EASY
+                            : "hard".equals(value) ? TitleScreen.DIFFICULTY_HARD : TitleScreen.DIFFICULTY_MEDIUM;
+                    break;
+                case "--frame-skip":
+                    frameSkip = Math.max(1, Integer.parseInt(value));
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(1);
+            }
+            i++;
+        }
+        if (!stdio && port <= 0) {
+            System.err.println("Usage: java EnvBridge --stdio | --port n [options]");
+            System.exit(1);
+        }
+        
+        EnvBridge bridge = new EnvBridge(new VectorEnv(envs, threads, difficulty, frameSkip, seed));
+        if (stdio) {
+            // Keep stray prints off the protocol stream
+            OutputStream out = new FileOutputStream(FileDescriptor.out);
+            System.setOut(new PrintStream(new FileOutputStream(FileDescriptor.err), true));
+            bridge.serve(new FileInputStream(FileDescriptor.in), out);
+            return;
+        }
+        try (ServerSocket server = new ServerSocket(port, 1, InetAddress.getLoopbackAddress())) {
+            System.err.println("Serving " + envs + " environments on " + server.getLocalSocketAddress());
+            while (true) {
+                try (Socket socket = server.accept()) {
+                    socket.setTcpNoDelay(true);
+                    bridge.serve(socket.getInputStream(), socket.getOutputStream());
+                } catch (IOException e) {
+                    System.err.println("Trainer disconnected: " + e.getMessage());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Answers commands from one trainer until it quits or disconnects.
+     * 
+     * @param input The stream the commands arrive on
+     * @param output The stream to answer on
+     * @throws IOException If the connection fails
+     */
+    public void serve(InputStream input, OutputStream output) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input, 1 << 16));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output, 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(env.getCount());
+        out.writeInt(PacManEnv.CHANNELS);
+        out.writeInt(PacManEnv.HEIGHT);
+        out.writeInt(PacManEnv.WIDTH);
+        out.writeInt(PacManEnv.OBSERVATION_SIZE);
+        out.flush();
+        
+        while (true) {
+            int command;
+            try {
+                command = in.readUnsignedByte();
+            } catch (EOFException e) {
+                return;
+            }
+            switch (command) {
+                case 'R':
+                    env.reset();
+                    out.write(env.getObservations());
+                    break;
+                case 'S':
+                    in.readFully(actionBytes);
+                    for (int i = 0; i < actions.length; i++) {
+                        actions[i] = actionBytes[i];
+                    }
+                    env.step(actions);
+                    writeRewards(out);
+                    out.write(env.getDones());
+                    out.write(env.getObservations());
+                    break;
+                case 'Q':
+                    out.flush();
+                    return;
+                default:
+                    throw new IOException("Unknown command: " + command);
+            }
+            out.flush();
+        }
+    }
+    
+    /**
+     * Writes the rewards of the last step as big-endian ints in one write.
+     */
+    private void writeRewards(DataOutputStream out) throws IOException {
+        int[] rewards = env.getRewards();
+        for (int i = 0; i < rewards.length; i++) {
+            int reward = rewards[i];
+            rewardBytes[i * 4] = (byte) (reward >>> 24);
+            rewardBytes[i * 4 + 1] = (byte) (reward >>> 16);
+            rewardBytes[i * 4 + 2] = (byte) (reward >>> 8);
+            rewardBytes[i * 4 + 3] = (byte) reward;
+        }
+        out.write(rewardBytes);
+    }
+}
@@ -0,0 +1,271 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Precomputed answers to "how long can Pac-Man keep away from these two ghosts?" for
+ * every placement of Pac-Man and two ghosts on the walkable tiles of a maze, built
+ * offline by EscapeTableTool and read through a memory map.
+ * 
+ * The tables describe a pursuit on the tile graph in which Pac-Man moves one tile and
+ * then each ghost moves one tile or stays, and Pac-Man is caught on a ghost's tile.
+ * Ghosts may turn back and play perfectly, so the answers hold against any ghost. Two
+ * perfect ghosts can corner Pac-Man almost anywhere in the default maze, so rather than
+ * one escape bit per state the tables hold the number of Pac-Man moves until the
+ * capture, packed into DEPTH_BITS bits, with ESCAPES for never. ESCAPE holds the depth
+ * with Pac-Man to move and SAFE the depth after Pac-Man has moved to the tile, with the
+ * ghosts to move, so the safety of a direction is one read per ghost pair.
+ * 
+ * States are numbered (g1 * cellCount + g2) * cellCount + p over the cells of the two
+ * ghosts and Pac-Man. File layout, big-endian: MAGIC, VERSION, width, height, cell
+ * count, CRC32 of the wall layout, DEPTH_BITS, padding to HEADER_SIZE, then the ESCAPE
+ * and SAFE tables, each followed by 8 bytes of padding.
+ */
+public class EscapeTable {
+    public static final File DEFAULT_FILE = new File(System.getProperty("user.dir"), "escape.table");
+    public static final int DEPTH_BITS = 6;
+    public static final int ESCAPES = (1 << DEPTH_BITS) - 1; // Depth of states Pac-Man is never caught from
+    
+    static final int MAGIC = 0x45534354; // "ESCT"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    private static final Direction[] DIRECTIONS = {Direction.UP, Direction.DOWN, Direction.LEFT, Direction.RIGHT};
+    
+    private final MappedByteBuffer buffer;
+    private final int width;
+    private final int height;
+    private final int[] cells;
+    private final int cellCount;
+    private final long safeOffset;
+    
+    /**
+     * Maps a table file built for a maze.
+     * 
+     * @param file The table file
+     * @param maze The maze the table must have been built for
+     * @return The table
+     * @throws IOException If the file cannot be read, is not a table or belongs to another layout
+     */
+    public static EscapeTable load(File file, Maze maze) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException(file + " is not an escape table");
+            }
+            
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException(file + " is not an escape table");
+            }
+            int[] cells = cellsOf(maze);
+            int cellCount = countCells(cells);
+            if (buffer.getInt(8) != maze.getWidth() || buffer.getInt(12) != maze.getHeight()
+                    || buffer.getInt(16) != cellCount || buffer.getInt(20) != layoutHash(maze)) {
+                throw new IOException(file + " was built for a different maze");
+            }
+            if (buffer.getInt(24) != DEPTH_BITS || channel.size() != HEADER_SIZE + 2 * tableBytes(cellCount)) {
+                throw new IOException(file + " has an invalid size");
+            }
+            return new EscapeTable(buffer, maze, cells, cellCount);
+        }
+    }
+    
+    private EscapeTable(MappedByteBuffer buffer, Maze maze, int[] cells, int cellCount) {
+        this.buffer = buffer;
+        this.width = maze.getWidth();
+        this.height = maze.getHeight();
+        this.cells = cells;
+        this.cellCount = cellCount;
+        this.safeOffset = HEADER_SIZE + tableBytes(cellCount);
+    }
+    
+    /**
+     * Gets how many moves Pac-Man, about to move, can keep away from two perfect ghosts.
+     * 
+     * @param pacman Pac-Man's tile
+     * @param ghost1 The first ghost's tile
+     * @param ghost2 The second ghost's tile
+     * @return The moves until Pac-Man is caught, 0 if caught already, or ESCAPES if
+     *         never or if a tile is outside the table
+     */
+    public int getEscapeDepth(Position pacman, Position ghost1, Position ghost2) {
+        int p = cellOf(pacman.getX(), pacman.getY());
+        int g1 = cellOf(ghost1.getX(), ghost1.getY());
+        int g2 = cellOf(ghost2.getX(), ghost2.getY());
+        if (p < 0 || g1 < 0 || g2 < 0) {
+            return ESCAPES;
+        }
+        return depth(HEADER_SIZE, p, g1, g2);
+    }
+    
+    /**
+     * Checks whether Pac-Man, about to move, can keep away from two ghosts forever.
+     * 
+     * @param pacman Pac-Man's tile
+     * @param ghost1 The first ghost's tile
+     * @param ghost2 The second ghost's tile
+     * @return True if Pac-Man can escape, or if a tile is outside the table
+     */
+    public boolean canEscape(Position pacman, Position ghost1, Position ghost2) {
+        return getEscapeDepth(pacman, ghost1, ghost2) == ESCAPES;
+    }
+    
+    /**
+     * Gets how many more moves Pac-Man can keep away from the hunting ghosts after a move,
+     * the least over every pair of them. Frightened and eaten ghosts and ghosts outside
+     * the maze are left out. With more than two hunters this is checked pair by pair,
+     * which can miss traps that take three ghosts.
+     * 
+     * @param pacman Pac-Man's tile
+     * @param direction The direction to move in
+     * @param ghosts The ghosts
+     * @return The moves until Pac-Man is caught, 0 for a wall or a ghost's tile, or
+     *         ESCAPES if never or if Pac-Man is outside the table
+     */
+    public int getSafety(Position pacman, Direction direction, List<Ghost> ghosts) {
+        if (cellOf(pacman.getX(), pacman.getY()) < 0) {
+            return ESCAPES;
+        }
+        int p = cellOf(pacman.getX() + direction.getDx(), pacman.getY() + direction.getDy());
+        if (p < 0) {
+            return 0;
+        }
+        int safety = ESCAPES;
+        for (int i = 0; i < ghosts.size(); i++) {
+            int g1 = hunterCell(ghosts.get(i));
+            if (g1 < 0) {
+                continue;
+            }
+            safety = Math.min(safety, depth(safeOffset, p, g1, g1));
+            for (int j = i + 1; j < ghosts.size(); j++) {
+                int g2 = hunterCell(ghosts.get(j));
+                if (g2 >= 0) {
+                    safety = Math.min(safety, depth(safeOffset, p, g1, g2));
+                }
+            }
+        }
+        return safety;
+    }
+    
+    /**
+     * Gets the number of walkable tiles the table covers.
+     * 
+     * @return The cell count
+     */
+    public int getCellCount() {
+        return cellCount;
+    }
+    
+    /**
+     * Gets the cell of a hunting ghost, or -1 if it cannot catch Pac-Man or is outside the maze.
+     */
+    private int hunterCell(Ghost ghost) {
+        if (ghost.getState() != Ghost.STATE_NORMAL) {
+            return -1;
+        }
+        return cellOf(ghost.getPosition().getX(), ghost.getPosition().getY());
+    }
+    
+    /**
+     * Reads the depth of a state from the table starting at an offset, with a single
+     * unaligned read of the eight bytes holding its bits.
+     */
+    private int depth(long tableOffset, int p, int g1, int g2) {
+        long bit = (((long) g1 * cellCount + g2) * cellCount + p) * DEPTH_BITS;
+        long word = buffer.getLong((int) (tableOffset + (bit >>> 3)));
+        return (int) (word >>> (64 - DEPTH_BITS - (bit & 7))) & ESCAPES;
+    }
+    
+    private int cellOf(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return -1;
+        }
+        return cells[y * width + x];
+    }
+    
+    /**
+     * Numbers the walkable tiles of a maze row by row.
+     * 
+     * @param maze The maze
+     * @return The cell of each tile by index y * width + x, -1 for walls
+     */
+    static int[] cellsOf(Maze maze) {
+        int[] cells = new int[maze.getWidth() * maze.getHeight()];
+        int cell = 0;
+        for (int y = 0; y < maze.getHeight(); y++) {
+            for (int x = 0; x < maze.getWidth(); x++) {
+                cells[y * maze.getWidth() + x] = maze.isWall(x, y) ? -1 : cell++;
+            }
+        }
+        return cells;
+    }
+    
+    /**
+     * Counts the walkable tiles in a cell numbering.
+     */
+    static int countCells(int[] cells) {
+        int count = 0;
+        for (int cell : cells) {
+            if (cell >= 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Gets the walkable neighbours of every cell, -1 where there is none.
+     * 
+     * @param maze The maze
+     * @param cells The cell numbering of the maze
+     * @return Four neighbours per cell, in the order up, down, left, right
+     */
+    static int[] neighboursOf(Maze maze, int[] cells) {
+        int width = maze.getWidth();
+        int height = maze.getHeight();
+        int[] neighbours = new int[countCells(cells) * DIRECTIONS.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int cell = cells[y * width + x];
+                if (cell < 0) {
+                    continue;
+                }
+                for (int d = 0; d < DIRECTIONS.length; d++) {
+                    int nx = x + DIRECTIONS[d].getDx();
+                    int ny = y + DIRECTIONS[d].getDy();
+                    boolean inside = nx >= 0 && nx < width && ny >= 0 && ny < height;
+                    neighbours[cell * DIRECTIONS.length + d] = inside ? cells[ny * width + nx] : -1;
+                }
+            }
+        }
+        return neighbours;
+    }
+    
+    /**
+     * Computes a checksum of the wall layout, to tell tables of different mazes apart.
+     * 
+     * @param maze The maze
+     * @return The CRC32 of one byte per tile, 1 for walls
+     */
+    static int layoutHash(Maze maze) {
+        CRC32 crc = new CRC32();
+        for (int y = 0; y < maze.getHeight(); y++) {
+            for (int x = 0; x < maze.getWidth(); x++) {
+                crc.update(maze.isWall(x, y) ? 1 : 0);
+            }
+        }
+        return (int) crc.getValue();
+    }
+    
+    /**
+     * Gets the size of one table in bytes, with the padding that lets the last depth be
+     * read as a long.
+     */
+    static long tableBytes(int cellCount) {
+        return ((long) cellCount * cellCount * cellCount * DEPTH_BITS + 7) / 8 + 8;
+    }
+}
@@ -0,0 +1,474 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds the EscapeTable of the default maze, and checks what it does for the autopilot.
+ * 
+ * Usage: java EscapeTableTool --build [--threads n] [--checkpoint-seconds n]
+ *        java EscapeTableTool --check [--games n] [--seed n]
+ *        Any mode: [--out escape.table]
+ * 
+ * The table is solved backwards from the caught states in rounds. In round r, a state
+ * with the ghosts to move is lost when some pair of ghost moves leads to a lost state,
+ * and a state with Pac-Man to move that is not lost yet becomes lost, with depth r, when
+ * every move leads to a lost state; this repeats until a round changes nothing, and the
+ * states never marked lost are escapes. Each round handles rows of ghost pairs in
+ * parallel, one row being a bit set over Pac-Man's tiles, so the ghost moves are
+ * whole-row ORs. The lost states only ever grow, so the rounds can stop at any point:
+ * every checkpointSeconds the depths so far are saved to out.checkpoint, and a build
+ * that finds a checkpoint continues from it. Finally, the depths with the ghosts to
+ * move are the least depth over their moves.
+ */
+public class EscapeTableTool {
+    private static final int CHECKPOINT_MAGIC = 0x45534350; // "ESCP"
+    private static final int MAX_TICKS = 36000; // Ten minutes of game time, for games the autopilot never ends
+    
+    // The three steps of a round
+    private static final int STEP_SECOND_GHOST = 0;
+    private static final int STEP_FIRST_GHOST = 1;
+    private static final int STEP_PACMAN = 2;
+    
+    // The two steps that derive the depths with the ghosts to move
+    private static final int STEP_SAFE_SECOND_GHOST = 3;
+    private static final int STEP_SAFE_FIRST_GHOST = 4;
+    
+    private final int cellCount;
+    private final int rowLongs;
+    private final int[] neighbours;
+    private final int layoutHash;
+    private final int threads;
+    private final ExecutorService pool;
+    
+    // Lost states, one row of rowLongs longs per ordered ghost pair (g1, g2) at
+    // (g1 * cellCount + g2) * rowLongs: with Pac-Man to move, after the first ghost
+    // has moved, and with the ghosts to move
+    private final long[] lost;
+    private final long[] lostAfterFirst;
+    private final long[] lostBeforeGhosts;
+    
+    // Moves until capture by state (g1 * cellCount + g2) * cellCount + p, ESCAPES if never:
+    // with Pac-Man to move, after the second ghost's move only, and with the ghosts to move
+    private final byte[] depths;
+    private final byte[] safeAfterSecond;
+    private final byte[] safeDepths;
+    private int round;
+    
+    /**
+     * Creates a solver for a maze.
+     * 
+     * @param maze The maze
+     * @param threads The number of worker threads
+     */
+    public EscapeTableTool(Maze maze, int threads) {
+        int[] cells = EscapeTable.cellsOf(maze);
+        this.cellCount = EscapeTable.countCells(cells);
+        this.rowLongs = (cellCount + 63) >>> 6;
+        this.neighbours = EscapeTable.neighboursOf(maze, cells);
+        this.layoutHash = EscapeTable.layoutHash(maze);
+        this.threads = threads;
+        this.pool = Executors.newFixedThreadPool(threads);
+        int size = cellCount * cellCount * rowLongs;
+        this.lost = new long[size];
+        this.lostAfterFirst = new long[size];
+        this.lostBeforeGhosts = new long[size];
+        int states = cellCount * cellCount * cellCount;
+        this.depths = new byte[states];
+        this.safeAfterSecond = new byte[states];
+        this.safeDepths = new byte[states];
+        
+        // Pac-Man is caught on either ghost's tile
+        Arrays.fill(depths, (byte) EscapeTable.ESCAPES);
+        for (int g1 = 0; g1 < cellCount; g1++) {
+            for (int g2 = 0; g2 < cellCount; g2++) {
+                int row = (g1 * cellCount + g2) * rowLongs;
+                lost[row + (g1 >>> 6)] |= 1L << g1;
+                lost[row + (g2 >>> 6)] |= 1L << g2;
+                depths[(g1 * cellCount + g2) * cellCount + g1] = 0;
+                depths[(g1 * cellCount + g2) * cellCount + g2] = 0;
+            }
+        }
+    }
+    
+    /**
+     * Runs the tool from the command line.
+     * 
+     * @param args The command line arguments
+     */
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        
+        String mode = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int checkpointSeconds = 30;
+        int games = 200;
+        long seed = 1;
+        File file = EscapeTable.DEFAULT_FILE;
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : "";
+            switch (args[i]) {
+                case "--build":
+                case "--check":
+                    mode = args[i];
+                    continue;
+                case "--threads":
+                    threads = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "--checkpoint-seconds":
+                    checkpointSeconds = Math.max(0, Integer.parseInt(value));
+                    break;
+                case "--games":
+                    games = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--out":
+                    file = new File(value);
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(1);
+            }
+            i++;
+        }
+        if (mode == null) {
+            System.err.println("Usage: java EscapeTableTool --build | --check [options]");
+            System.exit(1);
+        }
+        
+        Maze maze = new Maze(Game.MAZE_WIDTH, Game.MAZE_HEIGHT, Game.TILE_SIZE);
+        if ("--check".equals(mode)) {
+            check(EscapeTable.load(file, maze), games, seed);
+            return;
+        }
+        EscapeTableTool tool = new EscapeTableTool(maze, threads);
+        try {
+            tool.build(file, checkpointSeconds);
+        } finally {
+            tool.pool.shutdown();
+        }
+    }
+    
+    /**
+     * Solves the table, resuming from a checkpoint if there is one, and writes it.
+     * 
+     * @param file The table file to write
+     * @param checkpointSeconds Seconds between checkpoints, 0 to save after every round
+     */
+    public void build(File file, int checkpointSeconds) throws IOException, InterruptedException, ExecutionException {
+        File checkpoint = new File(file.getPath() + ".checkpoint");
+        round = 0;
+        if (checkpoint.isFile()) {
+            readCheckpoint(checkpoint);
+            System.out.println("Resuming from round " + round + " in " + checkpoint);
+        }
+        
+        long start = System.nanoTime();
+        long lastCheckpoint = start;
+        boolean changed = true;
+        while (changed) {
+            round++;
+            runRows(STEP_SECOND_GHOST);
+            runRows(STEP_FIRST_GHOST);
+            changed = runRows(STEP_PACMAN);
+            if (changed && System.nanoTime() - lastCheckpoint >= checkpointSeconds * 1000000000L) {
+                writeCheckpoint(checkpoint);
+                lastCheckpoint = System.nanoTime();
+            }
+        }
+        runRows(STEP_SAFE_SECOND_GHOST);
+        runRows(STEP_SAFE_FIRST_GHOST);
+        
+        long escapes = 0;
+        for (byte depth : depths) {
+            if (depth == EscapeTable.ESCAPES) {
+                escapes++;
+            }
+        }
+        writeTable(file);
+        if (checkpoint.isFile() && !checkpoint.delete()) {
+            System.err.println("Could not delete " + checkpoint);
+        }
+        System.out.printf("%d cells, %d rounds with %d threads in %.2f s: Pac-Man escapes from %,d of %,d states; wrote %s%n",
+                cellCount, round, threads, (System.nanoTime() - start) / 1e9, escapes,
+                (long) cellCount * cellCount * cellCount, file);
+    }
+    
+    /**
+     * Runs one step of a round over all rows, the first ghost's tiles split among the threads.
+     * 
+     * @param step One of the STEP_ constants
+     * @return True if a row changed
+     */
+    private boolean runRows(final int step) throws InterruptedException, ExecutionException {
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (int worker = 0; worker < threads; worker++) {
+            final int first = worker;
+            tasks.add(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    boolean changed = false;
+                    for (int g1 = first; g1 < cellCount; g1 += threads) {
+                        for (int g2 = 0; g2 < cellCount; g2++) {
+                            if (step == STEP_SECOND_GHOST) {
+                                stepSecondGhost(g1, g2);
+                            } else if (step == STEP_FIRST_GHOST) {
+                                stepFirstGhost(g1, g2);
+                            } else if (step == STEP_PACMAN) {
+                                changed |= stepPacMan(g1, g2);
+                            } else if (step == STEP_SAFE_SECOND_GHOST) {
+                                minOverMoves(depths, safeAfterSecond, g1, g2, false);
+                            } else {
+                                minOverMoves(safeAfterSecond, safeDepths, g1, g2, true);
+                            }
+                        }
+                    }
+                    return changed;
+                }
+            });
+        }
+        boolean changed = false;
+        for (Future<Boolean> future : pool.invokeAll(tasks)) {
+            changed |= future.get();
+        }
+        return changed;
+    }
+    
+    /**
+     * The second ghost to move, the first already moved to g1: lost if the second ghost
+     * can stay or move so that the state with Pac-Man to move is lost.
+     */
+    private void stepSecondGhost(int g1, int g2) {
+        int row = (g1 * cellCount + g2) * rowLongs;
+        System.arraycopy(lost, row, lostAfterFirst, row, rowLongs);
+        for (int d = 0; d < 4; d++) {
+            int next = neighbours[g2 * 4 + d];
+            if (next >= 0) {
+                or(lostAfterFirst, row, lost, (g1 * cellCount + next) * rowLongs);
+            }
+        }
+    }
+    
+    /**
+     * Both ghosts to move: lost if the first ghost can stay or move so that the second
+     * ghost can then make it a loss.
+     */
+    private void stepFirstGhost(int g1, int g2) {
+        int row = (g1 * cellCount + g2) * rowLongs;
+        System.arraycopy(lostAfterFirst, row, lostBeforeGhosts, row, rowLongs);
+        for (int d = 0; d < 4; d++) {
+            int next = neighbours[g1 * 4 + d];
+            if (next >= 0) {
+                or(lostBeforeGhosts, row, lostAfterFirst, (next * cellCount + g2) * rowLongs);
+            }
+        }
+    }
+    
+    /**
+     * Pac-Man to move: lost if caught already or if every move leads to a lost state
+     * with the ghosts to move.
+     * 
+     * @return True if the row gained lost states
+     */
+    private boolean stepPacMan(int g1, int g2) {
+        int row = (g1 * cellCount + g2) * rowLongs;
+        boolean changed = false;
+        for (int p = 0; p < cellCount; p++) {
+            int index = row + (p >>> 6);
+            long mask = 1L << p;
+            if ((lost[index] & mask) != 0) {
+                continue;
+            }
+            boolean trapped = true;
+            for (int d = 0; d < 4 && trapped; d++) {
+                int next = neighbours[p * 4 + d];
+                if (next >= 0 && (lostBeforeGhosts[row + (next >>> 6)] & (1L << next)) == 0) {
+                    trapped = false;
+                }
+            }
+            if (trapped) {
+                lost[index] |= mask;
+                depths[(g1 * cellCount + g2) * cellCount + p] = (byte) Math.min(round, EscapeTable.ESCAPES - 1);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+    
+    /**
+     * Sets a row of depths to the least depth over one ghost's moves, staying included.
+     * 
+     * @param source The depths after the move
+     * @param target The depths before it
+     * @param g1 The first ghost's cell
+     * @param g2 The second ghost's cell
+     * @param firstGhost True if the first ghost moves, false for the second
+     */
+    private void minOverMoves(byte[] source, byte[] target, int g1, int g2, boolean firstGhost) {
+        int row = (g1 * cellCount + g2) * cellCount;
+        System.arraycopy(source, row, target, row, cellCount);
+        int mover = firstGhost ? g1 : g2;
+        for (int d = 0; d < 4; d++) {
+            int next = neighbours[mover * 4 + d];
+            if (next < 0) {
+                continue;
+            }
+            int nextRow = (firstGhost ? next * cellCount + g2 : g1 * cellCount + next) * cellCount;
+            for (int p = 0; p < cellCount; p++) {
+                if (source[nextRow + p] < target[row + p]) {
+                    target[row + p] = source[nextRow + p];
+                }
+            }
+        }
+    }
+    
+    private void or(long[] target, int targetRow, long[] source, int sourceRow) {
+        for (int i = 0; i < rowLongs; i++) {
+            target[targetRow + i] |= source[sourceRow + i];
+        }
+    }
+    
+    /**
+     * Writes the finished tables.
+     */
+    private void writeTable(File file) throws IOException {
+        Path target = file.toPath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp.toFile())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+            out.writeInt(EscapeTable.MAGIC);
+            out.writeInt(EscapeTable.VERSION);
+            out.writeInt(Game.MAZE_WIDTH);
+            out.writeInt(Game.MAZE_HEIGHT);
+            out.writeInt(cellCount);
+            out.writeInt(layoutHash);
+            out.writeInt(EscapeTable.DEPTH_BITS);
+            out.writeInt(0);
+            writeDepths(out, depths);
+            writeDepths(out, safeDepths);
+            out.flush();
+            stream.getFD().sync();
+        }
+        move(temp, target);
+    }
+    
+    /**
+     * Packs depths into DEPTH_BITS bits each, most significant bit first, followed by
+     * the 8 bytes of padding.
+     */
+    private static void writeDepths(DataOutputStream out, byte[] values) throws IOException {
+        long bits = 0;
+        int count = 0;
+        for (byte value : values) {
+            bits = bits << EscapeTable.DEPTH_BITS | value;
+            count += EscapeTable.DEPTH_BITS;
+            while (count >= 8) {
+                count -= 8;
+                out.write((int) (bits >>> count));
+            }
+        }
+        if (count > 0) {
+            out.write((int) (bits << (8 - count)));
+        }
+        out.writeLong(0);
+    }
+    
+    /**
+     * Saves the round and the depths with Pac-Man to move, which is all a later build
+     * needs to go on.
+     */
+    private void writeCheckpoint(File checkpoint) throws IOException {
+        Path target = checkpoint.toPath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp.toFile())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeInt(EscapeTable.VERSION);
+            out.writeInt(cellCount);
+            out.writeInt(layoutHash);
+            out.writeInt(round);
+            out.write(depths);
+            out.flush();
+            stream.getFD().sync();
+        }
+        move(temp, target);
+    }
+    
+    /**
+     * Loads the round and depths of a checkpoint and marks the states lost so far.
+     */
+    private void readCheckpoint(File checkpoint) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpoint), 1 << 16))) {
+            if (in.readInt() != CHECKPOINT_MAGIC || in.readInt() != EscapeTable.VERSION
+                    || in.readInt() != cellCount || in.readInt() != layoutHash) {
+                throw new IOException(checkpoint + " belongs to a different maze or version; delete it to start over");
+            }
+            round = in.readInt();
+            in.readFully(depths);
+        }
+        for (int row = 0; row < cellCount * cellCount; row++) {
+            for (int p = 0; p < cellCount; p++) {
+                if (depths[row * cellCount + p] != EscapeTable.ESCAPES) {
+                    lost[row * rowLongs + (p >>> 6)] |= 1L << p;
+                }
+            }
+        }
+    }
+    
+    private static void move(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+     * Plays autopiloted games without and with the table and prints how often and how
+     * soon Pac-Man is caught.
+     */
+    private static void check(EscapeTable table, int games, long seed) {
+        for (int pass = 0; pass < 2; pass++) {
+            int caught = 0;
+            long caughtTicks = 0;
+            long ticks = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < games; i++) {
+                Game game = new Game(TitleScreen.DIFFICULTY_MEDIUM, seed + i);
+                Autopilot autopilot = new Autopilot(seed + i);
+                autopilot.setEscapeTable(pass == 0 ? null : table);
+                while (!game.isGameOver() && !game.isGameWon() && game.getTicks() < MAX_TICKS) {
+                    autopilot.steer(game);
+                    game.tick();
+                }
+                if (game.isGameOver()) {
+                    caught++;
+                    caughtTicks += game.getTicks();
+                }
+                ticks += game.getTicks();
+            }
+            System.out.printf("%-13s caught in %3d%% of games after %5.1f s on average (%.2f us per tick)%n",
+                    pass == 0 ? "Without table" : "With table", caught * 100 / games,
+                    caught == 0 ? 0.0 : caughtTicks * Game.TICK_TIME / 1000.0 / caught,
+                    (System.nanoTime() - start) / 1000.0 / ticks);
+        }
+    }
+}
@@ -0,0 +1,379 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Structured log of gameplay events: game starts and ends, deaths, pellet milestones,
+ * clicks, high scores and errors, one line of key=value fields per event.
+ * 
+ * Events are copied into a ring of preallocated slots, so logging an event does not
+ * allocate as long as its detail is a constant or an existing string, and never waits
+ * for the disk. A background thread writes the ring to logs/events.log in batches and
+ * rotates the file when it grows too big. If the ring fills up, events are dropped and
+ * counted instead of blocking the game.
+ * 
+ * Until start() is called nothing is recorded, except that warnings and errors still
+ * go to System.err, so tools running the game classes headless keep their diagnostics.
+ */
+public class EventLog {
+    // Levels
+    public static final int DEBUG = 0;
+    public static final int INFO = 1;
+    public static final int WARN = 2;
+    public static final int ERROR = 3;
+    private static final String[] LEVEL_NAMES = {"DEBUG", "INFO ", "WARN ", "ERROR"};
+    
+    // Event types and the names of their fields
+    public static final int MESSAGE = 0; // detail: text
+    public static final int GAME_START = 1; // difficulty, seed
+    public static final int GAME_END = 2; // levels cleared, score, ticks of the last level
+    public static final int DEATH = 3; // x, y, score
+    public static final int PELLETS = 4; // eaten, total, score
+    public static final int CLICK = 5; // x, y; detail: target
+    public static final int HIGH_SCORE = 6; // score, added
+    public static final int SCORES_LOADED = 7; // count, best
+    public static final int NEXT_LEVEL = 8; // number, score, handover_us
+    private static final String[] TYPE_NAMES = {
+        "message", "game_start", "game_end", "death", "pellets", "click", "high_score", "scores_loaded", "next_level"
+    };
+    private static final String[][] FIELD_NAMES = {
+        {}, {"difficulty", "seed"}, {"levels", "score", "ticks"}, {"x", "y", "score"},
+        {"eaten", "total", "score"}, {"x", "y"}, {"score", "added"}, {"count", "best"},
+        {"number", "score", "handover_us"}
+    };
+    private static final String[] DETAIL_NAMES = {
+        "text", "detail", "detail", "detail", "detail", "target", "detail", "detail", "detail"
+    };
+    
+    private static final int LEVEL = parseLevel(System.getProperty("pacman.logLevel", "info"));
+    private static final boolean CONSOLE = Boolean.getBoolean("pacman.logConsole");
+    private static final File DIRECTORY = new File(System.getProperty("pacman.logDir",
+            System.getProperty("user.dir") + File.separator + "logs"));
+    private static final String FILE_NAME = "events";
+    private static final long MAX_FILE_SIZE = 1024 * 1024; // Bytes before the file is rotated
+    private static final int MAX_OLD_FILES = 5;
+    private static final long BATCH_INTERVAL = 100000000L; // Nanoseconds between batches
+    private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+    
+    // The ring: slot i holds the event with sequence i mod CAPACITY
+    private static final int CAPACITY = 4096;
+    private static final int MASK = CAPACITY - 1;
+    private static final long[] times = new long[CAPACITY];
+    private static final int[] levels = new int[CAPACITY];
+    private static final int[] types = new int[CAPACITY];
+    private static final long[] values = new long[CAPACITY * 3];
+    private static final int[] valueCounts = new int[CAPACITY];
+    private static final String[] details = new String[CAPACITY];
+    
+    // Sequence + 1 of the event in each slot once it is completely written
+    private static final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+    
+    // The next sequence to claim, and the next one the writer reads
+    private static final AtomicLong head = new AtomicLong();
+    private static volatile long tail;
+    private static final AtomicLong dropped = new AtomicLong();
+    
+    private static volatile boolean started;
+    private static volatile boolean stopping;
+    private static Thread writerThread;
+    
+    /**
+     * Starts recording events and the writer thread. Does nothing if already started.
+     */
+    public static synchronized void start() {
+        if (started) {
+            return;
+        }
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeEvents();
+            }
+        }, "Event Log Writer");
+        writerThread.setDaemon(true);
+        started = true;
+        writerThread.start();
+        
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                close();
+            }
+        }, "Event Log Shutdown"));
+    }
+    
+    /**
+     * Writes the events logged so far and stops the writer thread.
+     */
+    public static synchronized void close() {
+        if (writerThread == null) {
+            return;
+        }
+        stopping = true;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writerThread = null;
+    }
+    
+    /**
+     * Checks whether events of a level are recorded, to skip preparing them otherwise.
+     * 
+     * @param level The level
+     * @return True if events of the level are recorded
+     */
+    public static boolean isEnabled(int level) {
+        return started && level >= LEVEL;
+    }
+    
+    /**
+     * Logs a message.
+     * 
+     * @param level The level
+     * @param message The message
+     */
+    public static void log(int level, String message) {
+        append(level, MESSAGE, 0, 0, 0, 0, message);
+    }
+    
+    /**
+     * Logs an event with two fields.
+     * 
+     * @param level The level
+     * @param type The event type
+     * @param a The first field
+     * @param b The second field
+     */
+    public static void log(int level, int type, long a, long b) {
+        append(level, type, 2, a, b, 0, null);
+    }
+    
+    /**
+     * Logs an event with two fields and a detail.
+     * 
+     * @param level The level
+     * @param type The event type
+     * @param a The first field
+     * @param b The second field
+     * @param detail The detail; a constant or existing string to keep logging garbage-free
+     */
+    public static void log(int level, int type, long a, long b, String detail) {
+        append(level, type, 2, a, b, 0, detail);
+    }
+    
+    /**
+     * Logs an event with three fields.
+     * 
+     * @param level The level
+     * @param type The event type
+     * @param a The first field
+     * @param b The second field
+     * @param c The third field
+     */
+    public static void log(int level, int type, long a, long b, long c) {
+        append(level, type, 3, a, b, c, null);
+    }
+    
+    /**
+     * Copies an event into the next free slot of the ring and publishes it to the writer.
+     */
+    private static void append(int level, int type, int valueCount, long a, long b, long c, String detail) {
+        if (!started) {
+            if (level >= WARN && detail != null) {
+                System.err.println(detail);
+            }
+            return;
+        }
+        if (level < LEVEL) {
+            return;
+        }
+        
+        // Claim a sequence, unless the writer has fallen a whole ring behind
+        long sequence;
+        do {
+            sequence = head.get();
+            if (sequence - tail >= CAPACITY) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+        
+        int slot = (int) sequence & MASK;
+        times[slot] = System.currentTimeMillis();
+        levels[slot] = level;
+        types[slot] = type;
+        valueCounts[slot] = valueCount;
+        values[slot * 3] = a;
+        values[slot * 3 + 1] = b;
+        values[slot * 3 + 2] = c;
+        details[slot] = detail;
+        published.lazySet(slot, sequence + 1);
+    }
+    
+    /**
+     * Writer thread loop: writes the published events in batches until closed.
+     */
+    private static void writeEvents() {
+        StringBuilder line = new StringBuilder(256);
+        BufferedWriter writer = null;
+        long fileSize = 0;
+        while (true) {
+            boolean stop = stopping;
+            long sequence = tail;
+            long reportedDrops = dropped.getAndSet(0);
+            if (sequence != head.get() || reportedDrops > 0) {
+                try {
+                    if (writer == null) {
+                        writer = openFile();
+                        fileSize = new File(DIRECTORY, FILE_NAME + ".log").length();
+                    }
+                    if (reportedDrops > 0) {
+                        line.setLength(0);
+                        line.append(Instant.ofEpochMilli(System.currentTimeMillis())).append(' ')
+                                .append(LEVEL_NAMES[WARN]).append(" dropped count=").append(reportedDrops);
+                        fileSize += writeLine(writer, line, WARN);
+                    }
+                    
+                    // Write everything published so far, in order
+                    while (true) {
+                        int slot = (int) sequence & MASK;
+                        if (published.get(slot) != sequence + 1) {
+                            break;
+                        }
+                        format(line, slot);
+                        details[slot] = null;
+                        fileSize += writeLine(writer, line, levels[slot]);
+                        sequence++;
+                        tail = sequence;
+                        
+                        if (fileSize > MAX_FILE_SIZE) {
+                            writer.close();
+                            rotate();
+                            writer = openFile();
+                            fileSize = 0;
+                        }
+                    }
+                    writer.flush();
+                } catch (IOException e) {
+                    System.err.println("Error writing event log: " + e.getMessage());
+                    
+                    // Skip what could not be written so the ring does not stay full
+                    tail = head.get();
+                    closeQuietly(writer);
+                    writer = null;
+                }
+            }
+            if (stop && tail == head.get()) {
+                break;
+            }
+            if (!stop) {
+                LockSupport.parkNanos(BATCH_INTERVAL);
+            }
+        }
+        closeQuietly(writer);
+    }
+    
+    /**
+     * Formats the event in a slot as one line.
+     */
+    private static void format(StringBuilder line, int slot) {
+        int type = types[slot];
+        line.setLength(0);
+        line.append(Instant.ofEpochMilli(times[slot])).append(' ')
+                .append(LEVEL_NAMES[levels[slot]]).append(' ').append(TYPE_NAMES[type]);
+        String[] fields = FIELD_NAMES[type];
+        for (int i = 0; i < valueCounts[slot] && i < fields.length; i++) {
+            line.append(' ').append(fields[i]).append('=').append(values[slot * 3 + i]);
+        }
+        String detail = details[slot];
+        if (detail != null) {
+            line.append(' ').append(DETAIL_NAMES[type]).append("=\"");
+            for (int i = 0; i < detail.length(); i++) {
+                char c = detail.charAt(i);
+                if (c == '"' || c == '\\') {
+                    line.append('\\').append(c);
+                } else if (c == '\n' || c == '\r') {
+                    line.append(' ');
+                } else {
+                    line.append(c);
+                }
+            }
+            line.append('"');
+        }
+    }
+    
+    /**
+     * Writes a line to the file, and to the console for warnings and errors.
+     * 
+     * @return The number of characters written
+     */
+    private static int writeLine(BufferedWriter writer, StringBuilder line, int level) throws IOException {
+        line.append('\n');
+        writer.append(line);
+        if (CONSOLE || level >= WARN) {
+            System.err.print(line);
+        }
+        return line.length();
+    }
+    
+    /**
+     * Opens the current log file for appending, creating the directory if needed.
+     */
+    private static BufferedWriter openFile() throws IOException {
+        if (!DIRECTORY.isDirectory() && !DIRECTORY.mkdirs()) {
+            throw new IOException("Could not create " + DIRECTORY);
+        }
+        File file = new File(DIRECTORY, FILE_NAME + ".log");
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Renames events.log to events.1.log, shifting older files up and deleting the oldest.
+     */
+    private static void rotate() {
+        new File(DIRECTORY, FILE_NAME + "." + MAX_OLD_FILES + ".log").delete();
+        for (int i = MAX_OLD_FILES - 1; i >= 1; i--) {
+            File file = new File(DIRECTORY, FILE_NAME + "." + i + ".log");
+            if (file.exists()) {
+                file.renameTo(new File(DIRECTORY, FILE_NAME + "." + (i + 1) + ".log"));
+            }
+        }
+        new File(DIRECTORY, FILE_NAME + ".log").renameTo(new File(DIRECTORY, FILE_NAME + ".1.log"));
+    }
+    
+    /**
+     * Closes a writer, ignoring errors.
+     */
+    private static void closeQuietly(BufferedWriter writer) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            // Nothing left to do
+        }
+    }
+    
+    /**
+     * Parses a level name.
+     */
+    private static int parseLevel(String name) {
+        for (int i = 0; i < LEVEL_NAMES.length; i++) {
+            if (LEVEL_NAMES[i].trim().equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return INFO;
+    }
+}
@@ -0,0 +1,156 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Java Flight Recorder events of the game, and the recording started by -Dpacman.jfr=true.
+ * 
+ * The events are only created when the flag is set, so without it the instrumented
+ * code costs one branch on a constant. The recording uses the JDK's default settings
+ * with the bundled pacman.jfc on top, keeps the last hour on disk and is written to
+ * pacman-<time>.jfr when the game exits, so a cabinet can record all the time and
+ * a stutter can be lined up with GC, disk and game events afterwards.
+ */
+public class FlightEvents {
+    public static final boolean ENABLED = Boolean.getBoolean("pacman.jfr");
+    private static final String SETTINGS_FILE = System.getProperty("pacman.jfrSettings", "pacman.jfc");
+    private static final Duration MAX_AGE = Duration.ofHours(1);
+    private static final long MAX_SIZE = 256L * 1024 * 1024;
+    
+    /**
+     * One game tick.
+     */
+    @Name("pacman.Tick")
+    @Label("Game Tick")
+    @Category({"Pac-Man", "Engine"})
+    @StackTrace(false)
+    public static class Tick extends Event {
+        @Label("Tick")
+        public long tick;
+        
+        @Label("Ghosts")
+        public int ghostCount;
+    }
+    
+    /**
+     * A ghost choosing its direction at a tile. Only slow decisions are recorded.
+     */
+    @Name("pacman.GhostDecision")
+    @Label("Ghost Decision")
+    @Category({"Pac-Man", "AI"})
+    @Description("A ghost choosing its next direction, recorded above the threshold")
+    @Threshold("20 us")
+    @StackTrace(false)
+    public static class GhostDecision extends Event {
+        @Label("Ghost Type")
+        public int ghostType;
+        
+        @Label("X")
+        public int x;
+        
+        @Label("Y")
+        public int y;
+        
+        @Label("Direction")
+        public String direction;
+    }
+    
+    /**
+     * Pac-Man eating a pellet.
+     */
+    @Name("pacman.PelletEaten")
+    @Label("Pellet Eaten")
+    @Category({"Pac-Man", "Gameplay"})
+    @StackTrace(false)
+    public static class PelletEaten extends Event {
+        @Label("X")
+        public int x;
+        
+        @Label("Y")
+        public int y;
+        
+        @Label("Power Pellet")
+        public boolean powerPellet;
+        
+        @Label("Score")
+        public int score;
+    }
+    
+    /**
+     * Pac-Man's power mode starting or running out.
+     */
+    @Name("pacman.PowerMode")
+    @Label("Power Mode")
+    @Category({"Pac-Man", "Gameplay"})
+    @StackTrace(false)
+    public static class PowerMode extends Event {
+        @Label("Active")
+        @Description("True when power mode starts, false when it runs out")
+        public boolean active;
+    }
+    
+    /**
+     * Reading or writing the high score files.
+     */
+    @Name("pacman.ScoreFile")
+    @Label("High Score File")
+    @Category({"Pac-Man", "I/O"})
+    @StackTrace(false)
+    public static class ScoreFile extends Event {
+        @Label("Operation")
+        @Description("load, append or snapshot")
+        public String operation;
+        
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+    }
+    
+    /**
+     * Starts the continuous recording if -Dpacman.jfr=true was given.
+     * With the flag set, recordings started with -XX:StartFlightRecording get the game events too.
+     */
+    public static void startRecording() {
+        if (!ENABLED) {
+            return;
+        }
+        try {
+            Map<String, String> settings = new HashMap<>(Configuration.getConfiguration("default").getSettings());
+            File file = new File(SETTINGS_FILE);
+            if (file.isFile()) {
+                settings.putAll(Configuration.create(file.toPath()).getSettings());
+            } else {
+                EventLog.log(EventLog.WARN, "JFR settings " + file + " not found, recording with the default settings");
+            }
+            
+            Recording recording = new Recording(settings);
+            recording.setName("Pac-Man");
+            recording.setToDisk(true);
+            recording.setMaxAge(MAX_AGE);
+            recording.setMaxSize(MAX_SIZE);
+            Path destination = Paths.get("pacman-" + System.currentTimeMillis() + ".jfr");
+            recording.setDestination(destination);
+            recording.setDumpOnExit(true);
+            recording.start();
+            EventLog.log(EventLog.INFO, "Recording flight data to " + destination.toAbsolutePath() + " on exit");
+        } catch (IOException | ParseException | IllegalStateException | SecurityException e) {
+            EventLog.log(EventLog.WARN, "Could not start flight recording: " + e.getMessage());
+        }
+    }
+}
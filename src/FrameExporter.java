@@ -0,0 +1,388 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Records a game to disk without a window, for trailers, bug reports and visual checks.
+ * The simulation runs on the main thread and hands a snapshot of every recorded tick to
+ * a pool of render workers, which draw it with the normal game renderer into their own
+ * image and encode it. A writer thread puts the frames back in order and writes them
+ * either as a PNG sequence or as one raw RGB file through a FileChannel.
+ * 
+ * Usage: java FrameExporter [--ticks n] [--every n] [--workers n] [--format png|raw]
+ *        [--out dir] [--seed n] [--difficulty easy|medium|hard]
+ */
+public class FrameExporter {
+    public static final String FORMAT_PNG = "png";
+    public static final String FORMAT_RAW = "raw";
+    
+    private static final int DEFAULT_TICKS = 3600; // One minute of game time
+    private static final String RAW_FILE = "frames.rgb";
+    private static final int POLL_MILLIS = 100;
+    
+    private final int workerCount;
+    private final String format;
+    private final File outputDir;
+    
+    // Snapshots waiting for a worker, and encoded frames waiting for the writer
+    private final BlockingQueue<Frame> snapshots;
+    private final BlockingQueue<Frame> encoded;
+    
+    // Limits the frames in flight, which also bounds the writer's reorder buffer
+    private final Semaphore inFlight;
+    
+    // Time the render workers spent drawing and encoding, summed over all workers
+    private final AtomicLong workerNanos = new AtomicLong();
+    
+    private final SpriteAtlas atlas;
+    private volatile Throwable failure;
+    
+    /**
+     * A snapshot of the game at one recorded tick, and later its encoded image.
+     */
+    private static class Frame {
+        final int index;
+        final Game game;
+        byte[] data;
+        
+        Frame(int index, Game game) {
+            this.index = index;
+            this.game = game;
+        }
+    }
+    
+    // Marks the end of the stream for workers and the writer
+    private static final Frame END = new Frame(-1, null);
+    
+    /**
+     * Creates a new FrameExporter.
+     * 
+     * @param workerCount The number of render workers
+     * @param format FORMAT_PNG or FORMAT_RAW
+     * @param outputDir The directory to write the frames to
+     */
+    public FrameExporter(int workerCount, String format, File outputDir) {
+        this.workerCount = workerCount;
+        this.format = format;
+        this.outputDir = outputDir;
+        this.snapshots = new ArrayBlockingQueue<>(workerCount * 2);
+        this.encoded = new ArrayBlockingQueue<>(workerCount * 4);
+        this.inFlight = new Semaphore(workerCount * 4);
+        this.atlas = SpriteAtlas.create(Game.TILE_SIZE, Game.GHOST_COLORS);
+    }
+    
+    /**
+     * Records a game from the command line.
+     * 
+     * @param args The command line arguments
+     */
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        
+        int ticks = DEFAULT_TICKS;
+        int every = 1;
+        int workers = Runtime.getRuntime().availableProcessors();
+        String format = FORMAT_PNG;
+        File outputDir = new File("frames");
+        long seed = 1;
+        int difficulty = TitleScreen.DIFFICULTY_MEDIUM;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--ticks":
+                    ticks = Integer.parseInt(value);
+                    break;
+                case "--every":
+                    every = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "--workers":
+                    workers = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "--format":
+                    format = FORMAT_RAW.equals(value) ? FORMAT_RAW : FORMAT_PNG;
+                    break;
+                case "--out":
+                    outputDir = new File(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--difficulty":
+                    difficulty = parseDifficulty(value);
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(1);
+            }
+        }
+        
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            System.err.println("Could not create output directory: " + outputDir);
+            System.exit(1);
+        }
+        
+        FrameExporter exporter = new FrameExporter(workers, format, outputDir);
+        long start = System.nanoTime();
+        int frames = exporter.export(new Game(difficulty, seed), new Autopilot(seed), ticks, every);
+        long elapsed = System.nanoTime() - start;
+        
+        double seconds = elapsed / 1e9;
+        double busySeconds = exporter.workerNanos.get() / 1e9;
+        System.out.printf("Exported %d frames with %d workers in %.2f s: %.1f fps, %.1f fps per busy core%n",
+                frames, workers, seconds, frames / seconds, busySeconds > 0 ? frames / busySeconds : 0.0);
+        if (FORMAT_RAW.equals(format)) {
+            System.out.printf("Encode with: ffmpeg -f rawvideo -pixel_format rgb24 -video_size %dx%d -framerate %d -i %s out.mp4%n",
+                    GameRenderer.WIDTH, GameRenderer.HEIGHT, 1000 / (Game.TICK_TIME * every),
+                    new File(outputDir, RAW_FILE));
+        }
+    }
+    
+    /**
+     * Parses a difficulty name or number.
+     * 
+     * @param value "easy", "medium", "hard" or 0 to 2
+     * @return The difficulty level
+     */
+    static int parseDifficulty(String value) {
+        switch (value) {
+            case "easy":
+                return TitleScreen.DIFFICULTY_EASY;
+            case "hard":
+                return TitleScreen.DIFFICULTY_HARD;
+            case "medium":
+                return TitleScreen.DIFFICULTY_MEDIUM;
+            default:
+                return Integer.parseInt(value);
+        }
+    }
+    
+    /**
+     * Simulates the game and records every n-th tick until the tick limit or the end of the game.
+     * 
+     * @param game The game to record
+     * @param autopilot The autopilot that steers Pac-Man, or null to leave Pac-Man standing
+     * @param ticks The maximum number of ticks to simulate
+     * @param every Record one frame every this many ticks
+     * @return The number of frames written
+     * @throws IOException If the frames could not be written
+     * @throws InterruptedException If the export was interrupted
+     */
+    public int export(Game game, Autopilot autopilot, int ticks, int every) throws IOException, InterruptedException {
+        Thread[] workers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    renderFrames();
+                }
+            }, "Frame Renderer " + i);
+            workers[i].start();
+        }
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeFrames();
+            }
+        }, "Frame Writer");
+        writer.start();
+        
+        // Simulate on this thread and hand out snapshots, so the game never waits for drawing
+        int frames = 0;
+        for (int tick = 0; tick <= ticks && failure == null; tick++) {
+            boolean ended = game.isGameOver() || game.isGameWon();
+            if (tick % every == 0 || ended) {
+                while (!inFlight.tryAcquire(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (failure != null) {
+                        break;
+                    }
+                }
+                if (failure != null || !handOver(snapshots, new Frame(frames++, new Game(game)))) {
+                    break;
+                }
+            }
+            if (ended) {
+                break;
+            }
+            if (autopilot != null) {
+                autopilot.steer(game);
+            }
+            game.tick();
+        }
+        
+        // Let the threads drain their queues, or stop them if one of them failed
+        boolean handed = true;
+        for (int i = 0; i < workerCount && handed; i++) {
+            handed = handOver(snapshots, END);
+        }
+        for (Thread worker : workers) {
+            if (!handed) {
+                worker.interrupt();
+            }
+            worker.join();
+        }
+        if (!handOver(encoded, END)) {
+            writer.interrupt();
+        }
+        writer.join();
+        
+        if (failure != null) {
+            throw new IOException("Frame export failed", failure);
+        }
+        return frames;
+    }
+    
+    /**
+     * Puts a frame into a queue, giving up when one of the threads has failed.
+     * 
+     * @param queue The queue to put the frame into
+     * @param frame The frame
+     * @return True if the frame was queued, false if the export failed
+     * @throws InterruptedException If the export was interrupted
+     */
+    private boolean handOver(BlockingQueue<Frame> queue, Frame frame) throws InterruptedException {
+        while (!queue.offer(frame, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (failure != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Remembers the first error of any thread.
+     * 
+     * @param t The error
+     */
+    private synchronized void fail(Throwable t) {
+        if (failure == null) {
+            fail(t);
+        }
+    }
+    
+    /**
+     * Render worker loop: draws and encodes snapshots until the end marker arrives.
+     */
+    private void renderFrames() {
+        BufferedImage image = new BufferedImage(GameRenderer.WIDTH, GameRenderer.HEIGHT, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        GameRenderer renderer = new GameRenderer(atlas);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        try {
+            while (true) {
+                Frame frame = snapshots.take();
+                if (frame == END) {
+                    return;
+                }
+                long start = System.nanoTime();
+                
+                renderer.render(image, frame.game, 0);
+                
+                if (FORMAT_RAW.equals(format)) {
+                    frame.data = toRgb(pixels);
+                } else {
+                    png.reset();
+                    ImageIO.write(image, FORMAT_PNG, png);
+                    frame.data = png.toByteArray();
+                }
+                
+                workerNanos.addAndGet(System.nanoTime() - start);
+                encoded.put(frame);
+            }
+        } catch (Throwable t) {
+            fail(t);
+        }
+    }
+    
+    /**
+     * Packs the pixels of a frame as 24-bit RGB.
+     * 
+     * @param pixels The pixels in TYPE_INT_RGB layout
+     * @return Three bytes per pixel
+     */
+    private static byte[] toRgb(int[] pixels) {
+        byte[] rgb = new byte[pixels.length * 3];
+        for (int i = 0, j = 0; i < pixels.length; i++) {
+            int pixel = pixels[i];
+            rgb[j++] = (byte) (pixel >> 16);
+            rgb[j++] = (byte) (pixel >> 8);
+            rgb[j++] = (byte) pixel;
+        }
+        return rgb;
+    }
+    
+    /**
+     * Writer loop: puts encoded frames back in order and writes them to disk.
+     */
+    private void writeFrames() {
+        Map<Integer, Frame> pending = new HashMap<>();
+        int next = 0;
+        FileChannel raw = null;
+        try {
+            if (FORMAT_RAW.equals(format)) {
+                raw = FileChannel.open(new File(outputDir, RAW_FILE).toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            }
+            while (true) {
+                Frame frame = encoded.take();
+                if (frame == END) {
+                    break;
+                }
+                pending.put(frame.index, frame);
+                
+                // Write every frame that is now next in line
+                while ((frame = pending.remove(next)) != null) {
+                    if (raw != null) {
+                        writeFully(raw, frame.data);
+                    } else {
+                        Path path = new File(outputDir, String.format("frame_%06d.png", next)).toPath();
+                        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                            writeFully(channel, frame.data);
+                        }
+                    }
+                    next++;
+                    inFlight.release();
+                }
+            }
+        } catch (Throwable t) {
+            fail(t);
+        } finally {
+            if (raw != null) {
+                try {
+                    raw.close();
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Writes all bytes to a channel.
+     * 
+     * @param channel The channel to write to
+     * @param data The bytes to write
+     * @throws IOException If writing failed
+     */
+    private static void writeFully(FileChannel channel, byte[] data) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Point;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+
+/**
+ * Renders a screen at its native (logical) resolution into an offscreen buffer
+ * and scales that buffer to fill any window size.
+ * The scale and letterbox offsets are computed only when the window size changes.
+ * Screens whose content rarely changes can also keep the scaled result, so that
+ * repainting them is a single unscaled blit.
+ */
+public class FrameScaler {
+    // Scaling modes
+    public static final String SCALING_INTEGER = "integer";
+    public static final String SCALING_SMOOTH = "smooth";
+    
+    // Offscreen frame image types
+    public static final String IMAGE_VOLATILE = "volatile";
+    public static final String IMAGE_COMPATIBLE = "compatible";
+    public static final String IMAGE_INT_RGB = "int_rgb";
+    public static final String IMAGE_INT_ARGB_PRE = "int_argb_pre";
+    
+    // Scaling mode selected at startup, integer scaling falls back to smooth when the window is too small
+    private static final String SCALING = System.getProperty("pacman.scaling", SCALING_INTEGER);
+    
+    // Offscreen frame image type selected at startup (see RenderProbe)
+    private static final String IMAGE_TYPE = System.getProperty("pacman.frameImage", IMAGE_VOLATILE);
+    
+    private final int logicalWidth;
+    private final int logicalHeight;
+    private final boolean cacheScaled;
+    
+    // Offscreen buffer at logical resolution
+    private VolatileImage volatileFrame;
+    private BufferedImage bufferedFrame;
+    private boolean dirty = true;
+    
+    // Cached scaling for the current target size
+    private int targetWidth = -1;
+    private int targetHeight = -1;
+    private int scaledX;
+    private int scaledY;
+    private int scaledWidth;
+    private int scaledHeight;
+    private boolean filtered;
+    private BufferedImage scaledFrame;
+    private boolean scaledDirty = true;
+    
+    /**
+     * Creates a new FrameScaler.
+     * 
+     * @param logicalWidth The width of the logical frame in pixels
+     * @param logicalHeight The height of the logical frame in pixels
+     * @param cacheScaled True to keep the scaled frame until the content or the size changes
+     */
+    public FrameScaler(int logicalWidth, int logicalHeight, boolean cacheScaled) {
+        this.logicalWidth = logicalWidth;
+        this.logicalHeight = logicalHeight;
+        this.cacheScaled = cacheScaled;
+    }
+    
+    /**
+     * Gets the width of the logical frame.
+     * 
+     * @return The logical width in pixels
+     */
+    public int getLogicalWidth() {
+        return logicalWidth;
+    }
+    
+    /**
+     * Gets the height of the logical frame.
+     * 
+     * @return The logical height in pixels
+     */
+    public int getLogicalHeight() {
+        return logicalHeight;
+    }
+    
+    /**
+     * Marks the logical frame as changed so it is rendered again on the next paint.
+     */
+    public void invalidate() {
+        dirty = true;
+    }
+    
+    /**
+     * Checks if the logical frame has to be rendered again.
+     * 
+     * @param component The component the frame is shown in
+     * @return True if the frame must be rendered before it is presented
+     */
+    public boolean needsRender(Component component) {
+        return dirty || validateFrame(component);
+    }
+    
+    /**
+     * Starts rendering the logical frame. The caller must dispose the returned graphics.
+     * 
+     * @param component The component the frame is shown in
+     * @return A Graphics object drawing into the logical frame
+     */
+    public Graphics2D beginFrame(Component component) {
+        validateFrame(component);
+        dirty = false;
+        scaledDirty = true;
+        Graphics2D g = volatileFrame != null ? volatileFrame.createGraphics() : bufferedFrame.createGraphics();
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, logicalWidth, logicalHeight);
+        return g;
+    }
+    
+    /**
+     * Draws the logical frame scaled to fill the target area, letterboxed in black.
+     * 
+     * @param g The Graphics object of the target
+     * @param width The width of the target area
+     * @param height The height of the target area
+     */
+    public void present(Graphics g, int width, int height) {
+        if (width != targetWidth || height != targetHeight) {
+            updateScale(width, height);
+        }
+        
+        g.setColor(Color.BLACK);
+        if (scaledX > 0) {
+            g.fillRect(0, 0, scaledX, height);
+            g.fillRect(scaledX + scaledWidth, 0, width - scaledX - scaledWidth, height);
+        }
+        if (scaledY > 0) {
+            g.fillRect(0, 0, width, scaledY);
+            g.fillRect(0, scaledY + scaledHeight, width, height - scaledY - scaledHeight);
+        }
+        
+        if (cacheScaled) {
+            if (scaledFrame == null || scaledDirty) {
+                if (scaledFrame == null) {
+                    scaledFrame = new BufferedImage(scaledWidth, scaledHeight, BufferedImage.TYPE_INT_RGB);
+                }
+                Graphics2D scaledGraphics = scaledFrame.createGraphics();
+                drawScaled(scaledGraphics, 0, 0);
+                scaledGraphics.dispose();
+                scaledDirty = false;
+            }
+            g.drawImage(scaledFrame, scaledX, scaledY, null);
+        } else {
+            drawScaled(g, scaledX, scaledY);
+        }
+    }
+    
+    /**
+     * Converts a point in component coordinates to logical frame coordinates.
+     * 
+     * @param x The x-coordinate in the component
+     * @param y The y-coordinate in the component
+     * @return The point in the logical frame
+     */
+    public Point toLogical(int x, int y) {
+        if (scaledWidth <= 0 || scaledHeight <= 0) {
+            return new Point(x, y);
+        }
+        return new Point(
+            (x - scaledX) * logicalWidth / scaledWidth,
+            (y - scaledY) * logicalHeight / scaledHeight
+        );
+    }
+    
+    /**
+     * Copies the logical frame into the cached scaled area.
+     */
+    private void drawScaled(Graphics g, int x, int y) {
+        Graphics2D g2 = (Graphics2D) g;
+        Object interpolation = filtered
+                ? RenderingHints.VALUE_INTERPOLATION_BILINEAR
+                : RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR;
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+        g2.drawImage(volatileFrame != null ? volatileFrame : bufferedFrame,
+                x, y, x + scaledWidth, y + scaledHeight,
+                0, 0, logicalWidth, logicalHeight, null);
+    }
+    
+    /**
+     * Computes the scaled size and letterbox offsets for a new target size.
+     */
+    private void updateScale(int width, int height) {
+        targetWidth = width;
+        targetHeight = height;
+        
+        int integerScale = Math.min(width / logicalWidth, height / logicalHeight);
+        if (SCALING_INTEGER.equals(SCALING) && integerScale >= 1) {
+            scaledWidth = logicalWidth * integerScale;
+            scaledHeight = logicalHeight * integerScale;
+            filtered = false;
+        } else {
+            // Fit the frame while keeping its aspect ratio
+            if ((long) width * logicalHeight < (long) height * logicalWidth) {
+                scaledWidth = width;
+                scaledHeight = Math.max(1, width * logicalHeight / logicalWidth);
+            } else {
+                scaledHeight = height;
+                scaledWidth = Math.max(1, height * logicalWidth / logicalHeight);
+            }
+            filtered = scaledWidth != logicalWidth;
+        }
+        scaledX = (width - scaledWidth) / 2;
+        scaledY = (height - scaledHeight) / 2;
+        
+        scaledFrame = null;
+        scaledDirty = true;
+    }
+    
+    /**
+     * Makes sure the offscreen buffer exists and still holds its contents.
+     * 
+     * @return True if the buffer was recreated or lost its contents
+     */
+    private boolean validateFrame(Component component) {
+        GraphicsConfiguration config = component.getGraphicsConfiguration();
+        if (config == null) {
+            // Not on screen (or headless): render into a plain image
+            if (bufferedFrame == null) {
+                bufferedFrame = createImage(IMAGE_TYPE, null, logicalWidth, logicalHeight);
+                return true;
+            }
+            return false;
+        }
+        
+        if (!IMAGE_VOLATILE.equals(IMAGE_TYPE)) {
+            if (bufferedFrame == null) {
+                bufferedFrame = createImage(IMAGE_TYPE, config, logicalWidth, logicalHeight);
+                return true;
+            }
+            return false;
+        }
+        
+        if (volatileFrame == null) {
+            volatileFrame = config.createCompatibleVolatileImage(logicalWidth, logicalHeight, Transparency.OPAQUE);
+            return true;
+        }
+        int status = volatileFrame.validate(config);
+        if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+            volatileFrame = config.createCompatibleVolatileImage(logicalWidth, logicalHeight, Transparency.OPAQUE);
+            return true;
+        }
+        return status == VolatileImage.IMAGE_RESTORED || volatileFrame.contentsLost();
+    }
+    
+    /**
+     * Creates an opaque offscreen image of a non-volatile image type.
+     * 
+     * @param type One of the IMAGE_ types, volatile and compatible fall back to IMAGE_INT_RGB
+     * @param config The graphics configuration for compatible images, or null
+     * @param width The width in pixels
+     * @param height The height in pixels
+     * @return The image
+     */
+    public static BufferedImage createImage(String type, GraphicsConfiguration config, int width, int height) {
+        if (IMAGE_COMPATIBLE.equals(type) && config != null) {
+            return config.createCompatibleImage(width, height, Transparency.OPAQUE);
+        }
+        if (IMAGE_INT_ARGB_PRE.equals(type)) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    }
+}
@@ -0,0 +1,538 @@
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The game simulation: the maze, the actors, the score and the rules that advance
+ * them by one tick. It has no Swing dependencies, so it can also run headless.
+ */
+public class Game {
+    // Game constants
+    public static final int TILE_SIZE = 25;
+    public static final int MAZE_WIDTH = 19;
+    public static final int MAZE_HEIGHT = 21;
+    public static final int TICK_TIME = 16; // Milliseconds per logic tick (60 Hz)
+    private static final int TILE_TIME = 150; // Milliseconds to cross one tile at normal speed (slower for easier gameplay)
+    private static final int ACTOR_SPEED = SubTile.speedFor(TILE_TIME, TICK_TIME);
+    
+    // Difficulty settings
+    private static final int GHOST_SPEED_EASY = 75; // Percent of Pac-Man's speed
+    private static final int GHOST_SPEED_MEDIUM = 100;
+    private static final int GHOST_SPEED_HARD = 125;
+    private static final int POWER_DURATION_EASY = 450; // 7.5 seconds
+    private static final int POWER_DURATION_MEDIUM = 300; // 5 seconds
+    private static final int POWER_DURATION_HARD = 150; // 2.5 seconds
+    private static final int GHOST_RESPAWN_DELAY = 180; // Ticks an eaten ghost waits in the house (3 seconds)
+    public static final Color[] GHOST_COLORS = {Color.RED, Color.PINK, Color.CYAN, Color.ORANGE};
+    
+    // Game objects
+    private Maze maze;
+    private PacMan pacman;
+    private List<Ghost> ghosts;
+    private Position[] corners; // Scatter targets of the ghosts
+    
+    // Game state
+    private boolean running;
+    private boolean gameOver;
+    private boolean gameWon;
+    private int score;
+    private int difficulty; // 0=easy, 1=medium, 2=hard
+    private long seed;
+    private long ticks;
+    
+    // The level being played, and the current scatter or chase wave and its elapsed ticks
+    private Level level;
+    private int wave;
+    private int waveTicks;
+    
+    // Times the phases of each tick while the performance HUD is shown
+    private PhaseTimer phaseTimer = PhaseTimer.DISABLED;
+    
+    // Per-tile counters for level design, or null
+    private Heatmap heatmap;
+    
+    // Plans the ghosts' moves in smart ghosts mode, created the first time it is turned on
+    private boolean smartGhosts;
+    private GhostCoordinator ghostCoordinator;
+    
+    /**
+     * Creates a new game with a random seed.
+     * 
+     * @param difficulty The difficulty level (0=easy, 1=medium, 2=hard)
+     */
+    public Game(int difficulty) {
+        this(difficulty, new Random().nextLong());
+    }
+    
+    /**
+     * Creates a new game whose ghosts make the same random choices for the same seed.
+     * 
+     * @param difficulty The difficulty level (0=easy, 1=medium, 2=hard)
+     * @param seed The seed for the ghosts' random generators
+     */
+    public Game(int difficulty, long seed) {
+        this(difficulty, seed, new Maze(MAZE_WIDTH, MAZE_HEIGHT, TILE_SIZE));
+    }
+    
+    /**
+     * Creates a new classic game on a maze prepared by the caller.
+     * 
+     * @param difficulty The difficulty level (0=easy, 1=medium, 2=hard)
+     * @param seed The seed for the ghosts' random generators
+     * @param maze A fresh maze that belongs to this game, for example a copy of a template
+     */
+    public Game(int difficulty, long seed, Maze maze) {
+        this(difficulty, seed, maze, Level.CLASSIC);
+    }
+    
+    /**
+     * Creates a new game of a campaign level on a maze prepared by the caller.
+     * 
+     * @param difficulty The difficulty level (0=easy, 1=medium, 2=hard)
+     * @param seed The seed for the ghosts' random generators
+     * @param maze A fresh maze with the level's layout that belongs to this game
+     * @param level The level, which makes the ghosts faster and power mode shorter than
+     *        the difficulty alone and sets the scatter and chase waves
+     */
+    public Game(int difficulty, long seed, Maze maze, Level level) {
+        this.maze = maze;
+        
+        // Create Pac-Man and the ghosts at their starting positions; the first ghost chases
+        // Pac-Man, the others wander randomly
+        pacman = new PacMan(maze.getPacmanStart(), TILE_SIZE);
+        ghosts = new ArrayList<>();
+        List<Position> ghostStarts = maze.getGhostStarts();
+        int ghostCount = Math.min(ghostStarts.size(), GHOST_COLORS.length);
+        for (int i = 0; i < ghostCount; i++) {
+            int type = i == 0 ? Ghost.TYPE_CHASER : Ghost.TYPE_RANDOM;
+            ghosts.add(new Ghost(ghostStarts.get(i), type, GHOST_COLORS[i]));
+        }
+        corners = new Position[] {new Position(0, 0), new Position(0, 0), new Position(0, 0), new Position(0, 0)};
+        
+        start(difficulty, seed, level);
+    }
+    
+    /**
+     * Starts this game over in place, as if it had been created again on a copy of a
+     * template maze, reusing the maze, the actors and the ghost coordinator. The heatmap,
+     * phase timer and smart ghosts mode are kept.
+     * 
+     * @param difficulty The difficulty level (0=easy, 1=medium, 2=hard)
+     * @param seed The seed for the ghosts' random generators
+     * @param template The template maze, of the same size and with as many ghost starts
+     * @param level The level
+     */
+    public void reset(int difficulty, long seed, Maze template, Level level) {
+        maze.reset(template);
+        start(difficulty, seed, level);
+    }
+    
+    /**
+     * Puts the actors on their start tiles and sets them and the game state up for a
+     * difficulty and level.
+     */
+    private void start(int difficulty, long seed, Level level) {
+        this.difficulty = difficulty;
+        this.seed = seed;
+        this.level = level;
+        
+        // Put Pac-Man at the starting position
+        pacman.restart(maze.getPacmanStart());
+        pacman.setSpeed(ACTOR_SPEED);
+        
+        // Set power pellet duration based on difficulty
+        int powerDuration;
+        switch (difficulty) {
+            case TitleScreen.DIFFICULTY_EASY:
+                powerDuration = POWER_DURATION_EASY;
+                break;
+            case TitleScreen.DIFFICULTY_HARD:
+                powerDuration = POWER_DURATION_HARD;
+                break;
+            case TitleScreen.DIFFICULTY_MEDIUM:
+            default:
+                powerDuration = POWER_DURATION_MEDIUM;
+                break;
+        }
+        powerDuration = powerDuration * level.getPowerDurationPercent() / 100;
+        pacman.setPowerModeDuration(powerDuration);
+        
+        // Set ghost speed based on difficulty
+        int ghostSpeed;
+        switch (difficulty) {
+            case TitleScreen.DIFFICULTY_EASY:
+                ghostSpeed = ACTOR_SPEED * (GHOST_SPEED_EASY + level.getGhostSpeedBonus()) / 100;
+                break;
+            case TitleScreen.DIFFICULTY_HARD:
+                ghostSpeed = ACTOR_SPEED * (GHOST_SPEED_HARD + level.getGhostSpeedBonus()) / 100;
+                break;
+            case TitleScreen.DIFFICULTY_MEDIUM:
+            default:
+                ghostSpeed = ACTOR_SPEED * (GHOST_SPEED_MEDIUM + level.getGhostSpeedBonus()) / 100;
+                break;
+        }
+        
+        // Each ghost scatters to its own corner, starting with the first wave if there is one
+        corners[0].setX(maze.getWidth() - 2);
+        corners[0].setY(1);
+        corners[1].setX(1);
+        corners[1].setY(1);
+        corners[2].setX(maze.getWidth() - 2);
+        corners[2].setY(maze.getHeight() - 2);
+        corners[3].setX(1);
+        corners[3].setY(maze.getHeight() - 2);
+        
+        // Put the ghosts at their starting positions
+        List<Position> ghostStarts = maze.getGhostStarts();
+        for (int i = 0; i < ghosts.size(); i++) {
+            Ghost ghost = ghosts.get(i);
+            ghost.restart(ghostStarts.get(i));
+            ghost.setSpeed(ghostSpeed);
+            ghost.setFrightenedDuration(powerDuration);
+            ghost.setRespawnDelay(GHOST_RESPAWN_DELAY);
+            ghost.setRandomSeed(seed + i);
+            ghost.setScatterTarget(corners[i % corners.length]);
+            ghost.setScatter(level.getWaveCount() > 0);
+            ghost.setCoordinated(smartGhosts);
+        }
+        
+        // Initialize game state
+        running = true;
+        gameOver = false;
+        gameWon = false;
+        score = 0;
+        ticks = 0;
+        wave = 0;
+        waveTicks = 0;
+    }
+    
+    /**
+     * Creates a snapshot of another game that can be drawn while the original keeps running.
+     * 
+     * @param game The game to copy
+     */
+    public Game(Game game) {
+        this.maze = new Maze(game.maze);
+        this.pacman = new PacMan(game.pacman);
+        this.ghosts = new ArrayList<>(game.ghosts.size());
+        for (int i = 0; i < game.ghosts.size(); i++) {
+            ghosts.add(new Ghost(game.ghosts.get(i)));
+        }
+        this.running = game.running;
+        this.gameOver = game.gameOver;
+        this.gameWon = game.gameWon;
+        this.score = game.score;
+        this.difficulty = game.difficulty;
+        this.seed = game.seed;
+        this.ticks = game.ticks;
+        this.level = game.level;
+        this.wave = game.wave;
+        this.waveTicks = game.waveTicks;
+    }
+    
+    /**
+     * Advances the game by one logic tick. Does nothing once the game has ended.
+     */
+    public void tick() {
+        if (running && !gameOver && !gameWon) {
+            FlightEvents.Tick tickEvent = null;
+            if (FlightEvents.ENABLED) {
+                tickEvent = new FlightEvents.Tick();
+                tickEvent.begin();
+            }
+            long time = phaseTimer.start();
+            
+            // Update game objects
+            updateGame();
+            time = phaseTimer.lap(PhaseTimer.UPDATE, time);
+            
+            // Check for collisions
+            checkCollisions();
+            time = phaseTimer.lap(PhaseTimer.COLLISIONS, time);
+            
+            // Check for game over conditions
+            checkGameOver();
+            if (heatmap != null && (gameOver || gameWon)) {
+                heatmap.recordGame();
+            }
+            phaseTimer.lap(PhaseTimer.GAME_OVER, time);
+            
+            if (tickEvent != null) {
+                tickEvent.tick = ticks;
+                tickEvent.ghostCount = ghosts.size();
+                tickEvent.commit();
+            }
+            ticks++;
+        }
+    }
+    
+    /**
+     * Sets the timer for the phases of each tick.
+     * 
+     * @param phaseTimer The timer, or PhaseTimer.DISABLED
+     */
+    public void setPhaseTimer(PhaseTimer phaseTimer) {
+        this.phaseTimer = phaseTimer;
+    }
+    
+    /**
+     * Sets the heatmap that counts visits, deaths and eaten pellets per tile.
+     * Snapshots made with the copy constructor do not record.
+     * 
+     * @param heatmap The heatmap, sized to the maze, or null
+     */
+    public void setHeatmap(Heatmap heatmap) {
+        this.heatmap = heatmap;
+    }
+    
+    /**
+     * Turns smart ghosts mode on or off: the hunting ghosts corner Pac-Man together,
+     * planned by a GhostCoordinator within its time budget every tick.
+     * 
+     * @param smartGhosts True to coordinate the ghosts
+     */
+    public void setSmartGhosts(boolean smartGhosts) {
+        this.smartGhosts = smartGhosts;
+        if (smartGhosts && ghostCoordinator == null) {
+            ghostCoordinator = new GhostCoordinator(maze, ghosts.size());
+        }
+        for (int i = 0; i < ghosts.size(); i++) {
+            ghosts.get(i).setCoordinated(smartGhosts);
+        }
+    }
+    
+    /**
+     * Checks whether smart ghosts mode is on.
+     * 
+     * @return True if the ghosts are coordinated
+     */
+    public boolean isSmartGhosts() {
+        return smartGhosts;
+    }
+    
+    /**
+     * Starts the score at the total carried over from the earlier levels of a campaign.
+     * 
+     * @param score The score
+     */
+    public void setScore(int score) {
+        this.score = score;
+    }
+    
+    /**
+     * Updates the game objects.
+     */
+    private void updateGame() {
+        // Update Pac-Man
+        boolean wasPowerMode = pacman.isPowerMode();
+        pacman.update(maze);
+        if (FlightEvents.ENABLED && wasPowerMode && !pacman.isPowerMode()) {
+            recordPowerMode(false);
+        }
+        if (heatmap != null) {
+            heatmap.recordVisit(pacman.getPosition());
+        }
+        
+        // Check for pellet collection, looking at the pellet type before it is eaten
+        boolean powerPellet = maze.isPowerPellet(pacman.getPosition());
+        int points = maze.eatPellet(pacman.getPosition());
+        if (points > 0) {
+            score += points;
+            if (FlightEvents.ENABLED) {
+                recordPelletEaten(powerPellet);
+            }
+            if (heatmap != null) {
+                heatmap.recordPellet(pacman.getPosition(), ticks);
+            }
+            
+            // Check if a power pellet was eaten
+            if (powerPellet) {
+                if (FlightEvents.ENABLED) {
+                    recordPowerMode(true);
+                }
+                pacman.activatePowerMode();
+                for (Ghost ghost : ghosts) {
+                    ghost.frighten();
+                }
+            }
+        }
+        
+        // Update ghosts
+        updateWaves();
+        if (smartGhosts) {
+            ghostCoordinator.plan(pacman, ghosts);
+        }
+        for (Ghost ghost : ghosts) {
+            ghost.update(maze, pacman);
+        }
+    }
+    
+    /**
+     * Counts down the current scatter or chase wave and switches the ghosts between
+     * scattering and chasing when it ends. After the last wave the ghosts chase for good.
+     */
+    private void updateWaves() {
+        if (wave >= level.getWaveCount() || ++waveTicks < level.getWaveTicks(wave)) {
+            return;
+        }
+        wave++;
+        waveTicks = 0;
+        boolean scatter = wave < level.getWaveCount() && wave % 2 == 0;
+        for (Ghost ghost : ghosts) {
+            ghost.startWave(scatter);
+        }
+    }
+    
+    /**
+     * Records a flight recorder event for an eaten pellet.
+     * 
+     * @param powerPellet True if it was a power pellet
+     */
+    private void recordPelletEaten(boolean powerPellet) {
+        FlightEvents.PelletEaten event = new FlightEvents.PelletEaten();
+        if (event.shouldCommit()) {
+            event.x = pacman.getPosition().getX();
+            event.y = pacman.getPosition().getY();
+            event.powerPellet = powerPellet;
+            event.score = score;
+            event.commit();
+        }
+    }
+    
+    /**
+     * Records a flight recorder event for power mode starting or running out.
+     * 
+     * @param active True if power mode starts
+     */
+    private void recordPowerMode(boolean active) {
+        FlightEvents.PowerMode event = new FlightEvents.PowerMode();
+        if (event.shouldCommit()) {
+            event.active = active;
+            event.commit();
+        }
+    }
+    
+    /**
+     * Checks for collisions between Pac-Man and ghosts.
+     */
+    private void checkCollisions() {
+        for (Ghost ghost : ghosts) {
+            if (pacman.isCollidingWith(ghost)) {
+                if (pacman.isPowerMode() && !ghost.isEaten()) {
+                    // Pac-Man eats the ghost
+                    ghost.eat();
+                    score += 200;
+                } else if (!ghost.isFrightened() && !ghost.isEaten()) {
+                    // Ghost catches Pac-Man
+                    if (heatmap != null && !gameOver) {
+                        heatmap.recordDeath(pacman.getPosition());
+                    }
+                    gameOver = true;
+                    running = false;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Checks for game over conditions.
+     */
+    private void checkGameOver() {
+        // Check if all pellets have been eaten
+        if (maze.allPelletsEaten()) {
+            gameWon = true;
+            running = false;
+        }
+    }
+    
+    /**
+     * Gets the maze.
+     * 
+     * @return The maze
+     */
+    public Maze getMaze() {
+        return maze;
+    }
+    
+    /**
+     * Gets the level being played.
+     * 
+     * @return The level, Level.CLASSIC outside a campaign
+     */
+    public Level getLevel() {
+        return level;
+    }
+    
+    /**
+     * Gets Pac-Man.
+     * 
+     * @return Pac-Man
+     */
+    public PacMan getPacMan() {
+        return pacman;
+    }
+    
+    /**
+     * Gets the ghosts.
+     * 
+     * @return The ghosts
+     */
+    public List<Ghost> getGhosts() {
+        return ghosts;
+    }
+    
+    /**
+     * Checks if the game is over because a ghost caught Pac-Man.
+     * 
+     * @return True if the game is over, false otherwise
+     */
+    public boolean isGameOver() {
+        return gameOver;
+    }
+    
+    /**
+     * Checks if the game is won because all pellets have been eaten.
+     * 
+     * @return True if the game is won, false otherwise
+     */
+    public boolean isGameWon() {
+        return gameWon;
+    }
+    
+    /**
+     * Gets the current score.
+     * 
+     * @return The score
+     */
+    public int getScore() {
+        return score;
+    }
+    
+    /**
+     * Gets the difficulty level.
+     * 
+     * @return The difficulty level
+     */
+    public int getDifficulty() {
+        return difficulty;
+    }
+    
+    /**
+     * Gets the seed of the ghosts' random generators.
+     * 
+     * @return The seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+    
+    /**
+     * Gets the number of ticks the game has advanced.
+     * 
+     * @return The tick count
+     */
+    public long getTicks() {
+        return ticks;
+    }
+}
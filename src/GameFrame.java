@@ -1,8 +1,9 @@
-import javax.swing.JFrame;
-
 import java.awt.CardLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
+import javax.swing.Timer;
 
 /**
  * The main game window that contains the title screen and game panel.
@@ -14,31 +15,48 @@ public class GameFrame extends JFrame {
     private JPanel mainPanel;
     private TitleScreen titleScreen;
     private GamePanel gamePanel;
+    private DiagnosticsScreen diagnosticsScreen;
+    private StartupLoader loader;
     
     // Card names for the card layout
     private static final String TITLE_SCREEN = "TitleScreen";
     private static final String GAME_PANEL = "GamePanel";
+    private static final String DIAGNOSTICS = "Diagnostics";
+    
+    // Launch options
+    private static final boolean LAZY_GAME_PANEL = Boolean.getBoolean("pacman.lazyGamePanel"); // Create GamePanel on the first start
+    private static final String AUTO_RUN = System.getProperty("pacman.autoRun", ""); // "title" or "game", for scripted runs
+    private static final int AUTO_RUN_START_DELAY = 1000; // Milliseconds the title screen is shown before the game starts
+    private static final int AUTO_RUN_MAX_GAME_TIME = 30000; // Milliseconds until a scripted game is ended
+    public static final String FIRST_FRAME_PREFIX = "FIRST_FRAME ";
     
     /**
      * Creates a new GameFrame.
+     * 
+     * @param loader The loader preparing the game's assets in the background
      */
-    public GameFrame() {
+    public GameFrame(StartupLoader loader) {
+        this.loader = loader;
+        
         // Set up the frame
         setTitle("Pac-Man");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        setResizable(false);
+        setResizable(true); // Screens are rendered at logical resolution and scaled to the window
         
         // Create the card layout and main panel
         cardLayout = new CardLayout();
         mainPanel = new JPanel(cardLayout);
         
-        // Create the title screen and game panel
+        // Create the title screen and game panel; the game panel can wait until the first start
         titleScreen = new TitleScreen(this);
-        gamePanel = new GamePanel();
+        diagnosticsScreen = new DiagnosticsScreen(this);
         
         // Add the panels to the card layout
         mainPanel.add(titleScreen, TITLE_SCREEN);
-        mainPanel.add(gamePanel, GAME_PANEL);
+        if (!LAZY_GAME_PANEL) {
+            createGamePanel();
+        }
+        mainPanel.add(diagnosticsScreen, DIAGNOSTICS);
         
         // Add the main panel to the frame
         add(mainPanel);
@@ -54,20 +72,111 @@ public class GameFrame extends JFrame {
         
         // Make the frame visible
         setVisible(true);
+        
+        // A scripted training run plays one game without input
+        if ("game".equals(AUTO_RUN)) {
+            autoRunGame();
+        }
+    }
+    
+    /**
+     * Creates the game panel and adds it to the card layout.
+     */
+    private void createGamePanel() {
+        gamePanel = new GamePanel(loader);
+        mainPanel.add(gamePanel, GAME_PANEL);
+    }
+    
+    /**
+     * Reports the first painted frame of the title screen. With -Dpacman.autoRun=title
+     * the wall-clock time is printed for the startup benchmark and the game exits.
+     */
+    public void titleFramePresented() {
+        loader.titleFramePresented();
+        if ("title".equals(AUTO_RUN)) {
+            System.out.println(FIRST_FRAME_PREFIX + System.currentTimeMillis());
+            System.exit(0);
+        }
     }
     
     /**
-     * Starts the game by switching to the game panel.
+     * Starts a game after the title screen has been shown and exits when it ends,
+     * so that a training run loads the classes of both screens.
+     */
+    private void autoRunGame() {
+        final long deadline = System.currentTimeMillis() + AUTO_RUN_START_DELAY + AUTO_RUN_MAX_GAME_TIME;
+        Timer startTimer = new Timer(AUTO_RUN_START_DELAY, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                startGame(TitleScreen.DIFFICULTY_MEDIUM);
+            }
+        });
+        startTimer.setRepeats(false);
+        startTimer.start();
+        
+        Timer endTimer = new Timer(500, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                boolean ended = gamePanel != null && gamePanel.isGameEnded();
+                if (ended || System.currentTimeMillis() > deadline) {
+                    System.exit(0);
+                }
+            }
+        });
+        endTimer.start();
+    }
+    
+    /**
+     * Starts the game by switching to the game panel, once its assets are ready.
+     * The title screen shows that it is loading until then, or until loading fails.
      * 
      * @param difficulty The selected difficulty level
      */
-    public void startGame(int difficulty) {
+    public void startGame(final int difficulty) {
+        loader.gameRequested();
+        if (!loader.isReady()) {
+            titleScreen.setLoading(true);
+        }
+        loader.whenReady(new Runnable() {
+            @Override
+            public void run() {
+                titleScreen.setLoading(false);
+                showGame(difficulty);
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                // The error has been logged; stay on the title screen
+                titleScreen.setLoading(false);
+            }
+        });
+    }
+    
+    /**
+     * Switches to the game panel and starts a new game.
+     * 
+     * @param difficulty The selected difficulty level
+     */
+    private void showGame(int difficulty) {
+        if (gamePanel == null) {
+            createGamePanel();
+            mainPanel.revalidate();
+        }
         gamePanel.setDifficulty(difficulty);
         gamePanel.restartGame(); // Ensure game starts with fresh state
         cardLayout.show(mainPanel, GAME_PANEL);
         gamePanel.requestFocusInWindow(); // Give focus to the game panel for keyboard input
     }
     
+    /**
+     * Shows the diagnostics screen.
+     */
+    public void showDiagnostics() {
+        diagnosticsScreen.refresh();
+        cardLayout.show(mainPanel, DIAGNOSTICS);
+        diagnosticsScreen.requestFocusInWindow();
+    }
+    
     /**
      * Returns to the title screen.
      */
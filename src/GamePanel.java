@@ -1,8 +1,12 @@
+import java.awt.BorderLayout;
+import java.awt.Canvas;
 import java.awt.Color;
-import java.awt.Color;
+import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -10,8 +14,13 @@ import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.ArrayList;
-import java.util.List;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import javax.swing.JPanel;
 import javax.swing.Timer;
@@ -23,49 +32,121 @@ public class GamePanel extends JPanel implements ActionListener {
     private static final long serialVersionUID = 1L;
     
     // Game constants
-    private static final int TILE_SIZE = 25;
-    private static final int MAZE_WIDTH = 19;
-    private static final int MAZE_HEIGHT = 21;
-    private static final int PANEL_WIDTH = MAZE_WIDTH * TILE_SIZE;
-    private static final int PANEL_HEIGHT = MAZE_HEIGHT * TILE_SIZE + 50; // Extra space for score
-    private static final int DELAY = 150; // Milliseconds between updates (slower for easier gameplay)
-    
-    // Difficulty settings
-    private static final int GHOST_SPEED_EASY = 1;
-    private static final int GHOST_SPEED_MEDIUM = 2;
-    private static final int GHOST_SPEED_HARD = 3;
-    private static final int POWER_DURATION_EASY = 450; // 7.5 seconds
-    private static final int POWER_DURATION_MEDIUM = 300; // 5 seconds
-    private static final int POWER_DURATION_HARD = 150; // 2.5 seconds
-    
-    // Game objects
-    private Maze maze;
-    private PacMan pacman;
-    private List<Ghost> ghosts;
-    
-    // Game state
-    private boolean running;
-    private boolean gameOver;
-    private boolean gameWon;
-    private boolean paused;
-    private int score;
+    public static final int PANEL_WIDTH = GameRenderer.WIDTH; // Logical frame size, scaled to the window
+    public static final int PANEL_HEIGHT = GameRenderer.HEIGHT;
+    private static final int DELAY = Game.TICK_TIME; // Milliseconds between updates (60 Hz logic tick)
+    private static final String RENDERER = System.getProperty("pacman.renderer", "swing"); // "swing" or "active"
+    private static final boolean VSYNC = Boolean.getBoolean("pacman.vsync"); // Page-flip and sync each active frame
+    private static final int INPUT_BUFFER_MS = Integer.getInteger("pacman.inputBufferMs", 250); // How long a turn stays buffered
+    private static final int INPUT_QUEUE_CAPACITY = 64;
+    private static final int PELLET_MILESTONE = 50; // Pellets between logged progress events
+    private static final int LEVEL_CLEAR_TICKS = 2000 / DELAY; // How long the win screen shows before the next level
+    private static final boolean SAVE_HEATMAPS = Boolean.getBoolean("pacman.heatmaps"); // Save every game's heatmap
+    private static final boolean SMART_GHOSTS = Boolean.getBoolean("pacman.smartGhosts"); // Ghosts corner Pac-Man together
+    
+    // Fonts, colours and static labels, created once instead of on every frame
+    private static final Font HUD_FONT = new Font("Arial", Font.BOLD, 16);
+    private static final Font MESSAGE_FONT = new Font("Arial", Font.BOLD, 40);
+    private static final Font HIGH_SCORE_TITLE_FONT = new Font("Arial", Font.BOLD, 20);
+    private static final Font HIGH_SCORE_FONT = new Font("Arial", Font.PLAIN, 16);
+    private static final Font DEBUG_FONT = new Font("Monospaced", Font.PLAIN, 12);
+    private static final Color PAUSE_OVERLAY = new Color(0, 0, 0, 150);
+    private static final Color DEBUG_BACKGROUND = new Color(0, 0, 0, 180);
+    private static final HudText RESTART_LABEL = new HudText(HUD_FONT, "RESTART");
+    private static final HudText MENU_LABEL = new HudText(HUD_FONT, "MENU");
+    private static final HudText RESUME_LABEL = new HudText(HUD_FONT, "RESUME");
+    private static final HudText PAUSED_LABEL = new HudText(MESSAGE_FONT, "PAUSED");
+    private static final HudText GAME_OVER_LABEL = new HudText(MESSAGE_FONT, "GAME OVER");
+    private static final HudText YOU_WIN_LABEL = new HudText(MESSAGE_FONT, "YOU WIN!");
+    private static final HudText FRAME_TIME_LABEL = new HudText(DEBUG_FONT, "Frame time us");
+    private static final HudText HIGH_SCORES_LABEL = new HudText(HIGH_SCORE_TITLE_FONT, "HIGH SCORES");
+    
+    // The game simulation, created when the first game starts
+    private Game game;
+    private Random random;
+    
+    // The levels, each prepared in the background while the one before is played
+    private Campaign campaign;
+    
+    // Assets prepared in the background while the title screen is shown
+    private StartupLoader loader;
+    
+    // Screen state
+    private volatile boolean paused;
+    private boolean showDebugOverlay;
     private int difficulty; // 0=easy, 1=medium, 2=hard
     
     // High score system
     private HighScore highScore;
     
+    // Draws the maze, the actors and the score line from pre-rendered sprites
+    private GameRenderer gameRenderer;
+    
+    // Offscreen frame at logical resolution, scaled to the panel size
+    private FrameScaler frameScaler;
+    
     // UI elements
     private Rectangle restartButton;
     private Rectangle titleScreenButton;
     private Rectangle resumeButton;
     
-    // Timer for the game loop
+    // HUD fields that are laid out again only when their value changes
+    private HudText[] highScoreTexts;
+    private HudText latencyCountText;
+    private HudText latencyP50Text;
+    private HudText latencyP99Text;
+    private HudText latencyMaxText;
+    private HudText frameP50Text;
+    private HudText frameP99Text;
+    private HudText frameMaxText;
+    
+    // Input from the event dispatch thread, consumed once per game tick
+    private InputQueue inputQueue;
+    
+    // Input-to-photon latency: key press until the first frame that shows the turn
+    private Histogram inputLatency;
+    private Direction pendingTurn = Direction.NONE;
+    private volatile long pendingTurnTime;
+    private volatile long shownTurnTime;
+    
+    // Interval between presented frames
+    private Histogram frameTimes;
+    private long lastPresentTime;
+    
+    // Pellets eaten at which the next progress event is logged
+    private int nextPelletMilestone;
+    
+    // Ticks left before the next level after a win
+    private int levelClearTicks;
+    
+    // Per-tile counters of the current game and of earlier games, and the layer shown (-1 for none)
+    private Heatmap sessionHeatmap;
+    private Heatmap aggregateHeatmap;
+    private boolean aggregateRequested;
+    private int heatmapLayer = -1;
+    private HudText[] heatmapLabels;
+    
+    // Reads and writes heatmap files off the game thread
+    private ExecutorService heatmapExecutor;
+    
+    // Per-phase tick and frame times, recorded only while the performance HUD is shown
+    private PhaseTimer phaseTimer;
+    private PerformanceHud performanceHud;
+    
+    // Game state is shared between the event dispatch thread and the active render loop
+    private final Object stateLock = new Object();
+    
+    // Timer for the game loop, or the active renderer that replaces it
     private Timer timer;
+    private ActiveRenderer activeRenderer;
     
     /**
-     * Creates a new GamePanel.
+     * Creates a new GamePanel. The game is not created, and the game loop not started,
+     * until restartGame is called.
+     * 
+     * @param loader The loader preparing the high scores, sprites and first level
      */
-    public GamePanel() {
+    public GamePanel(StartupLoader loader) {
         // Set up the panel
         setPreferredSize(new Dimension(PANEL_WIDTH, PANEL_HEIGHT));
         setBackground(Color.BLACK);
@@ -73,8 +154,29 @@ public class GamePanel extends JPanel implements ActionListener {
         addKeyListener(new MyKeyAdapter());
         addMouseListener(new MyMouseAdapter());
         
-        // Initialize high score system
-        highScore = new HighScore();
+        this.loader = loader;
+        random = new Random();
+        frameScaler = new FrameScaler(PANEL_WIDTH, PANEL_HEIGHT, false);
+        
+        // Initialize input handling
+        inputQueue = new InputQueue(INPUT_QUEUE_CAPACITY);
+        inputLatency = new Histogram();
+        frameTimes = new Histogram();
+        phaseTimer = new PhaseTimer();
+        performanceHud = new PerformanceHud(phaseTimer);
+        
+        // Create the HUD fields
+        latencyCountText = new HudText(DEBUG_FONT, "Latency us, turns: ", 0);
+        latencyP50Text = new HudText(DEBUG_FONT, "p50 ", 0);
+        latencyP99Text = new HudText(DEBUG_FONT, "p99 ", 0);
+        latencyMaxText = new HudText(DEBUG_FONT, "max ", 0);
+        frameP50Text = new HudText(DEBUG_FONT, "p50 ", 0);
+        frameP99Text = new HudText(DEBUG_FONT, "p99 ", 0);
+        frameMaxText = new HudText(DEBUG_FONT, "max ", 0);
+        heatmapLabels = new HudText[Heatmap.LAYER_COUNT];
+        for (int i = 0; i < Heatmap.LAYER_COUNT; i++) {
+            heatmapLabels[i] = new HudText(DEBUG_FONT, "Heatmap: " + Heatmap.getLayerName(i) + ", games ", 0);
+        }
         
         // Create UI elements
         restartButton = new Rectangle(PANEL_WIDTH / 2 - 130, PANEL_HEIGHT / 2 + 50, 120, 40);
@@ -84,93 +186,106 @@ public class GamePanel extends JPanel implements ActionListener {
         // Set default difficulty
         difficulty = TitleScreen.DIFFICULTY_MEDIUM;
         
-        // Initialize the game
-        initGame();
+        // Create the game loop: a Swing timer, or a render thread drawing to a canvas
+        timer = new Timer(DELAY, this);
+        if ("active".equals(RENDERER)) {
+            activeRenderer = new ActiveRenderer(this, DELAY, VSYNC);
+            Canvas canvas = activeRenderer.getCanvas();
+            canvas.addKeyListener(new MyKeyAdapter());
+            canvas.addMouseListener(new MyMouseAdapter());
+            setLayout(new BorderLayout());
+            add(canvas, BorderLayout.CENTER);
+        }
     }
     
     /**
-     * Initializes the game objects and state.
+     * Starts the campaign over: the game objects are created on the first start and
+     * reset in place on every later one.
      */
     private void initGame() {
-        // Create the maze
-        maze = new Maze(MAZE_WIDTH, MAZE_HEIGHT, TILE_SIZE);
-        
-        // Create Pac-Man at the starting position
-        pacman = new PacMan(maze.getPacmanStart(), TILE_SIZE);
-        
-        // Set power pellet duration based on difficulty
-        int powerDuration;
-        switch (difficulty) {
-            case TitleScreen.DIFFICULTY_EASY:
-                powerDuration = POWER_DURATION_EASY;
-                break;
-            case TitleScreen.DIFFICULTY_HARD:
-                powerDuration = POWER_DURATION_HARD;
-                break;
-            case TitleScreen.DIFFICULTY_MEDIUM:
-            default:
-                powerDuration = POWER_DURATION_MEDIUM;
-                break;
-        }
-        pacman.setPowerModeDuration(powerDuration);
-        
-        // Create ghosts at their starting positions
-        ghosts = new ArrayList<>();
-        List<Position> ghostStarts = maze.getGhostStarts();
-        
-        // Set ghost speed based on difficulty
-        double ghostSpeed;
-        switch (difficulty) {
-            case TitleScreen.DIFFICULTY_EASY:
-                ghostSpeed = 0.15;
-                break;
-            case TitleScreen.DIFFICULTY_HARD:
-                ghostSpeed = 0.25;
-                break;
-            case TitleScreen.DIFFICULTY_MEDIUM:
-            default:
-                ghostSpeed = 0.2;
-                break;
-        }
-        
-        if (ghostStarts.size() > 0) {
-            // Create a chaser ghost (red)
-            Ghost chaserGhost = new Ghost(ghostStarts.get(0), Ghost.TYPE_CHASER, Color.RED);
-            chaserGhost.setSpeed(ghostSpeed);
-            chaserGhost.setFrightenedDuration(powerDuration);
-            ghosts.add(chaserGhost);
-            
-            // Create random ghosts with different colors if there are more starting positions
-            if (ghostStarts.size() > 1) {
-                Ghost pinkGhost = new Ghost(ghostStarts.get(1), Ghost.TYPE_RANDOM, Color.PINK);
-                pinkGhost.setSpeed(ghostSpeed);
-                pinkGhost.setFrightenedDuration(powerDuration);
-                ghosts.add(pinkGhost);
-            }
-            if (ghostStarts.size() > 2) {
-                Ghost cyanGhost = new Ghost(ghostStarts.get(2), Ghost.TYPE_RANDOM, Color.CYAN);
-                cyanGhost.setSpeed(ghostSpeed);
-                cyanGhost.setFrightenedDuration(powerDuration);
-                ghosts.add(cyanGhost);
-            }
-            if (ghostStarts.size() > 3) {
-                Ghost orangeGhost = new Ghost(ghostStarts.get(3), Ghost.TYPE_RANDOM, Color.ORANGE);
-                orangeGhost.setSpeed(ghostSpeed);
-                orangeGhost.setFrightenedDuration(powerDuration);
-                ghosts.add(orangeGhost);
-            }
+        // Pick up the high scores and sprites on the first start; this only waits if they are still loading
+        if (gameRenderer == null) {
+            highScore = loader.getHighScore();
+            gameRenderer = new GameRenderer(loader.getAtlas());
+            gameRenderer.setPhaseTimer(phaseTimer);
+            updateHighScoreTexts();
         }
         
-        // Initialize game state
-        running = true;
-        gameOver = false;
-        gameWon = false;
+        // Start the campaign at the first level, prepared at startup
+        if (campaign == null) {
+            campaign = new Campaign();
+        }
+        long seed = random.nextLong();
+        startLevel(campaign.start(loader.getFirstLevel(), difficulty, seed));
+        EventLog.log(EventLog.INFO, EventLog.GAME_START, difficulty, game.getSeed());
+        
+        // Initialize screen state
         paused = false;
-        score = 0;
         
-        // Start the game loop
-        timer = new Timer(DELAY, this);
-        timer.start();
+        // Forget input from the previous game
+        inputQueue.clear();
+        pendingTurn = Direction.NONE;
+        pendingTurnTime = 0;
+        shownTurnTime = 0;
+        
+        // Start the game loop, unless it is still running from the previous game
+        startLoop();
+    }
+    
+    /**
+     * Sets up the game of the campaign's current level: Pac-Man and the ghosts on the
+     * prepared maze, drawn over the prepared wall layer.
+     * 
+     * @param levelGame The game of the level, with the score carried over
+     */
+    private void startLevel(Game levelGame) {
+        game = levelGame;
+        game.setPhaseTimer(phaseTimer);
+        game.setSmartGhosts(SMART_GHOSTS);
+        game.getPacMan().setInputBufferTicks(INPUT_BUFFER_MS / DELAY);
+        gameRenderer.setWallLayer(campaign.getCurrentLevel().getWallLayer());
+        nextPelletMilestone = PELLET_MILESTONE;
+        
+        // Saved heatmaps belong to the writer thread, so only then does a game need a new one
+        if (sessionHeatmap == null || SAVE_HEATMAPS) {
+            sessionHeatmap = new Heatmap(game.getMaze().getWidth(), game.getMaze().getHeight());
+        } else {
+            sessionHeatmap.clear();
+        }
+        game.setHeatmap(sessionHeatmap);
+    }
+    
+    /**
+     * Moves on to the next level after a win. The level was prepared while this one was
+     * played, so the handover fits in the tick; its time is logged with the level.
+     */
+    private void advanceLevel() {
+        long start = System.nanoTime();
+        startLevel(campaign.advance(game, random.nextLong()));
+        long handover = System.nanoTime() - start;
+        EventLog.log(EventLog.INFO, EventLog.NEXT_LEVEL, game.getLevel().getNumber(), game.getScore(), handover / 1000);
+    }
+    
+    /**
+     * Starts the game loop on the selected backend, if it is not running.
+     */
+    private void startLoop() {
+        if (activeRenderer != null) {
+            activeRenderer.start();
+        } else if (!timer.isRunning()) {
+            timer.start();
+        }
+    }
+    
+    /**
+     * Stops the game loop on the selected backend.
+     */
+    private void stopLoop() {
+        if (activeRenderer != null) {
+            activeRenderer.stop();
+        } else {
+            timer.stop();
+        }
     }
     
     /**
@@ -178,78 +293,183 @@ public class GamePanel extends JPanel implements ActionListener {
      */
     @Override
     public void actionPerformed(ActionEvent e) {
-        if (running && !gameOver && !gameWon && !paused) {
-            // Update game objects
-            updateGame();
-            
-            // Check for collisions
-            checkCollisions();
-            
-            // Check for game over conditions
-            checkGameOver();
-        }
+        tick();
         
         // Repaint the panel
         repaint();
     }
     
     /**
-     * Updates the game objects.
+     * Advances the game by one logic tick.
      */
-    private void updateGame() {
-        // Update Pac-Man
-        pacman.update(maze);
-        
-        // Check for pellet collection
-        int points = maze.eatPellet(pacman.getPosition());
-        if (points > 0) {
-            score += points;
-            
-            // Check if a power pellet was eaten
-            if (maze.isPowerPellet(pacman.getPosition())) {
-                pacman.activatePowerMode();
-                for (Ghost ghost : ghosts) {
-                    ghost.frighten();
+    void tick() {
+        synchronized (stateLock) {
+            if (game != null && game.isGameWon() && !paused) {
+                // Show the win screen for a moment, then carry the score over to the next level
+                levelClearTicks--;
+                if (levelClearTicks <= 0) {
+                    long time = phaseTimer.start();
+                    advanceLevel();
+                    phaseTimer.lap(PhaseTimer.TICK, time);
+                }
+            } else if (game != null && !game.isGameOver() && !paused) {
+                long time = phaseTimer.start();
+                
+                // Apply queued key presses
+                processInput();
+                
+                // Advance the game
+                game.tick();
+                trackTurnLatency();
+                Metrics.TICKS.increment();
+                logProgress();
+                
+                if (game.isGameWon()) {
+                    levelClearTicks = LEVEL_CLEAR_TICKS;
+                } else if (game.isGameOver()) {
+                    // The campaign ends with the game, so add its score to the high scores
+                    boolean added = highScore.addScore(game.getScore());
+                    if (added) {
+                        updateHighScoreTexts();
+                    }
+                    EventLog.log(EventLog.INFO, EventLog.HIGH_SCORE, game.getScore(), added ? 1 : 0);
                 }
+                phaseTimer.lap(PhaseTimer.TICK, time);
             }
         }
+    }
+    
+    /**
+     * Logs pellet milestones, and the death and end of the game after the tick that ended
+     * it. A won level does not end the game, which goes on at the next level, so only
+     * its heatmap is saved here.
+     */
+    private void logProgress() {
+        Maze maze = game.getMaze();
+        if (maze.getPelletsEaten() >= nextPelletMilestone) {
+            EventLog.log(EventLog.INFO, EventLog.PELLETS, maze.getPelletsEaten(), maze.getTotalPellets(), game.getScore());
+            nextPelletMilestone += PELLET_MILESTONE;
+        }
+        if (game.isGameOver()) {
+            Position position = game.getPacMan().getPosition();
+            EventLog.log(EventLog.INFO, EventLog.DEATH, position.getX(), position.getY(), game.getScore());
+            int levelsCleared = Math.max(0, game.getLevel().getNumber() - 1);
+            Metrics.recordGame(difficulty, levelsCleared, game.getScore());
+            EventLog.log(EventLog.INFO, EventLog.GAME_END, levelsCleared, game.getScore(), game.getTicks());
+        }
         
-        // Update ghosts
-        for (Ghost ghost : ghosts) {
-            ghost.update(maze, pacman);
+        // Heatmaps describe one maze, so each level played on the default one is saved
+        if ((game.isGameOver() || game.isGameWon()) && SAVE_HEATMAPS && game.getLevel().isDefaultLayout()) {
+            saveHeatmap(sessionHeatmap, game.getSeed());
         }
     }
     
     /**
-     * Checks for collisions between Pac-Man and ghosts.
+     * Writes the heatmap of a finished game to the session directory in the background,
+     * for HeatmapTool to merge into the aggregate.
+     * 
+     * @param heatmap The heatmap, no longer recorded into
+     * @param seed The seed of the game, to keep file names unique
      */
-    private void checkCollisions() {
-        for (Ghost ghost : ghosts) {
-            if (pacman.isCollidingWith(ghost)) {
-                if (pacman.isPowerMode() && !ghost.isEaten()) {
-                    // Pac-Man eats the ghost
-                    ghost.eat();
-                    score += 200;
-                } else if (!ghost.isFrightened() && !ghost.isEaten()) {
-                    // Ghost catches Pac-Man
-                    gameOver = true;
-                    running = false;
+    private void saveHeatmap(final Heatmap heatmap, final long seed) {
+        getHeatmapExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                File file = new File(Heatmap.SESSION_DIRECTORY,
+                        "session-" + System.currentTimeMillis() + "-" + Long.toHexString(seed) + ".heat");
+                try {
+                    heatmap.write(file);
+                } catch (IOException e) {
+                    EventLog.log(EventLog.ERROR, "Error saving heatmap: " + e.getMessage());
                 }
             }
+        });
+    }
+    
+    /**
+     * Reads the aggregate heatmap in the background, if there is one, to show it instead
+     * of the current game's.
+     */
+    private void loadAggregateHeatmap() {
+        getHeatmapExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!Heatmap.AGGREGATE_FILE.isFile()) {
+                    return;
+                }
+                try {
+                    Heatmap heatmap = Heatmap.read(Heatmap.AGGREGATE_FILE);
+                    synchronized (stateLock) {
+                        aggregateHeatmap = heatmap;
+                    }
+                    repaint();
+                } catch (IOException e) {
+                    EventLog.log(EventLog.WARN, "Error loading heatmap: " + e.getMessage());
+                }
+            }
+        });
+    }
+    
+    /**
+     * Gets the thread that reads and writes heatmap files, starting it on first use.
+     */
+    private synchronized ExecutorService getHeatmapExecutor() {
+        if (heatmapExecutor == null) {
+            heatmapExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Heatmap I/O");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
         }
+        return heatmapExecutor;
     }
     
     /**
-     * Checks for game over conditions.
+     * Applies the oldest queued input to Pac-Man.
+     * Only one input is applied per tick so that quick successive key presses
+     * each get a chance to turn Pac-Man instead of overwriting each other.
      */
-    private void checkGameOver() {
-        // Check if all pellets have been eaten
-        if (maze.allPelletsEaten()) {
-            gameWon = true;
-            running = false;
-            // Add score to high scores
-            boolean added = highScore.addScore(score);
-            System.out.println("Game won with score: " + score + ", added to high scores: " + added);
+    private void processInput() {
+        // Drop inputs that waited longer than the input buffer window
+        long now = System.nanoTime();
+        while (INPUT_BUFFER_MS > 0 && !inputQueue.isEmpty()
+                && now - inputQueue.peekTimestamp() > INPUT_BUFFER_MS * 1000000L) {
+            inputQueue.remove();
+        }
+        
+        if (inputQueue.isEmpty()) {
+            return;
+        }
+        Direction direction = inputQueue.peekDirection();
+        long timestamp = inputQueue.peekTimestamp();
+        inputQueue.remove();
+        
+        PacMan pacman = game.getPacMan();
+        pacman.setNextDirection(direction);
+        if (direction != pacman.getDirection()) {
+            pendingTurn = direction;
+            pendingTurnTime = timestamp;
+        }
+    }
+    
+    /**
+     * Hands the timestamp of a completed turn to the renderer so that the next
+     * painted frame can record the input-to-photon latency.
+     */
+    private void trackTurnLatency() {
+        if (pendingTurnTime == 0) {
+            return;
+        }
+        PacMan pacman = game.getPacMan();
+        if (pacman.getDirection() == pendingTurn) {
+            shownTurnTime = pendingTurnTime;
+            pendingTurnTime = 0;
+        } else if (pacman.getNextDirection() != pendingTurn) {
+            // The turn was replaced by a newer input or dropped from the buffer
+            pendingTurnTime = 0;
         }
     }
     
@@ -260,27 +480,124 @@ public class GamePanel extends JPanel implements ActionListener {
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
         
-        // Draw the maze
-        maze.draw(g);
-        
-        // Draw Pac-Man
-        pacman.draw(g, TILE_SIZE);
-        
-        // Draw ghosts
-        for (Ghost ghost : ghosts) {
-            ghost.draw(g, TILE_SIZE);
+        // The active renderer draws to its own canvas
+        if (activeRenderer != null) {
+            return;
+        }
+        renderTo(g, this, getWidth(), getHeight());
+        framePresented();
+    }
+    
+    /**
+     * Renders the frame at logical resolution, then scales it to the target.
+     * 
+     * @param g The Graphics object of the target
+     * @param target The component the frame is shown in
+     * @param width The width of the target
+     * @param height The height of the target
+     */
+    void renderTo(Graphics g, Component target, int width, int height) {
+        long time = phaseTimer.start();
+        synchronized (stateLock) {
+            Graphics2D frame = frameScaler.beginFrame(target);
+            renderFrame(frame);
+            frame.dispose();
+        }
+        time = phaseTimer.lap(PhaseTimer.FRAME, time);
+        frameScaler.present(g, width, height);
+        phaseTimer.lap(PhaseTimer.PRESENT, time);
+    }
+    
+    /**
+     * Draws the game at logical resolution into any Graphics, for example an offscreen image.
+     * 
+     * @param g The Graphics object to draw with
+     */
+    void renderLogical(Graphics g) {
+        synchronized (stateLock) {
+            g.setColor(Color.BLACK);
+            g.fillRect(0, 0, PANEL_WIDTH, PANEL_HEIGHT);
+            renderFrame(g);
+        }
+    }
+    
+    /**
+     * Records frame statistics once a frame is on screen.
+     */
+    void framePresented() {
+        long now = System.nanoTime();
+        if (lastPresentTime != 0) {
+            frameTimes.record(now - lastPresentTime);
+            Metrics.recordFrame(now - lastPresentTime);
+        }
+        lastPresentTime = now;
+        loader.gameFramePresented();
+        
+        // This frame shows the latest turn, so record how long it took since the key press
+        long turnTime = shownTurnTime;
+        if (turnTime != 0) {
+            shownTurnTime = 0;
+            inputLatency.record(now - turnTime);
+        }
+    }
+    
+    /**
+     * Checks whether a game has been played to its end. A won level is not the end; the
+     * campaign goes on to the next one.
+     * 
+     * @return True if the current game is over
+     */
+    boolean isGameEnded() {
+        synchronized (stateLock) {
+            return game != null && game.isGameOver();
+        }
+    }
+    
+    /**
+     * Gets the intervals between presented frames.
+     * 
+     * @return The frame time histogram in nanoseconds
+     */
+    public Histogram getFrameTimes() {
+        return frameTimes;
+    }
+    
+    /**
+     * Gives keyboard focus to the component that receives input for the selected backend.
+     * 
+     * @return False if the request is certain to fail, true otherwise
+     */
+    @Override
+    public boolean requestFocusInWindow() {
+        if (activeRenderer != null) {
+            return activeRenderer.getCanvas().requestFocusInWindow();
+        }
+        return super.requestFocusInWindow();
+    }
+    
+    /**
+     * Draws the game at logical resolution.
+     * 
+     * @param g The Graphics object to draw with
+     */
+    private void renderFrame(Graphics g) {
+        if (game == null) {
+            return;
         }
         
-        // Draw the score
-        drawScore(g);
+        // Draw the maze with the heatmap shown, the actors and the score
+        Heatmap heatmap = aggregateHeatmap != null ? aggregateHeatmap : sessionHeatmap;
+        gameRenderer.setHeatmap(heatmapLayer >= 0 ? heatmap : null, heatmapLayer);
+        gameRenderer.render(g, game, highScore.getHighestScore());
+        long time = phaseTimer.start();
         
         // Draw game over message if the game is over
-        if (gameOver) {
+        if (game.isGameOver()) {
             drawGameOver(g);
         }
         
         // Draw game won message if the game is won
-        if (gameWon) {
+        if (game.isGameWon()) {
             drawGameWon(g);
         }
         
@@ -288,34 +605,69 @@ public class GamePanel extends JPanel implements ActionListener {
         if (paused) {
             drawPauseScreen(g);
         }
+        
+        // Draw the debug overlay if enabled
+        if (showDebugOverlay) {
+            drawDebugOverlay(g);
+        }
+        
+        // Name the heatmap layer shown
+        if (heatmapLayer >= 0) {
+            g.setColor(Color.WHITE);
+            heatmapLabels[heatmapLayer].setValue(heatmap.getGames());
+            heatmapLabels[heatmapLayer].draw(g, 10, PANEL_HEIGHT - 40);
+        }
+        phaseTimer.lap(PhaseTimer.DRAW_OVERLAYS, time);
+        
+        // Draw the performance HUD last, so that it does not time itself
+        if (performanceHud.isVisible()) {
+            performanceHud.draw(g, 10, 140);
+        }
     }
     
     /**
-     * Draws the score and game information on the screen.
+     * Draws the debug overlay with frame times and the input-to-photon latency histogram.
      * 
      * @param g The Graphics object to draw with
      */
-    private void drawScore(Graphics g) {
+    private void drawDebugOverlay(Graphics g) {
+        int x = 10;
+        int y = 10;
+        g.setColor(DEBUG_BACKGROUND);
+        g.fillRect(x, y, 220, 120);
+        
         g.setColor(Color.WHITE);
-        g.setFont(new Font("Arial", Font.BOLD, 16));
-        g.drawString("Score: " + score, 10, PANEL_HEIGHT - 20);
-        g.drawString("High Score: " + highScore.getHighestScore(), PANEL_WIDTH - 150, PANEL_HEIGHT - 20);
+        FRAME_TIME_LABEL.draw(g, x + 5, y + 100);
+        frameP50Text.setValue(frameTimes.getPercentile(50) / 1000);
+        frameP50Text.draw(g, x + 5, y + 115);
+        frameP99Text.setValue(frameTimes.getPercentile(99) / 1000);
+        frameP99Text.draw(g, x + 75, y + 115);
+        frameMaxText.setValue(frameTimes.getMax() / 1000);
+        frameMaxText.draw(g, x + 145, y + 115);
         
-        // Draw difficulty level
-        String difficultyText = "";
-        switch (difficulty) {
-            case TitleScreen.DIFFICULTY_EASY:
-                difficultyText = "Easy";
-                break;
-            case TitleScreen.DIFFICULTY_HARD:
-                difficultyText = "Hard";
-                break;
-            case TitleScreen.DIFFICULTY_MEDIUM:
-            default:
-                difficultyText = "Medium";
-                break;
+        g.setColor(Color.WHITE);
+        latencyCountText.setValue(inputLatency.getCount());
+        latencyCountText.draw(g, x + 5, y + 15);
+        latencyP50Text.setValue(inputLatency.getPercentile(50) / 1000);
+        latencyP50Text.draw(g, x + 5, y + 30);
+        latencyP99Text.setValue(inputLatency.getPercentile(99) / 1000);
+        latencyP99Text.draw(g, x + 75, y + 30);
+        latencyMaxText.setValue(inputLatency.getMax() / 1000);
+        latencyMaxText.draw(g, x + 145, y + 30);
+        
+        // Draw one bar per bucket between 1 ms and 256 ms
+        int first = inputLatency.getBucketIndex(1000000L);
+        int last = inputLatency.getBucketIndex(256000000L);
+        long maxCount = 1;
+        for (int i = first; i <= last; i++) {
+            maxCount = Math.max(maxCount, inputLatency.getBucketCount(i));
+        }
+        g.setColor(Color.GREEN);
+        int barWidth = Math.max(1, 210 / (last - first + 1));
+        for (int i = first; i <= last; i++) {
+            int barHeight = (int) (inputLatency.getBucketCount(i) * 45 / maxCount);
+            g.fillRect(x + 5 + (i - first) * barWidth, y + 85 - barHeight, barWidth, barHeight);
         }
-        g.drawString("Difficulty: " + difficultyText, PANEL_WIDTH / 2 - 50, PANEL_HEIGHT - 20);
     }
     
     /**
@@ -328,15 +680,13 @@ public class GamePanel extends JPanel implements ActionListener {
         g.setColor(Color.BLUE);
         g.fillRect(restartButton.x, restartButton.y, restartButton.width, restartButton.height);
         g.setColor(Color.WHITE);
-        g.setFont(new Font("Arial", Font.BOLD, 16));
-        g.drawString("RESTART", restartButton.x + 20, restartButton.y + 25);
+        RESTART_LABEL.draw(g, restartButton.x + 20, restartButton.y + 25);
         
         // Draw title screen button
         g.setColor(Color.GREEN);
         g.fillRect(titleScreenButton.x, titleScreenButton.y, titleScreenButton.width, titleScreenButton.height);
         g.setColor(Color.BLACK);
-        g.setFont(new Font("Arial", Font.BOLD, 16));
-        g.drawString("MENU", titleScreenButton.x + 35, titleScreenButton.y + 25);
+        MENU_LABEL.draw(g, titleScreenButton.x + 35, titleScreenButton.y + 25);
     }
     
     /**
@@ -346,20 +696,18 @@ public class GamePanel extends JPanel implements ActionListener {
      */
     private void drawPauseScreen(Graphics g) {
         // Draw semi-transparent overlay
-        g.setColor(new Color(0, 0, 0, 150));
+        g.setColor(PAUSE_OVERLAY);
         g.fillRect(0, 0, PANEL_WIDTH, PANEL_HEIGHT);
         
         // Draw pause message
         g.setColor(Color.WHITE);
-        g.setFont(new Font("Arial", Font.BOLD, 40));
-        g.drawString("PAUSED", PANEL_WIDTH / 2 - 80, PANEL_HEIGHT / 2 - 50);
+        PAUSED_LABEL.draw(g, PANEL_WIDTH / 2 - 80, PANEL_HEIGHT / 2 - 50);
         
         // Draw resume button
         g.setColor(Color.ORANGE);
         g.fillRect(resumeButton.x, resumeButton.y, resumeButton.width, resumeButton.height);
         g.setColor(Color.BLACK);
-        g.setFont(new Font("Arial", Font.BOLD, 16));
-        g.drawString("RESUME", resumeButton.x + 25, resumeButton.y + 25);
+        RESUME_LABEL.draw(g, resumeButton.x + 25, resumeButton.y + 25);
     }
     
     /**
@@ -369,27 +717,31 @@ public class GamePanel extends JPanel implements ActionListener {
      */
     private void drawHighScores(Graphics g) {
         g.setColor(Color.YELLOW);
-        g.setFont(new Font("Arial", Font.BOLD, 20));
-        g.drawString("HIGH SCORES", PANEL_WIDTH / 2 - 70, PANEL_HEIGHT / 2 + 120);
+        HIGH_SCORES_LABEL.draw(g, PANEL_WIDTH / 2 - 70, PANEL_HEIGHT / 2 + 120);
         
-        g.setFont(new Font("Arial", Font.PLAIN, 16));
-        List<Integer> scores = highScore.getHighScores();
-        for (int i = 0; i < scores.size(); i++) {
-            g.drawString((i + 1) + ". " + scores.get(i), PANEL_WIDTH / 2 - 50, PANEL_HEIGHT / 2 + 150 + i * 20);
+        for (int i = 0; i < highScoreTexts.length; i++) {
+            highScoreTexts[i].draw(g, PANEL_WIDTH / 2 - 50, PANEL_HEIGHT / 2 + 150 + i * 20);
+        }
+    }
+    
+    /**
+     * Lays out the high score list again. Called only when the list may have changed.
+     */
+    private void updateHighScoreTexts() {
+        highScoreTexts = new HudText[highScore.getScoreCount()];
+        for (int i = 0; i < highScoreTexts.length; i++) {
+            highScoreTexts[i] = new HudText(HIGH_SCORE_FONT, (i + 1) + ". ", highScore.getScore(i));
         }
     }
     
     /**
-     * Restarts the game.
+     * Restarts the game. The game loop keeps running if it is, and the game is started
+     * over in place.
      */
     public void restartGame() {
-        // Stop the current timer
-        if (timer != null) {
-            timer.stop();
+        synchronized (stateLock) {
+            initGame();
         }
-        
-        // Initialize the game again
-        initGame();
     }
     
     /**
@@ -414,10 +766,8 @@ public class GamePanel extends JPanel implements ActionListener {
      * Returns to the title screen.
      */
     private void returnToTitleScreen() {
-        // Stop the current timer
-        if (timer != null) {
-            timer.stop();
-        }
+        // Stop the current game loop
+        stopLoop();
         
         // Get the parent frame and return to the title screen
         if (getParent() != null) {
@@ -430,12 +780,12 @@ public class GamePanel extends JPanel implements ActionListener {
             if (parent instanceof GameFrame) {
                 GameFrame frame = (GameFrame) parent;
                 frame.returnToTitleScreen();
-                System.out.println("Returning to title screen");
+                EventLog.log(EventLog.DEBUG, "Returning to title screen");
             } else {
-                System.err.println("Could not find GameFrame parent");
+                EventLog.log(EventLog.WARN, "Could not find GameFrame parent");
             }
         } else {
-            System.err.println("GamePanel has no parent");
+            EventLog.log(EventLog.WARN, "GamePanel has no parent");
         }
     }
     
@@ -446,8 +796,7 @@ public class GamePanel extends JPanel implements ActionListener {
      */
     private void drawGameOver(Graphics g) {
         g.setColor(Color.RED);
-        g.setFont(new Font("Arial", Font.BOLD, 40));
-        g.drawString("GAME OVER", PANEL_WIDTH / 2 - 120, PANEL_HEIGHT / 2);
+        GAME_OVER_LABEL.draw(g, PANEL_WIDTH / 2 - 120, PANEL_HEIGHT / 2);
         
         // Draw buttons
         drawButtons(g);
@@ -457,17 +806,14 @@ public class GamePanel extends JPanel implements ActionListener {
     }
     
     /**
-     * Draws the game won message on the screen.
+     * Draws the game won message on the screen. It shows between levels, while the
+     * campaign goes on, so there are no buttons to end it.
      * 
      * @param g The Graphics object to draw with
      */
     private void drawGameWon(Graphics g) {
         g.setColor(Color.GREEN);
-        g.setFont(new Font("Arial", Font.BOLD, 40));
-        g.drawString("YOU WIN!", PANEL_WIDTH / 2 - 100, PANEL_HEIGHT / 2);
-        
-        // Draw buttons
-        drawButtons(g);
+        YOU_WIN_LABEL.draw(g, PANEL_WIDTH / 2 - 100, PANEL_HEIGHT / 2);
         
         // Draw high scores
         drawHighScores(g);
@@ -481,39 +827,80 @@ public class GamePanel extends JPanel implements ActionListener {
         public void keyPressed(KeyEvent e) {
             int key = e.getKeyCode();
             
-            // Handle pause key (P)
-            if (key == KeyEvent.VK_P) {
-                togglePause();
-                return;
-            }
-            
-            // If the game is paused, only allow unpausing
-            if (paused) {
-                return;
-            }
-            
-            // Handle other keys
+            // Movement keys go through the lock-free input queue
             switch (key) {
                 case KeyEvent.VK_UP:
-                    pacman.setNextDirection(Direction.UP);
-                    break;
+                    offerInput(Direction.UP);
+                    return;
                 case KeyEvent.VK_DOWN:
-                    pacman.setNextDirection(Direction.DOWN);
-                    break;
+                    offerInput(Direction.DOWN);
+                    return;
                 case KeyEvent.VK_LEFT:
-                    pacman.setNextDirection(Direction.LEFT);
-                    break;
+                    offerInput(Direction.LEFT);
+                    return;
                 case KeyEvent.VK_RIGHT:
-                    pacman.setNextDirection(Direction.RIGHT);
+                    offerInput(Direction.RIGHT);
+                    return;
+                default:
                     break;
-                case KeyEvent.VK_ESCAPE:
-                    System.exit(0);
-                    break;
-                case KeyEvent.VK_R:
-                    if (gameOver || gameWon) {
-                        restartGame();
+            }
+            
+            synchronized (stateLock) {
+                // Handle pause key (P)
+                if (key == KeyEvent.VK_P) {
+                    togglePause();
+                    return;
+                }
+                
+                // Handle debug overlay key (F3)
+                if (key == KeyEvent.VK_F3) {
+                    showDebugOverlay = !showDebugOverlay;
+                    repaint();
+                    return;
+                }
+                
+                // Handle performance HUD key (F4)
+                if (key == KeyEvent.VK_F4) {
+                    performanceHud.setVisible(!performanceHud.isVisible());
+                    repaint();
+                    return;
+                }
+                
+                // Cycle through the heatmap layers (F6), loading earlier games the first time
+                if (key == KeyEvent.VK_F6) {
+                    heatmapLayer = heatmapLayer + 1 < Heatmap.LAYER_COUNT ? heatmapLayer + 1 : -1;
+                    if (!aggregateRequested) {
+                        aggregateRequested = true;
+                        loadAggregateHeatmap();
                     }
-                    break;
+                    repaint();
+                    return;
+                }
+                
+                // If the game is paused, only allow unpausing
+                if (paused) {
+                    return;
+                }
+                
+                // Handle other keys
+                switch (key) {
+                    case KeyEvent.VK_ESCAPE:
+                        System.exit(0);
+                        break;
+                    case KeyEvent.VK_R:
+                        // Only once the campaign is over; a won level goes on to the next
+                        if (game.isGameOver()) {
+                            restartGame();
+                        }
+                        break;
+                }
+            }
+        }
+        
+        private void offerInput(Direction direction) {
+            // If the game is paused, only allow unpausing
+            if (!paused) {
+                inputQueue.offer(direction, System.nanoTime());
             }
         }
     }
@@ -542,28 +929,41 @@ public class GamePanel extends JPanel implements ActionListener {
         }
         
         private void handleMouseEvent(MouseEvent e) {
-            System.out.println("Mouse event at: " + e.getPoint());
-            
+            synchronized (stateLock) {
+                handleClick(frameScaler.toLogical(e.getX(), e.getY()));
+            }
+        }
+        
+        private void handleClick(Point point) {
+            // Buttons are laid out in the logical frame, so the point has already been unscaled
             if (paused) {
                 // Check if resume button was clicked
-                if (resumeButton.contains(e.getPoint())) {
-                    System.out.println("Resume button clicked");
+                if (resumeButton.contains(point)) {
+                    logClick(point, "resume");
                     togglePause();
+                } else {
+                    logClick(point, "none");
                 }
-            } else if (gameOver || gameWon) {
+            } else if (game.isGameOver()) {
                 // Check if restart button was clicked
-                if (restartButton.contains(e.getPoint())) {
-                    System.out.println("Restart button clicked");
+                if (restartButton.contains(point)) {
+                    logClick(point, "restart");
                     restartGame();
                 }
                 // Check if title screen button was clicked
-                else if (titleScreenButton.contains(e.getPoint())) {
-                    System.out.println("Title screen button clicked");
+                else if (titleScreenButton.contains(point)) {
+                    logClick(point, "title");
                     returnToTitleScreen();
                 } else {
-                    System.out.println("Click not on any button. Restart button: " + restartButton + ", Title button: " + titleScreenButton);
+                    logClick(point, "none");
                 }
+            } else {
+                logClick(point, "none");
             }
         }
+        
+        private void logClick(Point point, String target) {
+            EventLog.log(EventLog.DEBUG, EventLog.CLICK, point.x, point.y, target);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,169 @@
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * Draws a game at logical resolution: the maze, the actors and the score line.
+ * Screen overlays such as buttons and pause messages belong to the panel that shows the game.
+ * A renderer keeps its own HUD text layouts, so each render thread needs its own instance.
+ */
+public class GameRenderer {
+    public static final int WIDTH = Game.MAZE_WIDTH * Game.TILE_SIZE;
+    public static final int HEIGHT = Game.MAZE_HEIGHT * Game.TILE_SIZE + 50; // Extra space for score
+    
+    // Fonts and static labels, created once instead of on every frame
+    private static final Font HUD_FONT = new Font("Arial", Font.BOLD, 16);
+    private static final HudText EASY_LABEL = new HudText(HUD_FONT, "Difficulty: Easy");
+    private static final HudText MEDIUM_LABEL = new HudText(HUD_FONT, "Difficulty: Medium");
+    private static final HudText HARD_LABEL = new HudText(HUD_FONT, "Difficulty: Hard");
+    
+    private SpriteAtlas atlas;
+    private PhaseTimer phaseTimer = PhaseTimer.DISABLED;
+    
+    // Walls rendered once per level, or null to draw them tile by tile
+    private Image wallLayer;
+    
+    // Heatmap layer drawn over the maze, if any
+    private Heatmap heatmap;
+    private int heatmapLayer;
+    
+    // HUD fields that are laid out again only when their value changes
+    private HudText scoreText;
+    private HudText highestScoreText;
+    private HudText levelText;
+    
+    /**
+     * Creates a new GameRenderer.
+     * 
+     * @param atlas The sprite atlas to draw actors and pellets from
+     */
+    public GameRenderer(SpriteAtlas atlas) {
+        this.atlas = atlas;
+        this.scoreText = new HudText(HUD_FONT, "Score: ", 0);
+        this.highestScoreText = new HudText(HUD_FONT, "High Score: ", 0);
+        this.levelText = new HudText(HUD_FONT, "Level ", 0);
+    }
+    
+    /**
+     * Draws the game. The caller clears the frame first.
+     * 
+     * @param g The Graphics object to draw with
+     * @param game The game to draw
+     * @param highestScore The high score shown next to the score
+     */
+    public void render(Graphics g, Game game, int highestScore) {
+        long time = phaseTimer.start();
+        
+        // Draw the maze, copying the walls from the layer if there is one
+        if (wallLayer != null) {
+            g.drawImage(wallLayer, 0, 0, null);
+            game.getMaze().drawPellets(g, atlas);
+        } else {
+            game.getMaze().draw(g, atlas);
+        }
+        if (heatmap != null) {
+            heatmap.draw(g, heatmapLayer, Game.TILE_SIZE);
+        }
+        time = phaseTimer.lap(PhaseTimer.DRAW_MAZE, time);
+        
+        // Draw Pac-Man
+        game.getPacMan().draw(g, atlas);
+        time = phaseTimer.lap(PhaseTimer.DRAW_PACMAN, time);
+        
+        // Draw ghosts (indexed loop so painting does not allocate an iterator)
+        List<Ghost> ghosts = game.getGhosts();
+        for (int i = 0; i < ghosts.size(); i++) {
+            ghosts.get(i).draw(g, atlas);
+        }
+        time = phaseTimer.lap(PhaseTimer.DRAW_GHOSTS, time);
+        
+        // Draw the score
+        drawScore(g, game, highestScore);
+        phaseTimer.lap(PhaseTimer.DRAW_SCORE, time);
+    }
+    
+    /**
+     * Sets the timer for the layers of each frame.
+     * 
+     * @param phaseTimer The timer, or PhaseTimer.DISABLED
+     */
+    public void setPhaseTimer(PhaseTimer phaseTimer) {
+        this.phaseTimer = phaseTimer;
+    }
+    
+    /**
+     * Sets the walls of the level being drawn, rendered in advance.
+     * 
+     * @param wallLayer The walls on a black background, from PreparedLevel, or null to
+     *        draw the walls of each frame's maze tile by tile
+     */
+    public void setWallLayer(Image wallLayer) {
+        this.wallLayer = wallLayer;
+    }
+    
+    /**
+     * Sets the heatmap layer drawn over the maze.
+     * 
+     * @param heatmap The heatmap, or null to draw none
+     * @param layer Heatmap.VISITS, Heatmap.DEATHS or Heatmap.PELLET_TIME
+     */
+    public void setHeatmap(Heatmap heatmap, int layer) {
+        this.heatmap = heatmap;
+        this.heatmapLayer = layer;
+    }
+    
+    /**
+     * Clears an image and draws the game into it, for headless rendering.
+     * 
+     * @param image The image to draw into, at least WIDTH x HEIGHT
+     * @param game The game to draw
+     * @param highestScore The high score shown next to the score
+     */
+    public void render(BufferedImage image, Game game, int highestScore) {
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, WIDTH, HEIGHT);
+        render(g, game, highestScore);
+        g.dispose();
+    }
+    
+    /**
+     * Draws the score and game information on the screen.
+     * 
+     * @param g The Graphics object to draw with
+     * @param game The game to draw
+     * @param highestScore The high score
+     */
+    private void drawScore(Graphics g, Game game, int highestScore) {
+        g.setColor(Color.WHITE);
+        scoreText.setValue(game.getScore());
+        scoreText.draw(g, 10, HEIGHT - 20);
+        highestScoreText.setValue(highestScore);
+        highestScoreText.draw(g, WIDTH - 150, HEIGHT - 20);
+        
+        // Draw the campaign level, or the difficulty level in a classic game
+        if (game.getLevel().getNumber() > 0) {
+            levelText.setValue(game.getLevel().getNumber());
+            levelText.draw(g, WIDTH / 2 - 30, HEIGHT - 20);
+            return;
+        }
+        HudText difficultyText;
+        switch (game.getDifficulty()) {
+            case TitleScreen.DIFFICULTY_EASY:
+                difficultyText = EASY_LABEL;
+                break;
+            case TitleScreen.DIFFICULTY_HARD:
+                difficultyText = HARD_LABEL;
+                break;
+            case TitleScreen.DIFFICULTY_MEDIUM:
+            default:
+                difficultyText = MEDIUM_LABEL;
+                break;
+        }
+        difficultyText.draw(g, WIDTH / 2 - 50, HEIGHT - 20);
+    }
+}
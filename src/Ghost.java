@@ -15,16 +15,40 @@ public class Ghost {
     public static final int TYPE_RANDOM = 0;
     public static final int TYPE_CHASER = 1;
     
+    // Speed multiplier for the eyes on their way back to the ghost house
+    private static final int EYES_SPEED = 2;
+    
+    // Animation timing in game ticks
+    private static final int ANIMATION_FRAME_TICKS = 8;
+    private static final int FLASH_TIME = 120;
+    private static final int FLASH_INTERVAL = 15;
+    
     private Position position;
     private Position startPosition;
+    private int fixedX;
+    private int fixedY;
     private Direction direction;
-    private double speed;
+    private int speed;
+    private int speedAccumulator;
     private int state;
     private int type;
     private Color color;
     private Random random;
     private int frightenedTimer;
+    private int animationTimer;
     private int frightenedDuration = 300; // Default duration in game ticks (about 5 seconds at 60 FPS)
+    private boolean inHouse;
+    private int respawnTimer;
+    private int respawnDelay = 180; // Default time spent in the ghost house in game ticks (3 seconds at 60 FPS)
+    
+    // Smart ghosts mode: the distance field to this tick's target from GhostCoordinator,
+    // or null to fall back to heading towards Pac-Man
+    private boolean coordinated;
+    private int[] targetField;
+    
+    // Scatter waves: while scattering, a hunting ghost heads for its corner instead of Pac-Man
+    private boolean scatter;
+    private Position scatterTarget;
     
     /**
      * Creates a new Ghost at the specified position.
@@ -34,10 +58,13 @@ public class Ghost {
      * @param color The color of the ghost
      */
     public Ghost(Position position, int type, Color color) {
-        this.position = position;
+        this.position = new Position(position);
         this.startPosition = new Position(position);
+        this.fixedX = SubTile.fromTile(position.getX());
+        this.fixedY = SubTile.fromTile(position.getY());
         this.direction = Direction.UP; // Start moving up
-        this.speed = 0.2;
+        this.speed = SubTile.ONE << SubTile.SPEED_SHIFT; // One tile per tick until setSpeed is called
+        this.speedAccumulator = 0;
         this.state = STATE_NORMAL;
         this.type = type;
         this.color = color;
@@ -45,6 +72,35 @@ public class Ghost {
         this.frightenedTimer = 0;
     }
     
+    /**
+     * Creates a copy of another Ghost.
+     * The copy gets its own random generator, so it is meant for drawing and
+     * inspection rather than for continuing the same simulation.
+     * 
+     * @param ghost The Ghost to copy
+     */
+    public Ghost(Ghost ghost) {
+        this.position = new Position(ghost.position);
+        this.startPosition = ghost.startPosition;
+        this.fixedX = ghost.fixedX;
+        this.fixedY = ghost.fixedY;
+        this.direction = ghost.direction;
+        this.speed = ghost.speed;
+        this.speedAccumulator = ghost.speedAccumulator;
+        this.state = ghost.state;
+        this.type = ghost.type;
+        this.color = ghost.color;
+        this.random = new Random();
+        this.frightenedTimer = ghost.frightenedTimer;
+        this.animationTimer = ghost.animationTimer;
+        this.frightenedDuration = ghost.frightenedDuration;
+        this.inHouse = ghost.inHouse;
+        this.respawnTimer = ghost.respawnTimer;
+        this.respawnDelay = ghost.respawnDelay;
+        this.scatter = ghost.scatter;
+        this.scatterTarget = ghost.scatterTarget;
+    }
+    
     /**
      * Gets the current position of the ghost.
      * 
@@ -54,6 +110,24 @@ public class Ghost {
         return position;
     }
     
+    /**
+     * Gets the x-coordinate of the ghost in sub-tile units.
+     * 
+     * @return The sub-tile x-coordinate
+     */
+    public int getFixedX() {
+        return fixedX;
+    }
+    
+    /**
+     * Gets the y-coordinate of the ghost in sub-tile units.
+     * 
+     * @return The sub-tile y-coordinate
+     */
+    public int getFixedY() {
+        return fixedY;
+    }
+    
     /**
      * Gets the current state of the ghost.
      * 
@@ -93,21 +167,31 @@ public class Ghost {
         }
     }
     
+    /**
+     * Seeds the random generator used for the ghost's choices at intersections,
+     * so that a game can be played again with the same moves.
+     * 
+     * @param seed The seed
+     */
+    public void setRandomSeed(long seed) {
+        random.setSeed(seed);
+    }
+    
     /**
      * Sets the speed of the ghost.
      * 
-     * @param speed The speed value (0.0 to 1.0)
+     * @param speed The speed in 1/256 sub-tile units per tick
      */
-    public void setSpeed(double speed) {
+    public void setSpeed(int speed) {
         this.speed = speed;
     }
     
     /**
      * Gets the current speed of the ghost.
      * 
-     * @return The current speed
+     * @return The speed in 1/256 sub-tile units per tick
      */
-    public double getSpeed() {
+    public int getSpeed() {
         return speed;
     }
     
@@ -120,20 +204,112 @@ public class Ghost {
         this.frightenedDuration = duration;
     }
     
+    /**
+     * Sets how long an eaten ghost waits inside the ghost house before it respawns.
+     * 
+     * @param delay The delay in game ticks
+     */
+    public void setRespawnDelay(int delay) {
+        this.respawnDelay = delay;
+    }
+    
+    /**
+     * Lets a GhostCoordinator steer the ghost while it hunts, in smart ghosts mode.
+     * 
+     * @param coordinated True to follow the coordinator's target fields
+     */
+    public void setCoordinated(boolean coordinated) {
+        this.coordinated = coordinated;
+        this.targetField = null;
+    }
+    
+    /**
+     * Sets the distance field the ghost follows until the next plan.
+     * 
+     * @param targetField Steps to the target by tile index y * width + x, -1 where
+     *        unreachable, or null to head towards Pac-Man
+     */
+    public void setTargetField(int[] targetField) {
+        this.targetField = targetField;
+    }
+    
+    /**
+     * Sets the tile the ghost heads for while scattering.
+     * 
+     * @param scatterTarget The tile, usually a corner of the maze
+     */
+    public void setScatterTarget(Position scatterTarget) {
+        this.scatterTarget = scatterTarget;
+    }
+    
+    /**
+     * Checks whether the ghost is in a scatter wave.
+     * 
+     * @return True if the ghost heads for its scatter target while hunting
+     */
+    public boolean isScattering() {
+        return scatter;
+    }
+    
+    /**
+     * Sets whether the ghost scatters, for the first wave of a level.
+     * 
+     * @param scatter True to head for the scatter target, false to hunt Pac-Man
+     */
+    public void setScatter(boolean scatter) {
+        this.scatter = scatter;
+    }
+    
+    /**
+     * Switches between scattering and hunting when a wave ends. A hunting ghost turns
+     * around, which tells the player the wave has changed.
+     * 
+     * @param scatter True to head for the scatter target, false to hunt Pac-Man
+     */
+    public void startWave(boolean scatter) {
+        if (scatter != this.scatter && state == STATE_NORMAL) {
+            direction = direction.getOpposite();
+        }
+        this.scatter = scatter;
+    }
+    
     /**
      * Sets the ghost to the eaten state.
+     * The ghost turns into eyes that travel back to the ghost house.
      */
     public void eat() {
         state = STATE_EATEN;
+        inHouse = false;
+        respawnTimer = 0;
     }
     
     /**
      * Resets the ghost to its starting position and normal state.
      */
     public void reset() {
-        position = new Position(startPosition);
+        moveTo(startPosition);
+        speedAccumulator = 0;
         state = STATE_NORMAL;
         direction = Direction.UP;
+        inHouse = false;
+        respawnTimer = 0;
+    }
+    
+    /**
+     * Puts the ghost back on a start tile as newly created, for a game started over in
+     * place. The speed, durations, random generator and smart ghosts mode are kept for
+     * the game to set again.
+     * 
+     * @param start The starting position
+     */
+    public void restart(Position start) {
+        startPosition.setX(start.getX());
+        startPosition.setY(start.getY());
+        reset();
+        frightenedTimer = 0;
+        animationTimer = 0;
+        targetField = null;
+        scatter = false;
     }
     
     /**
@@ -143,6 +319,8 @@ public class Ghost {
      * @param pacman The player character
      */
     public void update(Maze maze, PacMan pacman) {
+        animationTimer++;
+        
         // Update frightened timer
         if (state == STATE_FRIGHTENED) {
             frightenedTimer--;
@@ -151,25 +329,135 @@ public class Ghost {
             }
         }
         
-        // If eaten, move back to the starting position
+        // If eaten, move back to the ghost house as eyes
         if (state == STATE_EATEN) {
-            // Simple implementation: just reset the ghost
-            reset();
+            returnHome(maze);
             return;
         }
         
-        // Determine the next direction based on the ghost type
+        // Accumulate fractional speed and move one sub-tile unit per whole step
+        speedAccumulator += speed;
+        int steps = speedAccumulator >> SubTile.SPEED_SHIFT;
+        speedAccumulator &= SubTile.SPEED_MASK;
+        for (int i = 0; i < steps; i++) {
+            // Only choose a new direction when standing on a tile
+            if (isAligned()) {
+                Direction nextDirection = FlightEvents.ENABLED
+                        ? recordNextDirection(maze, pacman) : determineNextDirection(maze, pacman);
+                if (nextDirection == Direction.NONE) {
+                    break;
+                }
+                direction = nextDirection;
+            }
+            step();
+        }
+    }
+    
+    /**
+     * Determines the next direction and records a flight recorder event if that took
+     * longer than the event's threshold.
+     * 
+     * @param maze The maze
+     * @param pacman The player character
+     * @return The next direction
+     */
+    private Direction recordNextDirection(Maze maze, PacMan pacman) {
+        FlightEvents.GhostDecision event = new FlightEvents.GhostDecision();
+        event.begin();
         Direction nextDirection = determineNextDirection(maze, pacman);
+        event.end();
+        if (event.shouldCommit()) {
+            event.ghostType = type;
+            event.x = position.getX();
+            event.y = position.getY();
+            event.direction = nextDirection.name();
+            event.commit();
+        }
+        return nextDirection;
+    }
+    
+    /**
+     * Checks if the ghost is standing exactly on a tile.
+     * 
+     * @return True if the ghost is tile-aligned, false otherwise
+     */
+    private boolean isAligned() {
+        return SubTile.isAligned(fixedX) && SubTile.isAligned(fixedY);
+    }
+    
+    /**
+     * Moves the ghost one sub-tile unit in its current direction.
+     */
+    private void step() {
+        fixedX += direction.getDx();
+        fixedY += direction.getDy();
+        position.setX(SubTile.toTile(fixedX));
+        position.setY(SubTile.toTile(fixedY));
+    }
+    
+    /**
+     * Places the ghost exactly on the specified tile.
+     * 
+     * @param tile The tile to move to
+     */
+    private void moveTo(Position tile) {
+        position.setX(tile.getX());
+        position.setY(tile.getY());
+        fixedX = SubTile.fromTile(tile.getX());
+        fixedY = SubTile.fromTile(tile.getY());
+    }
+    
+    /**
+     * Moves the eyes of an eaten ghost along the precomputed shortest path to the
+     * ghost house, then waits inside the house until the respawn delay has passed.
+     * 
+     * @param maze The maze
+     */
+    private void returnHome(Maze maze) {
+        if (inHouse) {
+            respawnTimer--;
+            if (respawnTimer <= 0) {
+                reset();
+            }
+            return;
+        }
         
-        // Move in the determined direction
-        if (nextDirection != Direction.NONE) {
-            direction = nextDirection;
-            Position nextPos = new Position(position);
-            nextPos.move(direction);
-            position = nextPos;
+        speedAccumulator += speed * EYES_SPEED;
+        int steps = speedAccumulator >> SubTile.SPEED_SHIFT;
+        speedAccumulator &= SubTile.SPEED_MASK;
+        for (int i = 0; i < steps; i++) {
+            if (isAligned()) {
+                Direction homeDirection = maze.getHomeDirection(position);
+                if (homeDirection == Direction.NONE) {
+                    // Either inside the house or somewhere the house cannot be reached from
+                    if (!maze.isGhostHouse(position)) {
+                        reset();
+                        return;
+                    }
+                    enterHouse();
+                    return;
+                }
+                direction = homeDirection;
+            }
+            step();
         }
     }
     
+    /**
+     * Moves the eyes to this ghost's own start tile and starts the respawn delay.
+     */
+    private void enterHouse() {
+        moveTo(startPosition);
+        speedAccumulator = 0;
+        direction = Direction.UP;
+        if (respawnDelay <= 0) {
+            reset();
+            return;
+        }
+        inHouse = true;
+        respawnTimer = respawnDelay;
+    }
+    
     /**
      * Determines the next direction for the ghost to move in.
      * 
@@ -201,6 +489,12 @@ public class Ghost {
             if (state == STATE_FRIGHTENED) {
                 // When frightened, move randomly
                 return possibleDirections[random.nextInt(possibleDirections.length)];
+            } else if (scatter && scatterTarget != null && state == STATE_NORMAL) {
+                // Scatter wave: head for this ghost's corner
+                return getDirectionTowards(possibleDirections, scatterTarget);
+            } else if (coordinated && state == STATE_NORMAL) {
+                // Smart ghost: follow the plan, or the simple chase when there is none
+                return getDirectionAlongField(maze, possibleDirections, pacman);
             } else if (type == TYPE_CHASER && state == STATE_NORMAL) {
                 // Chaser ghost: try to move towards Pac-Man
                 return getDirectionTowardsPacMan(possibleDirections, pacman);
@@ -282,12 +576,23 @@ public class Ghost {
      * @return The direction that moves the ghost towards Pac-Man
      */
     private Direction getDirectionTowardsPacMan(Direction[] possibleDirections, PacMan pacman) {
+        return getDirectionTowards(possibleDirections, pacman.getPosition());
+    }
+    
+    /**
+     * Gets the direction that moves the ghost towards a tile, as the crow flies.
+     * 
+     * @param possibleDirections The possible directions the ghost can move in
+     * @param target The tile to move towards
+     * @return The direction whose next tile is closest to the target
+     */
+    private Direction getDirectionTowards(Direction[] possibleDirections, Position target) {
         // If there are no possible directions, return NONE
         if (possibleDirections.length == 0) {
             return Direction.NONE;
         }
         
-        // Find the direction that minimizes the distance to Pac-Man
+        // Find the direction that minimizes the distance to the target
         Direction bestDirection = possibleDirections[0];
         double minDistance = Double.MAX_VALUE;
         
@@ -295,8 +600,8 @@ public class Ghost {
             Position nextPos = new Position(position);
             nextPos.move(dir);
             
-            // Calculate the distance to Pac-Man
-            double distance = calculateDistance(nextPos, pacman.getPosition());
+            // Calculate the distance to the target
+            double distance = calculateDistance(nextPos, target);
             
             // Update the best direction if this one is better
             if (distance < minDistance) {
@@ -308,6 +613,39 @@ public class Ghost {
         return bestDirection;
     }
     
+    /**
+     * Gets the direction that leads one step down the target field.
+     * 
+     * @param maze The maze
+     * @param possibleDirections The possible directions the ghost can move in
+     * @param pacman The player character
+     * @return The direction to the neighbour closest to the target, or the direction
+     *         towards Pac-Man if there is no plan or no neighbour reaches the target
+     */
+    private Direction getDirectionAlongField(Maze maze, Direction[] possibleDirections, PacMan pacman) {
+        Direction bestDirection = Direction.NONE;
+        int minDistance = Integer.MAX_VALUE;
+        if (targetField != null) {
+            int width = maze.getWidth();
+            for (Direction dir : possibleDirections) {
+                int x = position.getX() + dir.getDx();
+                int y = position.getY() + dir.getDy();
+                if (x < 0 || x >= width || y < 0 || y >= maze.getHeight()) {
+                    continue;
+                }
+                int distance = targetField[y * width + x];
+                if (distance >= 0 && distance < minDistance) {
+                    minDistance = distance;
+                    bestDirection = dir;
+                }
+            }
+        }
+        if (bestDirection == Direction.NONE) {
+            return getDirectionTowardsPacMan(possibleDirections, pacman);
+        }
+        return bestDirection;
+    }
+    
     /**
      * Calculates the Euclidean distance between two positions.
      * 
@@ -325,22 +663,22 @@ public class Ghost {
      * Draws the ghost on the screen.
      * 
      * @param g The Graphics object to draw with
-     * @param tileSize The size of a tile in pixels
+     * @param atlas The sprite atlas to draw from
      */
-    public void draw(Graphics g, int tileSize) {
-        if (state == STATE_FRIGHTENED) {
-            g.setColor(Color.BLUE);
-        } else if (state == STATE_EATEN) {
-            g.setColor(Color.WHITE);
+    public void draw(Graphics g, SpriteAtlas atlas) {
+        int tileSize = atlas.getTileSize();
+        int x = SubTile.toPixels(fixedX, tileSize);
+        int y = SubTile.toPixels(fixedY, tileSize);
+        int frame = (animationTimer / ANIMATION_FRAME_TICKS) % SpriteAtlas.GHOST_FRAMES;
+        
+        if (state == STATE_EATEN) {
+            atlas.drawEyes(g, x, y, direction);
+        } else if (state == STATE_FRIGHTENED) {
+            // Flash white while the power-up is running out
+            boolean flash = frightenedTimer < FLASH_TIME && (frightenedTimer / FLASH_INTERVAL) % 2 == 0;
+            atlas.drawFrightened(g, x, y, flash, frame);
         } else {
-            g.setColor(color);
+            atlas.drawGhost(g, x, y, color, direction, frame);
         }
-        
-        g.fillRect(
-            position.getX() * tileSize, 
-            position.getY() * tileSize, 
-            tileSize, 
-            tileSize
-        );
     }
 }
\ No newline at end of file
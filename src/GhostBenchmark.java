@@ -0,0 +1,87 @@
+/**
+ * Compares the classic ghosts with smart ghosts mode on autopiloted games: how often
+ * and how soon Pac-Man is caught, what a tick costs, and how many plans overran the
+ * budget set with -Dpacman.ghostBudgetMicros.
+ * 
+ * Usage: java GhostBenchmark [--games n] [--seed n] [--difficulty easy|medium|hard]
+ */
+public class GhostBenchmark {
+    private static final int MAX_TICKS = 36000; // Ten minutes of game time, for games the autopilot never ends
+    
+    /**
+     * Runs the benchmark from the command line.
+     * 
+     * @param args The command line arguments
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        
+        int games = 200;
+        long seed = 1;
+        int difficulty = TitleScreen.DIFFICULTY_MEDIUM;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--games":
+                    games = Math.max(1, Integer.parseInt(args[i + 1]));
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[i + 1]);
+                    break;
+                case "--difficulty":
+                    difficulty = "easy".equals(args[i + 1]) ? TitleScreen.DIFFICULTY_EASY
+                            : "hard".equals(args[i + 1]) ? TitleScreen.DIFFICULTY_HARD : TitleScreen.DIFFICULTY_MEDIUM;
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(1);
+            }
+        }
+        
+        // Warm up both modes before measuring
+        play(games / 4 + 1, seed + games, difficulty, false, false);
+        play(games / 4 + 1, seed + games, difficulty, true, false);
+        long overruns = Metrics.GHOST_PLAN_OVERRUNS.sum();
+        
+        System.out.printf("%d games from seed %d, plan budget %d us%n", games, seed, GhostCoordinator.BUDGET_NANOS / 1000);
+        play(games, seed, difficulty, false, true);
+        play(games, seed, difficulty, true, true);
+        System.out.printf("Plan overruns: %,d%n", Metrics.GHOST_PLAN_OVERRUNS.sum() - overruns);
+    }
+    
+    /**
+     * Plays autopiloted games and prints how they went.
+     * 
+     * @param games The number of games
+     * @param seed The seed of the first game; game i uses seed + i
+     * @param difficulty The difficulty level
+     * @param smartGhosts True to play in smart ghosts mode
+     * @param report True to print the results
+     */
+    private static void play(int games, long seed, int difficulty, boolean smartGhosts, boolean report) {
+        Histogram tickTimes = new Histogram();
+        int caught = 0;
+        long caughtTicks = 0;
+        for (int i = 0; i < games; i++) {
+            Game game = new Game(difficulty, seed + i);
+            game.setSmartGhosts(smartGhosts);
+            Autopilot autopilot = new Autopilot(seed + i);
+            while (!game.isGameOver() && !game.isGameWon() && game.getTicks() < MAX_TICKS) {
+                autopilot.steer(game);
+                long start = System.nanoTime();
+                game.tick();
+                tickTimes.record(System.nanoTime() - start);
+            }
+            if (game.isGameOver()) {
+                caught++;
+                caughtTicks += game.getTicks();
+            }
+        }
+        if (!report) {
+            return;
+        }
+        System.out.printf("%-7s caught in %3d%% of games after %5.1f s on average; tick p50 %.1f us, p99 %.1f us, max %.1f us%n",
+                smartGhosts ? "Smart" : "Classic", caught * 100 / games,
+                caught == 0 ? 0.0 : caughtTicks * Game.TICK_TIME / 1000.0 / caught,
+                tickTimes.getPercentile(50) / 1000.0, tickTimes.getPercentile(99) / 1000.0, tickTimes.getMax() / 1000.0);
+    }
+}
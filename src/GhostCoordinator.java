@@ -0,0 +1,283 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Plans the moves of the ghosts together in smart ghosts mode, so that they corner
+ * Pac-Man instead of all running straight at Pac-Man.
+ * 
+ * Once per tick, before the ghosts move, the coordinator finds the junctions Pac-Man
+ * could escape through and assigns every ghost a target: Pac-Man's tile or one of
+ * those junctions. A plan costs the steps the ghosts have to walk, less a bonus for each
+ * junction a ghost reaches no later than Pac-Man; at least one ghost always chases.
+ * Distances come from breadth-first searches over the maze.
+ * 
+ * Planning is anytime and runs within a fixed time budget per tick. As soon as the
+ * field towards Pac-Man is ready, chasing with every ghost is the best plan so far, and
+ * each junction field and each assignment tried afterwards can only improve on it. When
+ * the budget runs out, the best plan so far is used. Searches check the deadline as they
+ * go, so if the budget runs out before the field towards Pac-Man is complete there is
+ * no plan, and the ghosts fall back to Ghost.getDirectionTowardsPacMan for this tick,
+ * which is counted in Metrics.GHOST_PLAN_OVERRUNS.
+ */
+public class GhostCoordinator {
+    // The time budget of one plan, from -Dpacman.ghostBudgetMicros
+    public static final long BUDGET_NANOS = Long.getLong("pacman.ghostBudgetMicros", 200) * 1000L;
+    
+    private static final int MAX_JUNCTIONS = 5; // Escape junctions considered per plan
+    private static final int LOOKAHEAD = 10; // Steps from Pac-Man within which junctions are considered
+    private static final int SEAL_BONUS = 16; // Steps a ghost may walk to seal one junction
+    private static final int CHECK_INTERVAL = 64; // Assignments tried, or tiles searched, between deadline checks
+    private static final Direction[] DIRECTIONS = {Direction.UP, Direction.DOWN, Direction.LEFT, Direction.RIGHT};
+    
+    private final Maze maze;
+    private final int width;
+    private final int height;
+    private final long budgetNanos;
+    
+    // Distance fields by tile index y * width + x, -1 where unreachable. Field 0 leads to
+    // Pac-Man and field i > 0 to junction i; they are reused on every plan.
+    private final int[][] fields = new int[MAX_JUNCTIONS + 1][];
+    private final int[] targets = new int[MAX_JUNCTIONS + 1];
+    private final int[] queue;
+    private int fieldCount;
+    
+    // The ghosts taking part in the current plan and their tiles
+    private final int[] ghostIndices;
+    private final int[] ghostTiles;
+    private int ghostCount;
+    
+    // The assignment being tried and the best one found; target indices into fields
+    private final int[] assignment;
+    private final int[] bestAssignment;
+    private final boolean[] sealed = new boolean[MAX_JUNCTIONS + 1];
+    private final Position neighbour = new Position(0, 0);
+    
+    /**
+     * Creates a new GhostCoordinator with the default budget.
+     * 
+     * @param maze The maze the ghosts move in
+     * @param ghostCount The number of ghosts
+     */
+    public GhostCoordinator(Maze maze, int ghostCount) {
+        this(maze, ghostCount, BUDGET_NANOS);
+    }
+    
+    /**
+     * Creates a new GhostCoordinator.
+     * 
+     * @param maze The maze the ghosts move in
+     * @param ghostCount The number of ghosts
+     * @param budgetNanos The time budget of one plan in nanoseconds
+     */
+    public GhostCoordinator(Maze maze, int ghostCount, long budgetNanos) {
+        this.maze = maze;
+        this.width = maze.getWidth();
+        this.height = maze.getHeight();
+        this.budgetNanos = budgetNanos;
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = new int[width * height];
+        }
+        this.queue = new int[width * height];
+        this.ghostIndices = new int[ghostCount];
+        this.ghostTiles = new int[ghostCount];
+        this.assignment = new int[ghostCount];
+        this.bestAssignment = new int[ghostCount];
+    }
+    
+    /**
+     * Plans this tick's targets and hands each ghost the distance field it should follow.
+     * Call once per tick before the ghosts are updated.
+     * 
+     * @param pacman The player character
+     * @param ghosts The ghosts, as many as given to the constructor
+     */
+    public void plan(PacMan pacman, List<Ghost> ghosts) {
+        long start = System.nanoTime();
+        long deadline = start + budgetNanos;
+        fieldCount = 0;
+        
+        // Only ghosts hunting on a maze tile take part; the others keep their own rules,
+        // and scattering ghosts head for their corners
+        ghostCount = 0;
+        for (int i = 0; i < ghosts.size() && i < ghostIndices.length; i++) {
+            Ghost ghost = ghosts.get(i);
+            ghost.setTargetField(null);
+            int tile = indexOf(ghost.getPosition().getX(), ghost.getPosition().getY());
+            if (ghost.getState() == Ghost.STATE_NORMAL && !ghost.isScattering() && tile >= 0) {
+                ghostIndices[ghostCount] = i;
+                ghostTiles[ghostCount] = tile;
+                ghostCount++;
+            }
+        }
+        int pacmanTile = indexOf(pacman.getPosition().getX(), pacman.getPosition().getY());
+        if (ghostCount == 0 || pacmanTile < 0) {
+            return;
+        }
+        
+        // The field towards Pac-Man gives the first complete plan: everyone chases. Without
+        // it the ghosts keep no target field and use their own chase for this tick
+        if (!search(pacmanTile, fields[0], deadline)) {
+            Metrics.GHOST_PLAN_OVERRUNS.increment();
+            return;
+        }
+        targets[0] = pacmanTile;
+        fieldCount = 1;
+        Arrays.fill(bestAssignment, 0);
+        
+        // Junctions in order of Pac-Man's distance, which is the order of the search queue
+        int[] pacmanField = fields[0];
+        for (int i = 1; i < width * height && fieldCount < fields.length; i++) {
+            int tile = queue[i];
+            if (tile < 0 || pacmanField[tile] > LOOKAHEAD) {
+                break;
+            }
+            if (!isJunction(tile)) {
+                continue;
+            }
+            if (System.nanoTime() > deadline) {
+                break;
+            }
+            targets[fieldCount] = tile;
+            fieldCount++;
+        }
+        for (int i = 1; i < fieldCount; i++) {
+            if (!search(targets[i], fields[i], deadline)) {
+                fieldCount = i;
+                break;
+            }
+        }
+        
+        // Try every assignment of ghosts to targets for as long as the budget lasts
+        if (fieldCount > 1) {
+            improve(deadline);
+        }
+        for (int i = 0; i < ghostCount; i++) {
+            ghosts.get(ghostIndices[i]).setTargetField(fields[bestAssignment[i]]);
+        }
+        Metrics.GHOST_PLAN_TIMES.record(System.nanoTime() - start);
+    }
+    
+    /**
+     * Enumerates the assignments of ghosts to the computed targets like an odometer,
+     * keeping the cheapest in bestAssignment, until all are tried or the deadline passes.
+     */
+    private void improve(long deadline) {
+        Arrays.fill(assignment, 0, ghostCount, 0);
+        int bestCost = cost();
+        int tried = 0;
+        while (true) {
+            // Next assignment
+            int digit = 0;
+            while (digit < ghostCount && ++assignment[digit] == fieldCount) {
+                assignment[digit] = 0;
+                digit++;
+            }
+            if (digit == ghostCount) {
+                return;
+            }
+            
+            int cost = cost();
+            if (cost < bestCost) {
+                bestCost = cost;
+                System.arraycopy(assignment, 0, bestAssignment, 0, ghostCount);
+            }
+            if (++tried % CHECK_INTERVAL == 0 && System.nanoTime() > deadline) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Scores the current assignment: the steps the ghosts walk, minus SEAL_BONUS for
+     * every junction a ghost reaches no later than Pac-Man.
+     * 
+     * @return The cost, or Integer.MAX_VALUE if no ghost chases or two share a junction
+     */
+    private int cost() {
+        Arrays.fill(sealed, false);
+        boolean chased = false;
+        int cost = 0;
+        for (int i = 0; i < ghostCount; i++) {
+            int target = assignment[i];
+            int distance = fields[target][ghostTiles[i]];
+            if (distance < 0) {
+                return Integer.MAX_VALUE;
+            }
+            cost += distance;
+            if (target == 0) {
+                chased = true;
+                continue;
+            }
+            if (sealed[target]) {
+                return Integer.MAX_VALUE;
+            }
+            sealed[target] = true;
+            if (distance <= fields[0][targets[target]]) {
+                cost -= SEAL_BONUS;
+            }
+        }
+        return chased ? cost : Integer.MAX_VALUE;
+    }
+    
+    /**
+     * Fills a distance field with a breadth-first search from one tile, unless the
+     * deadline passes first. The tiles are left in the queue in the order they were reached.
+     * 
+     * @return False if the deadline passed and the field is incomplete
+     */
+    private boolean search(int from, int[] field, long deadline) {
+        Arrays.fill(field, -1);
+        field[from] = 0;
+        queue[0] = from;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            if (head % CHECK_INTERVAL == 0 && System.nanoTime() > deadline) {
+                return false;
+            }
+            int index = queue[head++];
+            int x = index % width;
+            int y = index / width;
+            for (Direction dir : DIRECTIONS) {
+                int next = indexOf(x + dir.getDx(), y + dir.getDy());
+                if (next >= 0 && field[next] < 0) {
+                    field[next] = field[index] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        if (tail < queue.length) {
+            queue[tail] = -1;
+        }
+        return true;
+    }
+    
+    /**
+     * Checks whether a tile has more than two walkable neighbours outside the ghost house.
+     */
+    private boolean isJunction(int index) {
+        int x = index % width;
+        int y = index / width;
+        int exits = 0;
+        for (Direction dir : DIRECTIONS) {
+            neighbour.setX(x + dir.getDx());
+            neighbour.setY(y + dir.getDy());
+            if (indexOf(neighbour.getX(), neighbour.getY()) >= 0 && !maze.isGhostHouse(neighbour)) {
+                exits++;
+            }
+        }
+        return exits > 2;
+    }
+    
+    /**
+     * Gets the index of a walkable tile.
+     * 
+     * @return The index y * width + x, or -1 for walls and tiles outside the maze
+     */
+    private int indexOf(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height || maze.isWall(x, y)) {
+            return -1;
+        }
+        return y * width + x;
+    }
+}
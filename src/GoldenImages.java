@@ -0,0 +1,247 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Visual regression check: plays seeded games headless up to fixed ticks, renders
+ * the frame offscreen and compares it pixel by pixel with a stored golden image.
+ * Scenarios are compared in parallel. The playfield is compared strictly; the score
+ * line is text, so it gets a larger budget for font differences between machines.
+ * 
+ * Usage: java GoldenImages [--record] [--dir golden] [--diff-dir golden-diff]
+ *        [--tolerance n] [--hud-budget fraction]
+ * 
+ * --record writes the current frames as the new golden images. Without it the tool
+ * compares, writes a diff image for every mismatch and exits with status 1 on failure.
+ */
+public class GoldenImages {
+    private static final int PLAYFIELD_HEIGHT = Game.MAZE_HEIGHT * Game.TILE_SIZE;
+    private static final int DEFAULT_TOLERANCE = 8; // Largest channel difference that still counts as equal
+    private static final int PLAYFIELD_BUDGET = 0; // Differing playfield pixels allowed
+    private static final double DEFAULT_HUD_BUDGET = 0.02; // Fraction of score line pixels allowed to differ
+    private static final int DIFF_COLOR = 0xFF0000;
+    
+    /**
+     * A seeded game played to a given tick.
+     */
+    private static class Scenario {
+        final String name;
+        final int difficulty;
+        final long seed;
+        final int ticks;
+        
+        Scenario(String name, int difficulty, long seed, int ticks) {
+            this.name = name;
+            this.difficulty = difficulty;
+            this.seed = seed;
+            this.ticks = ticks;
+        }
+    }
+    
+    // Start, eaten pellets, frightened ghosts, returning eyes, and a lost and a won game
+    private static final Scenario[] SCENARIOS = {
+        new Scenario("start", TitleScreen.DIFFICULTY_MEDIUM, 1, 0),
+        new Scenario("pellets-eaten", TitleScreen.DIFFICULTY_MEDIUM, 1, 400),
+        new Scenario("power-mode", TitleScreen.DIFFICULTY_EASY, 2, 200),
+        new Scenario("ghost-eyes", TitleScreen.DIFFICULTY_EASY, 7, 260),
+        new Scenario("game-over", TitleScreen.DIFFICULTY_HARD, 4, 600),
+        new Scenario("game-won", TitleScreen.DIFFICULTY_MEDIUM, 7, 3000)
+    };
+    
+    private final File dir;
+    private final File diffDir;
+    private final int tolerance;
+    private final double hudBudget;
+    private final SpriteAtlas atlas;
+    
+    /**
+     * Creates a new GoldenImages check.
+     * 
+     * @param dir The directory with the golden images
+     * @param diffDir The directory to write diff images to
+     * @param tolerance The largest channel difference that still counts as equal
+     * @param hudBudget The fraction of score line pixels allowed to differ
+     */
+    public GoldenImages(File dir, File diffDir, int tolerance, double hudBudget) {
+        this.dir = dir;
+        this.diffDir = diffDir;
+        this.tolerance = tolerance;
+        this.hudBudget = hudBudget;
+        this.atlas = SpriteAtlas.create(Game.TILE_SIZE, Game.GHOST_COLORS);
+    }
+    
+    /**
+     * Runs the check from the command line.
+     * 
+     * @param args The command line arguments
+     */
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        
+        boolean record = false;
+        File dir = new File("golden");
+        File diffDir = new File("golden-diff");
+        int tolerance = DEFAULT_TOLERANCE;
+        double hudBudget = DEFAULT_HUD_BUDGET;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--record":
+                    record = true;
+                    break;
+                case "--dir":
+                    dir = new File(args[++i]);
+                    break;
+                case "--diff-dir":
+                    diffDir = new File(args[++i]);
+                    break;
+                case "--tolerance":
+                    tolerance = Integer.parseInt(args[++i]);
+                    break;
+                case "--hud-budget":
+                    hudBudget = Double.parseDouble(args[++i]);
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(1);
+            }
+        }
+        
+        GoldenImages check = new GoldenImages(dir, diffDir, tolerance, hudBudget);
+        boolean passed = check.run(record);
+        System.exit(passed ? 0 : 1);
+    }
+    
+    /**
+     * Renders every scenario in parallel and records or compares it.
+     * 
+     * @param record True to write new golden images, false to compare
+     * @return True if every scenario matched or was recorded
+     * @throws InterruptedException If the check was interrupted
+     */
+    public boolean run(final boolean record) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(
+                Math.min(SCENARIOS.length, Runtime.getRuntime().availableProcessors()));
+        List<Future<String>> results = new ArrayList<>();
+        for (final Scenario scenario : SCENARIOS) {
+            results.add(pool.submit(new Callable<String>() {
+                @Override
+                public String call() throws IOException {
+                    return check(scenario, record);
+                }
+            }));
+        }
+        pool.shutdown();
+        
+        // Report in scenario order; a null message means the scenario passed
+        boolean passed = true;
+        for (int i = 0; i < SCENARIOS.length; i++) {
+            String message;
+            try {
+                message = results.get(i).get();
+            } catch (ExecutionException e) {
+                message = "error: " + e.getCause();
+            }
+            if (message == null) {
+                System.out.println((record ? "RECORDED " : "PASS ") + SCENARIOS[i].name);
+            } else {
+                System.out.println("FAIL " + SCENARIOS[i].name + ": " + message);
+                passed = false;
+            }
+        }
+        return passed;
+    }
+    
+    /**
+     * Plays one scenario, renders it and records or compares the frame.
+     * 
+     * @param scenario The scenario
+     * @param record True to write a new golden image, false to compare
+     * @return Null if the frame matched or was recorded, otherwise the reason it failed
+     * @throws IOException If an image could not be read or written
+     */
+    private String check(Scenario scenario, boolean record) throws IOException {
+        Game game = new Game(scenario.difficulty, scenario.seed);
+        new Autopilot(scenario.seed).play(game, scenario.ticks);
+        
+        BufferedImage actual = new BufferedImage(GameRenderer.WIDTH, GameRenderer.HEIGHT, BufferedImage.TYPE_INT_RGB);
+        new GameRenderer(atlas).render(actual, game, 0);
+        
+        File golden = new File(dir, scenario.name + ".png");
+        if (record) {
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Could not create " + dir);
+            }
+            ImageIO.write(actual, "png", golden);
+            return null;
+        }
+        if (!golden.isFile()) {
+            return "no golden image at " + golden + " (run with --record)";
+        }
+        
+        BufferedImage expected = ImageIO.read(golden);
+        if (expected.getWidth() != actual.getWidth() || expected.getHeight() != actual.getHeight()) {
+            return "size " + actual.getWidth() + "x" + actual.getHeight() + " differs from golden "
+                    + expected.getWidth() + "x" + expected.getHeight();
+        }
+        
+        // Count differing pixels per region and mark them in a diff image
+        BufferedImage diff = new BufferedImage(actual.getWidth(), actual.getHeight(), BufferedImage.TYPE_INT_RGB);
+        int playfieldDiffs = 0;
+        int hudDiffs = 0;
+        for (int y = 0; y < actual.getHeight(); y++) {
+            for (int x = 0; x < actual.getWidth(); x++) {
+                int a = actual.getRGB(x, y);
+                int e = expected.getRGB(x, y);
+                if (matches(a, e)) {
+                    // Dim matching pixels so that the differences stand out
+                    diff.setRGB(x, y, (a >> 2) & 0x3F3F3F);
+                } else {
+                    diff.setRGB(x, y, DIFF_COLOR);
+                    if (y < PLAYFIELD_HEIGHT) {
+                        playfieldDiffs++;
+                    } else {
+                        hudDiffs++;
+                    }
+                }
+            }
+        }
+        
+        int hudPixels = actual.getWidth() * (actual.getHeight() - PLAYFIELD_HEIGHT);
+        if (playfieldDiffs <= PLAYFIELD_BUDGET && hudDiffs <= hudPixels * hudBudget) {
+            return null;
+        }
+        if (!diffDir.isDirectory() && !diffDir.mkdirs()) {
+            throw new IOException("Could not create " + diffDir);
+        }
+        File diffFile = new File(diffDir, scenario.name + ".diff.png");
+        ImageIO.write(diff, "png", diffFile);
+        ImageIO.write(actual, "png", new File(diffDir, scenario.name + ".actual.png"));
+        return playfieldDiffs + " playfield and " + hudDiffs + " score line pixels differ, see " + diffFile;
+    }
+    
+    /**
+     * Compares two pixels channel by channel.
+     * 
+     * @param a The first pixel in RGB
+     * @param b The second pixel in RGB
+     * @return True if no channel differs by more than the tolerance
+     */
+    private boolean matches(int a, int b) {
+        for (int shift = 0; shift <= 16; shift += 8) {
+            int delta = ((a >> shift) & 0xFF) - ((b >> shift) & 0xFF);
+            if (Math.abs(delta) > tolerance) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
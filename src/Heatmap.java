@@ -0,0 +1,305 @@
+import java.awt.Color;
+import java.awt.Graphics;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Per-tile counters for level design: how many ticks Pac-Man spent on each tile, where
+ * Pac-Man died, and when each pellet was eaten. A game feeds it in constant time per tick;
+ * heatmaps of many games are added together with merge() and kept on disk in a small
+ * binary file. Not thread-safe; each game or worker records into its own heatmap.
+ */
+public class Heatmap {
+    // Layers that can be drawn
+    public static final int VISITS = 0;
+    public static final int DEATHS = 1;
+    public static final int PELLET_TIME = 2;
+    public static final int LAYER_COUNT = 3;
+    private static final String[] LAYER_NAMES = {"visits", "deaths", "pellet time"};
+    
+    // Heatmaps of single games, and the aggregate they are merged into by HeatmapTool
+    public static final File SESSION_DIRECTORY = new File(System.getProperty("user.dir"), "heatmaps");
+    public static final File AGGREGATE_FILE = new File(System.getProperty("user.dir"), "heatmap.heat");
+    
+    private static final int MAGIC = 0x48454154; // "HEAT"
+    private static final int VERSION = 1;
+    
+    // Colours from rare (blue) to frequent (red), translucent so the maze shows through
+    private static final int PALETTE_SIZE = 64;
+    private static final Color[] PALETTE = new Color[PALETTE_SIZE];
+    static {
+        for (int i = 0; i < PALETTE_SIZE; i++) {
+            Color color = Color.getHSBColor(0.66f * (1 - i / (float) (PALETTE_SIZE - 1)), 1f, 1f);
+            PALETTE[i] = new Color(color.getRed(), color.getGreen(), color.getBlue(), 150);
+        }
+    }
+    
+    private final int width;
+    private final int height;
+    
+    // Counters per tile, indexed by y * width + x
+    private final long[] visits;
+    private final long[] deaths;
+    private final long[] pelletsEaten;
+    private final long[] pelletTicks; // Sum of the ticks at which the pellets were eaten
+    
+    private long games;
+    
+    /**
+     * Creates a new, empty Heatmap.
+     * 
+     * @param width The width of the maze in tiles
+     * @param height The height of the maze in tiles
+     */
+    public Heatmap(int width, int height) {
+        this.width = width;
+        this.height = height;
+        int cells = width * height;
+        visits = new long[cells];
+        deaths = new long[cells];
+        pelletsEaten = new long[cells];
+        pelletTicks = new long[cells];
+    }
+    
+    /**
+     * Sets every counter back to zero, to record another game into the same arrays.
+     */
+    public void clear() {
+        Arrays.fill(visits, 0);
+        Arrays.fill(deaths, 0);
+        Arrays.fill(pelletsEaten, 0);
+        Arrays.fill(pelletTicks, 0);
+        games = 0;
+    }
+    
+    /**
+     * Counts one tick spent on a tile.
+     * 
+     * @param position The tile
+     */
+    public void recordVisit(Position position) {
+        int index = indexOf(position);
+        if (index >= 0) {
+            visits[index]++;
+        }
+    }
+    
+    /**
+     * Counts a death on a tile.
+     * 
+     * @param position The tile
+     */
+    public void recordDeath(Position position) {
+        int index = indexOf(position);
+        if (index >= 0) {
+            deaths[index]++;
+        }
+    }
+    
+    /**
+     * Counts a pellet eaten on a tile.
+     * 
+     * @param position The tile
+     * @param tick The game tick at which it was eaten
+     */
+    public void recordPellet(Position position, long tick) {
+        int index = indexOf(position);
+        if (index >= 0) {
+            pelletsEaten[index]++;
+            pelletTicks[index] += tick;
+        }
+    }
+    
+    /**
+     * Counts a finished game.
+     */
+    public void recordGame() {
+        games++;
+    }
+    
+    /**
+     * Adds the counters of another heatmap of the same maze size to this one.
+     * 
+     * @param other The heatmap to add
+     * @throws IllegalArgumentException If the sizes differ
+     */
+    public void merge(Heatmap other) {
+        if (other.width != width || other.height != height) {
+            throw new IllegalArgumentException("Heatmap is " + other.width + "x" + other.height
+                    + ", expected " + width + "x" + height);
+        }
+        for (int i = 0; i < visits.length; i++) {
+            visits[i] += other.visits[i];
+            deaths[i] += other.deaths[i];
+            pelletsEaten[i] += other.pelletsEaten[i];
+            pelletTicks[i] += other.pelletTicks[i];
+        }
+        games += other.games;
+    }
+    
+    /**
+     * Gets the value of a layer on a tile: ticks spent, deaths, or the average tick
+     * at which its pellet was eaten.
+     * 
+     * @param layer VISITS, DEATHS or PELLET_TIME
+     * @param x The x tile
+     * @param y The y tile
+     * @return The value, 0 if there is none
+     */
+    public long getValue(int layer, int x, int y) {
+        int index = y * width + x;
+        switch (layer) {
+            case DEATHS:
+                return deaths[index];
+            case PELLET_TIME:
+                return pelletsEaten[index] == 0 ? 0 : pelletTicks[index] / pelletsEaten[index];
+            case VISITS:
+            default:
+                return visits[index];
+        }
+    }
+    
+    /**
+     * Gets the number of games recorded.
+     * 
+     * @return The number of games
+     */
+    public long getGames() {
+        return games;
+    }
+    
+    /**
+     * Gets the display name of a layer.
+     * 
+     * @param layer VISITS, DEATHS or PELLET_TIME
+     * @return The name
+     */
+    public static String getLayerName(int layer) {
+        return LAYER_NAMES[layer];
+    }
+    
+    /**
+     * Draws a layer over the maze, scaled so the highest value is red.
+     * 
+     * @param g The Graphics object to draw with
+     * @param layer VISITS, DEATHS or PELLET_TIME
+     * @param tileSize The size of a tile in pixels
+     */
+    public void draw(Graphics g, int layer, int tileSize) {
+        long max = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                max = Math.max(max, getValue(layer, x, y));
+            }
+        }
+        if (max == 0) {
+            return;
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                long value = getValue(layer, x, y);
+                if (value > 0) {
+                    g.setColor(PALETTE[(int) ((value * (PALETTE_SIZE - 1)) / max)]);
+                    g.fillRect(x * tileSize, y * tileSize, tileSize, tileSize);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Reads a heatmap written by write().
+     * 
+     * @param file The file to read
+     * @return The heatmap
+     * @throws IOException If the file cannot be read or is not a heatmap
+     */
+    public static Heatmap read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file + " is not a heatmap");
+            }
+            int width = in.readInt();
+            int height = in.readInt();
+            if (width <= 0 || height <= 0 || width > 1024 || height > 1024) {
+                throw new IOException(file + " has an invalid size: " + width + "x" + height);
+            }
+            Heatmap heatmap = new Heatmap(width, height);
+            heatmap.games = in.readLong();
+            readCounters(in, heatmap.visits);
+            readCounters(in, heatmap.deaths);
+            readCounters(in, heatmap.pelletsEaten);
+            readCounters(in, heatmap.pelletTicks);
+            return heatmap;
+        }
+    }
+    
+    /**
+     * Writes the heatmap to a temporary file, forces it to disk and renames it over
+     * the old one, so the file is either the old or the new heatmap but never partial.
+     * 
+     * @param file The file to write
+     * @throws IOException If the file could not be written
+     */
+    public void write(File file) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        Path target = file.toPath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp.toFile())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeLong(games);
+            writeCounters(out, visits);
+            writeCounters(out, deaths);
+            writeCounters(out, pelletsEaten);
+            writeCounters(out, pelletTicks);
+            out.flush();
+            stream.getFD().sync();
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+     * Gets the counter index of a tile, or -1 if it is outside the maze.
+     */
+    private int indexOf(Position position) {
+        int x = position.getX();
+        int y = position.getY();
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return -1;
+        }
+        return y * width + x;
+    }
+    
+    private static void readCounters(DataInputStream in, long[] counters) throws IOException {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = in.readLong();
+        }
+    }
+    
+    private static void writeCounters(DataOutputStream out, long[] counters) throws IOException {
+        for (long counter : counters) {
+            out.writeLong(counter);
+        }
+    }
+}
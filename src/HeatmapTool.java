@@ -0,0 +1,246 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Builds and shows the aggregate heatmap for level design. Heatmaps of batch simulations
+ * or of saved game sessions are reduced in parallel: every worker adds its share of games
+ * or files into its own heatmap, and the partial heatmaps are then merged into the
+ * aggregate file, which the game shows with F6.
+ * 
+ * Usage: java HeatmapTool --simulate [--games n] [--threads n] [--seed n] [--difficulty easy|medium|hard]
+ *        java HeatmapTool --merge [--threads n]
+ *        java HeatmapTool --render out.png [--layer visits|deaths|pellets]
+ *        Any mode: [--out heatmap.heat] [--sessions heatmaps]
+ * 
+ * --simulate plays autopiloted games headless. --merge adds the session files saved by
+ * games run with -Dpacman.heatmaps=true and deletes them once the aggregate is written,
+ * so no game is counted twice. Both add to the existing aggregate.
+ */
+public class HeatmapTool {
+    private static final int MAX_TICKS = 36000; // Ten minutes of game time, for games the autopilot never ends
+    
+    /**
+     * Runs the tool from the command line.
+     * 
+     * @param args The command line arguments
+     */
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        
+        String mode = null;
+        String image = null;
+        int games = 1000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        int difficulty = TitleScreen.DIFFICULTY_MEDIUM;
+        int layer = Heatmap.VISITS;
+        File aggregateFile = Heatmap.AGGREGATE_FILE;
+        File sessionDirectory = Heatmap.SESSION_DIRECTORY;
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : "";
+            switch (args[i]) {
+                case "--simulate":
+                case "--merge":
+                    mode = args[i];
+                    break;
+                case "--render":
+                    mode = args[i];
+                    image = value;
+                    i++;
+                    break;
+                case "--games":
+                    games = Integer.parseInt(value);
+                    i++;
+                    break;
+                case "--threads":
+                    threads = Math.max(1, Integer.parseInt(value));
+                    i++;
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    i++;
+                    break;
+                case "--difficulty":
+                    difficulty = "easy".equals(value) ? TitleScreen.DIFFICULTY_EASY
+                            : "hard".equals(value) ? TitleScreen.DIFFICULTY_HARD : TitleScreen.DIFFICULTY_MEDIUM;
+                    i++;
+                    break;
+                case "--layer":
+                    layer = "deaths".equals(value) ? Heatmap.DEATHS
+                            : "pellets".equals(value) ? Heatmap.PELLET_TIME : Heatmap.VISITS;
+                    i++;
+                    break;
+                case "--out":
+                    aggregateFile = new File(value);
+                    i++;
+                    break;
+                case "--sessions":
+                    sessionDirectory = new File(value);
+                    i++;
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(1);
+            }
+        }
+        if (mode == null) {
+            System.err.println("Usage: java HeatmapTool --simulate | --merge | --render out.png [options]");
+            System.exit(1);
+        }
+        
+        if ("--render".equals(mode)) {
+            render(Heatmap.read(aggregateFile), layer, new File(image));
+            System.out.println("Rendered " + Heatmap.getLayerName(layer) + " to " + image);
+            return;
+        }
+        
+        Heatmap aggregate = aggregateFile.isFile() ? Heatmap.read(aggregateFile)
+                : new Heatmap(Game.MAZE_WIDTH, Game.MAZE_HEIGHT);
+        long start = System.nanoTime();
+        List<Heatmap> partials;
+        File[] sessions = null;
+        if ("--simulate".equals(mode)) {
+            partials = simulate(games, threads, seed, difficulty);
+        } else {
+            sessions = sessionDirectory.listFiles();
+            if (sessions == null) {
+                sessions = new File[0];
+            }
+            Arrays.sort(sessions);
+            partials = merge(sessions, threads);
+        }
+        long before = aggregate.getGames();
+        for (Heatmap partial : partials) {
+            aggregate.merge(partial);
+        }
+        aggregate.write(aggregateFile);
+        
+        // The sessions are in the aggregate now; delete them so they are not merged again
+        if (sessions != null) {
+            for (File session : sessions) {
+                if (session.getName().endsWith(".heat") && !session.delete()) {
+                    System.err.println("Could not delete " + session);
+                }
+            }
+        }
+        System.out.printf("Added %d games with %d threads in %.2f s; %s now holds %d games%n",
+                aggregate.getGames() - before, threads, (System.nanoTime() - start) / 1e9,
+                aggregateFile, aggregate.getGames());
+    }
+    
+    /**
+     * Plays autopiloted games in parallel, each worker recording into its own heatmap.
+     * 
+     * @param games The number of games
+     * @param threads The number of workers
+     * @param seed The seed of the first game; game i uses seed + i
+     * @param difficulty The difficulty level
+     * @return The heatmap of each worker
+     */
+    private static List<Heatmap> simulate(int games, int threads, final long seed, final int difficulty)
+            throws InterruptedException, ExecutionException {
+        List<Callable<Heatmap>> tasks = new ArrayList<>();
+        for (int worker = 0; worker < threads; worker++) {
+            final int first = worker;
+            final int stride = threads;
+            final int count = games;
+            tasks.add(new Callable<Heatmap>() {
+                @Override
+                public Heatmap call() {
+                    Heatmap heatmap = new Heatmap(Game.MAZE_WIDTH, Game.MAZE_HEIGHT);
+                    for (int i = first; i < count; i += stride) {
+                        Game game = new Game(difficulty, seed + i);
+                        game.setHeatmap(heatmap);
+                        Autopilot autopilot = new Autopilot(seed + i);
+                        while (!game.isGameOver() && !game.isGameWon() && game.getTicks() < MAX_TICKS) {
+                            autopilot.steer(game);
+                            game.tick();
+                        }
+                        if (!game.isGameOver() && !game.isGameWon()) {
+                            heatmap.recordGame();
+                        }
+                    }
+                    return heatmap;
+                }
+            });
+        }
+        return runAll(tasks, threads);
+    }
+    
+    /**
+     * Reads session files in parallel, each worker adding its share into its own heatmap.
+     * 
+     * @param sessions The files in the session directory
+     * @param threads The number of workers
+     * @return The heatmap of each worker
+     */
+    private static List<Heatmap> merge(final File[] sessions, int threads)
+            throws InterruptedException, ExecutionException {
+        List<Callable<Heatmap>> tasks = new ArrayList<>();
+        for (int worker = 0; worker < threads; worker++) {
+            final int first = worker;
+            final int stride = threads;
+            tasks.add(new Callable<Heatmap>() {
+                @Override
+                public Heatmap call() throws IOException {
+                    Heatmap heatmap = new Heatmap(Game.MAZE_WIDTH, Game.MAZE_HEIGHT);
+                    for (int i = first; i < sessions.length; i += stride) {
+                        if (sessions[i].getName().endsWith(".heat")) {
+                            heatmap.merge(Heatmap.read(sessions[i]));
+                        }
+                    }
+                    return heatmap;
+                }
+            });
+        }
+        return runAll(tasks, threads);
+    }
+    
+    /**
+     * Runs tasks on a pool and collects their results in order.
+     */
+    private static List<Heatmap> runAll(List<Callable<Heatmap>> tasks, int threads)
+            throws InterruptedException, ExecutionException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Heatmap> results = new ArrayList<>();
+            for (Future<Heatmap> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    /**
+     * Draws a heatmap layer over the maze into a PNG file.
+     * 
+     * @param heatmap The heatmap
+     * @param layer The layer to draw
+     * @param file The file to write
+     */
+    private static void render(Heatmap heatmap, int layer, File file) throws IOException {
+        SpriteAtlas atlas = SpriteAtlas.create(Game.TILE_SIZE, Game.GHOST_COLORS);
+        Maze maze = new Maze(Game.MAZE_WIDTH, Game.MAZE_HEIGHT, Game.TILE_SIZE);
+        BufferedImage image = new BufferedImage(Game.MAZE_WIDTH * Game.TILE_SIZE,
+                Game.MAZE_HEIGHT * Game.TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        maze.draw(g, atlas);
+        heatmap.draw(g, layer, Game.TILE_SIZE);
+        g.dispose();
+        ImageIO.write(image, "png", file);
+    }
+}
@@ -1,8 +1,4 @@
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -10,55 +6,64 @@ import java.util.List;
 
 /**
  * Class for managing high scores in the game.
+ * Scores are kept in memory and persisted through a crash-safe journal on a background thread.
  */
 public class HighScore {
     private static final String HIGH_SCORE_FILE = System.getProperty("user.dir") + File.separator + "highscores.txt";
+    private static final String JOURNAL_FILE = System.getProperty("user.dir") + File.separator + "highscores.journal";
+    private static final String SHARED_FILE = System.getProperty("user.dir") + File.separator + "highscores.map";
     private static final int MAX_HIGH_SCORES = 5;
+    private static final int COMPACT_EVERY = 8; // Journal records between snapshots
     
     private List<Integer> highScores;
+    private ScoreJournal journal; // Null if the scores are kept in memory only
+    
+    // Memory-mapped copy of the list for leaderboard displays in other processes
+    private SharedLeaderboard shared;
+    private SharedLeaderboard.Snapshot sharedStaging;
     
     /**
      * Creates a new HighScore object and loads existing high scores.
      */
     public HighScore() {
         highScores = new ArrayList<>();
+        journal = new ScoreJournal(new File(HIGH_SCORE_FILE), new File(JOURNAL_FILE), COMPACT_EVERY);
         loadHighScores();
+        
+        // Only one game process can publish; the others keep their list to themselves
+        try {
+            shared = SharedLeaderboard.openWriter(new File(SHARED_FILE), MAX_HIGH_SCORES);
+        } catch (IOException e) {
+            EventLog.log(EventLog.WARN, "Could not open shared high scores: " + e.getMessage());
+        }
+        if (shared != null) {
+            sharedStaging = new SharedLeaderboard.Snapshot(MAX_HIGH_SCORES);
+            publishHighScores();
+        }
     }
     
     /**
-     * Loads high scores from the file.
+     * Creates a HighScore that keeps its scores in memory only, for when the files
+     * cannot be loaded.
+     * 
+     * @return An empty high score list
+     */
+    public static HighScore inMemory() {
+        return new HighScore(new ArrayList<Integer>());
+    }
+    
+    /**
+     * Creates a HighScore without files.
+     */
+    private HighScore(List<Integer> highScores) {
+        this.highScores = highScores;
+    }
+    
+    /**
+     * Loads high scores from the snapshot and the journal.
      */
     private void loadHighScores() {
-        File file = new File(HIGH_SCORE_FILE);
-        System.out.println("Loading high scores from: " + file.getAbsolutePath());
-        
-        if (file.exists()) {
-            System.out.println("High score file exists");
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    try {
-                        int score = Integer.parseInt(line.trim());
-                        highScores.add(score);
-                        System.out.println("Loaded high score: " + score);
-                    } catch (NumberFormatException e) {
-                        // Ignore invalid lines
-                        System.err.println("Invalid score format: " + line);
-                    }
-                }
-            } catch (IOException e) {
-                System.err.println("Error loading high scores: " + e.getMessage());
-                e.printStackTrace();
-            }
-        } else {
-            System.out.println("High score file does not exist yet. Will be created when a score is added.");
-            // Try to create the directory if it doesn't exist
-            File parentDir = file.getParentFile();
-            if (parentDir != null && !parentDir.exists()) {
-                boolean created = parentDir.mkdirs();
-                System.out.println("Created parent directories: " + created);
-            }
-        }
+        highScores.addAll(journal.recover());
         
         // Sort high scores in descending order
         Collections.sort(highScores, Collections.reverseOrder());
@@ -67,35 +72,21 @@ public class HighScore {
         while (highScores.size() > MAX_HIGH_SCORES) {
             highScores.remove(highScores.size() - 1);
         }
-        
-        System.out.println("Loaded " + highScores.size() + " high scores");
+        EventLog.log(EventLog.INFO, EventLog.SCORES_LOADED, highScores.size(), getHighestScore());
     }
     
     /**
-     * Saves high scores to the file.
+     * Publishes the list to the shared file, if this process is its writer.
      */
-    private void saveHighScores() {
-        File file = new File(HIGH_SCORE_FILE);
-        System.out.println("Saving high scores to: " + file.getAbsolutePath());
-        
-        // Ensure the parent directory exists
-        File parentDir = file.getParentFile();
-        if (parentDir != null && !parentDir.exists()) {
-            boolean created = parentDir.mkdirs();
-            System.out.println("Created parent directories: " + created);
+    private void publishHighScores() {
+        if (shared == null) {
+            return;
         }
-        
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
-            for (int score : highScores) {
-                writer.write(Integer.toString(score));
-                writer.newLine();
-                System.out.println("Saved high score: " + score);
-            }
-            System.out.println("Successfully saved " + highScores.size() + " high scores");
-        } catch (IOException e) {
-            System.err.println("Error saving high scores: " + e.getMessage());
-            e.printStackTrace();
+        sharedStaging.clear();
+        for (int score : highScores) {
+            sharedStaging.add("", score, -1, 0);
         }
+        shared.publish(sharedStaging);
     }
     
     /**
@@ -115,8 +106,11 @@ public class HighScore {
                 highScores.remove(highScores.size() - 1);
             }
             
-            // Save the updated high scores
-            saveHighScores();
+            // Journal the score; the disk write happens on the writer thread
+            if (journal != null) {
+                journal.record(score, highScores);
+            }
+            publishHighScores();
             return true;
         }
         
@@ -132,6 +126,25 @@ public class HighScore {
         return new ArrayList<>(highScores);
     }
     
+    /**
+     * Gets the number of high scores.
+     * 
+     * @return The number of high scores
+     */
+    public int getScoreCount() {
+        return highScores.size();
+    }
+    
+    /**
+     * Gets the high score at the specified rank without copying the list.
+     * 
+     * @param index The rank, starting at 0 for the highest score
+     * @return The score at that rank
+     */
+    public int getScore(int index) {
+        return highScores.get(index);
+    }
+    
     /**
      * Gets the highest score.
      * 
@@ -0,0 +1,146 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative long values with log-linear buckets.
+ * Each power of two is split into SUB_BUCKETS linear buckets, so every recorded
+ * value is kept to within 1/SUB_BUCKETS relative precision in constant memory.
+ * Recording never allocates and can be called from any thread.
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+    
+    /**
+     * Records a value.
+     * 
+     * @param value The value to record, negative values are recorded as 0
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(bucketIndex(value));
+        totalCount.incrementAndGet();
+        
+        long max = maxValue.get();
+        while (value > max && !maxValue.compareAndSet(max, value)) {
+            max = maxValue.get();
+        }
+    }
+    
+    /**
+     * Gets the number of recorded values.
+     * 
+     * @return The total count
+     */
+    public long getCount() {
+        return totalCount.get();
+    }
+    
+    /**
+     * Gets the largest recorded value.
+     * 
+     * @return The maximum value, or 0 if nothing was recorded
+     */
+    public long getMax() {
+        return maxValue.get();
+    }
+    
+    /**
+     * Gets the value at the specified percentile.
+     * 
+     * @param percentile The percentile (0.0 to 100.0)
+     * @return The upper bound of the bucket holding the percentile, or 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        long total = totalCount.get();
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(bucketUpperBound(i), maxValue.get());
+            }
+        }
+        return maxValue.get();
+    }
+    
+    /**
+     * Gets the number of buckets in this histogram.
+     * 
+     * @return The bucket count
+     */
+    public int getBucketCount() {
+        return BUCKET_COUNT;
+    }
+    
+    /**
+     * Gets the number of values recorded in a bucket.
+     * 
+     * @param index The bucket index
+     * @return The count of the bucket
+     */
+    public long getBucketCount(int index) {
+        return counts.get(index);
+    }
+    
+    /**
+     * Gets the index of the bucket holding a value.
+     * 
+     * @param value The value
+     * @return The bucket index
+     */
+    public int getBucketIndex(long value) {
+        return bucketIndex(Math.max(0, value));
+    }
+    
+    /**
+     * Clears all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        maxValue.set(0);
+    }
+    
+    /**
+     * Computes the bucket index of a non-negative value.
+     * 
+     * @param value The value
+     * @return The bucket index
+     */
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+    
+    /**
+     * Computes the largest value that falls into a bucket.
+     * 
+     * @param index The bucket index
+     * @return The upper bound of the bucket
+     */
+    private static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
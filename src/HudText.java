@@ -0,0 +1,69 @@
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+
+/**
+ * A piece of HUD text whose glyphs are laid out once and cached.
+ * Static labels are laid out at construction; numeric fields are laid out
+ * again only when their value changes, so drawing does not allocate.
+ */
+public class HudText {
+    // Shared render context matching the default (non-antialiased) text hints
+    private static final FontRenderContext FONT_RENDER_CONTEXT = new FontRenderContext(null, false, false);
+    
+    private final Font font;
+    private final String prefix;
+    private long value;
+    private GlyphVector glyphs;
+    
+    /**
+     * Creates a static text label.
+     * 
+     * @param font The font to lay out the text with
+     * @param text The text
+     */
+    public HudText(Font font, String text) {
+        this.font = font;
+        this.prefix = text;
+        this.glyphs = font.createGlyphVector(FONT_RENDER_CONTEXT, text);
+    }
+    
+    /**
+     * Creates a numeric field shown after a fixed prefix.
+     * 
+     * @param font The font to lay out the text with
+     * @param prefix The text shown before the number
+     * @param value The initial value
+     */
+    public HudText(Font font, String prefix, long value) {
+        this.font = font;
+        this.prefix = prefix;
+        this.value = value;
+        this.glyphs = font.createGlyphVector(FONT_RENDER_CONTEXT, prefix + value);
+    }
+    
+    /**
+     * Sets the value of a numeric field. The text is laid out again only if the value changed.
+     * 
+     * @param value The new value
+     */
+    public void setValue(long value) {
+        if (value != this.value) {
+            this.value = value;
+            this.glyphs = font.createGlyphVector(FONT_RENDER_CONTEXT, prefix + value);
+        }
+    }
+    
+    /**
+     * Draws the text with its baseline at the specified position in the current colour.
+     * 
+     * @param g The Graphics object to draw with
+     * @param x The x-coordinate of the text start
+     * @param y The y-coordinate of the baseline
+     */
+    public void draw(Graphics g, int x, int y) {
+        ((Graphics2D) g).drawGlyphVector(glyphs, x, y);
+    }
+}
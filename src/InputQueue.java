@@ -0,0 +1,104 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer, single-consumer queue of timestamped direction inputs.
+ * The event dispatch thread offers key presses and the game loop polls them,
+ * so no key press is lost between two game ticks.
+ */
+public class InputQueue {
+    private static final Direction[] DIRECTIONS = Direction.values();
+    
+    private final int[] directions;
+    private final long[] timestamps;
+    private final int mask;
+    
+    // Next slot to read, only advanced by the consumer
+    private final AtomicLong head = new AtomicLong();
+    
+    // Next slot to write, only advanced by the producer
+    private final AtomicLong tail = new AtomicLong();
+    
+    /**
+     * Creates a new InputQueue.
+     * 
+     * @param capacity The maximum number of pending inputs, rounded up to a power of two
+     */
+    public InputQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.directions = new int[size];
+        this.timestamps = new long[size];
+        this.mask = size - 1;
+    }
+    
+    /**
+     * Adds an input to the queue. Called from the producer thread only.
+     * 
+     * @param direction The requested direction
+     * @param timestamp The time of the key press from System.nanoTime()
+     * @return True if the input was queued, false if the queue is full
+     */
+    public boolean offer(Direction direction, long timestamp) {
+        long t = tail.get();
+        if (t - head.get() > mask) {
+            return false;
+        }
+        int slot = (int) t & mask;
+        directions[slot] = direction.ordinal();
+        timestamps[slot] = timestamp;
+        // Publish the slot after it has been written
+        tail.lazySet(t + 1);
+        return true;
+    }
+    
+    /**
+     * Checks if there are no pending inputs. Called from the consumer thread only.
+     * 
+     * @return True if the queue is empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+    
+    /**
+     * Gets the direction of the oldest pending input without removing it.
+     * 
+     * @return The direction, or NONE if the queue is empty
+     */
+    public Direction peekDirection() {
+        long h = head.get();
+        if (h == tail.get()) {
+            return Direction.NONE;
+        }
+        return DIRECTIONS[directions[(int) h & mask]];
+    }
+    
+    /**
+     * Gets the timestamp of the oldest pending input without removing it.
+     * 
+     * @return The timestamp, or 0 if the queue is empty
+     */
+    public long peekTimestamp() {
+        long h = head.get();
+        if (h == tail.get()) {
+            return 0;
+        }
+        return timestamps[(int) h & mask];
+    }
+    
+    /**
+     * Removes the oldest pending input. Called from the consumer thread only.
+     */
+    public void remove() {
+        long h = head.get();
+        if (h != tail.get()) {
+            head.lazySet(h + 1);
+        }
+    }
+    
+    /**
+     * Discards all pending inputs. Called from the consumer thread only.
+     */
+    public void clear() {
+        head.lazySet(tail.get());
+    }
+}
@@ -0,0 +1,475 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One ranking of scores, for example all games on one maze at one difficulty.
+ * Holds millions of entries in primitive arrays. A Fenwick tree over the score values
+ * counts the entries per score, and every score keeps its entries in an array in the
+ * order they were added, so inserting, finding the rank of an entry and finding the entry
+ * at a rank all take O(log maxScore). Equal scores rank in the order they were added.
+ */
+public class Leaderboard {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int BUCKET_CAPACITY = 4;
+    private static final int NONE = -1;
+    private static final int MAX_READ_SCORE = (1 << 24) - 1; // Keeps a corrupt file from allocating gigabytes
+    
+    // Scores from 0 to maxScore, stored at Fenwick index maxScore - score + 1 so that high scores come first
+    private final int maxScore;
+    private final int buckets;
+    private final int[] tree;
+    private final int[][] bucketEntries; // Created when a score is first added
+    private final int[] bucketSizes;
+    
+    // Entries, indexed by insertion order
+    private int size;
+    private int[] scores;
+    private long[] timestamps;
+    private int[] players;
+    private int[] ordinals; // Position among the entries with the same score
+    
+    // Player names and each player's best entry
+    private final Map<String, Integer> playerIds = new HashMap<>();
+    private final List<String> playerNames = new ArrayList<>();
+    private int[] playerBest = new int[INITIAL_CAPACITY];
+    
+    /**
+     * An entry at a rank, as returned by queries.
+     */
+    public static class Entry {
+        private final int rank;
+        private final String player;
+        private final int score;
+        private final long timestamp;
+        
+        Entry(int rank, String player, int score, long timestamp) {
+            this.rank = rank;
+            this.player = player;
+            this.score = score;
+            this.timestamp = timestamp;
+        }
+        
+        /**
+         * Gets the rank, starting at 0 for the highest score.
+         * 
+         * @return The rank
+         */
+        public int getRank() {
+            return rank;
+        }
+        
+        /**
+         * Gets the player's name.
+         * 
+         * @return The player
+         */
+        public String getPlayer() {
+            return player;
+        }
+        
+        /**
+         * Gets the score.
+         * 
+         * @return The score
+         */
+        public int getScore() {
+            return score;
+        }
+        
+        /**
+         * Gets the time the score was set.
+         * 
+         * @return The timestamp in milliseconds since the epoch
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+        
+        @Override
+        public String toString() {
+            return (rank + 1) + ". " + player + " " + score;
+        }
+    }
+    
+    /**
+     * Creates a new, empty Leaderboard.
+     * 
+     * @param maxScore The highest score the board accepts; memory grows with it
+     */
+    public Leaderboard(int maxScore) {
+        this.maxScore = maxScore;
+        this.buckets = maxScore + 1;
+        this.tree = new int[buckets + 1];
+        this.bucketEntries = new int[buckets + 1][];
+        this.bucketSizes = new int[buckets + 1];
+        this.scores = new int[INITIAL_CAPACITY];
+        this.timestamps = new long[INITIAL_CAPACITY];
+        this.players = new int[INITIAL_CAPACITY];
+        this.ordinals = new int[INITIAL_CAPACITY];
+        Arrays.fill(playerBest, NONE);
+    }
+    
+    /**
+     * Adds a score.
+     * 
+     * @param player The player's name
+     * @param score The score, from 0 to the board's maximum
+     * @param timestamp The time the score was set, in milliseconds since the epoch
+     * @return The rank of the new entry, starting at 0
+     */
+    public int add(String player, int score, long timestamp) {
+        if (score < 0 || score > maxScore) {
+            throw new IllegalArgumentException("Score " + score + " is outside 0.." + maxScore);
+        }
+        if (size == scores.length) {
+            grow();
+        }
+        int entry = size++;
+        int playerId = playerId(player);
+        scores[entry] = score;
+        timestamps[entry] = timestamp;
+        players[entry] = playerId;
+        
+        // Append to the entries with the same score
+        int bucket = bucketOf(score);
+        int[] bucketList = bucketEntries[bucket];
+        int ordinal = bucketSizes[bucket]++;
+        if (bucketList == null) {
+            bucketList = new int[BUCKET_CAPACITY];
+            bucketEntries[bucket] = bucketList;
+        } else if (ordinal == bucketList.length) {
+            bucketList = Arrays.copyOf(bucketList, ordinal * 2);
+            bucketEntries[bucket] = bucketList;
+        }
+        bucketList[ordinal] = entry;
+        ordinals[entry] = ordinal;
+        for (int i = bucket; i <= buckets; i += i & -i) {
+            tree[i]++;
+        }
+        
+        int best = playerBest[playerId];
+        if (best == NONE || score > scores[best]) {
+            playerBest[playerId] = entry;
+        }
+        return rankOf(entry);
+    }
+    
+    /**
+     * Gets the number of entries.
+     * 
+     * @return The number of entries
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Gets the highest score the board accepts.
+     * 
+     * @return The maximum score
+     */
+    public int getMaxScore() {
+        return maxScore;
+    }
+    
+    /**
+     * Counts the entries with a higher score, which is the rank a new entry with this score would get.
+     * 
+     * @param score The score
+     * @return The number of entries with a higher score
+     */
+    public int countAbove(int score) {
+        if (score >= maxScore) {
+            return 0;
+        }
+        return prefix(bucketOf(Math.max(score, 0)) - 1);
+    }
+    
+    /**
+     * Gets the rank of a player's best entry.
+     * 
+     * @param player The player's name
+     * @return The rank starting at 0, or -1 if the player has no entry
+     */
+    public int getRank(String player) {
+        Integer id = playerIds.get(player);
+        if (id == null) {
+            return -1;
+        }
+        return rankOf(playerBest[id]);
+    }
+    
+    /**
+     * Gets the entry at a rank.
+     * 
+     * @param rank The rank, starting at 0
+     * @return The entry, or null if there is no entry at that rank
+     */
+    public Entry get(int rank) {
+        List<Entry> entries = range(rank, 1);
+        return entries.isEmpty() ? null : entries.get(0);
+    }
+    
+    /**
+     * Gets the highest entries.
+     * 
+     * @param count The number of entries
+     * @return Up to count entries, best first
+     */
+    public List<Entry> top(int count) {
+        return range(0, count);
+    }
+    
+    /**
+     * Gets the entries around a player's best entry.
+     * 
+     * @param player The player's name
+     * @param radius The number of entries to include above and below
+     * @return The entries, best first, or an empty list if the player has no entry
+     */
+    public List<Entry> around(String player, int radius) {
+        int rank = getRank(player);
+        if (rank < 0) {
+            return new ArrayList<>();
+        }
+        int first = Math.max(0, rank - radius);
+        return range(first, rank + radius + 1 - first);
+    }
+    
+    /**
+     * Gets consecutive entries by rank.
+     * 
+     * @param first The rank of the first entry
+     * @param count The number of entries
+     * @return Up to count entries, best first
+     */
+    public List<Entry> range(int first, int count) {
+        List<Entry> result = new ArrayList<>(Math.max(0, Math.min(count, size - first)));
+        if (first < 0 || first >= size || count <= 0) {
+            return result;
+        }
+        
+        // Find the bucket and the offset within it, then walk buckets in rank order
+        int bucket = select(first);
+        int ordinal = first - prefix(bucket - 1);
+        int rank = first;
+        while (result.size() < count && rank < size) {
+            int entry = bucketEntries[bucket][ordinal];
+            result.add(new Entry(rank, playerNames.get(players[entry]), scores[entry], timestamps[entry]));
+            rank++;
+            ordinal++;
+            if (ordinal == bucketSizes[bucket] && rank < size) {
+                // The next rank starts the next non-empty bucket
+                bucket = select(rank);
+                ordinal = 0;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Writes the board in a compact form: the player table, then the entries in rank
+     * order as variable-length score deltas, timestamp deltas and player numbers.
+     * 
+     * @param out The output to write to
+     * @throws IOException If writing failed
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(maxScore);
+        out.writeInt(playerNames.size());
+        for (String name : playerNames) {
+            out.writeUTF(name);
+        }
+        out.writeInt(size);
+        
+        int previousScore = maxScore;
+        long previousTimestamp = 0;
+        int written = 0;
+        for (int bucket = 1; bucket <= buckets && written < size; bucket++) {
+            for (int i = 0; i < bucketSizes[bucket]; i++) {
+                int entry = bucketEntries[bucket][i];
+                writeVarLong(out, previousScore - scores[entry]);
+                long delta = timestamps[entry] - previousTimestamp;
+                writeVarLong(out, (delta << 1) ^ (delta >> 63));
+                writeVarLong(out, players[entry]);
+                previousScore = scores[entry];
+                previousTimestamp = timestamps[entry];
+                written++;
+            }
+        }
+    }
+    
+    /**
+     * Reads a board written by write.
+     * 
+     * @param in The input to read from
+     * @return The board
+     * @throws IOException If reading failed or the data is invalid
+     */
+    public static Leaderboard read(DataInput in) throws IOException {
+        int maxScore = in.readInt();
+        if (maxScore < 0 || maxScore > MAX_READ_SCORE) {
+            throw new IOException("Invalid maximum score " + maxScore);
+        }
+        Leaderboard board = new Leaderboard(maxScore);
+        
+        // The lists grow as names and entries are read, so a corrupt count runs out of input
+        // instead of allocating for it up front
+        int playerCount = in.readInt();
+        if (playerCount < 0) {
+            throw new IOException("Invalid player count " + playerCount);
+        }
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < playerCount; i++) {
+            names.add(in.readUTF());
+        }
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid entry count " + count);
+        }
+        
+        // Entries come in rank order, so appending keeps the order of equal scores
+        int score = board.maxScore;
+        long timestamp = 0;
+        for (int i = 0; i < count; i++) {
+            long delta = readVarLong(in);
+            if (delta < 0 || delta > score) {
+                throw new IOException("Invalid score delta " + delta + " from score " + score);
+            }
+            score -= (int) delta;
+            long zigzag = readVarLong(in);
+            timestamp += (zigzag >>> 1) ^ -(zigzag & 1);
+            long player = readVarLong(in);
+            if (player < 0 || player >= playerCount) {
+                throw new IOException("Invalid player number " + player);
+            }
+            board.add(names.get((int) player), score, timestamp);
+        }
+        return board;
+    }
+    
+    /**
+     * Gets the id of a player, adding the player if needed.
+     * 
+     * @param player The player's name
+     * @return The player id
+     */
+    private int playerId(String player) {
+        Integer id = playerIds.get(player);
+        if (id != null) {
+            return id;
+        }
+        int newId = playerNames.size();
+        playerIds.put(player, newId);
+        playerNames.add(player);
+        if (newId == playerBest.length) {
+            playerBest = Arrays.copyOf(playerBest, newId * 2);
+            Arrays.fill(playerBest, newId, playerBest.length, NONE);
+        }
+        return newId;
+    }
+    
+    /**
+     * Doubles the entry arrays.
+     */
+    private void grow() {
+        int capacity = scores.length * 2;
+        scores = Arrays.copyOf(scores, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        players = Arrays.copyOf(players, capacity);
+        ordinals = Arrays.copyOf(ordinals, capacity);
+    }
+    
+    /**
+     * Gets the rank of an entry.
+     * 
+     * @param entry The entry index
+     * @return The rank, starting at 0
+     */
+    private int rankOf(int entry) {
+        return prefix(bucketOf(scores[entry]) - 1) + ordinals[entry];
+    }
+    
+    /**
+     * Gets the Fenwick index for a score.
+     * 
+     * @param score The score
+     * @return The index, 1 for the maximum score
+     */
+    private int bucketOf(int score) {
+        return maxScore - score + 1;
+    }
+    
+    /**
+     * Counts the entries in buckets 1 to index.
+     * 
+     * @param index The last bucket
+     * @return The number of entries
+     */
+    private int prefix(int index) {
+        int sum = 0;
+        for (int i = index; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+    
+    /**
+     * Finds the bucket that holds the entry at a rank.
+     * 
+     * @param rank The rank, less than the size
+     * @return The bucket index
+     */
+    private int select(int rank) {
+        int position = 0;
+        int remaining = rank;
+        for (int step = Integer.highestOneBit(buckets); step > 0; step >>= 1) {
+            int candidate = position + step;
+            if (candidate <= buckets && tree[candidate] <= remaining) {
+                position = candidate;
+                remaining -= tree[candidate];
+            }
+        }
+        return position + 1;
+    }
+    
+    /**
+     * Writes a non-negative number in 7-bit groups.
+     * 
+     * @param out The output
+     * @param value The value
+     * @throws IOException If writing failed
+     */
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+    
+    /**
+     * Reads a number written by writeVarLong.
+     * 
+     * @param in The input
+     * @return The value
+     * @throws IOException If reading failed or the number is too long
+     */
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Variable-length number too long");
+    }
+}
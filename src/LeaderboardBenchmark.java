@@ -0,0 +1,133 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the leaderboard with synthetic scores: inserts, rank lookups, top-K and
+ * "around me" queries, and saving and loading the compact file.
+ * 
+ * Usage: java -Xmx2g LeaderboardBenchmark [--entries n] [--players n] [--queries n] [--file path]
+ */
+public class LeaderboardBenchmark {
+    private static final String MAZE = "classic";
+    
+    /**
+     * Runs the benchmark from the command line.
+     * 
+     * @param args The command line arguments
+     */
+    public static void main(String[] args) throws IOException {
+        int entries = 10000000;
+        int players = 1000000;
+        int queries = 1000000;
+        File file = new File("leaderboards-benchmark.dat");
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--entries":
+                    entries = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--players":
+                    players = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--queries":
+                    queries = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--file":
+                    file = new File(args[i + 1]);
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(1);
+            }
+        }
+        
+        // Player names are created up front so that only the leaderboard is measured
+        String[] names = new String[players];
+        for (int i = 0; i < players; i++) {
+            names[i] = "player" + i;
+        }
+        Random random = new Random(42);
+        int maxScore = Leaderboards.DEFAULT_MAX_SCORE;
+        
+        // Inserts: scores cluster around typical results with a long tail of high scores
+        Leaderboards leaderboards = new Leaderboards(maxScore);
+        long timestamp = 1700000000000L;
+        long start = System.nanoTime();
+        for (int i = 0; i < entries; i++) {
+            int score = (int) Math.min(maxScore, Math.abs(random.nextGaussian()) * 20000) / 10 * 10;
+            int difficulty = i % 3;
+            timestamp += random.nextInt(1000);
+            leaderboards.add(names[random.nextInt(players)], score, difficulty, MAZE, timestamp);
+        }
+        report("insert", entries, System.nanoTime() - start);
+        
+        Leaderboard board = leaderboards.get(TitleScreen.DIFFICULTY_MEDIUM, MAZE);
+        System.out.println("Medium board: " + board.size() + " entries");
+        
+        // Rank lookups by player
+        long checksum = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            checksum += board.getRank(names[random.nextInt(players)]);
+        }
+        report("rank of player", queries, System.nanoTime() - start);
+        
+        // Top 10
+        start = System.nanoTime();
+        for (int i = 0; i < queries / 10; i++) {
+            checksum += board.top(10).size();
+        }
+        report("top 10", queries / 10, System.nanoTime() - start);
+        
+        // Around me, five above and below
+        start = System.nanoTime();
+        for (int i = 0; i < queries / 10; i++) {
+            checksum += board.around(names[random.nextInt(players)], 5).size();
+        }
+        report("around me", queries / 10, System.nanoTime() - start);
+        
+        // Random pages deep in the ranking
+        start = System.nanoTime();
+        for (int i = 0; i < queries / 10; i++) {
+            checksum += board.range(random.nextInt(board.size()), 20).size();
+        }
+        report("page of 20", queries / 10, System.nanoTime() - start);
+        
+        // Save and load
+        start = System.nanoTime();
+        leaderboards.save(file);
+        report("save", 1, System.nanoTime() - start);
+        System.out.printf("File size: %.1f MB, %.1f bytes per entry%n",
+                file.length() / 1e6, (double) file.length() / entries);
+        
+        start = System.nanoTime();
+        Leaderboards loaded = Leaderboards.load(file);
+        report("load", 1, System.nanoTime() - start);
+        
+        List<Leaderboard.Entry> expected = board.top(100);
+        List<Leaderboard.Entry> actual = loaded.get(TitleScreen.DIFFICULTY_MEDIUM, MAZE).top(100);
+        for (int i = 0; i < expected.size(); i++) {
+            if (!expected.get(i).toString().equals(actual.get(i).toString())
+                    || expected.get(i).getTimestamp() != actual.get(i).getTimestamp()) {
+                System.err.println("Loaded board differs at rank " + i);
+                System.exit(1);
+            }
+        }
+        if (!file.delete()) {
+            System.err.println("Could not delete " + file);
+        }
+        System.out.println("Top 3: " + board.top(3) + " (checksum " + checksum + ")");
+    }
+    
+    /**
+     * Prints the time per operation.
+     * 
+     * @param name The operation
+     * @param count The number of operations
+     * @param nanos The total time
+     */
+    private static void report(String name, int count, long nanos) {
+        System.out.printf("%-15s %,12d ops %10.1f ms %10.0f ns/op%n", name, count, nanos / 1e6, (double) nanos / count);
+    }
+}
@@ -0,0 +1,127 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Leaderboards for every combination of difficulty and maze, saved together in one compact file.
+ */
+public class Leaderboards {
+    public static final int DEFAULT_MAX_SCORE = (1 << 20) - 1;
+    private static final int FILE_MAGIC = 0x504C4244; // "PLBD"
+    private static final int FILE_VERSION = 1;
+    
+    private final int maxScore;
+    private final Map<String, Leaderboard> boards = new TreeMap<>();
+    
+    /**
+     * Creates new, empty Leaderboards.
+     * 
+     * @param maxScore The highest score each board accepts
+     */
+    public Leaderboards(int maxScore) {
+        this.maxScore = maxScore;
+    }
+    
+    /**
+     * Adds a score to the board for its difficulty and maze.
+     * 
+     * @param player The player's name
+     * @param score The score
+     * @param difficulty The difficulty level (0=easy, 1=medium, 2=hard)
+     * @param maze The name of the maze
+     * @param timestamp The time the score was set, in milliseconds since the epoch
+     * @return The rank of the new entry on its board, starting at 0
+     */
+    public int add(String player, int score, int difficulty, String maze, long timestamp) {
+        String key = keyOf(difficulty, maze);
+        Leaderboard board = boards.get(key);
+        if (board == null) {
+            board = new Leaderboard(maxScore);
+            boards.put(key, board);
+        }
+        return board.add(player, score, timestamp);
+    }
+    
+    /**
+     * Gets the board for a difficulty and maze.
+     * 
+     * @param difficulty The difficulty level
+     * @param maze The name of the maze
+     * @return The board, or null if no score has been added to it
+     */
+    public Leaderboard get(int difficulty, String maze) {
+        return boards.get(keyOf(difficulty, maze));
+    }
+    
+    /**
+     * Saves all boards. The file is written next to the target and renamed over it,
+     * so a crash never leaves a partial file behind.
+     * 
+     * @param file The file to write
+     * @throws IOException If writing failed
+     */
+    public void save(File file) throws IOException {
+        Path target = file.toPath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeInt(boards.size());
+            for (Map.Entry<String, Leaderboard> entry : boards.entrySet()) {
+                out.writeUTF(entry.getKey());
+                entry.getValue().write(out);
+            }
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+     * Loads boards saved by save.
+     * 
+     * @param file The file to read
+     * @return The boards
+     * @throws IOException If reading failed or the file is not a leaderboard file
+     */
+    public static Leaderboards load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                throw new IOException("Not a leaderboard file: " + file);
+            }
+            int count = in.readInt();
+            Leaderboards leaderboards = null;
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                Leaderboard board = Leaderboard.read(in);
+                if (leaderboards == null) {
+                    leaderboards = new Leaderboards(board.getMaxScore());
+                }
+                leaderboards.boards.put(key, board);
+            }
+            return leaderboards != null ? leaderboards : new Leaderboards(DEFAULT_MAX_SCORE);
+        }
+    }
+    
+    /**
+     * Gets the key of the board for a difficulty and maze.
+     * 
+     * @param difficulty The difficulty level
+     * @param maze The name of the maze
+     * @return The key
+     */
+    private static String keyOf(int difficulty, String maze) {
+        return difficulty + "/" + maze;
+    }
+}
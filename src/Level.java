@@ -0,0 +1,176 @@
+/**
+ * One level of the campaign: the maze it is played on, how much faster the ghosts are
+ * and how much shorter power mode is than at the chosen difficulty, and the waves in
+ * which the ghosts take turns scattering to their corners and chasing Pac-Man.
+ * 
+ * Levels cycle through the layouts and get harder up to a limit. Level 0 is the single
+ * classic game that seeded runs and tools play: the default maze, no waves, and the
+ * speeds of the difficulty alone.
+ */
+public class Level {
+    public static final Level CLASSIC = new Level(0, Maze.DEFAULT_LAYOUT, 0, 100, new int[0]);
+    
+    // Level progression
+    private static final int SPEED_STEP = 5; // Percent of Pac-Man's speed the ghosts gain per level
+    private static final int MAX_SPEED_BONUS = 25;
+    private static final int POWER_STEP = 15; // Percent of the power mode duration lost per level
+    private static final int MIN_POWER_PERCENT = 40;
+    private static final int SCATTER_TICKS = 420; // First scatter wave of level 1 (7 seconds)
+    private static final int SCATTER_STEP = 60; // Ticks each level takes off the scatter waves
+    private static final int MIN_SCATTER_TICKS = 120;
+    private static final int CHASE_TICKS = 1200; // 20 seconds
+    
+    // The default maze with gaps opened in the top row and the inner walls, so there are more ways round
+    private static final int[][] OPEN_LAYOUT = {
+        {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1},
+        {1, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1},
+        {1, 3, 1, 1, 2, 1, 1, 1, 2, 1, 2, 1, 1, 1, 2, 1, 1, 3, 1},
+        {1, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1},
+        {1, 2, 1, 1, 2, 1, 2, 1, 1, 1, 1, 1, 2, 1, 2, 1, 1, 2, 1},
+        {1, 2, 2, 2, 2, 2, 2, 2, 2, 1, 2, 2, 2, 2, 2, 2, 2, 2, 1},
+        {1, 1, 1, 1, 2, 1, 1, 1, 0, 1, 0, 1, 1, 1, 2, 1, 1, 1, 1},
+        {0, 0, 0, 1, 2, 1, 0, 0, 0, 0, 0, 0, 0, 1, 2, 1, 0, 0, 0},
+        {1, 1, 1, 1, 2, 1, 0, 1, 1, 5, 1, 1, 0, 1, 2, 1, 1, 1, 1},
+        {0, 0, 0, 0, 2, 0, 0, 1, 5, 5, 5, 1, 0, 0, 2, 0, 0, 0, 0},
+        {1, 1, 1, 1, 2, 1, 0, 1, 1, 1, 1, 1, 0, 1, 2, 1, 1, 1, 1},
+        {0, 0, 0, 1, 2, 1, 0, 0, 0, 0, 0, 0, 0, 1, 2, 1, 0, 0, 0},
+        {1, 1, 1, 1, 2, 1, 0, 1, 1, 1, 1, 1, 0, 1, 2, 1, 1, 1, 1},
+        {1, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1},
+        {1, 2, 1, 1, 2, 1, 1, 1, 2, 1, 2, 1, 1, 1, 2, 1, 1, 2, 1},
+        {1, 3, 2, 1, 2, 2, 2, 2, 2, 4, 2, 2, 2, 2, 2, 1, 2, 3, 1},
+        {1, 1, 2, 1, 2, 1, 2, 1, 1, 1, 1, 1, 2, 1, 2, 1, 2, 1, 1},
+        {1, 2, 2, 2, 2, 2, 2, 2, 2, 1, 2, 2, 2, 2, 2, 2, 2, 2, 1},
+        {1, 2, 1, 1, 1, 1, 1, 1, 2, 1, 2, 1, 1, 1, 1, 1, 1, 2, 1},
+        {1, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1},
+        {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1}
+    };
+    
+    // The default maze with the top halves split by a wall and one long corridor through Pac-Man's start
+    private static final int[][] LONG_LAYOUT = {
+        {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1},
+        {1, 2, 2, 2, 2, 2, 2, 2, 2, 1, 2, 2, 2, 2, 2, 2, 2, 2, 1},
+        {1, 3, 1, 1, 2, 1, 1, 1, 2, 1, 2, 1, 1, 1, 2, 1, 1, 3, 1},
+        {1, 2, 2, 2, 2, 2, 2, 2, 2, 1, 2, 2, 2, 2, 2, 2, 2, 2, 1},
+        {1, 2, 1, 1, 2, 1, 2, 1, 1, 1, 1, 1, 2, 1, 2, 1, 1, 2, 1},
+        {1, 2, 2, 2, 2, 1, 2, 2, 2, 2, 2, 2, 2, 1, 2, 2, 2, 2, 1},
+        {1, 1, 1, 1, 2, 1, 1, 1, 0, 1, 0, 1, 1, 1, 2, 1, 1, 1, 1},
+        {0, 0, 0, 1, 2, 1, 0, 0, 0, 0, 0, 0, 0, 1, 2, 1, 0, 0, 0},
+        {1, 1, 1, 1, 2, 1, 0, 1, 1, 5, 1, 1, 0, 1, 2, 1, 1, 1, 1},
+        {0, 0, 0, 0, 2, 0, 0, 1, 5, 5, 5, 1, 0, 0, 2, 0, 0, 0, 0},
+        {1, 1, 1, 1, 2, 1, 0, 1, 1, 1, 1, 1, 0, 1, 2, 1, 1, 1, 1},
+        {0, 0, 0, 1, 2, 1, 0, 0, 0, 0, 0, 0, 0, 1, 2, 1, 0, 0, 0},
+        {1, 1, 1, 1, 2, 1, 0, 1, 1, 1, 1, 1, 0, 1, 2, 1, 1, 1, 1},
+        {1, 2, 2, 2, 2, 2, 2, 2, 2, 1, 2, 2, 2, 2, 2, 2, 2, 2, 1},
+        {1, 2, 1, 1, 2, 1, 1, 1, 2, 1, 2, 1, 1, 1, 2, 1, 1, 2, 1},
+        {1, 3, 2, 2, 2, 2, 2, 2, 2, 4, 2, 2, 2, 2, 2, 2, 2, 3, 1},
+        {1, 1, 2, 1, 2, 1, 2, 1, 1, 1, 1, 1, 2, 1, 2, 1, 2, 1, 1},
+        {1, 2, 2, 2, 2, 1, 2, 2, 2, 1, 2, 2, 2, 1, 2, 2, 2, 2, 1},
+        {1, 2, 1, 1, 1, 1, 1, 1, 2, 1, 2, 1, 1, 1, 1, 1, 1, 2, 1},
+        {1, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1},
+        {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1}
+    };
+    
+    private static final int[][][] LAYOUTS = {Maze.DEFAULT_LAYOUT, OPEN_LAYOUT, LONG_LAYOUT};
+    
+    private final int number;
+    private final int[][] layout;
+    private final int ghostSpeedBonus;
+    private final int powerDurationPercent;
+    private final int[] waves;
+    
+    /**
+     * Creates a new Level.
+     * 
+     * @param number The level number, 0 for the classic game
+     * @param layout The maze layout, as in Maze.DEFAULT_LAYOUT
+     * @param ghostSpeedBonus Percent of Pac-Man's speed added to the ghosts' speed
+     * @param powerDurationPercent Percent of the difficulty's power mode duration
+     * @param waves Ticks of each wave, scatter waves at even indices; the ghosts chase
+     *        for good after the last
+     */
+    private Level(int number, int[][] layout, int ghostSpeedBonus, int powerDurationPercent, int[] waves) {
+        this.number = number;
+        this.layout = layout;
+        this.ghostSpeedBonus = ghostSpeedBonus;
+        this.powerDurationPercent = powerDurationPercent;
+        this.waves = waves;
+    }
+    
+    /**
+     * Gets a level of the campaign.
+     * 
+     * @param number The level number, from 1
+     * @return The level
+     */
+    public static Level get(int number) {
+        int step = Math.max(0, number - 1);
+        int scatter = Math.max(MIN_SCATTER_TICKS, SCATTER_TICKS - step * SCATTER_STEP);
+        int[] waves = {scatter, CHASE_TICKS, scatter, CHASE_TICKS, scatter * 5 / 7};
+        return new Level(number, LAYOUTS[step % LAYOUTS.length], Math.min(MAX_SPEED_BONUS, step * SPEED_STEP),
+                Math.max(MIN_POWER_PERCENT, 100 - step * POWER_STEP), waves);
+    }
+    
+    /**
+     * Gets the level number.
+     * 
+     * @return The level number, 0 for the classic game
+     */
+    public int getNumber() {
+        return number;
+    }
+    
+    /**
+     * Gets the maze layout. The arrays are shared and must not be changed.
+     * 
+     * @return The tile types by row
+     */
+    public int[][] getLayout() {
+        return layout;
+    }
+    
+    /**
+     * Checks whether the level is played on the default maze, which heatmaps describe.
+     * 
+     * @return True for the default layout
+     */
+    public boolean isDefaultLayout() {
+        return layout == Maze.DEFAULT_LAYOUT;
+    }
+    
+    /**
+     * Gets how much faster the ghosts are than at the chosen difficulty.
+     * 
+     * @return Percent of Pac-Man's speed added to the ghosts' speed
+     */
+    public int getGhostSpeedBonus() {
+        return ghostSpeedBonus;
+    }
+    
+    /**
+     * Gets how long power mode lasts compared to the chosen difficulty.
+     * 
+     * @return Percent of the difficulty's power mode duration
+     */
+    public int getPowerDurationPercent() {
+        return powerDurationPercent;
+    }
+    
+    /**
+     * Gets the number of scatter and chase waves before the ghosts chase for good.
+     * 
+     * @return The wave count
+     */
+    public int getWaveCount() {
+        return waves.length;
+    }
+    
+    /**
+     * Gets the length of a wave. Waves at even indices scatter, the others chase.
+     * 
+     * @param wave The wave index
+     * @return The length in ticks
+     */
+    public int getWaveTicks(int wave) {
+        return waves[wave];
+    }
+}
@@ -0,0 +1,179 @@
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays through the levels of a campaign headless and measures what moving on to the
+ * next level costs the game thread, while the level after it is prepared in the
+ * background. Also checks that frames drawn over the prepared wall layers match frames
+ * drawn tile by tile, and compares what the two cost. Finally checks that games
+ * started over in place play exactly like new ones, and measures what restarting a
+ * campaign costs and allocates.
+ * 
+ * Usage: java LevelBenchmark [--levels n] [--ticks n] [--seed n] [--restarts n]
+ */
+public class LevelBenchmark {
+    private static final long FRAME_NANOS = Game.TICK_TIME * 1000000L;
+    private static final int FRAMES = 500;
+    private static final long IDLE_NANOS = 1000000L; // Time the game thread leaves free per tick, a fraction of a real frame
+    
+    /**
+     * Runs the benchmark from the command line.
+     * 
+     * @param args The command line arguments
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        
+        int levels = 60;
+        int ticks = 120;
+        long seed = 1;
+        int restarts = 10000;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--levels":
+                    levels = Math.max(1, Integer.parseInt(args[i + 1]));
+                    break;
+                case "--ticks":
+                    ticks = Math.max(0, Integer.parseInt(args[i + 1]));
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[i + 1]);
+                    break;
+                case "--restarts":
+                    restarts = Math.max(1, Integer.parseInt(args[i + 1]));
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(1);
+            }
+        }
+        
+        // Play each level for a while, idling after each tick as the game loop does between
+        // frames, then hand over as after a win
+        Campaign campaign = new Campaign();
+        Histogram prepareTimes = new Histogram();
+        Histogram handoverTimes = new Histogram();
+        long handoverBytes = 0;
+        Game game = campaign.start(PreparedLevel.prepare(Level.get(1)), TitleScreen.DIFFICULTY_MEDIUM, seed);
+        for (int level = 1; level < levels; level++) {
+            Autopilot autopilot = new Autopilot(seed + level);
+            for (int i = 0; i < ticks && !game.isGameOver() && !game.isGameWon(); i++) {
+                autopilot.steer(game);
+                game.tick();
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            game = campaign.advance(game, seed + level);
+            handoverTimes.record(System.nanoTime() - start);
+            handoverBytes += allocatedBytes() - allocated;
+            prepareTimes.record(campaign.getCurrentLevel().getPrepareTime());
+        }
+        System.out.printf("%d levels, %d ticks each: prepared in the background in p50 %.2f ms, max %.2f ms%n",
+                levels, ticks, prepareTimes.getPercentile(50) / 1e6, prepareTimes.getMax() / 1e6);
+        System.out.printf("Handover p50 %.1f us, p99 %.1f us, max %.1f us; %d waited for the loader; %.0f bytes allocated per handover%n",
+                handoverTimes.getPercentile(50) / 1000.0, handoverTimes.getPercentile(99) / 1000.0,
+                handoverTimes.getMax() / 1000.0, campaign.getWaitCount(), handoverBytes / (double) (levels - 1));
+        
+        // The wall layer must not change a pixel, on every layout
+        SpriteAtlas atlas = SpriteAtlas.create(Game.TILE_SIZE, Game.GHOST_COLORS);
+        boolean matches = true;
+        long tileNanos = 0;
+        long layerNanos = 0;
+        for (int level = 1; level <= 3; level++) {
+            PreparedLevel prepared = PreparedLevel.prepare(Level.get(level));
+            Game levelGame = new Game(TitleScreen.DIFFICULTY_MEDIUM, seed, new Maze(prepared.getMaze()), prepared.getLevel());
+            GameRenderer renderer = new GameRenderer(atlas);
+            BufferedImage byTile = new BufferedImage(GameRenderer.WIDTH, GameRenderer.HEIGHT, BufferedImage.TYPE_INT_RGB);
+            BufferedImage byLayer = new BufferedImage(GameRenderer.WIDTH, GameRenderer.HEIGHT, BufferedImage.TYPE_INT_RGB);
+            tileNanos += time(renderer, byTile, levelGame);
+            renderer.setWallLayer(prepared.getWallLayer());
+            layerNanos += time(renderer, byLayer, levelGame);
+            int[] expected = byTile.getRGB(0, 0, GameRenderer.WIDTH, GameRenderer.HEIGHT, null, 0, GameRenderer.WIDTH);
+            int[] actual = byLayer.getRGB(0, 0, GameRenderer.WIDTH, GameRenderer.HEIGHT, null, 0, GameRenderer.WIDTH);
+            matches &= Arrays.equals(expected, actual);
+        }
+        System.out.printf("Maze and actors per frame: %.1f us tile by tile, %.1f us over the wall layer%n",
+                tileNanos / 3.0 / FRAMES / 1000.0, layerNanos / 3.0 / FRAMES / 1000.0);
+        System.out.println(matches ? "Wall layer frames match" : "Wall layer frames differ");
+        
+        // A game started over in place must play like a new one, on every layout
+        boolean replays = true;
+        PreparedLevel first = campaign.getCurrentLevel();
+        for (int i = 0; i < 30; i++) {
+            PreparedLevel prepared = PreparedLevel.prepare(Level.get(1 + i % 3));
+            Game fresh = new Game(i % 3, seed + i, new Maze(prepared.getMaze()), prepared.getLevel());
+            game.reset(i % 3, seed + i, prepared.getMaze(), prepared.getLevel());
+            replays &= play(fresh, seed + i, ticks * 10).equals(play(game, seed + i, ticks * 10));
+        }
+        System.out.println(replays ? "Games started over in place play like new ones" : "Games started over in place play differently");
+        
+        // Restart the campaign over and over, as back-to-back games do
+        Histogram restartTimes = new Histogram();
+        campaign.start(first, TitleScreen.DIFFICULTY_MEDIUM, seed);
+        long allocated = allocatedBytes();
+        for (int i = 0; i < restarts; i++) {
+            long start = System.nanoTime();
+            campaign.start(first, TitleScreen.DIFFICULTY_MEDIUM, seed + i);
+            restartTimes.record(System.nanoTime() - start);
+        }
+        allocated = allocatedBytes() - allocated;
+        System.out.printf("%d restarts: p50 %.1f us, p99 %.1f us, max %.1f us; %s%n", restarts,
+                restartTimes.getPercentile(50) / 1000.0, restartTimes.getPercentile(99) / 1000.0,
+                restartTimes.getMax() / 1000.0, allocated < 0 ? "allocation not measurable"
+                        : String.format("%.1f bytes allocated per restart", allocated / (double) restarts));
+        
+        boolean fits = handoverTimes.getMax() < FRAME_NANOS;
+        System.out.println(fits ? "Every handover fits in a frame" : "A handover took longer than a frame");
+        if (!matches || !replays || !fits) {
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Plays a game with the autopilot and describes how it ended.
+     */
+    private static String play(Game game, long seed, int maxTicks) {
+        Autopilot autopilot = new Autopilot(seed);
+        while (!game.isGameOver() && !game.isGameWon() && game.getTicks() < maxTicks) {
+            autopilot.steer(game);
+            game.tick();
+        }
+        Position position = game.getPacMan().getPosition();
+        return game.getTicks() + " ticks, score " + game.getScore() + ", over " + game.isGameOver()
+                + ", won " + game.isGameWon() + ", at " + position.getX() + "," + position.getY();
+    }
+    
+    /**
+     * Gets the bytes this thread has allocated so far.
+     * 
+     * @return The byte count, or -1 if the JVM does not count them
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported()) {
+            return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+    
+    /**
+     * Renders a game repeatedly, after a warm-up, into an image.
+     * 
+     * @return The time of FRAMES frames in nanoseconds
+     */
+    private static long time(GameRenderer renderer, BufferedImage image, Game game) {
+        for (int i = 0; i < FRAMES; i++) {
+            renderer.render(image, game, 0);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) {
+            renderer.render(image, game, 0);
+        }
+        return System.nanoTime() - start;
+    }
+}
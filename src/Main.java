@@ -6,12 +6,32 @@ import javax.swing.SwingUtilities;
  */
 public class Main {
     public static void main(String[] args) {
+        long launchTime = System.nanoTime();
+        
+        // Write gameplay events and errors to logs/events.log
+        EventLog.start();
+        
+        // Record game events with Java Flight Recorder if -Dpacman.jfr=true
+        FlightEvents.startRecording();
+        
+        // Serve metrics for Prometheus if -Dpacman.metricsPort is set
+        MetricsServer.startIfConfigured();
+        
+        // Load the high scores while the pipeline is chosen, then prepare the
+        // sprites and the first level while the title screen is shown
+        final StartupLoader loader = new StartupLoader(launchTime);
+        loader.loadHighScores();
+        
+        // Pick the fastest Java2D pipeline for this machine before AWT starts
+        RenderProbe.configure();
+        loader.prepareAssets();
+        
         // Use SwingUtilities.invokeLater to ensure thread safety
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
                 // Create and display the game window
-                new GameFrame();
+                new GameFrame(loader);
             }
         });
     }
@@ -1,16 +1,43 @@
 import java.awt.Graphics;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * Class representing the game maze.
  */
 public class Maze {
+    // The classic layout: 0 = path, 1 = wall, 2 = pellet, 3 = power pellet, 4 = pacman start, 5 = ghost start
+    static final int[][] DEFAULT_LAYOUT = {
+        {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1},
+        {1, 2, 2, 2, 2, 2, 2, 2, 2, 1, 2, 2, 2, 2, 2, 2, 2, 2, 1},
+        {1, 3, 1, 1, 2, 1, 1, 1, 2, 1, 2, 1, 1, 1, 2, 1, 1, 3, 1},
+        {1, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1},
+        {1, 2, 1, 1, 2, 1, 2, 1, 1, 1, 1, 1, 2, 1, 2, 1, 1, 2, 1},
+        {1, 2, 2, 2, 2, 1, 2, 2, 2, 1, 2, 2, 2, 1, 2, 2, 2, 2, 1},
+        {1, 1, 1, 1, 2, 1, 1, 1, 0, 1, 0, 1, 1, 1, 2, 1, 1, 1, 1},
+        {0, 0, 0, 1, 2, 1, 0, 0, 0, 0, 0, 0, 0, 1, 2, 1, 0, 0, 0},
+        {1, 1, 1, 1, 2, 1, 0, 1, 1, 5, 1, 1, 0, 1, 2, 1, 1, 1, 1},
+        {0, 0, 0, 0, 2, 0, 0, 1, 5, 5, 5, 1, 0, 0, 2, 0, 0, 0, 0},
+        {1, 1, 1, 1, 2, 1, 0, 1, 1, 1, 1, 1, 0, 1, 2, 1, 1, 1, 1},
+        {0, 0, 0, 1, 2, 1, 0, 0, 0, 0, 0, 0, 0, 1, 2, 1, 0, 0, 0},
+        {1, 1, 1, 1, 2, 1, 0, 1, 1, 1, 1, 1, 0, 1, 2, 1, 1, 1, 1},
+        {1, 2, 2, 2, 2, 2, 2, 2, 2, 1, 2, 2, 2, 2, 2, 2, 2, 2, 1},
+        {1, 2, 1, 1, 2, 1, 1, 1, 2, 1, 2, 1, 1, 1, 2, 1, 1, 2, 1},
+        {1, 3, 2, 1, 2, 2, 2, 2, 2, 4, 2, 2, 2, 2, 2, 1, 2, 3, 1},
+        {1, 1, 2, 1, 2, 1, 2, 1, 1, 1, 1, 1, 2, 1, 2, 1, 2, 1, 1},
+        {1, 2, 2, 2, 2, 1, 2, 2, 2, 1, 2, 2, 2, 1, 2, 2, 2, 2, 1},
+        {1, 2, 1, 1, 1, 1, 1, 1, 2, 1, 2, 1, 1, 1, 1, 1, 1, 2, 1},
+        {1, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1},
+        {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1}
+    };
+    
     private Tile[][] tiles;
     private int width;
     private int height;
     private int tileSize;
     private List<Pellet> pellets;
+    private List<Pellet> sparePellets; // Left over from a reset to a layout with fewer pellets
     private int totalPellets;
     private int pelletsEaten;
     
@@ -18,55 +45,122 @@ public class Maze {
     private Position pacmanStart;
     private List<Position> ghostStarts;
     
+    // Reverse BFS field rooted at the ghost house, indexed by y * width + x
+    private Direction[] homeDirections;
+    private int[] homeDistances;
+    
     /**
-     * Creates a new Maze with the specified dimensions.
+     * Creates a new Maze with the specified dimensions and the default layout.
      * 
      * @param width The width of the maze in tiles
      * @param height The height of the maze in tiles
      * @param tileSize The size of each tile in pixels
      */
     public Maze(int width, int height, int tileSize) {
+        this(width, height, tileSize, DEFAULT_LAYOUT);
+    }
+    
+    /**
+     * Creates a new Maze with the specified dimensions and layout.
+     * 
+     * @param width The width of the maze in tiles
+     * @param height The height of the maze in tiles
+     * @param tileSize The size of each tile in pixels
+     * @param layout The tile types by row, as in DEFAULT_LAYOUT
+     */
+    public Maze(int width, int height, int tileSize, int[][] layout) {
         this.width = width;
         this.height = height;
         this.tileSize = tileSize;
         this.tiles = new Tile[width][height];
         this.pellets = new ArrayList<>();
+        this.sparePellets = new ArrayList<>();
         this.ghostStarts = new ArrayList<>();
         this.pelletsEaten = 0;
         
-        // Initialize the maze with a default layout
-        initializeDefaultMaze();
+        // Initialize the maze with the layout
+        initializeLayout(layout);
     }
     
     /**
-     * Initializes the maze with a default layout.
+     * Creates a copy of another Maze.
+     * Tiles and pellets are copied; the layout, start positions and home field never
+     * change after construction and are shared.
+     * 
+     * @param maze The Maze to copy
+     */
+    public Maze(Maze maze) {
+        this.width = maze.width;
+        this.height = maze.height;
+        this.tileSize = maze.tileSize;
+        this.tiles = new Tile[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                tiles[x][y] = new Tile(maze.tiles[x][y]);
+            }
+        }
+        this.pellets = new ArrayList<>(maze.pellets.size());
+        for (Pellet pellet : maze.pellets) {
+            pellets.add(new Pellet(pellet));
+        }
+        this.sparePellets = new ArrayList<>();
+        this.totalPellets = maze.totalPellets;
+        this.pelletsEaten = maze.pelletsEaten;
+        this.pacmanStart = maze.pacmanStart;
+        this.ghostStarts = maze.ghostStarts;
+        this.homeDirections = maze.homeDirections;
+        this.homeDistances = maze.homeDistances;
+    }
+    
+    /**
+     * Makes this maze a copy of a template in place, as the copy constructor would,
+     * reusing its tiles and pellets. Only a template with more pellets than this maze
+     * ever held allocates, for the extra pellets.
+     * 
+     * @param maze The template, of the same size
+     * @throws IllegalArgumentException If the template has a different size
      */
-    private void initializeDefaultMaze() {
-        // 0 = path, 1 = wall, 2 = pellet, 3 = power pellet, 4 = pacman start, 5 = ghost start
-        int[][] layout = {
-            {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1},
-            {1, 2, 2, 2, 2, 2, 2, 2, 2, 1, 2, 2, 2, 2, 2, 2, 2, 2, 1},
-            {1, 3, 1, 1, 2, 1, 1, 1, 2, 1, 2, 1, 1, 1, 2, 1, 1, 3, 1},
-            {1, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1},
-            {1, 2, 1, 1, 2, 1, 2, 1, 1, 1, 1, 1, 2, 1, 2, 1, 1, 2, 1},
-            {1, 2, 2, 2, 2, 1, 2, 2, 2, 1, 2, 2, 2, 1, 2, 2, 2, 2, 1},
-            {1, 1, 1, 1, 2, 1, 1, 1, 0, 1, 0, 1, 1, 1, 2, 1, 1, 1, 1},
-            {0, 0, 0, 1, 2, 1, 0, 0, 0, 0, 0, 0, 0, 1, 2, 1, 0, 0, 0},
-            {1, 1, 1, 1, 2, 1, 0, 1, 1, 5, 1, 1, 0, 1, 2, 1, 1, 1, 1},
-            {0, 0, 0, 0, 2, 0, 0, 1, 5, 5, 5, 1, 0, 0, 2, 0, 0, 0, 0},
-            {1, 1, 1, 1, 2, 1, 0, 1, 1, 1, 1, 1, 0, 1, 2, 1, 1, 1, 1},
-            {0, 0, 0, 1, 2, 1, 0, 0, 0, 0, 0, 0, 0, 1, 2, 1, 0, 0, 0},
-            {1, 1, 1, 1, 2, 1, 0, 1, 1, 1, 1, 1, 0, 1, 2, 1, 1, 1, 1},
-            {1, 2, 2, 2, 2, 2, 2, 2, 2, 1, 2, 2, 2, 2, 2, 2, 2, 2, 1},
-            {1, 2, 1, 1, 2, 1, 1, 1, 2, 1, 2, 1, 1, 1, 2, 1, 1, 2, 1},
-            {1, 3, 2, 1, 2, 2, 2, 2, 2, 4, 2, 2, 2, 2, 2, 1, 2, 3, 1},
-            {1, 1, 2, 1, 2, 1, 2, 1, 1, 1, 1, 1, 2, 1, 2, 1, 2, 1, 1},
-            {1, 2, 2, 2, 2, 1, 2, 2, 2, 1, 2, 2, 2, 1, 2, 2, 2, 2, 1},
-            {1, 2, 1, 1, 1, 1, 1, 1, 2, 1, 2, 1, 1, 1, 1, 1, 1, 2, 1},
-            {1, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1},
-            {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1}
-        };
+    public void reset(Maze maze) {
+        if (maze.width != width || maze.height != height) {
+            throw new IllegalArgumentException("Template maze is " + maze.width + "x" + maze.height
+                    + ", not " + width + "x" + height);
+        }
+        this.tileSize = maze.tileSize;
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                tiles[x][y].set(maze.tiles[x][y]);
+            }
+        }
         
+        // Keep the pellets a smaller layout does not need for a larger one later
+        while (pellets.size() > maze.pellets.size()) {
+            sparePellets.add(pellets.remove(pellets.size() - 1));
+        }
+        for (int i = 0; i < maze.pellets.size(); i++) {
+            if (i < pellets.size()) {
+                pellets.get(i).set(maze.pellets.get(i));
+            } else if (!sparePellets.isEmpty()) {
+                Pellet pellet = sparePellets.remove(sparePellets.size() - 1);
+                pellet.set(maze.pellets.get(i));
+                pellets.add(pellet);
+            } else {
+                pellets.add(new Pellet(maze.pellets.get(i)));
+            }
+        }
+        this.totalPellets = maze.totalPellets;
+        this.pelletsEaten = maze.pelletsEaten;
+        this.pacmanStart = maze.pacmanStart;
+        this.ghostStarts = maze.ghostStarts;
+        this.homeDirections = maze.homeDirections;
+        this.homeDistances = maze.homeDistances;
+    }
+    
+    /**
+     * Initializes the maze from a layout.
+     * 
+     * @param layout The tile types by row
+     */
+    private void initializeLayout(int[][] layout) {
         // Create tiles based on the layout
         for (int y = 0; y < layout.length; y++) {
             for (int x = 0; x < layout[y].length; x++) {
@@ -93,6 +187,82 @@ public class Maze {
                 }
             }
         }
+        
+        // Precompute the paths back to the ghost house
+        computeHomeField();
+    }
+    
+    /**
+     * Computes the shortest path from every walkable tile back to the ghost house
+     * with a single breadth-first search that starts from all ghost start tiles.
+     */
+    private void computeHomeField() {
+        homeDirections = new Direction[width * height];
+        homeDistances = new int[width * height];
+        Arrays.fill(homeDirections, Direction.NONE);
+        Arrays.fill(homeDistances, -1);
+        
+        int[] queue = new int[width * height];
+        int head = 0;
+        int tail = 0;
+        for (Position start : ghostStarts) {
+            int index = start.getY() * width + start.getX();
+            if (homeDistances[index] < 0) {
+                homeDistances[index] = 0;
+                queue[tail++] = index;
+            }
+        }
+        
+        Direction[] allDirections = {Direction.UP, Direction.DOWN, Direction.LEFT, Direction.RIGHT};
+        while (head < tail) {
+            int index = queue[head++];
+            int x = index % width;
+            int y = index / width;
+            for (Direction dir : allDirections) {
+                Position next = new Position(x, y);
+                next.move(dir);
+                int nx = next.getX();
+                int ny = next.getY();
+                if (nx < 0 || nx >= width || ny < 0 || ny >= height || tiles[nx][ny].isWall()) {
+                    continue;
+                }
+                int nextIndex = ny * width + nx;
+                if (homeDistances[nextIndex] < 0) {
+                    // The neighbour is one step further away, so it has to step back towards this tile
+                    homeDistances[nextIndex] = homeDistances[index] + 1;
+                    homeDirections[nextIndex] = dir.getOpposite();
+                    queue[tail++] = nextIndex;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Gets the direction that leads one step closer to the ghost house.
+     * 
+     * @param position The position
+     * @return The direction towards the ghost house, or NONE if the position is inside
+     *         the house, out of bounds or cannot reach the house
+     */
+    public Direction getHomeDirection(Position position) {
+        int x = position.getX();
+        int y = position.getY();
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return Direction.NONE;
+        }
+        return homeDirections[y * width + x];
+    }
+    
+    /**
+     * Checks if the specified position is inside the ghost house.
+     * 
+     * @param position The position
+     * @return True if the position is a ghost start tile, false otherwise
+     */
+    public boolean isGhostHouse(Position position) {
+        int x = position.getX();
+        int y = position.getY();
+        return x >= 0 && x < width && y >= 0 && y < height && homeDistances[y * width + x] == 0;
     }
     
     /**
@@ -233,6 +403,11 @@ public class Maze {
             if (!pellet.isEaten() && pellet.getPosition().equals(position)) {
                 pellet.eat();
                 pelletsEaten++;
+                
+                // The tile draws the pellet, so it has to forget it too
+                Tile tile = tiles[position.getX()][position.getY()];
+                tile.removePellet();
+                tile.removePowerPellet();
                 return pellet.getPoints();
             }
         }
@@ -258,12 +433,40 @@ public class Maze {
      * Draws the maze on the screen.
      * 
      * @param g The Graphics object to draw with
+     * @param atlas The sprite atlas to draw pellets from
      */
-    public void draw(Graphics g) {
+    public void draw(Graphics g, SpriteAtlas atlas) {
         // Draw tiles
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
-                tiles[x][y].draw(g);
+                tiles[x][y].draw(g, atlas);
+            }
+        }
+    }
+    
+    /**
+     * Draws only the walls, for example into a layer drawn once per level.
+     * 
+     * @param g The Graphics object to draw with
+     */
+    public void drawWalls(Graphics g) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                tiles[x][y].drawWall(g);
+            }
+        }
+    }
+    
+    /**
+     * Draws only the pellets, over walls drawn from a layer.
+     * 
+     * @param g The Graphics object to draw with
+     * @param atlas The sprite atlas to draw pellets from
+     */
+    public void drawPellets(Graphics g, SpriteAtlas atlas) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                tiles[x][y].drawPellet(g, atlas);
             }
         }
     }
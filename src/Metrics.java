@@ -0,0 +1,197 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for fleet monitoring, written in the Prometheus text format by MetricsServer.
+ * 
+ * The game thread and the high score writer only add to striped LongAdder counters,
+ * which neither lock nor allocate once warmed up, so a scrape never holds up the
+ * game loop. Heap and GC figures are read from the JVM at scrape time.
+ */
+public class Metrics {
+    private static final String[] DIFFICULTIES = {"easy", "medium", "hard"};
+    
+    // Upper bounds of the latency buckets in nanoseconds
+    private static final long[] FRAME_BUCKETS = {
+        4000000L, 8000000L, 12000000L, 16000000L, 20000000L, 33000000L, 50000000L, 100000000L, 250000000L
+    };
+    private static final long[] WRITE_BUCKETS = {
+        100000L, 500000L, 1000000L, 5000000L, 10000000L, 50000000L, 100000000L, 500000000L, 1000000000L
+    };
+    private static final long[] PLAN_BUCKETS = {
+        5000L, 10000L, 20000L, 50000L, 100000L, 200000L, 500000L, 1000000L
+    };
+    
+    // A frame interval longer than this means at least one tick was not shown
+    private static final long DROPPED_FRAME_NANOS = Game.TICK_TIME * 1500000L;
+    
+    public static final LongAdder TICKS = new LongAdder();
+    public static final LongAdder DROPPED_FRAMES = new LongAdder();
+    public static final Buckets FRAME_TIMES = new Buckets(FRAME_BUCKETS);
+    public static final Buckets HIGH_SCORE_WRITES = new Buckets(WRITE_BUCKETS);
+    public static final Buckets GHOST_PLAN_TIMES = new Buckets(PLAN_BUCKETS);
+    public static final LongAdder GHOST_PLAN_OVERRUNS = new LongAdder();
+    private static final LongAdder[] GAMES = adders(DIFFICULTIES.length);
+    private static final LongAdder[] LEVELS_CLEARED = adders(DIFFICULTIES.length);
+    private static final LongAdder[] SCORE_SUMS = adders(DIFFICULTIES.length);
+    
+    /**
+     * Cumulative latency buckets in the shape of a Prometheus histogram.
+     */
+    public static class Buckets {
+        private final long[] bounds;
+        private final LongAdder[] counts;
+        private final LongAdder sum = new LongAdder();
+        
+        /**
+         * Creates new, empty Buckets.
+         * 
+         * @param bounds The upper bounds of the buckets in nanoseconds, ascending
+         */
+        public Buckets(long[] bounds) {
+            this.bounds = bounds;
+            this.counts = adders(bounds.length + 1); // The last bucket is +Inf
+        }
+        
+        /**
+         * Records a duration.
+         * 
+         * @param nanos The duration in nanoseconds
+         */
+        public void record(long nanos) {
+            int i = 0;
+            while (i < bounds.length && nanos > bounds[i]) {
+                i++;
+            }
+            counts[i].increment();
+            sum.add(nanos);
+        }
+        
+        /**
+         * Writes the buckets, their sum and count.
+         * 
+         * @param out The text to append to
+         * @param name The metric name
+         * @param help The help text
+         */
+        void write(StringBuilder out, String name, String help) {
+            header(out, name, help, "histogram");
+            long cumulative = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i].sum();
+                String bound = i < bounds.length ? Double.toString(bounds[i] / 1e9) : "+Inf";
+                out.append(name).append("_bucket{le=\"").append(bound).append("\"} ").append(cumulative).append('\n');
+            }
+            out.append(name).append("_sum ").append(sum.sum() / 1e9).append('\n');
+            out.append(name).append("_count ").append(cumulative).append('\n');
+        }
+    }
+    
+    /**
+     * Records the interval between two presented frames.
+     * 
+     * @param nanos The interval in nanoseconds
+     */
+    public static void recordFrame(long nanos) {
+        FRAME_TIMES.record(nanos);
+        if (nanos > DROPPED_FRAME_NANOS) {
+            DROPPED_FRAMES.increment();
+        }
+    }
+    
+    /**
+     * Records a finished game, a campaign that ended with Pac-Man caught.
+     * 
+     * @param difficulty The difficulty level (0=easy, 1=medium, 2=hard)
+     * @param levelsCleared The number of levels won before
+     * @param score The final score
+     */
+    public static void recordGame(int difficulty, int levelsCleared, int score) {
+        if (difficulty < 0 || difficulty >= DIFFICULTIES.length) {
+            return;
+        }
+        GAMES[difficulty].increment();
+        LEVELS_CLEARED[difficulty].add(levelsCleared);
+        SCORE_SUMS[difficulty].add(score);
+    }
+    
+    /**
+     * Writes all metrics in the Prometheus text exposition format.
+     * 
+     * @return The metrics text
+     */
+    public static String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        
+        header(out, "pacman_ticks_total", "Game logic ticks run", "counter");
+        out.append("pacman_ticks_total ").append(TICKS.sum()).append('\n');
+        
+        FRAME_TIMES.write(out, "pacman_frame_interval_seconds", "Time between presented frames");
+        header(out, "pacman_dropped_frames_total", "Frame intervals longer than one and a half ticks", "counter");
+        out.append("pacman_dropped_frames_total ").append(DROPPED_FRAMES.sum()).append('\n');
+        
+        header(out, "pacman_games_total", "Games played to the end, each a campaign ended by Pac-Man being caught", "counter");
+        for (int i = 0; i < DIFFICULTIES.length; i++) {
+            out.append("pacman_games_total{difficulty=\"").append(DIFFICULTIES[i]).append("\"} ")
+                    .append(GAMES[i].sum()).append('\n');
+        }
+        header(out, "pacman_levels_cleared_total", "Levels won in the games played to the end", "counter");
+        for (int i = 0; i < DIFFICULTIES.length; i++) {
+            out.append("pacman_levels_cleared_total{difficulty=\"").append(DIFFICULTIES[i]).append("\"} ")
+                    .append(LEVELS_CLEARED[i].sum()).append('\n');
+        }
+        header(out, "pacman_game_score", "Final scores; the average is sum / count", "summary");
+        for (int i = 0; i < DIFFICULTIES.length; i++) {
+            out.append("pacman_game_score_sum{difficulty=\"").append(DIFFICULTIES[i]).append("\"} ")
+                    .append(SCORE_SUMS[i].sum()).append('\n');
+            out.append("pacman_game_score_count{difficulty=\"").append(DIFFICULTIES[i]).append("\"} ")
+                    .append(GAMES[i].sum()).append('\n');
+        }
+        
+        HIGH_SCORE_WRITES.write(out, "pacman_high_score_write_seconds", "Time to append and force a high score record");
+        
+        GHOST_PLAN_TIMES.write(out, "pacman_ghost_plan_seconds", "Time to plan the smart ghosts' targets");
+        header(out, "pacman_ghost_plan_overruns_total",
+                "Smart ghost plans that ran out of budget and fell back to the simple chase", "counter");
+        out.append("pacman_ghost_plan_overruns_total ").append(GHOST_PLAN_OVERRUNS.sum()).append('\n');
+        
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        header(out, "pacman_heap_used_bytes", "Used heap", "gauge");
+        out.append("pacman_heap_used_bytes ").append(heap.getUsed()).append('\n');
+        header(out, "pacman_heap_max_bytes", "Maximum heap, -1 if undefined", "gauge");
+        out.append("pacman_heap_max_bytes ").append(heap.getMax()).append('\n');
+        
+        header(out, "pacman_gc_collections_total", "Garbage collections", "counter");
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            out.append("pacman_gc_collections_total{gc=\"").append(collector.getName()).append("\"} ")
+                    .append(Math.max(0, collector.getCollectionCount())).append('\n');
+        }
+        header(out, "pacman_gc_seconds_total", "Time spent in garbage collection", "counter");
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            out.append("pacman_gc_seconds_total{gc=\"").append(collector.getName()).append("\"} ")
+                    .append(Math.max(0, collector.getCollectionTime()) / 1000.0).append('\n');
+        }
+        return out.toString();
+    }
+    
+    /**
+     * Writes the HELP and TYPE lines of a metric.
+     */
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+    
+    /**
+     * Creates an array of counters.
+     */
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
@@ -0,0 +1,78 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves Metrics at /metrics for Prometheus, from the JDK's built-in HTTP server on
+ * one daemon thread. Enabled with -Dpacman.metricsPort=n; listens on the loopback
+ * interface unless -Dpacman.metricsAddress names another one, such as 0.0.0.0.
+ */
+public class MetricsServer {
+    private static final int PORT = Integer.getInteger("pacman.metricsPort", 0); // 0 disables the endpoint
+    private static final String ADDRESS = System.getProperty("pacman.metricsAddress", "127.0.0.1");
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    
+    /**
+     * Starts the endpoint if a port was configured.
+     */
+    public static void startIfConfigured() {
+        if (PORT <= 0) {
+            return;
+        }
+        
+        // The server's dispatcher thread inherits the daemon flag of the thread that
+        // starts it, so start it from a daemon thread to not keep the JVM alive
+        Thread starter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                start();
+            }
+        }, "Metrics Server Start");
+        starter.setDaemon(true);
+        starter.start();
+        try {
+            starter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Binds the server and starts serving /metrics on one daemon thread.
+     */
+    private static void start() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress(ADDRESS, PORT), 0);
+            server.createContext("/metrics", new HttpHandler() {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                    byte[] body = Metrics.scrape().getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(body);
+                    }
+                }
+            });
+            server.setExecutor(Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Metrics Server");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            }));
+            server.start();
+            EventLog.log(EventLog.INFO, "Serving metrics at http://" + ADDRESS + ":" + PORT + "/metrics");
+        } catch (IOException | IllegalArgumentException e) {
+            EventLog.log(EventLog.WARN, "Could not start metrics endpoint: " + e.getMessage());
+        }
+    }
+}
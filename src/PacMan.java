@@ -1,14 +1,29 @@
-import java.awt.Color;
 import java.awt.Graphics;
 
 /**
  * Class representing the player character (Pac-Man).
  */
 public class PacMan {
+    // How far off a tile centre (in sub-tile units) Pac-Man may be and still turn a corner
+    private static final int CORNER_TOLERANCE = 3;
+    
+    // Distance (in sub-tile units) at which Pac-Man and a ghost overlap
+    private static final int COLLISION_DISTANCE = SubTile.HALF;
+    
+    // Mouth animation: sprite frames in order and the sub-tile distance each frame is shown for
+    private static final int[] MOUTH_SEQUENCE = {0, 1, 2, 3, 2, 1};
+    private static final int MOUTH_FRAME_DISTANCE = 2;
+    
     private Position position;
+    private int fixedX;
+    private int fixedY;
     private Direction direction;
     private Direction nextDirection;
+    private int nextDirectionTimer;
+    private int inputBufferTicks; // 0 keeps a buffered turn until it can be taken
     private int speed;
+    private int speedAccumulator;
+    private int distanceMoved;
     private boolean powerMode;
     private int powerModeTimer;
     private int powerModeDuration = 300; // Default duration in game ticks (about 5 seconds at 60 FPS)
@@ -21,15 +36,60 @@ public class PacMan {
      * @param size The size of Pac-Man in pixels
      */
     public PacMan(Position position, int size) {
-        this.position = position;
+        this.position = new Position(position);
+        this.fixedX = SubTile.fromTile(position.getX());
+        this.fixedY = SubTile.fromTile(position.getY());
         this.direction = Direction.NONE;
         this.nextDirection = Direction.NONE;
-        this.speed = 1;
+        this.speed = SubTile.ONE << SubTile.SPEED_SHIFT; // One tile per tick until setSpeed is called
+        this.speedAccumulator = 0;
         this.powerMode = false;
         this.powerModeTimer = 0;
         this.size = size;
     }
     
+    /**
+     * Creates a copy of another Pac-Man.
+     * 
+     * @param pacman The Pac-Man to copy
+     */
+    public PacMan(PacMan pacman) {
+        this.position = new Position(pacman.position);
+        this.fixedX = pacman.fixedX;
+        this.fixedY = pacman.fixedY;
+        this.direction = pacman.direction;
+        this.nextDirection = pacman.nextDirection;
+        this.nextDirectionTimer = pacman.nextDirectionTimer;
+        this.inputBufferTicks = pacman.inputBufferTicks;
+        this.speed = pacman.speed;
+        this.speedAccumulator = pacman.speedAccumulator;
+        this.distanceMoved = pacman.distanceMoved;
+        this.powerMode = pacman.powerMode;
+        this.powerModeTimer = pacman.powerModeTimer;
+        this.powerModeDuration = pacman.powerModeDuration;
+        this.size = pacman.size;
+    }
+    
+    /**
+     * Puts Pac-Man back on a start tile as newly created, for a game started over in
+     * place. The speed, power mode duration and input buffer are kept.
+     * 
+     * @param position The starting position
+     */
+    public void restart(Position position) {
+        this.position.setX(position.getX());
+        this.position.setY(position.getY());
+        this.fixedX = SubTile.fromTile(position.getX());
+        this.fixedY = SubTile.fromTile(position.getY());
+        this.direction = Direction.NONE;
+        this.nextDirection = Direction.NONE;
+        this.nextDirectionTimer = 0;
+        this.speedAccumulator = 0;
+        this.distanceMoved = 0;
+        this.powerMode = false;
+        this.powerModeTimer = 0;
+    }
+    
     /**
      * Gets the current position of Pac-Man.
      * 
@@ -39,6 +99,33 @@ public class PacMan {
         return position;
     }
     
+    /**
+     * Gets the x-coordinate of Pac-Man in sub-tile units.
+     * 
+     * @return The sub-tile x-coordinate
+     */
+    public int getFixedX() {
+        return fixedX;
+    }
+    
+    /**
+     * Gets the y-coordinate of Pac-Man in sub-tile units.
+     * 
+     * @return The sub-tile y-coordinate
+     */
+    public int getFixedY() {
+        return fixedY;
+    }
+    
+    /**
+     * Sets the speed of Pac-Man.
+     * 
+     * @param speed The speed in 1/256 sub-tile units per tick
+     */
+    public void setSpeed(int speed) {
+        this.speed = speed;
+    }
+    
     /**
      * Gets the current direction of Pac-Man.
      * 
@@ -55,6 +142,25 @@ public class PacMan {
      */
     public void setNextDirection(Direction direction) {
         this.nextDirection = direction;
+        this.nextDirectionTimer = inputBufferTicks;
+    }
+    
+    /**
+     * Gets the buffered direction that Pac-Man will turn to when possible.
+     * 
+     * @return The next direction, or NONE if no turn is buffered
+     */
+    public Direction getNextDirection() {
+        return nextDirection;
+    }
+    
+    /**
+     * Sets how long a buffered turn is kept before it is dropped.
+     * 
+     * @param ticks The input buffer window in game ticks, or 0 to keep turns until they are taken
+     */
+    public void setInputBufferTicks(int ticks) {
+        this.inputBufferTicks = ticks;
     }
     
     /**
@@ -66,6 +172,24 @@ public class PacMan {
         return powerMode;
     }
     
+    /**
+     * Gets the ticks left until power mode runs out.
+     * 
+     * @return The ticks left, 0 when not in power mode
+     */
+    public int getPowerModeTimer() {
+        return powerMode ? powerModeTimer : 0;
+    }
+    
+    /**
+     * Gets the duration of power mode.
+     * 
+     * @return The duration in game ticks
+     */
+    public int getPowerModeDuration() {
+        return powerModeDuration;
+    }
+    
     /**
      * Activates power mode for Pac-Man.
      */
@@ -89,14 +213,20 @@ public class PacMan {
      * @param maze The maze
      */
     public void update(Maze maze) {
-        // Try to change direction if a next direction is set
-        if (nextDirection != Direction.NONE) {
-            tryChangeDirection(maze);
+        // Accumulate fractional speed and move one sub-tile unit per whole step
+        speedAccumulator += speed;
+        int steps = speedAccumulator >> SubTile.SPEED_SHIFT;
+        speedAccumulator &= SubTile.SPEED_MASK;
+        for (int i = 0; i < steps; i++) {
+            step(maze);
         }
         
-        // Move in the current direction if possible
-        if (direction != Direction.NONE) {
-            move(maze);
+        // Drop a buffered turn that could not be taken within the input buffer window
+        if (nextDirection != Direction.NONE && inputBufferTicks > 0) {
+            nextDirectionTimer--;
+            if (nextDirectionTimer <= 0) {
+                nextDirection = Direction.NONE;
+            }
         }
         
         // Update power mode timer
@@ -108,62 +238,99 @@ public class PacMan {
         }
     }
     
+    /**
+     * Moves Pac-Man by one sub-tile unit, turning first if a next direction is set.
+     * 
+     * @param maze The maze
+     */
+    private void step(Maze maze) {
+        // Try to change direction if a next direction is set
+        if (nextDirection != Direction.NONE) {
+            tryChangeDirection(maze);
+        }
+        
+        // Move in the current direction if possible
+        if (direction != Direction.NONE) {
+            move(maze);
+        }
+    }
+    
     /**
      * Tries to change Pac-Man's direction to the next direction.
+     * Reversing is always allowed; turning a corner is allowed within
+     * CORNER_TOLERANCE of a tile centre and snaps Pac-Man onto that centre.
      * 
      * @param maze The maze
      */
     private void tryChangeDirection(Maze maze) {
-        // Create a temporary position to test the move
-        Position testPos = new Position(position);
-        testPos.move(nextDirection);
+        if (nextDirection == direction.getOpposite()) {
+            direction = nextDirection;
+            nextDirection = Direction.NONE;
+            return;
+        }
+        
+        int tileX = SubTile.toTile(fixedX);
+        int tileY = SubTile.toTile(fixedY);
+        int offset = Math.abs(fixedX - SubTile.fromTile(tileX)) + Math.abs(fixedY - SubTile.fromTile(tileY));
+        if (offset > CORNER_TOLERANCE) {
+            return;
+        }
         
         // Check if the move is valid (not into a wall)
-        if (!maze.isWall(testPos)) {
+        if (!maze.isWall(tileX + nextDirection.getDx(), tileY + nextDirection.getDy())) {
+            fixedX = SubTile.fromTile(tileX);
+            fixedY = SubTile.fromTile(tileY);
             direction = nextDirection;
             nextDirection = Direction.NONE;
         }
     }
     
     /**
-     * Moves Pac-Man in the current direction.
+     * Moves Pac-Man one sub-tile unit in the current direction.
      * 
      * @param maze The maze
      */
     private void move(Maze maze) {
-        // Create a temporary position to test the move
-        Position testPos = new Position(position);
-        testPos.move(direction);
-        
-        // Check if the move is valid (not into a wall)
-        if (!maze.isWall(testPos)) {
-            position = testPos;
+        // At a tile centre, stop if the next tile is a wall
+        if (SubTile.isAligned(fixedX) && SubTile.isAligned(fixedY)) {
+            int tileX = fixedX >> SubTile.SHIFT;
+            int tileY = fixedY >> SubTile.SHIFT;
+            if (maze.isWall(tileX + direction.getDx(), tileY + direction.getDy())) {
+                return;
+            }
         }
+        
+        fixedX += direction.getDx();
+        fixedY += direction.getDy();
+        distanceMoved++;
+        position.setX(SubTile.toTile(fixedX));
+        position.setY(SubTile.toTile(fixedY));
     }
     
     /**
      * Checks if Pac-Man is colliding with a ghost.
+     * Both actors are tile-sized, so they collide once they overlap by half a tile.
      * 
      * @param ghost The ghost to check collision with
      * @return True if Pac-Man is colliding with the ghost, false otherwise
      */
     public boolean isCollidingWith(Ghost ghost) {
-        return position.equals(ghost.getPosition());
+        return Math.abs(fixedX - ghost.getFixedX()) < COLLISION_DISTANCE
+            && Math.abs(fixedY - ghost.getFixedY()) < COLLISION_DISTANCE;
     }
     
     /**
      * Draws Pac-Man on the screen.
      * 
      * @param g The Graphics object to draw with
-     * @param tileSize The size of a tile in pixels
-     */
-    public void draw(Graphics g, int tileSize) {
-        g.setColor(Color.YELLOW);
-        g.fillOval(
-            position.getX() * tileSize, 
-            position.getY() * tileSize, 
-            tileSize, 
-            tileSize
-        );
+     * @param atlas The sprite atlas to draw from
+     */
+    public void draw(Graphics g, SpriteAtlas atlas) {
+        int tileSize = atlas.getTileSize();
+        atlas.drawPacMan(g,
+            SubTile.toPixels(fixedX, tileSize),
+            SubTile.toPixels(fixedY, tileSize),
+            direction,
+            MOUTH_SEQUENCE[(distanceMoved / MOUTH_FRAME_DISTANCE) % MOUTH_SEQUENCE.length]);
     }
 }
\ No newline at end of file
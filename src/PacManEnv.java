@@ -0,0 +1,265 @@
+import java.util.List;
+
+/**
+ * Reinforcement learning environment over the headless game, in the style of Gym:
+ * reset() starts an episode and step(action) advances it and returns the reward.
+ * 
+ * The observation is a slice of a byte array, which can be shared by many environments:
+ * CHANNELS planes of MAZE_HEIGHT x MAZE_WIDTH tiles (walls, pellets, power pellets,
+ * Pac-Man, ghosts and frightened ghosts; ghost planes count the ghosts on a tile),
+ * followed by one byte with the power mode time left, scaled to 0-255. Walls and pellets
+ * are written on reset and afterwards only the tiles that change are updated, so a step
+ * costs the game tick plus a few writes and never allocates. Every episode is played on
+ * the same game, started over in place, so resets do not allocate either.
+ */
+public class PacManEnv {
+    // Actions
+    public static final int ACTION_NONE = 0; // Keep going
+    public static final int ACTION_UP = 1;
+    public static final int ACTION_DOWN = 2;
+    public static final int ACTION_LEFT = 3;
+    public static final int ACTION_RIGHT = 4;
+    public static final int ACTION_COUNT = 5;
+    private static final Direction[] ACTION_DIRECTIONS = {
+        Direction.NONE, Direction.UP, Direction.DOWN, Direction.LEFT, Direction.RIGHT
+    };
+    
+    // Observation planes
+    public static final int CHANNEL_WALLS = 0;
+    public static final int CHANNEL_PELLETS = 1;
+    public static final int CHANNEL_POWER_PELLETS = 2;
+    public static final int CHANNEL_PACMAN = 3;
+    public static final int CHANNEL_GHOSTS = 4;
+    public static final int CHANNEL_FRIGHTENED = 5;
+    public static final int CHANNELS = 6;
+    public static final int WIDTH = Game.MAZE_WIDTH;
+    public static final int HEIGHT = Game.MAZE_HEIGHT;
+    public static final int PLANE_SIZE = WIDTH * HEIGHT;
+    public static final int OBSERVATION_SIZE = CHANNELS * PLANE_SIZE + 1;
+    
+    public static final int MAX_EPISODE_TICKS = 36000; // Episodes are truncated after ten minutes of game time
+    
+    private final int difficulty;
+    private final int ticksPerStep;
+    private final Maze template;
+    
+    // The observation slice
+    private final byte[] observation;
+    private final int offset;
+    
+    // Tiles the actors were drawn on in the observation, to clear them on the next step
+    private int pacmanTile = -1;
+    private final int[] ghostTiles;
+    private int ghostTileCount;
+    
+    private Game game;
+    private int lastScore;
+    private boolean terminated;
+    private boolean truncated;
+    
+    /**
+     * Creates a new PacManEnv with its own observation array.
+     * 
+     * @param difficulty The difficulty level (0=easy, 1=medium, 2=hard)
+     * @param ticksPerStep Game ticks per step, at least 1
+     */
+    public PacManEnv(int difficulty, int ticksPerStep) {
+        this(difficulty, ticksPerStep, new Maze(WIDTH, HEIGHT, Game.TILE_SIZE), new byte[OBSERVATION_SIZE], 0);
+    }
+    
+    /**
+     * Creates a new PacManEnv that writes its observation into part of a shared array.
+     * 
+     * @param difficulty The difficulty level (0=easy, 1=medium, 2=hard)
+     * @param ticksPerStep Game ticks per step, at least 1
+     * @param template The maze every episode starts from a copy of; it is not changed
+     * @param observation The array to write the observation into
+     * @param offset The index of the observation in the array
+     */
+    public PacManEnv(int difficulty, int ticksPerStep, Maze template, byte[] observation, int offset) {
+        this.difficulty = difficulty;
+        this.ticksPerStep = Math.max(1, ticksPerStep);
+        this.template = template;
+        this.observation = observation;
+        this.offset = offset;
+        this.ghostTiles = new int[template.getGhostStarts().size()];
+    }
+    
+    /**
+     * Starts a new episode and writes its first observation.
+     * 
+     * @param seed The seed of the game
+     */
+    public void reset(long seed) {
+        // The first episode creates the game; later ones start it over in place
+        if (game == null) {
+            game = new Game(difficulty, seed, new Maze(template));
+        } else {
+            game.reset(difficulty, seed, template, Level.CLASSIC);
+        }
+        game.getPacMan().setInputBufferTicks(0);
+        lastScore = 0;
+        terminated = false;
+        truncated = false;
+        
+        // Walls and pellets only change where Pac-Man eats, so they are written once here
+        Maze maze = game.getMaze();
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int tile = offset + y * WIDTH + x;
+                Tile mazeTile = maze.getTile(x, y);
+                observation[tile + CHANNEL_WALLS * PLANE_SIZE] = (byte) (mazeTile.isWall() ? 1 : 0);
+                observation[tile + CHANNEL_PELLETS * PLANE_SIZE] = (byte) (mazeTile.hasPellet() ? 1 : 0);
+                observation[tile + CHANNEL_POWER_PELLETS * PLANE_SIZE] = (byte) (mazeTile.hasPowerPellet() ? 1 : 0);
+                observation[tile + CHANNEL_PACMAN * PLANE_SIZE] = 0;
+                observation[tile + CHANNEL_GHOSTS * PLANE_SIZE] = 0;
+                observation[tile + CHANNEL_FRIGHTENED * PLANE_SIZE] = 0;
+            }
+        }
+        pacmanTile = -1;
+        ghostTileCount = 0;
+        writeActors();
+    }
+    
+    /**
+     * Applies an action and advances the game by ticksPerStep ticks, or until the episode ends.
+     * 
+     * @param action One of the ACTION_ constants
+     * @return The reward: the points scored during the step
+     */
+    public int step(int action) {
+        if (terminated || truncated) {
+            return 0;
+        }
+        PacMan pacman = game.getPacMan();
+        if (action > ACTION_NONE && action < ACTION_COUNT) {
+            pacman.setNextDirection(ACTION_DIRECTIONS[action]);
+        }
+        
+        Maze maze = game.getMaze();
+        for (int i = 0; i < ticksPerStep; i++) {
+            int eaten = maze.getPelletsEaten();
+            game.tick();
+            
+            // A pellet can only have been eaten where Pac-Man is now
+            int tile = tileOf(pacman.getPosition());
+            if (maze.getPelletsEaten() != eaten && tile >= 0) {
+                observation[offset + CHANNEL_PELLETS * PLANE_SIZE + tile] = 0;
+                observation[offset + CHANNEL_POWER_PELLETS * PLANE_SIZE + tile] = 0;
+            }
+            if (game.isGameOver() || game.isGameWon()) {
+                terminated = true;
+                break;
+            }
+            if (game.getTicks() >= MAX_EPISODE_TICKS) {
+                truncated = true;
+                break;
+            }
+        }
+        writeActors();
+        
+        int reward = game.getScore() - lastScore;
+        lastScore = game.getScore();
+        return reward;
+    }
+    
+    /**
+     * Moves the actors in the observation and updates the power mode time.
+     */
+    private void writeActors() {
+        int pacmanPlane = offset + CHANNEL_PACMAN * PLANE_SIZE;
+        int ghostPlane = offset + CHANNEL_GHOSTS * PLANE_SIZE;
+        int frightenedPlane = offset + CHANNEL_FRIGHTENED * PLANE_SIZE;
+        
+        // Clear where the actors were
+        if (pacmanTile >= 0) {
+            observation[pacmanPlane + pacmanTile] = 0;
+        }
+        for (int i = 0; i < ghostTileCount; i++) {
+            observation[ghostPlane + ghostTiles[i]] = 0;
+            observation[frightenedPlane + ghostTiles[i]] = 0;
+        }
+        
+        // Draw where they are now; eaten ghosts are harmless and left out
+        PacMan pacman = game.getPacMan();
+        pacmanTile = tileOf(pacman.getPosition());
+        if (pacmanTile >= 0) {
+            observation[pacmanPlane + pacmanTile] = 1;
+        }
+        ghostTileCount = 0;
+        List<Ghost> ghosts = game.getGhosts();
+        for (int i = 0; i < ghosts.size() && i < ghostTiles.length; i++) {
+            Ghost ghost = ghosts.get(i);
+            int tile = tileOf(ghost.getPosition());
+            if (tile < 0 || ghost.isEaten()) {
+                continue;
+            }
+            ghostTiles[ghostTileCount++] = tile;
+            observation[(ghost.isFrightened() ? frightenedPlane : ghostPlane) + tile]++;
+        }
+        
+        int duration = Math.max(1, pacman.getPowerModeDuration());
+        observation[offset + CHANNELS * PLANE_SIZE] = (byte) Math.min(255, pacman.getPowerModeTimer() * 255 / duration);
+    }
+    
+    /**
+     * Gets the observation index of a tile. Actors that have walked out through a side
+     * opening are outside the maze and not shown; the game does not wrap them around.
+     * 
+     * @param position The tile
+     * @return The index in a plane, or -1 if the tile is not in the maze
+     */
+    public static int tileOf(Position position) {
+        int x = position.getX();
+        int y = position.getY();
+        if (x < 0 || y < 0 || x >= WIDTH || y >= HEIGHT) {
+            return -1;
+        }
+        return y * WIDTH + x;
+    }
+    
+    /**
+     * Checks whether the episode ended because Pac-Man was caught or ate every pellet.
+     * 
+     * @return True if the episode is over
+     */
+    public boolean isTerminated() {
+        return terminated;
+    }
+    
+    /**
+     * Checks whether the episode was cut off at MAX_EPISODE_TICKS.
+     * 
+     * @return True if the episode was cut off
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+    
+    /**
+     * Gets the array holding the observation.
+     * 
+     * @return The observation array, shared with other environments if one was given
+     */
+    public byte[] getObservation() {
+        return observation;
+    }
+    
+    /**
+     * Gets the index of the observation in the observation array.
+     * 
+     * @return The offset
+     */
+    public int getOffset() {
+        return offset;
+    }
+    
+    /**
+     * Gets the game of the current episode, for rendering or inspection.
+     * 
+     * @return The game
+     */
+    public Game getGame() {
+        return game;
+    }
+}
@@ -1,4 +1,3 @@
-import java.awt.Color;
 import java.awt.Graphics;
 
 /**
@@ -26,6 +25,32 @@ public class Pellet {
         this.points = isPowerPellet ? 50 : 10; // Power pellets are worth more points
     }
     
+    /**
+     * Creates a copy of another Pellet.
+     * 
+     * @param pellet The Pellet to copy
+     */
+    public Pellet(Pellet pellet) {
+        this.position = pellet.position;
+        this.isPowerPellet = pellet.isPowerPellet;
+        this.isEaten = pellet.isEaten;
+        this.size = pellet.size;
+        this.points = pellet.points;
+    }
+    
+    /**
+     * Makes this pellet a copy of another one in place. The position is shared.
+     * 
+     * @param pellet The Pellet to copy
+     */
+    public void set(Pellet pellet) {
+        this.position = pellet.position;
+        this.isPowerPellet = pellet.isPowerPellet;
+        this.isEaten = pellet.isEaten;
+        this.size = pellet.size;
+        this.points = pellet.points;
+    }
+    
     /**
      * Gets the position of this pellet.
      * 
@@ -73,28 +98,12 @@ public class Pellet {
      * Draws this pellet on the screen.
      * 
      * @param g The Graphics object to draw with
-     * @param tileSize The size of a tile in pixels
+     * @param atlas The sprite atlas to draw from
      */
-    public void draw(Graphics g, int tileSize) {
+    public void draw(Graphics g, SpriteAtlas atlas) {
         if (!isEaten) {
-            g.setColor(Color.WHITE);
-            if (isPowerPellet) {
-                // Draw a larger pellet for power pellets
-                g.fillOval(
-                    position.getX() * tileSize + tileSize/4, 
-                    position.getY() * tileSize + tileSize/4, 
-                    tileSize/2, 
-                    tileSize/2
-                );
-            } else {
-                // Draw a smaller pellet for regular pellets
-                g.fillOval(
-                    position.getX() * tileSize + tileSize/3, 
-                    position.getY() * tileSize + tileSize/3, 
-                    tileSize/3, 
-                    tileSize/3
-                );
-            }
+            int tileSize = atlas.getTileSize();
+            atlas.drawPellet(g, position.getX() * tileSize, position.getY() * tileSize, isPowerPellet);
         }
     }
 }
\ No newline at end of file
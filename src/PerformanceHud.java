@@ -0,0 +1,197 @@
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Overlay with p50, p99 and max of every tick and frame phase, the allocation rate
+ * and GC pauses. Timing, allocation sampling and the GC listener are only active
+ * while the overlay is shown.
+ */
+public class PerformanceHud {
+    private static final Font FONT = new Font("Monospaced", Font.PLAIN, 12);
+    private static final Color BACKGROUND = new Color(0, 0, 0, 180);
+    private static final HudText HEADER = new HudText(FONT, "phase us      p50    p99    max");
+    private static final long SAMPLE_INTERVAL = 1000000000L; // Nanoseconds between allocation samples
+    private static final int LINE_HEIGHT = 14;
+    private static final int WIDTH = 240;
+    
+    private final PhaseTimer phaseTimer;
+    private final HudText[] phaseNames;
+    private final HudText[] p50Texts;
+    private final HudText[] p99Texts;
+    private final HudText[] maxTexts;
+    private final HudText allocationText;
+    private final HudText gcCountText;
+    private final HudText gcP99Text;
+    private final HudText gcMaxText;
+    
+    // GC pauses reported by the collectors while the overlay is shown
+    private final Histogram gcPauses = new Histogram();
+    private final NotificationListener gcListener;
+    
+    // Bytes allocated by all threads, sampled once per second
+    private final com.sun.management.ThreadMXBean threads;
+    private long lastSampleTime;
+    private long lastAllocatedBytes;
+    
+    private boolean visible;
+    
+    /**
+     * Creates a new PerformanceHud.
+     * 
+     * @param phaseTimer The timer whose phases are shown
+     */
+    public PerformanceHud(PhaseTimer phaseTimer) {
+        this.phaseTimer = phaseTimer;
+        phaseNames = new HudText[PhaseTimer.PHASE_COUNT];
+        p50Texts = new HudText[PhaseTimer.PHASE_COUNT];
+        p99Texts = new HudText[PhaseTimer.PHASE_COUNT];
+        maxTexts = new HudText[PhaseTimer.PHASE_COUNT];
+        for (int i = 0; i < PhaseTimer.PHASE_COUNT; i++) {
+            phaseNames[i] = new HudText(FONT, PhaseTimer.getName(i));
+            p50Texts[i] = new HudText(FONT, "", 0);
+            p99Texts[i] = new HudText(FONT, "", 0);
+            maxTexts[i] = new HudText(FONT, "", 0);
+        }
+        allocationText = new HudText(FONT, "alloc KB/s ", 0);
+        gcCountText = new HudText(FONT, "gc ", 0);
+        gcP99Text = new HudText(FONT, "p99 ", 0);
+        gcMaxText = new HudText(FONT, "max ", 0);
+        
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported()) {
+            threads = (com.sun.management.ThreadMXBean) threadBean;
+        } else {
+            threads = null;
+        }
+        
+        gcListener = new NotificationListener() {
+            @Override
+            public void handleNotification(Notification notification, Object handback) {
+                if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                    GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from(
+                            (CompositeData) notification.getUserData());
+                    gcPauses.record(info.getGcInfo().getDuration() * 1000000L);
+                }
+            }
+        };
+    }
+    
+    /**
+     * Shows or hides the overlay, starting or stopping all measurements.
+     * 
+     * @param visible True to show the overlay
+     */
+    public void setVisible(boolean visible) {
+        if (visible == this.visible) {
+            return;
+        }
+        this.visible = visible;
+        phaseTimer.setEnabled(visible);
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (!(collector instanceof NotificationEmitter)) {
+                continue;
+            }
+            NotificationEmitter emitter = (NotificationEmitter) collector;
+            if (visible) {
+                emitter.addNotificationListener(gcListener, null, null);
+            } else {
+                try {
+                    emitter.removeNotificationListener(gcListener);
+                } catch (ListenerNotFoundException e) {
+                    // Already removed
+                }
+            }
+        }
+        if (visible) {
+            gcPauses.reset();
+            lastSampleTime = 0;
+        }
+    }
+    
+    /**
+     * Checks whether the overlay is shown.
+     * 
+     * @return True if the overlay is shown
+     */
+    public boolean isVisible() {
+        return visible;
+    }
+    
+    /**
+     * Draws the overlay.
+     * 
+     * @param g The Graphics object to draw with
+     * @param x The left edge
+     * @param y The top edge
+     */
+    public void draw(Graphics g, int x, int y) {
+        sampleAllocation();
+        
+        int lines = PhaseTimer.PHASE_COUNT + 3;
+        g.setColor(BACKGROUND);
+        g.fillRect(x, y, WIDTH, lines * LINE_HEIGHT + 6);
+        
+        g.setColor(Color.WHITE);
+        int baseline = y + LINE_HEIGHT;
+        HEADER.draw(g, x + 5, baseline);
+        for (int i = 0; i < PhaseTimer.PHASE_COUNT; i++) {
+            baseline += LINE_HEIGHT;
+            Histogram histogram = phaseTimer.getHistogram(i);
+            phaseNames[i].draw(g, x + 5, baseline);
+            p50Texts[i].setValue(histogram.getPercentile(50) / 1000);
+            p50Texts[i].draw(g, x + 110, baseline);
+            p99Texts[i].setValue(histogram.getPercentile(99) / 1000);
+            p99Texts[i].draw(g, x + 155, baseline);
+            maxTexts[i].setValue(histogram.getMax() / 1000);
+            maxTexts[i].draw(g, x + 200, baseline);
+        }
+        
+        baseline += LINE_HEIGHT;
+        allocationText.draw(g, x + 5, baseline);
+        baseline += LINE_HEIGHT;
+        gcCountText.setValue(gcPauses.getCount());
+        gcCountText.draw(g, x + 5, baseline);
+        gcP99Text.setValue(gcPauses.getPercentile(99) / 1000);
+        gcP99Text.draw(g, x + 70, baseline);
+        gcMaxText.setValue(gcPauses.getMax() / 1000);
+        gcMaxText.draw(g, x + 155, baseline);
+    }
+    
+    /**
+     * Updates the allocation rate once per second from the bytes allocated by all threads.
+     * Threads that ended since the last sample are no longer counted, so the rate is a lower bound.
+     */
+    private void sampleAllocation() {
+        if (threads == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (lastSampleTime != 0 && now - lastSampleTime < SAMPLE_INTERVAL) {
+            return;
+        }
+        long allocated = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) {
+                allocated += bytes;
+            }
+        }
+        if (lastSampleTime != 0) {
+            long rate = Math.max(0, allocated - lastAllocatedBytes) * 1000000000L / (now - lastSampleTime) / 1024;
+            allocationText.setValue(rate);
+        }
+        lastSampleTime = now;
+        lastAllocatedBytes = allocated;
+    }
+}
@@ -0,0 +1,121 @@
+import java.awt.image.BufferedImage;
+
+/**
+ * Measures the cost of the phase instrumentation: the raw cost of a disabled lap,
+ * and headless ticks with rendering with the performance HUD's timer disabled and enabled.
+ * 
+ * Usage: java PhaseTimerBenchmark [--ticks n] [--rounds n]
+ */
+public class PhaseTimerBenchmark {
+    private static final int CALLS = 200000000;
+    
+    // start and lap calls per tick and frame in Game, GameRenderer and GamePanel
+    private static final int CALLS_PER_TICK = 4;
+    private static final int CALLS_PER_FRAME = 5;
+    
+    /**
+     * Runs the benchmark from the command line.
+     * 
+     * @param args The command line arguments
+     */
+    public static void main(String[] args) {
+        int ticks = 20000;
+        int rounds = 5;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--ticks":
+                    ticks = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--rounds":
+                    rounds = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(1);
+            }
+        }
+        
+        // A disabled lap against an empty loop doing the same bookkeeping
+        PhaseTimer timer = new PhaseTimer();
+        long checksum = 0;
+        long emptyNanos = Long.MAX_VALUE;
+        long lapNanos = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            long time = 0;
+            for (int i = 0; i < CALLS; i++) {
+                time += i & 7;
+            }
+            checksum += time;
+            emptyNanos = Math.min(emptyNanos, System.nanoTime() - start);
+            
+            start = System.nanoTime();
+            long sum = 0;
+            time = timer.start();
+            for (int i = 0; i < CALLS; i++) {
+                time = timer.lap(i & 7, time);
+                sum += time + (i & 7);
+            }
+            checksum += sum;
+            lapNanos = Math.min(lapNanos, System.nanoTime() - start);
+        }
+        double lapCost = Math.max(0, lapNanos - emptyNanos) / (double) CALLS;
+        System.out.printf("Disabled lap: %.2f ns per call (loop %.2f ns, empty loop %.2f ns)%n",
+                lapCost, lapNanos / (double) CALLS, emptyNanos / (double) CALLS);
+        
+        // Whole ticks with rendering, alternating between disabled and enabled timing
+        SpriteAtlas atlas = SpriteAtlas.create(Game.TILE_SIZE, Game.GHOST_COLORS);
+        GameRenderer renderer = new GameRenderer(atlas);
+        renderer.setPhaseTimer(timer);
+        BufferedImage image = new BufferedImage(GameRenderer.WIDTH, GameRenderer.HEIGHT, BufferedImage.TYPE_INT_RGB);
+        long disabled = Long.MAX_VALUE;
+        long enabled = Long.MAX_VALUE;
+        for (int round = 0; round < rounds * 2; round++) {
+            boolean timing = round % 2 == 1;
+            timer.setEnabled(timing);
+            long nanos = runTicks(renderer, image, timer, ticks, round);
+            if (timing) {
+                enabled = Math.min(enabled, nanos);
+            } else {
+                disabled = Math.min(disabled, nanos);
+            }
+        }
+        timer.setEnabled(false);
+        
+        double disabledPerTick = disabled / (double) ticks;
+        double enabledPerTick = enabled / (double) ticks;
+        double instrumentation = lapCost * (CALLS_PER_TICK + CALLS_PER_FRAME);
+        System.out.printf("Tick and frame, timing disabled: %.0f ns, enabled: %.0f ns (%+.1f%%)%n",
+                disabledPerTick, enabledPerTick, (enabledPerTick / disabledPerTick - 1) * 100);
+        System.out.printf("Disabled instrumentation: about %.1f ns per tick and frame, %.3f%% of the work%n",
+                instrumentation, instrumentation / disabledPerTick * 100);
+        System.out.println("(checksum " + checksum + ")");
+    }
+    
+    /**
+     * Plays autopiloted games headless, rendering every tick.
+     * 
+     * @param renderer The renderer
+     * @param image The frame to render into
+     * @param timer The timer for the games
+     * @param ticks The number of ticks
+     * @param seed The seed of the games and the autopilot
+     * @return The elapsed time in nanoseconds
+     */
+    private static long runTicks(GameRenderer renderer, BufferedImage image, PhaseTimer timer, int ticks, long seed) {
+        Autopilot autopilot = new Autopilot(seed);
+        Game game = new Game(TitleScreen.DIFFICULTY_MEDIUM, seed);
+        game.setPhaseTimer(timer);
+        long start = System.nanoTime();
+        for (int i = 0; i < ticks; i++) {
+            if (game.isGameOver() || game.isGameWon()) {
+                game = new Game(TitleScreen.DIFFICULTY_MEDIUM, seed + i);
+                game.setPhaseTimer(timer);
+            }
+            autopilot.steer(game);
+            game.tick();
+            renderer.render(image, game, 0);
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,98 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+/**
+ * A level made ready to play: a template maze with its tiles, pellets and the distance
+ * field back to the ghost house, and the walls rendered into an image so that frames
+ * draw the whole maze background with one copy and only the pellets on top.
+ * 
+ * Preparing touches nothing shared, so it can run on any thread. Games play on copies
+ * of the template, which share its layout and distance field.
+ */
+public class PreparedLevel {
+    private final Level level;
+    private final Maze maze;
+    private final BufferedImage wallLayer;
+    private final long prepareTime;
+    
+    /**
+     * Builds the maze of a level and renders its walls.
+     * 
+     * @param level The level
+     * @return The prepared level
+     */
+    public static PreparedLevel prepare(Level level) {
+        long start = System.nanoTime();
+        Maze maze = new Maze(Game.MAZE_WIDTH, Game.MAZE_HEIGHT, Game.TILE_SIZE, level.getLayout());
+        return new PreparedLevel(level, maze, start);
+    }
+    
+    /**
+     * Renders the walls of a level.
+     * 
+     * @param level The level
+     * @param maze The template maze, built from the level's layout
+     * @param start The System.nanoTime() at which preparing started
+     */
+    private PreparedLevel(Level level, Maze maze, long start) {
+        this.level = level;
+        this.maze = maze;
+        
+        // An opaque image in the screen's format copies fastest; headless tools get a plain one
+        int width = maze.getWidth() * maze.getTileSize();
+        int height = maze.getHeight() * maze.getTileSize();
+        if (GraphicsEnvironment.isHeadless()) {
+            wallLayer = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        } else {
+            GraphicsConfiguration config = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                    .getDefaultScreenDevice().getDefaultConfiguration();
+            wallLayer = config.createCompatibleImage(width, height, Transparency.OPAQUE);
+        }
+        Graphics2D g = wallLayer.createGraphics();
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, width, height);
+        maze.drawWalls(g);
+        g.dispose();
+        this.prepareTime = System.nanoTime() - start;
+    }
+    
+    /**
+     * Gets the level.
+     * 
+     * @return The level
+     */
+    public Level getLevel() {
+        return level;
+    }
+    
+    /**
+     * Gets the template maze. Games play on copies made with new Maze(template).
+     * 
+     * @return The template maze
+     */
+    public Maze getMaze() {
+        return maze;
+    }
+    
+    /**
+     * Gets the walls on a black background, the size of the maze in pixels.
+     * 
+     * @return The wall layer
+     */
+    public BufferedImage getWallLayer() {
+        return wallLayer;
+    }
+    
+    /**
+     * Gets how long preparing the level took.
+     * 
+     * @return The time in nanoseconds
+     */
+    public long getPrepareTime() {
+        return prepareTime;
+    }
+}
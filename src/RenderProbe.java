@@ -0,0 +1,333 @@
+import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Image;
+import java.awt.Toolkit;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the available Java2D pipelines and offscreen image types on the
+ * actual game frame (maze, sprites and HUD) and remembers the fastest
+ * combination for this machine.
+ * Pipelines are fixed when AWT starts, so every pipeline is measured in its
+ * own child JVM and the saved choice is applied at the next launch.
+ */
+public class RenderProbe {
+    // Pipelines that can be probed, with the JVM flags that select them
+    public static final String[] PIPELINES = {"xrender", "opengl", "software", "headless"};
+    private static final String[][] PIPELINE_FLAGS = {
+        {"-Dsun.java2d.xrender=true"},
+        {"-Dsun.java2d.opengl=true"},
+        {"-Dsun.java2d.xrender=false", "-Dsun.java2d.opengl=false", "-Dsun.java2d.pmoffscreen=false"},
+        {"-Djava.awt.headless=true"}
+    };
+    
+    // Headless rendering is only used for recording, never for the game window
+    private static final String HEADLESS = "headless";
+    
+    private static final int WARMUP_FRAMES = 200;
+    private static final int MEASURED_FRAMES = 500;
+    private static final int WORKER_TIMEOUT_SECONDS = 60;
+    private static final String RESULT_PREFIX = "RESULT ";
+    
+    /**
+     * Runs the probe from the command line, or one pipeline worker when started with --worker.
+     * 
+     * @param args The command line arguments
+     */
+    public static void main(String[] args) {
+        if (args.length > 1 && "--worker".equals(args[0])) {
+            runWorker(args[1]);
+            System.exit(0);
+        }
+        
+        Properties results = runProbe();
+        results.list(System.out);
+    }
+    
+    /**
+     * Applies the saved pipeline choice for this machine, probing first if there is none.
+     * Must be called before any AWT class is initialized. Flags given on the command
+     * line always win, and -Dpacman.probe=false disables probing.
+     */
+    public static void configure() {
+        Properties choice = loadSavedChoice();
+        if (choice == null) {
+            if (!Boolean.parseBoolean(System.getProperty("pacman.probe", "true"))
+                    || GraphicsEnvironment.isHeadless()) {
+                return;
+            }
+            choice = runProbe();
+        }
+        
+        String pipeline = choice.getProperty("pipeline");
+        boolean pipelineGiven = System.getProperty("sun.java2d.xrender") != null
+                || System.getProperty("sun.java2d.opengl") != null;
+        if (pipeline != null && !pipelineGiven) {
+            for (String flag : flagsFor(pipeline)) {
+                String[] keyValue = flag.substring(2).split("=", 2);
+                System.setProperty(keyValue[0], keyValue[1]);
+            }
+        }
+        String frameImage = choice.getProperty("frameImage");
+        if (frameImage != null && System.getProperty("pacman.frameImage") == null) {
+            System.setProperty("pacman.frameImage", frameImage);
+        }
+    }
+    
+    /**
+     * Benchmarks every pipeline in a child JVM, saves the results and the fastest
+     * combination for this machine.
+     * 
+     * @return The results, with the chosen "pipeline" and "frameImage" if any pipeline could draw
+     */
+    public static Properties runProbe() {
+        Properties results = new Properties();
+        long best = Long.MAX_VALUE;
+        long bestHeadless = Long.MAX_VALUE;
+        
+        for (int i = 0; i < PIPELINES.length; i++) {
+            List<String> lines = runWorkerProcess(PIPELINES[i], PIPELINE_FLAGS[i]);
+            for (String line : lines) {
+                String[] parts = line.substring(RESULT_PREFIX.length()).trim().split(" ");
+                if (parts.length != 2) {
+                    continue;
+                }
+                long nanos;
+                try {
+                    nanos = Long.parseLong(parts[1]);
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                results.setProperty("result." + PIPELINES[i] + "." + parts[0], Long.toString(nanos));
+                
+                if (HEADLESS.equals(PIPELINES[i])) {
+                    if (nanos < bestHeadless) {
+                        bestHeadless = nanos;
+                        results.setProperty("recordingFrameImage", parts[0]);
+                    }
+                } else if (nanos < best) {
+                    best = nanos;
+                    results.setProperty("pipeline", PIPELINES[i]);
+                    results.setProperty("frameImage", parts[0]);
+                }
+            }
+        }
+        
+        results.setProperty("probedAt", Long.toString(System.currentTimeMillis()));
+        save(results);
+        return results;
+    }
+    
+    /**
+     * Loads the saved probe results for this machine.
+     * 
+     * @return The saved results, or null if this machine has not been probed
+     */
+    public static Properties loadSavedChoice() {
+        File file = getChoiceFile();
+        if (!file.exists()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        } catch (IOException e) {
+            EventLog.log(EventLog.WARN, "Error loading render probe results: " + e.getMessage());
+            return null;
+        }
+        return properties;
+    }
+    
+    /**
+     * Describes the Java2D pipeline this JVM is actually using.
+     * 
+     * @return A short description of the active graphics configuration
+     */
+    public static String describeActivePipeline() {
+        if (GraphicsEnvironment.isHeadless()) {
+            return HEADLESS;
+        }
+        GraphicsConfiguration config = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDefaultConfiguration();
+        return config.getClass().getSimpleName();
+    }
+    
+    /**
+     * Gets the file holding the probe results for this machine.
+     * 
+     * @return The per-machine results file
+     */
+    public static File getChoiceFile() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            host = "localhost";
+        }
+        File dir = new File(System.getProperty("user.home"), ".pacman");
+        return new File(dir, "render-" + host + ".properties");
+    }
+    
+    /**
+     * Saves probe results for this machine.
+     */
+    private static void save(Properties results) {
+        File file = getChoiceFile();
+        File parentDir = file.getParentFile();
+        if (parentDir != null && !parentDir.exists()) {
+            parentDir.mkdirs();
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            results.store(out, "Pac-Man render probe results (nanoseconds per frame)");
+        } catch (IOException e) {
+            EventLog.log(EventLog.WARN, "Error saving render probe results: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Gets the JVM flags of a pipeline.
+     */
+    private static String[] flagsFor(String pipeline) {
+        for (int i = 0; i < PIPELINES.length; i++) {
+            if (PIPELINES[i].equals(pipeline)) {
+                return PIPELINE_FLAGS[i];
+            }
+        }
+        return new String[0];
+    }
+    
+    /**
+     * Starts a worker JVM with the given flags and collects its result lines.
+     * A pipeline that is not available on this machine simply reports no results.
+     */
+    private static List<String> runWorkerProcess(String pipeline, String[] flags) {
+        List<String> results = new ArrayList<>();
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        for (String flag : flags) {
+            command.add(flag);
+        }
+        command.add("-Dpacman.probe=false");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(RenderProbe.class.getName());
+        command.add("--worker");
+        command.add(pipeline);
+        
+        File output = null;
+        try {
+            output = File.createTempFile("pacman-probe", ".txt");
+            Process process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(output)
+                    .start();
+            if (!process.waitFor(WORKER_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+            try (BufferedReader reader = Files.newBufferedReader(output.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith(RESULT_PREFIX)) {
+                        results.add(line);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            EventLog.log(EventLog.WARN, "Error running render probe worker: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (output != null) {
+                output.delete();
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Measures every image type on the pipeline of this JVM and prints one result line per type.
+     * 
+     * @param pipeline The pipeline this worker was started for
+     */
+    private static void runWorker(String pipeline) {
+        // Without a display AWT silently falls back to headless, which is not the pipeline asked for
+        if (GraphicsEnvironment.isHeadless() && !HEADLESS.equals(pipeline)) {
+            return;
+        }
+        
+        GraphicsConfiguration config = null;
+        if (!GraphicsEnvironment.isHeadless()) {
+            config = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                    .getDefaultScreenDevice().getDefaultConfiguration();
+        }
+        
+        // Play a little so the frame shows a typical mid-game state
+        StartupLoader loader = new StartupLoader(System.nanoTime());
+        loader.loadHighScores();
+        loader.prepareAssets();
+        GamePanel game = new GamePanel(loader);
+        game.restartGame();
+        for (int i = 0; i < 300; i++) {
+            game.tick();
+        }
+        
+        String[] imageTypes = config != null
+                ? new String[] {FrameScaler.IMAGE_VOLATILE, FrameScaler.IMAGE_COMPATIBLE,
+                        FrameScaler.IMAGE_INT_RGB, FrameScaler.IMAGE_INT_ARGB_PRE}
+                : new String[] {FrameScaler.IMAGE_INT_RGB, FrameScaler.IMAGE_INT_ARGB_PRE};
+        int width = GamePanel.PANEL_WIDTH;
+        int height = GamePanel.PANEL_HEIGHT;
+        
+        for (String type : imageTypes) {
+            Image frame = FrameScaler.IMAGE_VOLATILE.equals(type)
+                    ? config.createCompatibleVolatileImage(width, height, Transparency.OPAQUE)
+                    : FrameScaler.createImage(type, config, width, height);
+            // The frame is presented at twice its size, like on a large window
+            Image target = config != null
+                    ? config.createCompatibleVolatileImage(width * 2, height * 2, Transparency.OPAQUE)
+                    : new BufferedImage(width * 2, height * 2, BufferedImage.TYPE_INT_RGB);
+            
+            for (int i = 0; i < WARMUP_FRAMES; i++) {
+                drawFrame(game, frame, target);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < MEASURED_FRAMES; i++) {
+                drawFrame(game, frame, target);
+            }
+            if (config != null) {
+                Toolkit.getDefaultToolkit().sync();
+            }
+            long nanosPerFrame = (System.nanoTime() - start) / MEASURED_FRAMES;
+            System.out.println(RESULT_PREFIX + type + " " + nanosPerFrame);
+        }
+    }
+    
+    /**
+     * Draws one game frame into the offscreen frame and presents it scaled into the target.
+     */
+    private static void drawFrame(GamePanel game, Image frame, Image target) {
+        Graphics g = frame.getGraphics();
+        game.renderLogical(g);
+        g.dispose();
+        
+        Graphics targetGraphics = target.getGraphics();
+        targetGraphics.drawImage(frame, 0, 0, target.getWidth(null), target.getHeight(null), null);
+        targetGraphics.dispose();
+    }
+}
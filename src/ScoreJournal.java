@@ -0,0 +1,378 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+/**
+ * Crash-safe storage for a list of scores: an append-only journal of checksummed
+ * records plus a snapshot file that is replaced atomically when the journal is compacted.
+ * All disk writes happen on a background thread, so callers never wait for the disk.
+ * 
+ * The snapshot is a text file with one score per line and a "#seq n" line naming the
+ * last journal record it contains. A journal record is 20 bytes: a magic number, the
+ * sequence number, the score and a CRC32 of the first 16 bytes. On recovery, records
+ * already in the snapshot are skipped and a torn or corrupt tail is cut off.
+ */
+public class ScoreJournal {
+    private static final int RECORD_MAGIC = 0x50414353; // "PACS"
+    private static final int RECORD_SIZE = 20;
+    private static final String SEQUENCE_PREFIX = "#seq ";
+    private static final long CLOSE_TIMEOUT_MILLIS = 2000;
+    
+    private final Path snapshotFile;
+    private final Path journalFile;
+    private final int compactEvery;
+    
+    // Sequence number of the last record written or recovered
+    private long sequence;
+    
+    // Scores and compaction requests waiting for the writer thread
+    private final BlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+    private Thread writerThread;
+    private boolean shutdownHookAdded;
+    
+    /**
+     * A score to append, with the full list to compact to if the journal is due.
+     */
+    private static class Request {
+        final long sequence;
+        final int score;
+        final int[] scores;
+        
+        Request(long sequence, int score, int[] scores) {
+            this.sequence = sequence;
+            this.score = score;
+            this.scores = scores;
+        }
+    }
+    
+    // Tells the writer thread to stop after the requests before it
+    private static final Request STOP = new Request(-1, 0, null);
+    
+    /**
+     * Creates a new ScoreJournal.
+     * 
+     * @param snapshotFile The snapshot file
+     * @param journalFile The journal file
+     * @param compactEvery Compact the journal into the snapshot after this many records
+     */
+    public ScoreJournal(File snapshotFile, File journalFile, int compactEvery) {
+        this.snapshotFile = snapshotFile.toPath();
+        this.journalFile = journalFile.toPath();
+        this.compactEvery = compactEvery;
+    }
+    
+    /**
+     * Reads the snapshot and replays the journal on top of it, dropping torn records.
+     * Call once before the first record.
+     * 
+     * @return All recovered scores, in no particular order
+     */
+    public List<Integer> recover() {
+        FlightEvents.ScoreFile event = null;
+        if (FlightEvents.ENABLED) {
+            event = new FlightEvents.ScoreFile();
+            event.begin();
+        }
+        List<Integer> scores = new ArrayList<>();
+        long snapshotSequence = 0;
+        
+        // Read the snapshot
+        if (Files.exists(snapshotFile)) {
+            try (BufferedReader reader = Files.newBufferedReader(snapshotFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    try {
+                        if (line.startsWith(SEQUENCE_PREFIX)) {
+                            snapshotSequence = Long.parseLong(line.substring(SEQUENCE_PREFIX.length()).trim());
+                        } else if (!line.isEmpty()) {
+                            scores.add(Integer.parseInt(line));
+                        }
+                        if (event != null) {
+                            event.bytes += line.length() + 1;
+                        }
+                    } catch (NumberFormatException e) {
+                        // Ignore invalid lines
+                        EventLog.log(EventLog.WARN, "Invalid score format: " + line);
+                    }
+                }
+            } catch (IOException e) {
+                EventLog.log(EventLog.ERROR, "Error loading high scores: " + e.getMessage());
+            }
+        }
+        sequence = snapshotSequence;
+        
+        // Replay the journal up to the first torn or corrupt record
+        if (Files.exists(journalFile)) {
+            try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(channel.size(), Integer.MAX_VALUE));
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // Read the whole file
+                }
+                buffer.flip();
+                if (event != null) {
+                    event.bytes += buffer.remaining();
+                }
+                
+                CRC32 crc = new CRC32();
+                int valid = 0;
+                while (buffer.remaining() >= RECORD_SIZE) {
+                    int start = buffer.position();
+                    int magic = buffer.getInt();
+                    long recordSequence = buffer.getLong();
+                    int score = buffer.getInt();
+                    int checksum = buffer.getInt();
+                    crc.reset();
+                    crc.update(buffer.array(), start, RECORD_SIZE - 4);
+                    if (magic != RECORD_MAGIC || (int) crc.getValue() != checksum) {
+                        break;
+                    }
+                    valid = buffer.position();
+                    
+                    // Records up to the snapshot's sequence are already in the snapshot
+                    if (recordSequence > snapshotSequence) {
+                        scores.add(score);
+                        sequence = Math.max(sequence, recordSequence);
+                    }
+                }
+                
+                if (valid < channel.size()) {
+                    EventLog.log(EventLog.WARN, "Dropping " + (channel.size() - valid) + " torn bytes from " + journalFile);
+                    channel.truncate(valid);
+                    channel.force(true);
+                }
+            } catch (IOException e) {
+                EventLog.log(EventLog.ERROR, "Error replaying high score journal: " + e.getMessage());
+            }
+        }
+        if (event != null) {
+            event.operation = "load";
+            event.commit();
+        }
+        return scores;
+    }
+    
+    /**
+     * Queues a score for the journal. Returns immediately; the writer thread appends it
+     * and, every so many records, replaces the snapshot with the given list.
+     * 
+     * @param score The score to append
+     * @param scores The complete list of scores after adding this one
+     */
+    public synchronized void record(int score, List<Integer> scores) {
+        if (writerThread == null) {
+            startWriter();
+        }
+        sequence++;
+        int[] compacted = null;
+        if (sequence % compactEvery == 0) {
+            compacted = new int[scores.size()];
+            for (int i = 0; i < compacted.length; i++) {
+                compacted[i] = scores.get(i);
+            }
+        }
+        requests.add(new Request(sequence, score, compacted));
+    }
+    
+    /**
+     * Writes the queued records and stops the writer thread.
+     */
+    public synchronized void close() {
+        if (writerThread == null) {
+            return;
+        }
+        requests.add(STOP);
+        try {
+            writerThread.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writerThread = null;
+    }
+    
+    /**
+     * Starts the writer thread and makes sure it is drained when the JVM exits.
+     */
+    private void startWriter() {
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeRequests();
+            }
+        }, "High Score Writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                close();
+            }
+        }, "High Score Writer Shutdown"));
+    }
+    
+    /**
+     * Writer thread loop: appends records and compacts the journal when asked to.
+     */
+    private void writeRequests() {
+        FileChannel journal = null;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        CRC32 crc = new CRC32();
+        try {
+            while (true) {
+                Request request = requests.take();
+                if (request == STOP) {
+                    break;
+                }
+                try {
+                    if (journal == null) {
+                        journal = openJournal();
+                    }
+                    
+                    // Append the record and force it to disk before the next one
+                    long appendStart = System.nanoTime();
+                    FlightEvents.ScoreFile appendEvent = null;
+                    if (FlightEvents.ENABLED) {
+                        appendEvent = new FlightEvents.ScoreFile();
+                        appendEvent.begin();
+                    }
+                    record.clear();
+                    record.putInt(RECORD_MAGIC);
+                    record.putLong(request.sequence);
+                    record.putInt(request.score);
+                    crc.reset();
+                    crc.update(record.array(), 0, RECORD_SIZE - 4);
+                    record.putInt((int) crc.getValue());
+                    record.flip();
+                    while (record.hasRemaining()) {
+                        journal.write(record);
+                    }
+                    journal.force(false);
+                    Metrics.HIGH_SCORE_WRITES.record(System.nanoTime() - appendStart);
+                    if (appendEvent != null) {
+                        appendEvent.operation = "append";
+                        appendEvent.bytes = RECORD_SIZE;
+                        appendEvent.commit();
+                    }
+                    
+                    if (request.scores != null) {
+                        FlightEvents.ScoreFile snapshotEvent = null;
+                        if (FlightEvents.ENABLED) {
+                            snapshotEvent = new FlightEvents.ScoreFile();
+                            snapshotEvent.begin();
+                        }
+                        long bytes = writeSnapshot(request.scores, request.sequence);
+                        
+                        // Everything in the journal is now in the snapshot
+                        journal.truncate(0);
+                        journal.force(true);
+                        if (snapshotEvent != null) {
+                            snapshotEvent.operation = "snapshot";
+                            snapshotEvent.bytes = bytes;
+                            snapshotEvent.commit();
+                        }
+                    }
+                } catch (IOException e) {
+                    EventLog.log(EventLog.ERROR, "Error saving high scores: " + e.getMessage());
+                    closeQuietly(journal);
+                    journal = null;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeQuietly(journal);
+        }
+    }
+    
+    /**
+     * Opens the journal for appending, creating it and its directory if needed.
+     * 
+     * @return The journal channel
+     * @throws IOException If the journal could not be opened
+     */
+    private FileChannel openJournal() throws IOException {
+        Path parent = journalFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        return FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+    
+    /**
+     * Writes a new snapshot to a temporary file, forces it to disk and renames it over
+     * the old one, so a reader sees either the old or the new snapshot but never a partial one.
+     * 
+     * @param scores The scores to write
+     * @param lastSequence The sequence number of the last record included
+     * @return The size of the snapshot in bytes
+     * @throws IOException If the snapshot could not be written
+     */
+    private long writeSnapshot(int[] scores, long lastSequence) throws IOException {
+        Path temp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        long size;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                    Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+            for (int score : scores) {
+                writer.write(Integer.toString(score));
+                writer.newLine();
+            }
+            writer.write(SEQUENCE_PREFIX + lastSequence);
+            writer.newLine();
+            writer.flush();
+            channel.force(true);
+            size = channel.size();
+        }
+        
+        try {
+            Files.move(temp, snapshotFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        
+        // Make the rename itself durable where the platform allows syncing a directory
+        Path parent = snapshotFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            try (FileChannel directory = FileChannel.open(parent, StandardOpenOption.READ)) {
+                directory.force(true);
+            } catch (IOException e) {
+                // Not supported on every platform
+            }
+        }
+        return size;
+    }
+    
+    /**
+     * Closes a channel, ignoring errors.
+     * 
+     * @param channel The channel, or null
+     */
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Nothing left to do
+            }
+        }
+    }
+}
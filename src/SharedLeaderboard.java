@@ -0,0 +1,409 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A leaderboard kept in a memory-mapped file, so that other threads and other
+ * processes on the same host can read what the game writes without ever blocking it.
+ * 
+ * The file holds two slots and a version number. The single writer fills the slot
+ * the readers are not using and then publishes it by incrementing the version with a
+ * release store. Each slot also has a sequence number, which the writer makes odd
+ * before it starts overwriting the slot and even again once the slot holds a whole
+ * version. A reader takes the slot named by the version and copies it between two
+ * reads of its sequence number; if the number was odd or changed, the writer reused
+ * the slot during the copy and the reader tries again. Readers take no locks and never
+ * write to the file. The writer role is claimed with an exclusive file lock.
+ */
+public class SharedLeaderboard {
+    public static final int NAME_BYTES = 16;
+    
+    // File layout
+    private static final int MAGIC = 0x5041434C; // "PACL"
+    private static final int FORMAT = 2;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int FORMAT_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int VERSION_OFFSET = 16; // 8-byte aligned for the atomic accesses
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_HEADER_SIZE = 24; // Sequence, version, entry count and padding
+    private static final int SEQUENCE_OFFSET = 0; // Within a slot, 8-byte aligned
+    private static final int SLOT_VERSION_OFFSET = 8;
+    private static final int COUNT_OFFSET = 16;
+    private static final int ENTRY_SIZE = 16 + NAME_BYTES; // Score, difficulty, timestamp, name
+    private static final int MAX_CAPACITY = 1 << 20;
+    
+    // Atomic access to the version and the sequence numbers in the mapped file
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final FileLock writerLock;
+    private final int capacity;
+    private final int slotSize;
+    
+    // Number of reads that had to be repeated because the writer lapped them
+    private long retries;
+    
+    // Pause in the middle of every copy, so that stress tests can catch the other side at it
+    private long copyPauseNanos;
+    
+    /**
+     * The entries of one published version, copied out of the file. Also used by the
+     * writer to stage the next version. Reuse one instance to read without allocating.
+     */
+    public static class Snapshot {
+        private final ByteBuffer data;
+        private int count;
+        private long version;
+        
+        /**
+         * Creates a new Snapshot.
+         * 
+         * @param capacity The maximum number of entries
+         */
+        public Snapshot(int capacity) {
+            this.data = ByteBuffer.allocate(capacity * ENTRY_SIZE).order(ByteOrder.nativeOrder());
+        }
+        
+        /**
+         * Removes all entries.
+         */
+        public void clear() {
+            count = 0;
+        }
+        
+        /**
+         * Adds an entry. Names are cut to NAME_BYTES bytes of UTF-8.
+         * 
+         * @param name The player's name
+         * @param score The score
+         * @param difficulty The difficulty level
+         * @param timestamp The time the score was set, in milliseconds since the epoch
+         * @return False if the snapshot is full
+         */
+        public boolean add(String name, int score, int difficulty, long timestamp) {
+            int offset = count * ENTRY_SIZE;
+            if (offset + ENTRY_SIZE > data.capacity()) {
+                return false;
+            }
+            data.putInt(offset, score);
+            data.putInt(offset + 4, difficulty);
+            data.putLong(offset + 8, timestamp);
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            for (int i = 0; i < NAME_BYTES; i++) {
+                data.put(offset + 16 + i, i < bytes.length ? bytes[i] : 0);
+            }
+            count++;
+            return true;
+        }
+        
+        /**
+         * Gets the number of entries.
+         * 
+         * @return The number of entries
+         */
+        public int size() {
+            return count;
+        }
+        
+        /**
+         * Gets the version this snapshot was read from.
+         * 
+         * @return The version
+         */
+        public long getVersion() {
+            return version;
+        }
+        
+        /**
+         * Gets the score of an entry.
+         * 
+         * @param index The entry, 0 for the best
+         * @return The score
+         */
+        public int getScore(int index) {
+            return data.getInt(index * ENTRY_SIZE);
+        }
+        
+        /**
+         * Gets the difficulty of an entry.
+         * 
+         * @param index The entry
+         * @return The difficulty level
+         */
+        public int getDifficulty(int index) {
+            return data.getInt(index * ENTRY_SIZE + 4);
+        }
+        
+        /**
+         * Gets the timestamp of an entry.
+         * 
+         * @param index The entry
+         * @return The timestamp in milliseconds since the epoch
+         */
+        public long getTimestamp(int index) {
+            return data.getLong(index * ENTRY_SIZE + 8);
+        }
+        
+        /**
+         * Gets the player's name of an entry. Allocates a String.
+         * 
+         * @param index The entry
+         * @return The name
+         */
+        public String getName(int index) {
+            int offset = index * ENTRY_SIZE + 16;
+            int length = 0;
+            while (length < NAME_BYTES && data.get(offset + length) != 0) {
+                length++;
+            }
+            return new String(data.array(), offset, length, StandardCharsets.UTF_8);
+        }
+    }
+    
+    /**
+     * Opens a shared leaderboard as a reader.
+     * 
+     * @param file The mapped file, created by a writer
+     * @return The leaderboard
+     * @throws IOException If the file does not exist or is not a leaderboard file
+     */
+    public static SharedLeaderboard openReader(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a shared leaderboard: " + file);
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            header.order(ByteOrder.nativeOrder());
+            if (header.getInt(MAGIC_OFFSET) != MAGIC || header.getInt(FORMAT_OFFSET) != FORMAT) {
+                throw new IOException("Not a shared leaderboard: " + file);
+            }
+            int capacity = header.getInt(CAPACITY_OFFSET);
+            if (capacity <= 0 || capacity > MAX_CAPACITY) {
+                throw new IOException("Invalid capacity " + capacity + " in " + file);
+            }
+            return new SharedLeaderboard(channel, FileChannel.MapMode.READ_ONLY, null, capacity);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Opens a shared leaderboard as its single writer, creating the file if needed.
+     * 
+     * @param file The mapped file
+     * @param capacity The maximum number of entries
+     * @return The leaderboard, or null if another process is already the writer
+     * @throws IOException If the file could not be opened or mapped
+     */
+    public static SharedLeaderboard openWriter(File file, int capacity) throws IOException {
+        if (capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null) {
+                channel.close();
+                return null;
+            }
+            
+            // Start from an empty version 0 if the file is new or has a different layout
+            SharedLeaderboard board = new SharedLeaderboard(channel, FileChannel.MapMode.READ_WRITE, lock, capacity);
+            MappedByteBuffer buffer = board.buffer;
+            if (buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(FORMAT_OFFSET) != FORMAT
+                    || buffer.getInt(CAPACITY_OFFSET) != capacity) {
+                buffer.putInt(MAGIC_OFFSET, 0);
+                buffer.putInt(CAPACITY_OFFSET, capacity);
+                buffer.putInt(FORMAT_OFFSET, FORMAT);
+                LONGS.setRelease(buffer, VERSION_OFFSET, 0L);
+                for (int slot = HEADER_SIZE; slot < HEADER_SIZE + 2 * board.slotSize; slot += board.slotSize) {
+                    LONGS.setRelease(buffer, slot + SEQUENCE_OFFSET, 0L);
+                    buffer.putLong(slot + SLOT_VERSION_OFFSET, 0L);
+                    buffer.putInt(slot + COUNT_OFFSET, 0);
+                }
+                buffer.putInt(MAGIC_OFFSET, MAGIC);
+            }
+            return board;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Maps the file.
+     */
+    private SharedLeaderboard(FileChannel channel, FileChannel.MapMode mode, FileLock writerLock, int capacity)
+            throws IOException {
+        this.channel = channel;
+        this.writerLock = writerLock;
+        this.capacity = capacity;
+        this.slotSize = SLOT_HEADER_SIZE + capacity * ENTRY_SIZE;
+        this.buffer = channel.map(mode, 0, HEADER_SIZE + 2L * slotSize);
+        this.buffer.order(ByteOrder.nativeOrder());
+    }
+    
+    /**
+     * Gets the maximum number of entries.
+     * 
+     * @return The capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    /**
+     * Publishes a new version. Only the writer may call this.
+     * 
+     * @param snapshot The entries, best first
+     */
+    public void publish(Snapshot snapshot) {
+        if (writerLock == null) {
+            throw new IllegalStateException("Opened as a reader");
+        }
+        long version = (long) LONGS.getAcquire(buffer, VERSION_OFFSET);
+        long next = version + 1;
+        int slot = HEADER_SIZE + (int) (next & 1) * slotSize;
+        
+        // Mark the slot as being written before touching it; readers still copying the
+        // version it held will see the odd sequence and try again
+        long sequence = (long) LONGS.getAcquire(buffer, slot + SEQUENCE_OFFSET);
+        LONGS.setOpaque(buffer, slot + SEQUENCE_OFFSET, sequence + 1);
+        VarHandle.storeStoreFence();
+        
+        // Fill the slot, mark it whole again, then make it current
+        int count = Math.min(snapshot.count, capacity);
+        buffer.putLong(slot + SLOT_VERSION_OFFSET, next);
+        buffer.putInt(slot + COUNT_OFFSET, count);
+        buffer.put(slot + SLOT_HEADER_SIZE, snapshot.data.array(), 0, count * ENTRY_SIZE);
+        pause();
+        LONGS.setRelease(buffer, slot + SEQUENCE_OFFSET, sequence + 2);
+        LONGS.setRelease(buffer, VERSION_OFFSET, next);
+    }
+    
+    /**
+     * Copies the current version into a snapshot. Never blocks; repeats the copy only
+     * if the writer started overwriting the slot while it was being made, which takes
+     * it publishing another version first.
+     * 
+     * @param snapshot The snapshot to fill, with at least this board's capacity
+     */
+    public void read(Snapshot snapshot) {
+        while (true) {
+            long version = (long) LONGS.getAcquire(buffer, VERSION_OFFSET);
+            int slot = HEADER_SIZE + (int) (version & 1) * slotSize;
+            long sequence = (long) LONGS.getAcquire(buffer, slot + SEQUENCE_OFFSET);
+            if ((sequence & 1) == 0) {
+                long slotVersion = buffer.getLong(slot + SLOT_VERSION_OFFSET);
+                int count = Math.min(buffer.getInt(slot + COUNT_OFFSET), Math.min(capacity, snapshot.data.capacity() / ENTRY_SIZE));
+                count = Math.max(count, 0);
+                int half = count / 2 * ENTRY_SIZE;
+                buffer.get(slot + SLOT_HEADER_SIZE, snapshot.data.array(), 0, half);
+                pause();
+                buffer.get(slot + SLOT_HEADER_SIZE + half, snapshot.data.array(), half, count * ENTRY_SIZE - half);
+                
+                // The copy is whole if the writer did not start on the slot meanwhile
+                VarHandle.acquireFence();
+                if ((long) LONGS.getAcquire(buffer, slot + SEQUENCE_OFFSET) == sequence) {
+                    snapshot.count = count;
+                    snapshot.version = slotVersion;
+                    return;
+                }
+            }
+            retries++;
+        }
+    }
+    
+    /**
+     * Gets the best score of the current version without copying the list.
+     * 
+     * @return The highest score, or 0 if there are no entries
+     */
+    public int getHighestScore() {
+        while (true) {
+            long version = (long) LONGS.getAcquire(buffer, VERSION_OFFSET);
+            int slot = HEADER_SIZE + (int) (version & 1) * slotSize;
+            long sequence = (long) LONGS.getAcquire(buffer, slot + SEQUENCE_OFFSET);
+            int count = buffer.getInt(slot + COUNT_OFFSET);
+            int score = buffer.getInt(slot + SLOT_HEADER_SIZE);
+            VarHandle.acquireFence();
+            if ((sequence & 1) == 0 && (long) LONGS.getAcquire(buffer, slot + SEQUENCE_OFFSET) == sequence) {
+                return count > 0 ? score : 0;
+            }
+            retries++;
+        }
+    }
+    
+    /**
+     * Gets the current version, which the writer increments with every publish.
+     * 
+     * @return The version
+     */
+    public long getVersion() {
+        return (long) LONGS.getAcquire(buffer, VERSION_OFFSET);
+    }
+    
+    /**
+     * Gets the number of reads on this instance that had to be repeated.
+     * Not synchronized; meant for single-threaded readers and benchmarks.
+     * 
+     * @return The number of repeated reads
+     */
+    public long getRetries() {
+        return retries;
+    }
+    
+    /**
+     * Makes reads on this instance pause halfway through their copy, and publishing pause
+     * after filling the slot, so that stress tests catch readers copying a slot the writer
+     * is overwriting even on one core. Not for the game.
+     * 
+     * @param nanos The pause in nanoseconds, 0 for none
+     */
+    void setCopyPause(long nanos) {
+        copyPauseNanos = nanos;
+    }
+    
+    /**
+     * Pauses in the middle of a read or publish, if a pause is set.
+     */
+    private void pause() {
+        if (copyPauseNanos > 0) {
+            LockSupport.parkNanos(copyPauseNanos);
+        }
+    }
+    
+    /**
+     * Releases the writer role, if held, and closes the file.
+     */
+    public void close() {
+        try {
+            if (writerLock != null) {
+                writerLock.release();
+            }
+            channel.close();
+        } catch (IOException e) {
+            EventLog.log(EventLog.WARN, "Error closing shared leaderboard: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,226 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stress test and latency benchmark for the shared leaderboard. One writer publishes
+ * as fast as it can while reader threads in this JVM, and reader processes started
+ * from it, read the mapped file and check every copy for tearing. Every version the
+ * writer publishes has all its timestamps set to the version number, so a copy that
+ * mixes two versions is detected.
+ * 
+ * Reads pause halfway through their copy, and the writer after filling a slot, for
+ * --pause-us microseconds, so that the writer overwrites slots readers are still
+ * copying even on one core; the retries count how often that happened. The latencies include the pauses, so measure
+ * them with --pause-us 0.
+ * 
+ * Usage: java SharedLeaderboardStress [--threads n] [--processes n] [--seconds n] [--capacity n] [--pause-us n] [--file path]
+ */
+public class SharedLeaderboardStress {
+    private static final String RESULT_PREFIX = "RESULT ";
+    
+    private static final AtomicLong tornReads = new AtomicLong();
+    
+    /**
+     * Runs the stress test, or one reader process when started with --reader.
+     * 
+     * @param args The command line arguments
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length == 4 && "--reader".equals(args[0])) {
+            File file = new File(args[1]);
+            long deadline = System.nanoTime() + Long.parseLong(args[2]) * 1000000000L;
+            Histogram latency = new Histogram();
+            SharedLeaderboard board = SharedLeaderboard.openReader(file);
+            board.setCopyPause(Long.parseLong(args[3]));
+            long reads = readUntil(board, deadline, latency);
+            System.out.println(RESULT_PREFIX + reads + " " + tornReads.get() + " " + board.getRetries() + " "
+                    + latency.getPercentile(50) + " " + latency.getPercentile(99) + " " + latency.getMax());
+            board.close();
+            return;
+        }
+        
+        int threads = 4;
+        int processes = 1;
+        int seconds = 5;
+        int capacity = 100;
+        long pauseNanos = 20000;
+        File file = File.createTempFile("leaderboard", ".map");
+        file.deleteOnExit();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--processes":
+                    processes = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--seconds":
+                    seconds = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--capacity":
+                    capacity = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--pause-us":
+                    pauseNanos = Long.parseLong(args[i + 1]) * 1000;
+                    break;
+                case "--file":
+                    file = new File(args[i + 1]);
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(1);
+            }
+        }
+        
+        final SharedLeaderboard writer = SharedLeaderboard.openWriter(file, capacity);
+        if (writer == null) {
+            System.err.println("Another process is writing " + file);
+            System.exit(1);
+        }
+        publish(writer, new SharedLeaderboard.Snapshot(capacity), names(capacity));
+        writer.setCopyPause(pauseNanos);
+        final long deadline = System.nanoTime() + seconds * 1000000000L;
+        
+        // Reader processes, started first so that they overlap with the whole run
+        List<Process> children = new ArrayList<>();
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        for (int i = 0; i < processes; i++) {
+            children.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    SharedLeaderboardStress.class.getName(), "--reader", file.getPath(), Integer.toString(seconds),
+                    Long.toString(pauseNanos))
+                    .redirectErrorStream(true).start());
+        }
+        
+        // Reader threads in this process, each with its own mapping
+        final Histogram latency = new Histogram();
+        final AtomicLong reads = new AtomicLong();
+        final AtomicLong retries = new AtomicLong();
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            final SharedLeaderboard board = SharedLeaderboard.openReader(file);
+            board.setCopyPause(pauseNanos);
+            Thread reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    reads.addAndGet(readUntil(board, deadline, latency));
+                    retries.addAndGet(board.getRetries());
+                    board.close();
+                }
+            }, "Leaderboard Reader " + i);
+            readers.add(reader);
+            reader.start();
+        }
+        
+        // The writer publishes on this thread until the deadline
+        Histogram publishLatency = new Histogram();
+        SharedLeaderboard.Snapshot staging = new SharedLeaderboard.Snapshot(capacity);
+        String[] names = names(capacity);
+        long published = 0;
+        while (System.nanoTime() < deadline) {
+            long start = System.nanoTime();
+            publish(writer, staging, names);
+            publishLatency.record(System.nanoTime() - start);
+            published++;
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        
+        System.out.printf("Writer: %,d versions, publish p50 %d ns, p99 %d ns, max %d ns%n",
+                published, publishLatency.getPercentile(50), publishLatency.getPercentile(99), publishLatency.getMax());
+        System.out.printf("Threads: %d readers, %,d reads, %,d retries, %d torn, read p50 %d ns, p99 %d ns, max %d ns%n",
+                threads, reads.get(), retries.get(), tornReads.get(),
+                latency.getPercentile(50), latency.getPercentile(99), latency.getMax());
+        
+        long torn = tornReads.get();
+        for (int i = 0; i < children.size(); i++) {
+            Process child = children.get(i);
+            try (BufferedReader output = new BufferedReader(
+                    new InputStreamReader(child.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = output.readLine()) != null) {
+                    if (!line.startsWith(RESULT_PREFIX)) {
+                        System.out.println("Process " + i + ": " + line);
+                        continue;
+                    }
+                    String[] parts = line.substring(RESULT_PREFIX.length()).split(" ");
+                    torn += Long.parseLong(parts[1]);
+                    System.out.printf("Process %d: %,d reads, %,d retries, %s torn, read p50 %s ns, p99 %s ns, max %s ns%n",
+                            i, Long.parseLong(parts[0]), Long.parseLong(parts[2]), parts[1], parts[3], parts[4], parts[5]);
+                }
+            }
+            child.waitFor();
+        }
+        writer.close();
+        
+        System.out.println(torn == 0 ? "PASS: no torn reads" : "FAIL: " + torn + " torn reads");
+        System.exit(torn == 0 ? 0 : 1);
+    }
+    
+    /**
+     * Publishes the next version, with every timestamp set to its version number.
+     * 
+     * @param writer The writer
+     * @param staging The snapshot to fill
+     * @param names The player names to use
+     */
+    private static void publish(SharedLeaderboard writer, SharedLeaderboard.Snapshot staging, String[] names) {
+        long version = writer.getVersion() + 1;
+        staging.clear();
+        for (int i = 0; i < names.length; i++) {
+            staging.add(names[i], names.length - i, i % 3, version);
+        }
+        writer.publish(staging);
+    }
+    
+    /**
+     * Reads until the deadline, timing every read and checking it for tearing.
+     * 
+     * @param board The reader
+     * @param deadline The System.nanoTime() to stop at
+     * @param latency The histogram for read times
+     * @return The number of reads
+     */
+    private static long readUntil(SharedLeaderboard board, long deadline, Histogram latency) {
+        SharedLeaderboard.Snapshot snapshot = new SharedLeaderboard.Snapshot(board.getCapacity());
+        long reads = 0;
+        long now = System.nanoTime();
+        while (now < deadline) {
+            board.read(snapshot);
+            long end = System.nanoTime();
+            latency.record(end - now);
+            now = end;
+            reads++;
+            
+            // A consistent copy has the writer's full list, all from one version
+            boolean torn = snapshot.size() != board.getCapacity();
+            for (int i = 0; i < snapshot.size() && !torn; i++) {
+                torn = snapshot.getTimestamp(i) != snapshot.getVersion() || snapshot.getScore(i) != snapshot.size() - i;
+            }
+            if (torn) {
+                tornReads.incrementAndGet();
+            }
+        }
+        return reads;
+    }
+    
+    /**
+     * Creates player names up front so that publishing is not measured with string building.
+     * 
+     * @param count The number of names
+     * @return The names
+     */
+    private static String[] names(int count) {
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = "player" + i;
+        }
+        return names;
+    }
+}
@@ -0,0 +1,311 @@
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+/**
+ * Pre-rendered sprites for all actors and pellets, packed into a single image.
+ * The atlas is drawn once at startup, so drawing an actor is a single
+ * sub-rectangle blit instead of a series of shape calls.
+ */
+public class SpriteAtlas {
+    // Animation frame counts
+    public static final int PACMAN_FRAMES = 4;
+    public static final int GHOST_FRAMES = 2;
+    
+    // Half-angle of Pac-Man's mouth in degrees for each frame
+    private static final int[] MOUTH_ANGLES = {0, 15, 30, 45};
+    
+    // Directions in atlas order
+    private static final Direction[] DIRECTIONS = {Direction.UP, Direction.DOWN, Direction.LEFT, Direction.RIGHT};
+    
+    private static final int COLUMNS = DIRECTIONS.length * GHOST_FRAMES;
+    
+    private final BufferedImage image;
+    private final int tileSize;
+    private final Color[] ghostColors;
+    
+    // First row of each sprite group
+    private final int frightenedRow;
+    private final int pelletRow;
+    
+    /**
+     * Creates a sprite atlas in an image compatible with the default screen,
+     * or in a plain ARGB image when running headless.
+     * 
+     * @param tileSize The size of a tile in pixels
+     * @param ghostColors The body colours of the ghosts
+     * @return The sprite atlas
+     */
+    public static SpriteAtlas create(int tileSize, Color[] ghostColors) {
+        GraphicsConfiguration config = null;
+        if (!GraphicsEnvironment.isHeadless()) {
+            config = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                    .getDefaultScreenDevice().getDefaultConfiguration();
+        }
+        return new SpriteAtlas(config, tileSize, ghostColors);
+    }
+    
+    /**
+     * Creates a new SpriteAtlas and renders all sprites into it.
+     * 
+     * @param config The graphics configuration to create the image for, or null for a plain ARGB image
+     * @param tileSize The size of a tile in pixels
+     * @param ghostColors The body colours of the ghosts
+     */
+    public SpriteAtlas(GraphicsConfiguration config, int tileSize, Color[] ghostColors) {
+        this.tileSize = tileSize;
+        this.ghostColors = ghostColors.clone();
+        this.frightenedRow = DIRECTIONS.length + ghostColors.length;
+        this.pelletRow = frightenedRow + 1;
+        
+        int width = COLUMNS * tileSize;
+        int height = (pelletRow + 1) * tileSize;
+        if (config != null) {
+            image = config.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+        } else {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+        
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        renderPacMan(g);
+        renderGhosts(g);
+        renderPellets(g);
+        g.dispose();
+    }
+    
+    /**
+     * Gets the size of a sprite in pixels.
+     * 
+     * @return The tile size
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+    
+    /**
+     * Draws a Pac-Man frame.
+     * 
+     * @param g The Graphics object to draw with
+     * @param x The x-coordinate in pixels
+     * @param y The y-coordinate in pixels
+     * @param direction The direction Pac-Man is facing, NONE draws a closed mouth
+     * @param frame The animation frame (0 to PACMAN_FRAMES - 1)
+     */
+    public void drawPacMan(Graphics g, int x, int y, Direction direction, int frame) {
+        if (direction == Direction.NONE) {
+            blit(g, 0, 0, x, y);
+        } else {
+            blit(g, frame, direction.ordinal(), x, y);
+        }
+    }
+    
+    /**
+     * Draws a ghost body looking in a direction.
+     * 
+     * @param g The Graphics object to draw with
+     * @param x The x-coordinate in pixels
+     * @param y The y-coordinate in pixels
+     * @param color The body colour, which must be one of the atlas ghost colours
+     * @param direction The direction the ghost is looking in
+     * @param frame The animation frame (0 to GHOST_FRAMES - 1)
+     */
+    public void drawGhost(Graphics g, int x, int y, Color color, Direction direction, int frame) {
+        blit(g, directionColumn(direction) * GHOST_FRAMES + frame, DIRECTIONS.length + ghostRow(color), x, y);
+    }
+    
+    /**
+     * Draws a frightened ghost.
+     * 
+     * @param g The Graphics object to draw with
+     * @param x The x-coordinate in pixels
+     * @param y The y-coordinate in pixels
+     * @param flash True to draw the white frame used when the power-up is running out
+     * @param frame The animation frame (0 to GHOST_FRAMES - 1)
+     */
+    public void drawFrightened(Graphics g, int x, int y, boolean flash, int frame) {
+        blit(g, (flash ? GHOST_FRAMES : 0) + frame, frightenedRow, x, y);
+    }
+    
+    /**
+     * Draws the eyes of an eaten ghost.
+     * 
+     * @param g The Graphics object to draw with
+     * @param x The x-coordinate in pixels
+     * @param y The y-coordinate in pixels
+     * @param direction The direction the eyes are looking in
+     */
+    public void drawEyes(Graphics g, int x, int y, Direction direction) {
+        blit(g, 2 * GHOST_FRAMES + directionColumn(direction), frightenedRow, x, y);
+    }
+    
+    /**
+     * Draws a pellet.
+     * 
+     * @param g The Graphics object to draw with
+     * @param x The x-coordinate of the tile in pixels
+     * @param y The y-coordinate of the tile in pixels
+     * @param powerPellet True to draw a power pellet
+     */
+    public void drawPellet(Graphics g, int x, int y, boolean powerPellet) {
+        blit(g, powerPellet ? 1 : 0, pelletRow, x, y);
+    }
+    
+    /**
+     * Copies one sprite from the atlas.
+     */
+    private void blit(Graphics g, int column, int row, int x, int y) {
+        int sx = column * tileSize;
+        int sy = row * tileSize;
+        g.drawImage(image, x, y, x + tileSize, y + tileSize, sx, sy, sx + tileSize, sy + tileSize, null);
+    }
+    
+    /**
+     * Gets the atlas row of a ghost colour.
+     */
+    private int ghostRow(Color color) {
+        for (int i = 0; i < ghostColors.length; i++) {
+            if (ghostColors[i].equals(color)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     * Gets the atlas column of a direction, treating NONE as UP.
+     */
+    private static int directionColumn(Direction direction) {
+        return direction == Direction.NONE ? 0 : direction.ordinal();
+    }
+    
+    /**
+     * Renders Pac-Man with every mouth opening in every direction.
+     */
+    private void renderPacMan(Graphics2D g) {
+        g.setColor(Color.YELLOW);
+        for (int row = 0; row < DIRECTIONS.length; row++) {
+            int facing = facingAngle(DIRECTIONS[row]);
+            for (int frame = 0; frame < PACMAN_FRAMES; frame++) {
+                int mouth = MOUTH_ANGLES[frame];
+                g.fillArc(frame * tileSize, row * tileSize, tileSize, tileSize,
+                        facing + mouth, 360 - 2 * mouth);
+            }
+        }
+    }
+    
+    /**
+     * Renders the ghost bodies, frightened ghosts and eyes.
+     */
+    private void renderGhosts(Graphics2D g) {
+        for (int color = 0; color < ghostColors.length; color++) {
+            int y = (DIRECTIONS.length + color) * tileSize;
+            for (int dir = 0; dir < DIRECTIONS.length; dir++) {
+                for (int frame = 0; frame < GHOST_FRAMES; frame++) {
+                    int x = (dir * GHOST_FRAMES + frame) * tileSize;
+                    renderGhostBody(g, x, y, ghostColors[color], frame);
+                    renderEyes(g, x, y, DIRECTIONS[dir]);
+                }
+            }
+        }
+        
+        int y = frightenedRow * tileSize;
+        for (int frame = 0; frame < GHOST_FRAMES; frame++) {
+            renderGhostBody(g, frame * tileSize, y, Color.BLUE, frame);
+            renderFrightenedFace(g, frame * tileSize, y, Color.PINK);
+            renderGhostBody(g, (GHOST_FRAMES + frame) * tileSize, y, Color.WHITE, frame);
+            renderFrightenedFace(g, (GHOST_FRAMES + frame) * tileSize, y, Color.RED);
+        }
+        for (int dir = 0; dir < DIRECTIONS.length; dir++) {
+            renderEyes(g, (2 * GHOST_FRAMES + dir) * tileSize, y, DIRECTIONS[dir]);
+        }
+    }
+    
+    /**
+     * Renders a ghost body: a dome on top and a wavy skirt that alternates between frames.
+     */
+    private void renderGhostBody(Graphics2D g, int x, int y, Color color, int frame) {
+        g.setColor(color);
+        g.fillArc(x, y, tileSize, tileSize, 0, 180);
+        g.fillRect(x, y + tileSize / 2, tileSize, tileSize / 3);
+        
+        int skirtTop = y + tileSize / 2 + tileSize / 3;
+        int waves = 3;
+        int waveWidth = tileSize / waves;
+        for (int i = 0; i < waves; i++) {
+            int left = x + i * waveWidth;
+            int right = i == waves - 1 ? x + tileSize : left + waveWidth;
+            int tip = frame == 0 ? left + waveWidth / 2 : (i % 2 == 0 ? left : right);
+            g.fillPolygon(new int[] {left, right, tip}, new int[] {skirtTop, skirtTop, y + tileSize}, 3);
+        }
+    }
+    
+    /**
+     * Renders a pair of eyes looking in a direction.
+     */
+    private void renderEyes(Graphics2D g, int x, int y, Direction direction) {
+        int eyeSize = tileSize / 3;
+        int pupilSize = tileSize / 6;
+        int lookX = direction.getDx() * pupilSize / 2;
+        int lookY = direction.getDy() * pupilSize / 2;
+        
+        int leftEyeX = x + tileSize / 6;
+        int rightEyeX = x + tileSize / 2;
+        int eyeY = y + tileSize / 4;
+        g.setColor(Color.WHITE);
+        g.fillOval(leftEyeX, eyeY, eyeSize, eyeSize);
+        g.fillOval(rightEyeX, eyeY, eyeSize, eyeSize);
+        
+        int pupilOffset = (eyeSize - pupilSize) / 2;
+        g.setColor(Color.BLUE);
+        g.fillOval(leftEyeX + pupilOffset + lookX, eyeY + pupilOffset + lookY, pupilSize, pupilSize);
+        g.fillOval(rightEyeX + pupilOffset + lookX, eyeY + pupilOffset + lookY, pupilSize, pupilSize);
+    }
+    
+    /**
+     * Renders the small eyes and wavy mouth of a frightened ghost.
+     */
+    private void renderFrightenedFace(Graphics2D g, int x, int y, Color color) {
+        g.setColor(color);
+        int eyeSize = Math.max(2, tileSize / 8);
+        g.fillRect(x + tileSize / 3 - eyeSize / 2, y + tileSize / 3, eyeSize, eyeSize);
+        g.fillRect(x + 2 * tileSize / 3 - eyeSize / 2, y + tileSize / 3, eyeSize, eyeSize);
+        
+        int mouthY = y + 2 * tileSize / 3;
+        int step = tileSize / 6;
+        for (int i = 0; i < 4; i++) {
+            int x1 = x + tileSize / 6 + i * step;
+            int y1 = mouthY + (i % 2 == 0 ? 0 : 2);
+            int y2 = mouthY + (i % 2 == 0 ? 2 : 0);
+            g.drawLine(x1, y1, x1 + step, y2);
+        }
+    }
+    
+    /**
+     * Renders the regular and power pellets.
+     */
+    private void renderPellets(Graphics2D g) {
+        int y = pelletRow * tileSize;
+        g.setColor(Color.WHITE);
+        g.fillOval(tileSize / 3, y + tileSize / 3, tileSize / 3, tileSize / 3);
+        g.fillOval(tileSize + tileSize / 4, y + tileSize / 4, tileSize / 2, tileSize / 2);
+    }
+    
+    /**
+     * Gets the arc angle Pac-Man's mouth is centred on for a direction.
+     */
+    private static int facingAngle(Direction direction) {
+        switch (direction) {
+            case UP: return 90;
+            case LEFT: return 180;
+            case DOWN: return 270;
+            case RIGHT:
+            default: return 0;
+        }
+    }
+}
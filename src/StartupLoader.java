@@ -0,0 +1,222 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Prepares what the game needs on worker threads while the title screen is shown:
+ * the high score list, the sprite atlas and the first level with its template maze,
+ * pathfinding tables and wall layer. Also measures the time from launch to the first title and game frames.
+ */
+public class StartupLoader {
+    private static final int WORKERS = 3;
+    
+    private final long launchTime;
+    private final ExecutorService executor;
+    private CompletableFuture<HighScore> highScore;
+    private CompletableFuture<SpriteAtlas> atlas;
+    private CompletableFuture<PreparedLevel> firstLevel;
+    
+    // Frames are reported once each
+    private volatile boolean titleFrameShown;
+    private volatile boolean gameFrameShown;
+    private volatile long gameRequestTime;
+    
+    /**
+     * Creates a new StartupLoader.
+     * 
+     * @param launchTime The System.nanoTime() at which the application started
+     */
+    public StartupLoader(long launchTime) {
+        this.launchTime = launchTime;
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(WORKERS, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Startup Worker " + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+    
+    /**
+     * Starts loading the high scores. This only reads files, so it can run while
+     * RenderProbe is still choosing the pipeline.
+     */
+    public void loadHighScores() {
+        highScore = submit("high scores", new Supplier<HighScore>() {
+            @Override
+            public HighScore get() {
+                return new HighScore();
+            }
+        }, new Supplier<HighScore>() {
+            @Override
+            public HighScore get() {
+                return HighScore.inMemory();
+            }
+        });
+    }
+    
+    /**
+     * Starts preparing the sprite atlas and the first level. Both are rendered for the
+     * screen, so this must be called after the Java2D pipeline has been configured.
+     */
+    public void prepareAssets() {
+        atlas = submit("sprite atlas", new Supplier<SpriteAtlas>() {
+            @Override
+            public SpriteAtlas get() {
+                return SpriteAtlas.create(Game.TILE_SIZE, Game.GHOST_COLORS);
+            }
+        }, null);
+        firstLevel = submit("first level", new Supplier<PreparedLevel>() {
+            @Override
+            public PreparedLevel get() {
+                return PreparedLevel.prepare(Level.get(1));
+            }
+        }, null);
+        
+        // The workers are only needed for startup
+        CompletableFuture.allOf(highScore, atlas, firstLevel).whenComplete(new BiConsumer<Void, Throwable>() {
+            @Override
+            public void accept(Void result, Throwable error) {
+                executor.shutdown();
+            }
+        });
+    }
+    
+    /**
+     * Runs a startup stage on a worker thread and reports how long it took. If the stage
+     * fails, the error is logged and the fallback's result is used instead.
+     * 
+     * @param name The name of the stage
+     * @param stage The stage
+     * @param fallback What to use if the stage fails, or null to fail the future
+     * @return The future result of the stage
+     */
+    private <T> CompletableFuture<T> submit(final String name, final Supplier<T> stage, final Supplier<T> fallback) {
+        return CompletableFuture.supplyAsync(new Supplier<T>() {
+            @Override
+            public T get() {
+                long start = System.nanoTime();
+                T result;
+                try {
+                    result = stage.get();
+                } catch (RuntimeException e) {
+                    EventLog.log(EventLog.ERROR, "Startup: " + name + " failed: " + e);
+                    if (fallback == null) {
+                        throw e;
+                    }
+                    result = fallback.get();
+                }
+                long end = System.nanoTime();
+                EventLog.log(EventLog.INFO, "Startup: " + name + " ready in " + (end - start) / 1000000 + " ms, "
+                        + (end - launchTime) / 1000000 + " ms after launch");
+                return result;
+            }
+        }, executor);
+    }
+    
+    /**
+     * Checks whether everything the game needs is ready.
+     * 
+     * @return True if all stages have finished without failing
+     */
+    public boolean isReady() {
+        return isReady(highScore) && isReady(atlas) && isReady(firstLevel);
+    }
+    
+    private static boolean isReady(CompletableFuture<?> stage) {
+        return stage.isDone() && !stage.isCompletedExceptionally();
+    }
+    
+    /**
+     * Runs a task on the event dispatch thread once everything the game needs is ready,
+     * or another one if a stage without a fallback failed and the game cannot start.
+     * 
+     * @param task The task to run when ready
+     * @param failed The task to run if a stage failed
+     */
+    public void whenReady(final Runnable task, final Runnable failed) {
+        if (isReady() && SwingUtilities.isEventDispatchThread()) {
+            task.run();
+            return;
+        }
+        CompletableFuture.allOf(highScore, atlas, firstLevel).whenComplete(new BiConsumer<Void, Throwable>() {
+            @Override
+            public void accept(Void result, Throwable error) {
+                if (error != null) {
+                    EventLog.log(EventLog.ERROR, "The game cannot start, a startup stage failed");
+                    SwingUtilities.invokeLater(failed);
+                } else {
+                    SwingUtilities.invokeLater(task);
+                }
+            }
+        });
+    }
+    
+    /**
+     * Gets the high scores, waiting for them if they are still loading.
+     * 
+     * @return The high scores
+     */
+    public HighScore getHighScore() {
+        return highScore.join();
+    }
+    
+    /**
+     * Gets the sprite atlas, waiting for it if it is still being rendered.
+     * 
+     * @return The sprite atlas
+     */
+    public SpriteAtlas getAtlas() {
+        return atlas.join();
+    }
+    
+    /**
+     * Gets the first level of the campaign. Games play on copies of its template maze,
+     * which share its pathfinding tables.
+     * 
+     * @return The first level
+     */
+    public PreparedLevel getFirstLevel() {
+        return firstLevel.join();
+    }
+    
+    /**
+     * Reports the first frame of the title screen.
+     */
+    public void titleFramePresented() {
+        if (!titleFrameShown) {
+            titleFrameShown = true;
+            EventLog.log(EventLog.INFO, "Startup: first title frame " + (System.nanoTime() - launchTime) / 1000000
+                    + " ms after launch");
+        }
+    }
+    
+    /**
+     * Remembers when the player asked to start the first game.
+     */
+    public void gameRequested() {
+        if (gameRequestTime == 0) {
+            gameRequestTime = System.nanoTime();
+        }
+    }
+    
+    /**
+     * Reports the first frame of the first game.
+     */
+    public void gameFramePresented() {
+        if (!gameFrameShown && gameRequestTime != 0) {
+            gameFrameShown = true;
+            long now = System.nanoTime();
+            EventLog.log(EventLog.INFO, "Startup: first game frame " + (now - launchTime) / 1000000 + " ms after launch, "
+                    + (now - gameRequestTime) / 1000000 + " ms after start was pressed");
+        }
+    }
+}
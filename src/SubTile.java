@@ -0,0 +1,76 @@
+/**
+ * Fixed-point helpers for sub-tile actor positions.
+ * Positions are stored in ints at 1/16 of a tile, speeds in 1/256 of a
+ * sub-tile unit per tick, so all movement uses integer math only.
+ */
+public final class SubTile {
+    // Number of fractional bits in a sub-tile coordinate
+    public static final int SHIFT = 4;
+    
+    // One tile in sub-tile units
+    public static final int ONE = 1 << SHIFT;
+    
+    // Half a tile in sub-tile units
+    public static final int HALF = ONE / 2;
+    
+    // Number of fractional bits in a speed value
+    public static final int SPEED_SHIFT = 8;
+    
+    // Mask for the fractional part of a speed accumulator
+    public static final int SPEED_MASK = (1 << SPEED_SHIFT) - 1;
+    
+    private SubTile() {
+    }
+    
+    /**
+     * Converts a tile coordinate to a sub-tile coordinate.
+     * 
+     * @param tile The tile coordinate
+     * @return The sub-tile coordinate of the tile's top-left corner
+     */
+    public static int fromTile(int tile) {
+        return tile << SHIFT;
+    }
+    
+    /**
+     * Converts a sub-tile coordinate to the tile whose centre is nearest.
+     * 
+     * @param fixed The sub-tile coordinate
+     * @return The tile coordinate
+     */
+    public static int toTile(int fixed) {
+        return (fixed + HALF) >> SHIFT;
+    }
+    
+    /**
+     * Checks if a sub-tile coordinate lies exactly on a tile.
+     * 
+     * @param fixed The sub-tile coordinate
+     * @return True if the coordinate is tile-aligned, false otherwise
+     */
+    public static boolean isAligned(int fixed) {
+        return (fixed & (ONE - 1)) == 0;
+    }
+    
+    /**
+     * Converts a sub-tile coordinate to pixels.
+     * 
+     * @param fixed The sub-tile coordinate
+     * @param tileSize The size of a tile in pixels
+     * @return The pixel coordinate
+     */
+    public static int toPixels(int fixed, int tileSize) {
+        return (fixed * tileSize) >> SHIFT;
+    }
+    
+    /**
+     * Computes the speed value that crosses one tile in the given time.
+     * 
+     * @param tileTime Milliseconds to cross one tile
+     * @param tickTime Milliseconds per game tick
+     * @return The speed in 1/256 sub-tile units per tick
+     */
+    public static int speedFor(int tileTime, int tickTime) {
+        return (ONE << SPEED_SHIFT) * tickTime / tileTime;
+    }
+}
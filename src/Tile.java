@@ -35,6 +35,34 @@ public class Tile {
         this.hasPowerPellet = type == POWER_PELLET;
     }
     
+    /**
+     * Creates a copy of another Tile.
+     * 
+     * @param tile The Tile to copy
+     */
+    public Tile(Tile tile) {
+        this.type = tile.type;
+        this.x = tile.x;
+        this.y = tile.y;
+        this.size = tile.size;
+        this.hasPellet = tile.hasPellet;
+        this.hasPowerPellet = tile.hasPowerPellet;
+    }
+    
+    /**
+     * Makes this tile a copy of another one in place.
+     * 
+     * @param tile The Tile to copy
+     */
+    public void set(Tile tile) {
+        this.type = tile.type;
+        this.x = tile.x;
+        this.y = tile.y;
+        this.size = tile.size;
+        this.hasPellet = tile.hasPellet;
+        this.hasPowerPellet = tile.hasPowerPellet;
+    }
+    
     /**
      * Gets the type of this tile.
      * 
@@ -116,24 +144,40 @@ public class Tile {
      * Draws this tile on the screen.
      * 
      * @param g The Graphics object to draw with
+     * @param atlas The sprite atlas to draw pellets from
      */
-    public void draw(Graphics g) {
-        // Draw the tile background
+    public void draw(Graphics g, SpriteAtlas atlas) {
+        drawWall(g);
+        drawPellet(g, atlas);
+    }
+    
+    /**
+     * Draws the tile background if this tile is a wall.
+     * 
+     * @param g The Graphics object to draw with
+     */
+    public void drawWall(Graphics g) {
         if (isWall()) {
             g.setColor(Color.BLUE);
             g.fillRect(x * size, y * size, size, size);
         }
-        
+    }
+    
+    /**
+     * Draws the pellet or power pellet on this tile, if there is one.
+     * 
+     * @param g The Graphics object to draw with
+     * @param atlas The sprite atlas to draw pellets from
+     */
+    public void drawPellet(Graphics g, SpriteAtlas atlas) {
         // Draw pellet if present
         if (hasPellet) {
-            g.setColor(Color.WHITE);
-            g.fillOval(x * size + size/3, y * size + size/3, size/3, size/3);
+            atlas.drawPellet(g, x * size, y * size, false);
         }
         
         // Draw power pellet if present
         if (hasPowerPellet) {
-            g.setColor(Color.WHITE);
-            g.fillOval(x * size + size/4, y * size + size/4, size/2, size/2);
+            atlas.drawPellet(g, x * size, y * size, true);
         }
     }
 }
\ No newline at end of file
@@ -2,6 +2,8 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
@@ -14,21 +16,55 @@ import javax.swing.JPanel;
 public class TitleScreen extends JPanel {
     private static final long serialVersionUID = 1L;
     
-    private static final int WIDTH = 475; // 19 * 25
-    private static final int HEIGHT = 575; // 21 * 25 + 50
+    private static final int WIDTH = GamePanel.PANEL_WIDTH;
+    private static final int HEIGHT = GamePanel.PANEL_HEIGHT;
     
     // Difficulty levels
     public static final int DIFFICULTY_EASY = 0;
     public static final int DIFFICULTY_MEDIUM = 1;
     public static final int DIFFICULTY_HARD = 2;
     
+    // Fonts, colours and labels, created once instead of on every frame
+    private static final Font TITLE_FONT = new Font("Arial", Font.BOLD, 48);
+    private static final Font INSTRUCTION_FONT = new Font("Arial", Font.PLAIN, 16);
+    private static final Font HEADING_FONT = new Font("Arial", Font.BOLD, 18);
+    private static final Font BUTTON_FONT = new Font("Arial", Font.BOLD, 14);
+    private static final Font DESCRIPTION_FONT = new Font("Arial", Font.PLAIN, 14);
+    private static final Font START_FONT = new Font("Arial", Font.BOLD, 20);
+    private static final Font CREDITS_FONT = new Font("Arial", Font.PLAIN, 12);
+    private static final Color SELECTED_EASY_COLOR = Color.GREEN.darker();
+    private static final Color SELECTED_MEDIUM_COLOR = Color.YELLOW.darker();
+    private static final Color SELECTED_HARD_COLOR = Color.RED.darker();
+    private static final HudText TITLE_LABEL = new HudText(TITLE_FONT, "PAC-MAN");
+    private static final HudText MOVE_LABEL = new HudText(INSTRUCTION_FONT, "Use arrow keys to move");
+    private static final HudText GOAL_LABEL = new HudText(INSTRUCTION_FONT, "Eat all pellets to win");
+    private static final HudText PAUSE_LABEL = new HudText(INSTRUCTION_FONT, "Press P to pause");
+    private static final HudText DIFFICULTY_LABEL = new HudText(HEADING_FONT, "Select Difficulty:");
+    private static final HudText EASY_LABEL = new HudText(BUTTON_FONT, "EASY");
+    private static final HudText MEDIUM_LABEL = new HudText(BUTTON_FONT, "MEDIUM");
+    private static final HudText HARD_LABEL = new HudText(BUTTON_FONT, "HARD");
+    private static final HudText EASY_DESCRIPTION = new HudText(DESCRIPTION_FONT, "Slower ghosts, longer power-up time");
+    private static final HudText MEDIUM_DESCRIPTION = new HudText(DESCRIPTION_FONT, "Standard ghost speed and power-up time");
+    private static final HudText HARD_DESCRIPTION = new HudText(DESCRIPTION_FONT, "Faster ghosts, shorter power-up time");
+    private static final HudText START_LABEL = new HudText(START_FONT, "START");
+    private static final HudText LOADING_LABEL = new HudText(BUTTON_FONT, "LOADING...");
+    private static final HudText DIAGNOSTICS_LABEL = new HudText(BUTTON_FONT, "DIAGNOSTICS");
+    private static final HudText CREDITS_LABEL = new HudText(CREDITS_FONT, "Enhanced with restart, high score, and difficulty features");
+    
     private Rectangle startButton;
     private Rectangle easyButton;
     private Rectangle mediumButton;
     private Rectangle hardButton;
+    private Rectangle diagnosticsButton;
     private GameFrame parent;
     private int selectedDifficulty;
     
+    // True while the game waits for its assets after START was clicked
+    private boolean loading;
+    
+    // The title screen only changes on clicks, so its scaled frame is cached
+    private FrameScaler frameScaler;
+    
     /**
      * Creates a new title screen.
      * 
@@ -44,28 +80,30 @@ public class TitleScreen extends JPanel {
         
         // Set default difficulty
         selectedDifficulty = DIFFICULTY_MEDIUM;
+        frameScaler = new FrameScaler(WIDTH, HEIGHT, true);
         
         // Create the buttons
         startButton = new Rectangle(WIDTH / 2 - 60, HEIGHT / 2 + 100, 120, 40);
         easyButton = new Rectangle(WIDTH / 2 - 140, HEIGHT / 2, 80, 30);
         mediumButton = new Rectangle(WIDTH / 2 - 40, HEIGHT / 2, 80, 30);
         hardButton = new Rectangle(WIDTH / 2 + 60, HEIGHT / 2, 80, 30);
+        diagnosticsButton = new Rectangle(WIDTH / 2 - 60, HEIGHT / 2 + 160, 120, 25);
         
         // Add mouse listener for button clicks
         addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
-                if (startButton.contains(e.getPoint())) {
+                Point point = frameScaler.toLogical(e.getX(), e.getY());
+                if (startButton.contains(point)) {
                     startGame();
-                } else if (easyButton.contains(e.getPoint())) {
-                    selectedDifficulty = DIFFICULTY_EASY;
-                    repaint();
-                } else if (mediumButton.contains(e.getPoint())) {
-                    selectedDifficulty = DIFFICULTY_MEDIUM;
-                    repaint();
-                } else if (hardButton.contains(e.getPoint())) {
-                    selectedDifficulty = DIFFICULTY_HARD;
-                    repaint();
+                } else if (easyButton.contains(point)) {
+                    selectDifficulty(DIFFICULTY_EASY);
+                } else if (mediumButton.contains(point)) {
+                    selectDifficulty(DIFFICULTY_MEDIUM);
+                } else if (hardButton.contains(point)) {
+                    selectDifficulty(DIFFICULTY_HARD);
+                } else if (diagnosticsButton.contains(point)) {
+                    parent.showDiagnostics();
                 }
             }
         });
@@ -75,7 +113,32 @@ public class TitleScreen extends JPanel {
      * Starts the game by switching to the game panel.
      */
     private void startGame() {
-        parent.startGame(selectedDifficulty);
+        // A second click while loading would start the game twice
+        if (!loading) {
+            parent.startGame(selectedDifficulty);
+        }
+    }
+    
+    /**
+     * Shows or hides the loading message on the start button.
+     * 
+     * @param loading True while the game waits for its assets
+     */
+    public void setLoading(boolean loading) {
+        this.loading = loading;
+        frameScaler.invalidate();
+        repaint();
+    }
+    
+    /**
+     * Selects a difficulty level and redraws the screen.
+     * 
+     * @param difficulty The difficulty level
+     */
+    private void selectDifficulty(int difficulty) {
+        selectedDifficulty = difficulty;
+        frameScaler.invalidate();
+        repaint();
     }
     
     /**
@@ -94,67 +157,78 @@ public class TitleScreen extends JPanel {
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
         
+        // Render the logical frame only when it changed, then present the cached scaled frame
+        if (frameScaler.needsRender(this)) {
+            Graphics2D frame = frameScaler.beginFrame(this);
+            renderFrame(frame);
+            frame.dispose();
+        }
+        frameScaler.present(g, getWidth(), getHeight());
+        parent.titleFramePresented();
+    }
+    
+    /**
+     * Draws the title screen at logical resolution.
+     * 
+     * @param g The Graphics object to draw with
+     */
+    private void renderFrame(Graphics g) {
         // Draw title
         g.setColor(Color.YELLOW);
-        g.setFont(new Font("Arial", Font.BOLD, 48));
-        g.drawString("PAC-MAN", WIDTH / 2 - 120, HEIGHT / 3);
+        TITLE_LABEL.draw(g, WIDTH / 2 - 120, HEIGHT / 3);
         
         // Draw instructions
         g.setColor(Color.WHITE);
-        g.setFont(new Font("Arial", Font.PLAIN, 16));
-        g.drawString("Use arrow keys to move", WIDTH / 2 - 100, HEIGHT / 2 - 60);
-        g.drawString("Eat all pellets to win", WIDTH / 2 - 100, HEIGHT / 2 - 40);
-        g.drawString("Press P to pause", WIDTH / 2 - 100, HEIGHT / 2 - 20);
+        MOVE_LABEL.draw(g, WIDTH / 2 - 100, HEIGHT / 2 - 60);
+        GOAL_LABEL.draw(g, WIDTH / 2 - 100, HEIGHT / 2 - 40);
+        PAUSE_LABEL.draw(g, WIDTH / 2 - 100, HEIGHT / 2 - 20);
         
         // Draw difficulty label
         g.setColor(Color.WHITE);
-        g.setFont(new Font("Arial", Font.BOLD, 18));
-        g.drawString("Select Difficulty:", WIDTH / 2 - 80, HEIGHT / 2 - 10);
+        DIFFICULTY_LABEL.draw(g, WIDTH / 2 - 80, HEIGHT / 2 - 10);
         
         // Draw difficulty buttons
         // Easy button
         if (selectedDifficulty == DIFFICULTY_EASY) {
-            g.setColor(Color.GREEN.darker());
+            g.setColor(SELECTED_EASY_COLOR);
         } else {
             g.setColor(Color.GREEN);
         }
         g.fillRect(easyButton.x, easyButton.y, easyButton.width, easyButton.height);
         g.setColor(Color.BLACK);
-        g.setFont(new Font("Arial", Font.BOLD, 14));
-        g.drawString("EASY", easyButton.x + 20, easyButton.y + 20);
+        EASY_LABEL.draw(g, easyButton.x + 20, easyButton.y + 20);
         
         // Medium button
         if (selectedDifficulty == DIFFICULTY_MEDIUM) {
-            g.setColor(Color.YELLOW.darker());
+            g.setColor(SELECTED_MEDIUM_COLOR);
         } else {
             g.setColor(Color.YELLOW);
         }
         g.fillRect(mediumButton.x, mediumButton.y, mediumButton.width, mediumButton.height);
         g.setColor(Color.BLACK);
-        g.drawString("MEDIUM", mediumButton.x + 10, mediumButton.y + 20);
+        MEDIUM_LABEL.draw(g, mediumButton.x + 10, mediumButton.y + 20);
         
         // Hard button
         if (selectedDifficulty == DIFFICULTY_HARD) {
-            g.setColor(Color.RED.darker());
+            g.setColor(SELECTED_HARD_COLOR);
         } else {
             g.setColor(Color.RED);
         }
         g.fillRect(hardButton.x, hardButton.y, hardButton.width, hardButton.height);
         g.setColor(Color.BLACK);
-        g.drawString("HARD", hardButton.x + 20, hardButton.y + 20);
+        HARD_LABEL.draw(g, hardButton.x + 20, hardButton.y + 20);
         
         // Draw difficulty description
         g.setColor(Color.WHITE);
-        g.setFont(new Font("Arial", Font.PLAIN, 14));
         switch (selectedDifficulty) {
             case DIFFICULTY_EASY:
-                g.drawString("Slower ghosts, longer power-up time", WIDTH / 2 - 140, HEIGHT / 2 + 50);
+                EASY_DESCRIPTION.draw(g, WIDTH / 2 - 140, HEIGHT / 2 + 50);
                 break;
             case DIFFICULTY_MEDIUM:
-                g.drawString("Standard ghost speed and power-up time", WIDTH / 2 - 140, HEIGHT / 2 + 50);
+                MEDIUM_DESCRIPTION.draw(g, WIDTH / 2 - 140, HEIGHT / 2 + 50);
                 break;
             case DIFFICULTY_HARD:
-                g.drawString("Faster ghosts, shorter power-up time", WIDTH / 2 - 140, HEIGHT / 2 + 50);
+                HARD_DESCRIPTION.draw(g, WIDTH / 2 - 140, HEIGHT / 2 + 50);
                 break;
         }
         
@@ -162,12 +236,20 @@ public class TitleScreen extends JPanel {
         g.setColor(Color.BLUE);
         g.fillRect(startButton.x, startButton.y, startButton.width, startButton.height);
         g.setColor(Color.WHITE);
-        g.setFont(new Font("Arial", Font.BOLD, 20));
-        g.drawString("START", startButton.x + 25, startButton.y + 25);
+        if (loading) {
+            LOADING_LABEL.draw(g, startButton.x + 20, startButton.y + 25);
+        } else {
+            START_LABEL.draw(g, startButton.x + 25, startButton.y + 25);
+        }
+        
+        // Draw diagnostics button
+        g.setColor(Color.DARK_GRAY);
+        g.fillRect(diagnosticsButton.x, diagnosticsButton.y, diagnosticsButton.width, diagnosticsButton.height);
+        g.setColor(Color.WHITE);
+        DIAGNOSTICS_LABEL.draw(g, diagnosticsButton.x + 18, diagnosticsButton.y + 17);
         
         // Draw credits
         g.setColor(Color.GRAY);
-        g.setFont(new Font("Arial", Font.PLAIN, 12));
-        g.drawString("Enhanced with restart, high score, and difficulty features", WIDTH / 2 - 170, HEIGHT - 30);
+        CREDITS_LABEL.draw(g, WIDTH / 2 - 170, HEIGHT - 30);
     }
 }
\ No newline at end of file
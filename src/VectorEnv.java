@@ -0,0 +1,223 @@
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * Steps many PacManEnvs in lockstep, for training on batches of experience.
+ * 
+ * All observations live in one shared array, environment i at i * OBSERVATION_SIZE, with
+ * the rewards and episode ends of the last step in arrays next to it. The environments
+ * are split into contiguous blocks, one per thread; the calling thread steps the first
+ * block and worker threads the others, meeting at a barrier before and after each step.
+ * An environment whose episode ended is reset at once with a new seed, so its observation
+ * is already the first of the next episode (its reward and end flag still belong to the
+ * finished one).
+ */
+public class VectorEnv {
+    // Values in getDones()
+    public static final byte RUNNING = 0;
+    public static final byte TERMINATED = 1;
+    public static final byte TRUNCATED = 2;
+    
+    private final PacManEnv[] envs;
+    private final byte[] observations;
+    private final int[] rewards;
+    private final byte[] dones;
+    private final long[] episodes;
+    private final long seed;
+    
+    // Actions of the current step, and the threads stepping the blocks
+    private final int[] actions;
+    private final int threadCount;
+    private final Thread[] workers;
+    private final CyclicBarrier startBarrier;
+    private final CyclicBarrier endBarrier;
+    private volatile boolean closed;
+    private volatile Throwable failure;
+    
+    /**
+     * Creates the environments and starts the worker threads.
+     * 
+     * @param count The number of environments
+     * @param threads The number of threads, including the caller
+     * @param difficulty The difficulty level (0=easy, 1=medium, 2=hard)
+     * @param ticksPerStep Game ticks per step
+     * @param seed The seed; environment i plays seeds derived from seed and i
+     */
+    public VectorEnv(int count, int threads, int difficulty, int ticksPerStep, long seed) {
+        this.seed = seed;
+        envs = new PacManEnv[count];
+        observations = new byte[count * PacManEnv.OBSERVATION_SIZE];
+        rewards = new int[count];
+        dones = new byte[count];
+        episodes = new long[count];
+        actions = new int[count];
+        Maze template = new Maze(PacManEnv.WIDTH, PacManEnv.HEIGHT, Game.TILE_SIZE);
+        for (int i = 0; i < count; i++) {
+            envs[i] = new PacManEnv(difficulty, ticksPerStep, template, observations, i * PacManEnv.OBSERVATION_SIZE);
+        }
+        
+        threadCount = Math.max(1, Math.min(threads, count));
+        startBarrier = new CyclicBarrier(threadCount);
+        endBarrier = new CyclicBarrier(threadCount);
+        workers = new Thread[threadCount - 1];
+        for (int t = 1; t < threadCount; t++) {
+            final int block = t;
+            workers[t - 1] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    work(block);
+                }
+            }, "Env Worker " + t);
+            workers[t - 1].setDaemon(true);
+            workers[t - 1].start();
+        }
+    }
+    
+    /**
+     * Starts a new episode in every environment.
+     */
+    public void reset() {
+        for (int i = 0; i < envs.length; i++) {
+            envs[i].reset(seedOf(i));
+            rewards[i] = 0;
+            dones[i] = RUNNING;
+        }
+    }
+    
+    /**
+     * Steps every environment once.
+     * 
+     * @param actions The action of each environment, one of the PacManEnv.ACTION_ constants
+     */
+    public void step(int[] actions) {
+        System.arraycopy(actions, 0, this.actions, 0, envs.length);
+        if (threadCount == 1) {
+            stepBlock(0);
+            return;
+        }
+        await(startBarrier);
+        stepBlock(0);
+        await(endBarrier);
+        if (failure != null) {
+            throw new IllegalStateException("Environment worker failed", failure);
+        }
+    }
+    
+    /**
+     * Stops the worker threads.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (threadCount > 1) {
+            startBarrier.reset();
+        }
+    }
+    
+    /**
+     * Worker thread loop: steps one block whenever the caller starts a step.
+     */
+    private void work(int block) {
+        try {
+            while (true) {
+                startBarrier.await();
+                if (closed) {
+                    return;
+                }
+                try {
+                    stepBlock(block);
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+                endBarrier.await();
+            }
+        } catch (InterruptedException | BrokenBarrierException e) {
+            // Closed
+        }
+    }
+    
+    /**
+     * Steps the environments of one block, resetting those whose episode ended.
+     */
+    private void stepBlock(int block) {
+        int start = (int) ((long) envs.length * block / threadCount);
+        int end = (int) ((long) envs.length * (block + 1) / threadCount);
+        for (int i = start; i < end; i++) {
+            PacManEnv env = envs[i];
+            rewards[i] = env.step(actions[i]);
+            if (env.isTerminated() || env.isTruncated()) {
+                dones[i] = env.isTerminated() ? TERMINATED : TRUNCATED;
+                episodes[i]++;
+                env.reset(seedOf(i));
+            } else {
+                dones[i] = RUNNING;
+            }
+        }
+    }
+    
+    /**
+     * Gets the seed of the current episode of an environment.
+     */
+    private long seedOf(int env) {
+        return seed + env + episodes[env] * envs.length;
+    }
+    
+    private void await(CyclicBarrier barrier) {
+        try {
+            barrier.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while stepping", e);
+        } catch (BrokenBarrierException e) {
+            throw new IllegalStateException("Environment is closed", e);
+        }
+    }
+    
+    /**
+     * Gets the number of environments.
+     * 
+     * @return The number of environments
+     */
+    public int getCount() {
+        return envs.length;
+    }
+    
+    /**
+     * Gets the shared observation array; environment i starts at i * PacManEnv.OBSERVATION_SIZE.
+     * 
+     * @return The observations
+     */
+    public byte[] getObservations() {
+        return observations;
+    }
+    
+    /**
+     * Gets the rewards of the last step.
+     * 
+     * @return The reward of each environment
+     */
+    public int[] getRewards() {
+        return rewards;
+    }
+    
+    /**
+     * Gets how the episodes ended in the last step.
+     * 
+     * @return RUNNING, TERMINATED or TRUNCATED for each environment
+     */
+    public byte[] getDones() {
+        return dones;
+    }
+    
+    /**
+     * Gets an environment, for rendering or inspection.
+     * 
+     * @param index The index of the environment
+     * @return The environment
+     */
+    public PacManEnv getEnv(int index) {
+        return envs[index];
+    }
+}